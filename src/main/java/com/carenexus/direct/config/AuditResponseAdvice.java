@@ -0,0 +1,81 @@
+package com.carenexus.direct.config;
+
+import com.carenexus.direct.dto.InboxEntryDTO;
+import com.carenexus.direct.dto.MessageDTO;
+import com.carenexus.direct.dto.PatientDTO;
+import com.carenexus.direct.dto.SyncChangeDTO;
+import com.carenexus.direct.dto.SyncResponseDTO;
+import com.carenexus.direct.event.EntityChangedEvent.EntityType;
+import com.carenexus.direct.service.AuditService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.core.MethodParameter;
+import org.springframework.data.domain.Page;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.http.server.ServerHttpResponse;
+import org.springframework.web.bind.annotation.RestControllerAdvice;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyAdvice;
+
+import java.security.Principal;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Reports every GET response carrying patients or messages (single DTO,
+ * list, page, sync changes, inbox previews) to AuditService, whichever
+ * endpoint served it. Runs just before the body is written, so 304
+ * responses and failed requests are not recorded. Bodies it never sees
+ * (SSE events, file downloads) or cannot attribute (typeahead) are
+ * recorded where they are produced.
+ */
+@RestControllerAdvice
+@RequiredArgsConstructor
+public class AuditResponseAdvice implements ResponseBodyAdvice<Object> {
+
+    private final AuditService auditService;
+
+    @Override
+    public boolean supports(MethodParameter returnType, Class<? extends HttpMessageConverter<?>> converterType) {
+        return true;
+    }
+
+    @Override
+    public Object beforeBodyWrite(Object body, MethodParameter returnType, MediaType selectedContentType,
+                                  Class<? extends HttpMessageConverter<?>> selectedConverterType,
+                                  ServerHttpRequest request, ServerHttpResponse response) {
+        if (body == null || !HttpMethod.GET.equals(request.getMethod())) {
+            return body;
+        }
+        List<Long> patients = new ArrayList<>();
+        List<Long> messages = new ArrayList<>();
+        Iterable<?> items = body instanceof Page<?> page ? page.getContent()
+                : body instanceof Collection<?> collection ? collection
+                : body instanceof SyncResponseDTO sync && sync.getChanges() != null ? sync.getChanges()
+                : List.of(body);
+        for (Object item : items) {
+            collect(item instanceof SyncChangeDTO change ? change.getData() : item, patients, messages);
+        }
+        if (patients.isEmpty() && messages.isEmpty()) {
+            return body;
+        }
+        Principal principal = request.getPrincipal();
+        String actor = principal != null ? principal.getName() : "anonymous";
+        String path = request.getURI().getPath();
+        auditService.record(actor, EntityType.PATIENT.name(), patients, path);
+        auditService.record(actor, EntityType.MESSAGE.name(), messages, path);
+        return body;
+    }
+
+    private static void collect(Object item, List<Long> patients, List<Long> messages) {
+        if (item instanceof PatientDTO patient && patient.getId() != null) {
+            patients.add(patient.getId());
+        } else if (item instanceof MessageDTO message && message.getId() != null) {
+            messages.add(message.getId());
+        } else if (item instanceof InboxEntryDTO entry && entry.getLastMessageId() != null) {
+            messages.add(entry.getLastMessageId());  // Its preview is message text
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package com.carenexus.direct.config;
+
+import com.carenexus.direct.event.KafkaConsumerMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.common.serialization.StringDeserializer;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.kafka.config.ConcurrentKafkaListenerContainerFactory;
+import org.springframework.kafka.config.KafkaListenerContainerFactory;
+import org.springframework.kafka.core.DefaultKafkaConsumerFactory;
+import org.springframework.kafka.core.DefaultKafkaProducerFactory;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.listener.ConcurrentMessageListenerContainer;
+import org.springframework.kafka.listener.ContainerProperties;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * ====================================================================
+ * Cache Invalidation Bus - Kafka Configuration
+ * ====================================================================
+ *
+ * Producer and consumer for the direct.cache.invalidation topic used by
+ * CacheInvalidationBus.
+ *
+ * Producer:
+ * - acks=1, small linger + lz4: invalidations are tiny and frequent
+ *
+ * Consumer:
+ * - Every instance needs every message, so each one has its own
+ *   consumer group, direct-cache-bus-<cache-bus.instance-id>. The id is
+ *   stable across restarts, so a restart rejoins its group instead of
+ *   leaving another one behind on the broker
+ * - Starts from the end of every assigned partition (CacheInvalidationBus
+ *   seeks there): a fresh instance has empty caches anyway
+ * - Single thread, offsets committed by the container
+ *
+ * The consumer factory is built inline (not a bean) so the shared
+ * ConsumerFactory in KafkaConsumerConfig stays the only one injected.
+ *
+ * ====================================================================
+ */
+@Slf4j
+@Configuration
+@ConditionalOnProperty(name = "cache-bus.enabled", havingValue = "true", matchIfMissing = true)
+public class CacheInvalidationBusConfig {
+
+    @Value("${spring.kafka.bootstrap-servers:localhost:9092}")
+    private String bootstrapServers;
+
+    /** Unique per instance and unchanged by restarts; empty = host name */
+    @Value("${cache-bus.instance-id:}")
+    private String instanceId;
+
+    @Bean
+    public KafkaTemplate<String, String> cacheInvalidationKafkaTemplate() {
+        Map<String, Object> props = new HashMap<>();
+        props.put(ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers);
+        props.put(ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG, StringSerializer.class);
+        props.put(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, StringSerializer.class);
+        props.put(ProducerConfig.ACKS_CONFIG, "1");
+        props.put(ProducerConfig.LINGER_MS_CONFIG, 5);
+        props.put(ProducerConfig.COMPRESSION_TYPE_CONFIG, "lz4");
+
+        log.info("[CacheInvalidationBusConfig] Creating cache invalidation producer");
+        return new KafkaTemplate<>(new DefaultKafkaProducerFactory<>(props));
+    }
+
+    @Bean
+    public KafkaListenerContainerFactory<ConcurrentMessageListenerContainer<String, String>>
+    cacheInvalidationListenerContainerFactory(KafkaConsumerMetrics consumerMetrics) {
+        String groupId = "direct-cache-bus-" + (instanceId.isBlank() ? hostName() : instanceId);
+
+        Map<String, Object> props = new HashMap<>();
+        props.put(ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers);
+        props.put(ConsumerConfig.GROUP_ID_CONFIG, groupId);
+        props.put(ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class);
+        props.put(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class);
+        props.put(ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, "latest");
+        props.put(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, false);
+
+        ConcurrentKafkaListenerContainerFactory<String, String> factory =
+                new ConcurrentKafkaListenerContainerFactory<>();
+        factory.setConsumerFactory(new DefaultKafkaConsumerFactory<>(props));
+        factory.setConcurrency(1);
+        factory.getContainerProperties().setAckMode(ContainerProperties.AckMode.BATCH);
+        factory.setRecordInterceptor(consumerMetrics);
+
+        log.info("[CacheInvalidationBusConfig] Cache invalidation consumer group: {}", groupId);
+        return factory;
+    }
+
+    private static String hostName() {
+        try {
+            return InetAddress.getLocalHost().getHostName();
+        } catch (UnknownHostException e) {
+            throw new IllegalStateException("cache-bus.instance-id is not set and the host name is unknown", e);
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package com.carenexus.direct.config;
+
+import com.carenexus.direct.event.EntityChangedEvent.EntityType;
+import com.carenexus.direct.service.EntityVersionService;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.servlet.HandlerInterceptor;
+
+import java.security.Principal;
+
+/**
+ * ====================================================================
+ * Conditional Request Interceptor - ETag / If-None-Match / If-Match
+ * ====================================================================
+ *
+ * Runs before the patient, doctor, appointment and message handlers:
+ *
+ * - GET/HEAD: the ETag is the caller's version for that entity type
+ *   (EntityVersionService). If it matches If-None-Match the request
+ *   ends here with 304 Not Modified: no query, no serialization
+ * - PUT/PATCH/DELETE with If-Match: if the caller's data of that type
+ *   changed since the tag was issued the request ends with
+ *   412 Precondition Failed before anything is written
+ *
+ * Skipped for:
+ * - Anonymous requests (no owner to version)
+ * - Admins (they can read other owners' records)
+ * - SSE streams (/stream)
+ * - Doctor free slots (/free-slots): they change with any owner's bookings
+ * - The message inbox (/inbox): it changes with other users' messages
+ *
+ * ====================================================================
+ */
+@Component
+@RequiredArgsConstructor
+public class ConditionalRequestInterceptor implements HandlerInterceptor {
+
+    private final EntityVersionService entityVersionService;
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        String etag = currentEtag(request);
+        if (etag == null) {
+            return true;
+        }
+
+        String method = request.getMethod();
+        boolean read = "GET".equals(method) || "HEAD".equals(method);
+        boolean write = "PUT".equals(method) || "PATCH".equals(method) || "DELETE".equals(method);
+
+        if (read || (write && request.getHeader(HttpHeaders.IF_MATCH) != null)) {
+            // Sets ETag and 304 (reads) or 412 (writes) on the response
+            return !new ServletWebRequest(request, response).checkNotModified(etag);
+        }
+        return true;
+    }
+
+    /** ETag for the caller's data behind this URL, or null when not applicable */
+    String currentEtag(HttpServletRequest request) {
+        Principal principal = request.getUserPrincipal();
+        EntityType type = entityTypeFor(request.getRequestURI());
+        if (principal == null || type == null
+                || request.isUserInRole("ADMIN")
+                || request.getRequestURI().endsWith("/stream")
+                || request.getRequestURI().endsWith("/free-slots")
+                || request.getRequestURI().contains("/inbox")) {
+            return null;
+        }
+        return entityVersionService.etag(principal.getName(), type);
+    }
+
+    static EntityType entityTypeFor(String uri) {
+        if (uri.startsWith("/api/patients")) {
+            return EntityType.PATIENT;
+        }
+        if (uri.startsWith("/api/doctors")) {
+            return EntityType.DOCTOR;
+        }
+        if (uri.startsWith("/api/appointments")) {
+            return EntityType.APPOINTMENT;
+        }
+        if (uri.startsWith("/api/messages")) {
+            return EntityType.MESSAGE;
+        }
+        return null;
+    }
+}
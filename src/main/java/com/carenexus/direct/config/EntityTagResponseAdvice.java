@@ -0,0 +1,46 @@
+package com.carenexus.direct.config;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.core.MethodParameter;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.http.server.ServerHttpResponse;
+import org.springframework.http.server.ServletServerHttpRequest;
+import org.springframework.http.server.ServletServerHttpResponse;
+import org.springframework.web.bind.annotation.RestControllerAdvice;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyAdvice;
+
+/**
+ * Adds the post-write ETag to PUT/PATCH responses, so a client can chain
+ * If-Match updates without re-fetching.
+ */
+@RestControllerAdvice
+@RequiredArgsConstructor
+public class EntityTagResponseAdvice implements ResponseBodyAdvice<Object> {
+
+    private final ConditionalRequestInterceptor conditionalRequestInterceptor;
+
+    @Override
+    public boolean supports(MethodParameter returnType, Class<? extends HttpMessageConverter<?>> converterType) {
+        return true;
+    }
+
+    @Override
+    public Object beforeBodyWrite(Object body, MethodParameter returnType, MediaType selectedContentType,
+                                  Class<? extends HttpMessageConverter<?>> selectedConverterType,
+                                  ServerHttpRequest request, ServerHttpResponse response) {
+        HttpMethod method = request.getMethod();
+        if ((HttpMethod.PUT.equals(method) || HttpMethod.PATCH.equals(method))
+                && request instanceof ServletServerHttpRequest servletRequest) {
+            String etag = conditionalRequestInterceptor.currentEtag(servletRequest.getServletRequest());
+            if (etag != null && response instanceof ServletServerHttpResponse servletResponse) {
+                // Replace the pre-write tag the If-Match check may have set
+                servletResponse.getServletResponse().setHeader(HttpHeaders.ETAG, etag);
+            }
+        }
+        return body;
+    }
+}
@@ -1,5 +1,8 @@
 package com.carenexus.direct.config;
 
+import com.carenexus.direct.event.KafkaConsumerMetrics;
+import com.carenexus.direct.event.KafkaPollMetricsInterceptor;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.kafka.clients.consumer.ConsumerConfig;
 import org.apache.kafka.common.serialization.StringDeserializer;
@@ -7,11 +10,13 @@ import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.kafka.annotation.EnableKafka;
+import org.springframework.kafka.config.ConcurrentKafkaListenerContainerFactory;
+import org.springframework.kafka.config.KafkaListenerContainerFactory;
 import org.springframework.kafka.core.ConsumerFactory;
 import org.springframework.kafka.core.DefaultKafkaConsumerFactory;
+import org.springframework.kafka.core.MicrometerConsumerListener;
+import org.springframework.kafka.listener.ConcurrentMessageListenerContainer;
 import org.springframework.kafka.listener.ContainerProperties;
-import org.springframework.kafka.listener.KafkaListenerContainerFactory;
-import org.springframework.kafka.listener.ConcurrentKafkaListenerContainer;
 
 import java.util.HashMap;
 import java.util.Map;
@@ -39,6 +44,11 @@ import java.util.Map;
  * - Acknowledgment mode: MANUAL (explicit commit after processing)
  * - Allows retry on processing failure
  *
+ * Monitoring (see KafkaConsumerMetrics):
+ * - Native client metrics (fetch lag, rates) via MicrometerConsumerListener
+ * - Per-partition lag + lag alarm, listener latency, poll batch sizes,
+ *   rebalances and deserialization failures
+ *
  * ====================================================================
  */
 @Slf4j
@@ -58,11 +68,15 @@ public class KafkaConsumerConfig {
      * - Value deserializer: StringDeserializer (for JSON messages)
      * - Auto offset reset: earliest
      * - Max poll records: 500
+     * - Poll interceptor: KafkaPollMetricsInterceptor (batch size metrics)
      *
+     * @param consumerMetrics Metrics bean handed to the poll interceptor
+     * @param meterRegistry   Registry for the native Kafka client metrics
      * @return ConsumerFactory<String, String>
      */
     @Bean
-    public ConsumerFactory<String, String> consumerFactory() {
+    public ConsumerFactory<String, String> consumerFactory(KafkaConsumerMetrics consumerMetrics,
+                                                           MeterRegistry meterRegistry) {
         log.info("[KafkaConsumerConfig] Configuring Kafka consumer factory");
 
         Map<String, Object> props = new HashMap<>();
@@ -86,8 +100,14 @@ public class KafkaConsumerConfig {
         // Avoid consumer rebalancing during long processing
         props.put(ConsumerConfig.MAX_POLL_INTERVAL_MS_CONFIG, 300000);   // 5 minute max poll interval
 
+        // Poll batch size metrics (Kafka creates the interceptor, so pass the bean through config)
+        props.put(ConsumerConfig.INTERCEPTOR_CLASSES_CONFIG, KafkaPollMetricsInterceptor.class.getName());
+        props.put(KafkaPollMetricsInterceptor.METRICS_CONFIG, consumerMetrics);
+
         log.debug("[KafkaConsumerConfig] Consumer config: group=direct-service-group, auto_offset=earliest");
-        return new DefaultKafkaConsumerFactory<>(props);
+        DefaultKafkaConsumerFactory<String, String> factory = new DefaultKafkaConsumerFactory<>(props);
+        factory.addListener(new MicrometerConsumerListener<>(meterRegistry));  // kafka.consumer.* client metrics
+        return factory;
     }
 
     /**
@@ -97,24 +117,31 @@ public class KafkaConsumerConfig {
      * - Concurrency: 3 threads for parallel processing
      * - Acknowledgment mode: MANUAL (explicit commit)
      * - Poll timeout: 10 seconds
+     * - Record interceptor + rebalance listener: KafkaConsumerMetrics
      *
      * @param consumerFactory ConsumerFactory
+     * @param consumerMetrics Lag / latency / rebalance instrumentation
      * @return KafkaListenerContainerFactory
      */
     @Bean
-    public KafkaListenerContainerFactory<ConcurrentKafkaListenerContainer<String, String>>
-    kafkaListenerContainerFactory(ConsumerFactory<String, String> consumerFactory) {
+    public KafkaListenerContainerFactory<ConcurrentMessageListenerContainer<String, String>>
+    kafkaListenerContainerFactory(ConsumerFactory<String, String> consumerFactory,
+                                  KafkaConsumerMetrics consumerMetrics) {
 
         log.info("[KafkaConsumerConfig] Creating Kafka listener container factory");
 
-        org.springframework.kafka.listener.ConcurrentKafkaListenerContainerFactory<String, String> factory =
-                new org.springframework.kafka.listener.ConcurrentKafkaListenerContainerFactory<>();
+        ConcurrentKafkaListenerContainerFactory<String, String> factory =
+                new ConcurrentKafkaListenerContainerFactory<>();
 
         factory.setConsumerFactory(consumerFactory);
         factory.setConcurrency(3);  // Process 3 messages in parallel
         factory.getContainerProperties().setAckMode(ContainerProperties.AckMode.MANUAL);  // Manual commit
         factory.getContainerProperties().setPollTimeout(10000);  // 10 second poll timeout
 
+        // Instrumentation: per-record latency + lag, rebalance counts
+        factory.setRecordInterceptor(consumerMetrics);
+        factory.getContainerProperties().setConsumerRebalanceListener(consumerMetrics);
+
         log.debug("[KafkaConsumerConfig] Listener factory: concurrency=3, ack_mode=MANUAL");
         return factory;
     }
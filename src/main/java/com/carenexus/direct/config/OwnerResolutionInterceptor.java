@@ -0,0 +1,40 @@
+package com.carenexus.direct.config;
+
+import com.carenexus.direct.service.OwnerDirectory;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.HandlerInterceptor;
+
+import java.security.Principal;
+import java.util.Set;
+
+/**
+ * Resolves the caller's owner id (OwnerDirectory) once per request, before
+ * the handler opens any transaction, so the owner_id conversions inside
+ * the request's queries and flushes are cache hits. Only mutating
+ * requests assign an id to a new caller; a read by a caller who never
+ * wrote anything just finds none (and an empty result).
+ */
+@Component
+@RequiredArgsConstructor
+public class OwnerResolutionInterceptor implements HandlerInterceptor {
+
+    private static final Set<String> READ_METHODS = Set.of("GET", "HEAD", "OPTIONS");
+
+    private final OwnerDirectory ownerDirectory;
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        Principal principal = request.getUserPrincipal();
+        if (principal != null) {
+            if (READ_METHODS.contains(request.getMethod())) {
+                ownerDirectory.findId(principal.getName());
+            } else {
+                ownerDirectory.idOfOrCreate(principal.getName());
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,208 @@
+package com.carenexus.direct.config;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.ContentCachingResponseWrapper;
+
+import java.io.IOException;
+import java.security.Principal;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * ====================================================================
+ * Request Coalescing Filter - Share Identical Concurrent GETs
+ * ====================================================================
+ *
+ * When several tabs fire the same dashboard search at once, only the
+ * first request (the leader) runs the handler and query; identical
+ * requests arriving while it is in flight (followers) wait for it and
+ * receive a copy of its status, headers and serialized body.
+ *
+ * Identical means same owner (principal), path, query string, Accept
+ * and If-None-Match. Only requests that overlap in time are shared:
+ * the entry is removed as soon as the leader finishes.
+ *
+ * Limits and cancellation:
+ * - At most coalescing.max-waiters followers per leader; extra
+ *   requests simply run on their own
+ * - A follower waits at most coalescing.max-wait-ms, then runs on its
+ *   own; giving up never affects the leader or other followers
+ * - If the leader throws, followers run on their own instead of
+ *   inheriting the failure
+ * - The result is published before it is written to the leader's
+ *   client, so a leader whose client disconnected still serves its
+ *   followers
+ *
+ * Registered for the patterns in coalescing.url-patterns (WebMvcConfig),
+ * after the security filter chain so the principal is known.
+ *
+ * ====================================================================
+ */
+public class RequestCoalescingFilter extends OncePerRequestFilter {
+
+    /** Response headers never copied to followers */
+    private static final Set<String> PRIVATE_HEADERS = Set.of(
+            HttpHeaders.SET_COOKIE.toLowerCase(),
+            HttpHeaders.CONTENT_LENGTH.toLowerCase(),
+            HttpHeaders.TRANSFER_ENCODING.toLowerCase());
+
+    private final int maxWaiters;
+    private final long maxWaitMillis;
+    private final Map<String, InFlight> inFlight = new ConcurrentHashMap<>();
+
+    private final Counter led;
+    private final Counter coalesced;
+    private final Counter overflow;
+    private final Counter timedOut;
+
+    public RequestCoalescingFilter(MeterRegistry meterRegistry, int maxWaiters, long maxWaitMillis) {
+        this.maxWaiters = maxWaiters;
+        this.maxWaitMillis = maxWaitMillis;
+        this.led = meterRegistry.counter("carenexus.http.coalescing.requests", "role", "leader");
+        this.coalesced = meterRegistry.counter("carenexus.http.coalescing.requests", "role", "follower");
+        this.overflow = meterRegistry.counter("carenexus.http.coalescing.requests", "role", "overflow");
+        this.timedOut = meterRegistry.counter("carenexus.http.coalescing.requests", "role", "timeout");
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        Principal principal = request.getUserPrincipal();
+        if (!"GET".equals(request.getMethod()) || principal == null) {
+            chain.doFilter(request, response);
+            return;
+        }
+
+        String key = key(request, principal);
+        InFlight mine = new InFlight();
+        InFlight leader = inFlight.putIfAbsent(key, mine);
+        if (leader == null) {
+            lead(key, mine, request, response, chain);
+            return;
+        }
+
+        if (!leader.join(maxWaiters)) {
+            overflow.increment();
+            chain.doFilter(request, response);
+            return;
+        }
+        SharedResponse shared;
+        try {
+            shared = leader.result.get(maxWaitMillis, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            timedOut.increment();
+            chain.doFilter(request, response);
+            return;
+        } catch (ExecutionException e) {
+            chain.doFilter(request, response);  // Leader failed: don't inherit its exception
+            return;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ServletException("Interrupted while waiting for a coalesced request", e);
+        } finally {
+            leader.leave();
+        }
+
+        coalesced.increment();
+        shared.writeTo(response);
+    }
+
+    private void lead(String key, InFlight mine, HttpServletRequest request, HttpServletResponse response,
+                      FilterChain chain) throws ServletException, IOException {
+        led.increment();
+        ContentCachingResponseWrapper wrapper = new ContentCachingResponseWrapper(response);
+        try {
+            chain.doFilter(request, wrapper);
+            if (request.isAsyncStarted()) {
+                mine.result.completeExceptionally(new IllegalStateException("Async responses are not shared"));
+            } else {
+                mine.result.complete(SharedResponse.capture(wrapper));
+            }
+        } catch (IOException | ServletException | RuntimeException e) {
+            mine.result.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, mine);
+        }
+        if (!request.isAsyncStarted()) {
+            wrapper.copyBodyToResponse();
+        }
+    }
+
+    private static String key(HttpServletRequest request, Principal principal) {
+        return principal.getName()
+                + '\n' + request.getRequestURI()
+                + '\n' + (request.getQueryString() != null ? request.getQueryString() : "")
+                + '\n' + (request.getHeader(HttpHeaders.ACCEPT) != null ? request.getHeader(HttpHeaders.ACCEPT) : "")
+                + '\n' + (request.getHeader(HttpHeaders.IF_NONE_MATCH) != null ? request.getHeader(HttpHeaders.IF_NONE_MATCH) : "");
+    }
+
+    /** One executing leader and its waiting followers */
+    private static final class InFlight {
+        private final CompletableFuture<SharedResponse> result = new CompletableFuture<>();
+        private final AtomicInteger waiters = new AtomicInteger();
+
+        boolean join(int max) {
+            if (waiters.incrementAndGet() > max) {
+                waiters.decrementAndGet();
+                return false;
+            }
+            return true;
+        }
+
+        void leave() {
+            waiters.decrementAndGet();
+        }
+    }
+
+    /** Status, headers and body bytes of a completed leader */
+    private record SharedResponse(int status, String contentType, List<String[]> headers, byte[] body) {
+
+        static SharedResponse capture(ContentCachingResponseWrapper wrapper) {
+            List<String[]> headers = new ArrayList<>();
+            for (String name : wrapper.getHeaderNames()) {
+                if (PRIVATE_HEADERS.contains(name.toLowerCase())) {
+                    continue;
+                }
+                for (String value : wrapper.getHeaders(name)) {
+                    headers.add(new String[]{name, value});
+                }
+            }
+            return new SharedResponse(wrapper.getStatus(), wrapper.getContentType(), headers,
+                    wrapper.getContentAsByteArray());
+        }
+
+        void writeTo(HttpServletResponse response) throws IOException {
+            response.setStatus(status);
+            Set<String> replaced = new HashSet<>();
+            for (String[] header : headers) {
+                if (replaced.add(header[0].toLowerCase())) {
+                    response.setHeader(header[0], header[1]);  // Replace what our own filters already set
+                } else {
+                    response.addHeader(header[0], header[1]);
+                }
+            }
+            if (contentType != null) {
+                response.setContentType(contentType);
+            }
+            response.setContentLength(body.length);
+            response.getOutputStream().write(body);
+        }
+    }
+}
@@ -0,0 +1,12 @@
+package com.carenexus.direct.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+/**
+ * Enables @Scheduled background jobs (reminder loading, etc).
+ */
+@Configuration
+@EnableScheduling
+public class SchedulingConfig {
+}
@@ -0,0 +1,47 @@
+package com.carenexus.direct.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+/**
+ * Registers owner id resolution and the ETag / conditional request
+ * handling for the entity APIs, and the request coalescing filter for
+ * dashboard searches.
+ */
+@Configuration
+@RequiredArgsConstructor
+public class WebMvcConfig implements WebMvcConfigurer {
+
+    private final OwnerResolutionInterceptor ownerResolutionInterceptor;
+    private final ConditionalRequestInterceptor conditionalRequestInterceptor;
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(ownerResolutionInterceptor)
+                .addPathPatterns("/api/patients/**", "/api/doctors/**", "/api/appointments/**", "/api/messages/**",
+                        "/api/sync/**", "/api/attachments/**");
+        registry.addInterceptor(conditionalRequestInterceptor)
+                .addPathPatterns("/api/patients/**", "/api/doctors/**", "/api/appointments/**", "/api/messages/**");
+    }
+
+    /** Runs after the security filter chain (default order) so the principal is available */
+    @Bean
+    @ConditionalOnProperty(name = "coalescing.enabled", havingValue = "true", matchIfMissing = true)
+    public FilterRegistrationBean<RequestCoalescingFilter> requestCoalescingFilter(
+            MeterRegistry meterRegistry,
+            @Value("${coalescing.url-patterns:/api/appointments/search/*,/api/doctors/search/*,/api/doctors/facets}") String[] urlPatterns,
+            @Value("${coalescing.max-waiters:64}") int maxWaiters,
+            @Value("${coalescing.max-wait-ms:5000}") long maxWaitMillis) {
+        FilterRegistrationBean<RequestCoalescingFilter> registration =
+                new FilterRegistrationBean<>(new RequestCoalescingFilter(meterRegistry, maxWaiters, maxWaitMillis));
+        registration.addUrlPatterns(urlPatterns);
+        return registration;
+    }
+}
@@ -0,0 +1,33 @@
+package com.carenexus.direct.controller;
+
+import com.carenexus.direct.dto.LoginStatsDTO;
+import com.carenexus.direct.dto.QueryCacheStatsDTO;
+import com.carenexus.direct.service.LoginAnalyticsService;
+import com.carenexus.direct.service.QueryResultCache;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/analytics")
+@RequiredArgsConstructor
+public class AnalyticsController {
+
+    private final LoginAnalyticsService loginAnalyticsService;
+    private final QueryResultCache queryResultCache;
+
+    @GetMapping("/logins")
+    public ResponseEntity<LoginStatsDTO> getLoginStats() {
+        return ResponseEntity.ok(loginAnalyticsService.getStats());
+    }
+
+    /** Query result cache hit ratios per query kind */
+    @GetMapping("/query-cache")
+    public ResponseEntity<Map<String, QueryCacheStatsDTO>> getQueryCacheStats() {
+        return ResponseEntity.ok(queryResultCache.getStats());
+    }
+}
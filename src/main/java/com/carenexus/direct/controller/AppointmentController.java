@@ -7,6 +7,7 @@ import com.carenexus.direct.model.Patient;
 import com.carenexus.direct.service.AppointmentService;
 import com.carenexus.direct.service.DoctorService;
 import com.carenexus.direct.service.PatientService;
+import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
@@ -32,7 +33,7 @@ public class AppointmentController {
 
     @PostMapping
     public ResponseEntity<AppointmentDTO> createAppointment(
-            @RequestBody AppointmentDTO dto,
+            @Valid @RequestBody AppointmentDTO dto,
             Principal principal
     ) {
         String email = principal.getName();
@@ -71,7 +72,7 @@ public class AppointmentController {
     @PutMapping("/{id}")
     public ResponseEntity<AppointmentDTO> updateAppointment(
             @PathVariable Long id,
-            @RequestBody AppointmentDTO dto,
+            @Valid @RequestBody AppointmentDTO dto,
             Principal principal
     ) {
         String email = principal.getName();
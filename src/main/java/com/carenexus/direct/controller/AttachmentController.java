@@ -0,0 +1,168 @@
+package com.carenexus.direct.controller;
+
+import com.carenexus.direct.dto.AttachmentDTO;
+import com.carenexus.direct.dto.AttachmentUploadDTO;
+import com.carenexus.direct.mapper.AttachmentMapper;
+import com.carenexus.direct.model.Attachment;
+import com.carenexus.direct.service.AttachmentService;
+import com.carenexus.direct.service.AuditService;
+import com.carenexus.direct.service.AttachmentStore;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.validation.Valid;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.ServletWebRequest;
+
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.security.Principal;
+import java.util.List;
+
+/**
+ * Resumable attachment uploads and ranged downloads (AttachmentService).
+ *
+ * Downloads go through Tomcat's sendfile when the connector offers it
+ * (plain NIO, not TLS): the handler only names the file region and
+ * Tomcat copies it to the socket with FileChannel.transferTo after the
+ * handler returns. Otherwise the region is copied with transferTo into
+ * the response stream. Either way the file never passes through heap
+ * as a whole.
+ */
+@RestController
+@RequestMapping("/api/attachments")
+@RequiredArgsConstructor
+public class AttachmentController {
+
+    private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+    /** Below this, copying is cheaper than handing the file to the poller (Tomcat's own default) */
+    private static final long SENDFILE_MIN_BYTES = 48 * 1024;
+
+    private final AttachmentService attachmentService;
+    private final AttachmentStore attachmentStore;
+    private final AuditService auditService;
+
+    /** Declare an upload; 200 with the attachment if the caller already uploaded this content */
+    @PostMapping("/uploads")
+    public ResponseEntity<AttachmentUploadDTO> startUpload(
+            @Valid @RequestBody AttachmentUploadDTO dto,
+            Principal principal
+    ) {
+        AttachmentUploadDTO upload = attachmentService.startUpload(dto, principal.getName());
+        return upload.getAttachment() != null
+                ? ResponseEntity.ok(upload)
+                : ResponseEntity.status(HttpStatus.CREATED).body(upload);
+    }
+
+    /** Current offset, to resume an interrupted upload */
+    @GetMapping("/uploads/{uploadId}")
+    public ResponseEntity<AttachmentUploadDTO> getUpload(
+            @PathVariable String uploadId,
+            Principal principal
+    ) {
+        return ResponseEntity.ok(attachmentService.getUpload(uploadId, principal.getName()));
+    }
+
+    /** Raw chunk bytes as the body; offset must be the upload's current offset */
+    @PutMapping(value = "/uploads/{uploadId}", consumes = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+    public ResponseEntity<AttachmentUploadDTO> writeChunk(
+            @PathVariable String uploadId,
+            @RequestParam long offset,
+            HttpServletRequest request,
+            Principal principal
+    ) throws IOException {
+        return ResponseEntity.ok(attachmentService.writeChunk(
+                uploadId, offset, request.getContentLengthLong(), request.getInputStream(), principal.getName()));
+    }
+
+    @PostMapping("/uploads/{uploadId}/complete")
+    public ResponseEntity<AttachmentDTO> completeUpload(
+            @PathVariable String uploadId,
+            Principal principal
+    ) {
+        return ResponseEntity.ok(attachmentService.complete(uploadId, principal.getName()));
+    }
+
+    @DeleteMapping("/uploads/{uploadId}")
+    public ResponseEntity<Void> cancelUpload(
+            @PathVariable String uploadId,
+            Principal principal
+    ) {
+        attachmentService.cancelUpload(uploadId, principal.getName());
+        return ResponseEntity.noContent().build();
+    }
+
+    @GetMapping("/{id}")
+    public ResponseEntity<AttachmentDTO> getAttachment(
+            @PathVariable Long id,
+            Principal principal
+    ) {
+        return ResponseEntity.ok(AttachmentMapper.toDto(attachmentService.getByIdAndUser(id, principal.getName())));
+    }
+
+    /** File content; supports a single Range and If-None-Match (the ETag is the content hash) */
+    @GetMapping("/{id}/content")
+    public void download(
+            @PathVariable Long id,
+            HttpServletRequest request,
+            HttpServletResponse response,
+            Principal principal
+    ) throws IOException {
+        Attachment attachment = attachmentService.getByIdAndUser(id, principal.getName());
+        if (new ServletWebRequest(request, response).checkNotModified("\"" + attachment.getSha256() + "\"")) {
+            return;  // 304, ETag set
+        }
+
+        long size = attachment.getSize();
+        long start = 0;
+        long end = size - 1;
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+        String range = request.getHeader(HttpHeaders.RANGE);
+        if (range != null) {
+            try {
+                List<HttpRange> ranges = HttpRange.parseRanges(range);
+                if (ranges.size() == 1) {  // Several ranges: the whole file instead of multipart/byteranges
+                    start = ranges.get(0).getRangeStart(size);
+                    end = ranges.get(0).getRangeEnd(size);
+                    response.setStatus(HttpStatus.PARTIAL_CONTENT.value());
+                    response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + end + "/" + size);
+                }
+            } catch (IllegalArgumentException e) {
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + size);
+                response.sendError(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE.value());
+                return;
+            }
+        }
+
+        long length = end - start + 1;
+        response.setContentType(attachment.getContentType());
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment()
+                .filename(attachment.getFileName(), StandardCharsets.UTF_8).build().toString());
+        response.setContentLengthLong(length);
+        if ("HEAD".equals(request.getMethod())) {
+            return;
+        }
+        // Streamed, not a body AuditResponseAdvice sees
+        auditService.record(principal.getName(), AuditService.ATTACHMENT, List.of(id), request.getRequestURI());
+
+        if (length >= SENDFILE_MIN_BYTES && Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT))) {
+            request.setAttribute(SENDFILE_FILENAME, attachmentStore.blobPath(attachment.getSha256()).toRealPath().toString());
+            request.setAttribute(SENDFILE_START, start);
+            request.setAttribute(SENDFILE_END, end + 1);
+        } else {
+            attachmentStore.transferTo(attachment.getSha256(), start, length, Channels.newChannel(response.getOutputStream()));
+        }
+    }
+}
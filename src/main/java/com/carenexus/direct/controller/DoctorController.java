@@ -1,20 +1,30 @@
 package com.carenexus.direct.controller;
 
 import com.carenexus.direct.dto.DoctorDTO;
+import com.carenexus.direct.dto.DoctorFacetsDTO;
+import com.carenexus.direct.dto.FreeSlotDTO;
+import com.carenexus.direct.dto.TypeaheadDTO;
+import com.carenexus.direct.event.EntityChangedEvent.EntityType;
 import com.carenexus.direct.mapper.DoctorMapper;
 import com.carenexus.direct.model.Doctor;
+import com.carenexus.direct.service.DoctorAvailabilityService;
 import com.carenexus.direct.service.DoctorService;
+import com.carenexus.direct.service.MergePatchService;
+import com.carenexus.direct.service.TypeaheadService;
+import com.fasterxml.jackson.databind.JsonNode;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
 
 import java.security.Principal;
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.stream.Collectors;
 
@@ -24,6 +34,8 @@ import java.util.stream.Collectors;
 public class DoctorController {
 
     private final DoctorService doctorService;
+    private final DoctorAvailabilityService doctorAvailabilityService;
+    private final TypeaheadService typeaheadService;
 
     /** ⭐ CREATE DOCTOR PROFILE (doctor’s own profile) */
     @PostMapping
@@ -53,6 +65,28 @@ public class DoctorController {
         return ResponseEntity.ok(doctors);
     }
 
+    /** ⭐ SPECIALIZATION FACETS (counts per specialization, all = AND, any = OR) */
+    @GetMapping("/facets")
+    public ResponseEntity<DoctorFacetsDTO> getFacets(
+            @RequestParam(required = false) List<String> all,
+            @RequestParam(required = false) List<String> any,
+            Principal principal) {
+
+        String userEmail = principal.getName();
+        return ResponseEntity.ok(doctorService.getFacets(userEmail, all, any));
+    }
+
+    /** ⭐ NAME TYPEAHEAD (per-owner prefix trie) */
+    @GetMapping("/typeahead")
+    public ResponseEntity<List<TypeaheadDTO>> typeahead(
+            @RequestParam String q,
+            @RequestParam(defaultValue = "10") int limit,
+            Principal principal) {
+
+        String userEmail = principal.getName();
+        return ResponseEntity.ok(typeaheadService.suggest(userEmail, EntityType.DOCTOR, q, limit));
+    }
+
     /** ⭐ GET DOCTOR BY ID WITH OWNERSHIP VALIDATION */
     @GetMapping("/{id}")
     public ResponseEntity<DoctorDTO> getDoctorById(@PathVariable Long id,
@@ -76,6 +110,17 @@ public class DoctorController {
         return ResponseEntity.ok(DoctorMapper.toDto(updated));
     }
 
+    /** ⭐ PARTIAL UPDATE (JSON MERGE PATCH) WITH OWNERSHIP VALIDATION */
+    @PatchMapping(value = "/{id}", consumes = MergePatchService.MEDIA_TYPE)
+    public ResponseEntity<DoctorDTO> patchDoctor(@PathVariable Long id,
+                                                 @RequestBody JsonNode patch,
+                                                 Principal principal) {
+
+        Doctor patched = doctorService.patch(id, patch, principal.getName());
+
+        return ResponseEntity.ok(DoctorMapper.toDto(patched));
+    }
+
     /** ⭐ DELETE DOCTOR PROFILE WITH OWNERSHIP VALIDATION */
     @DeleteMapping("/{id}")
     public ResponseEntity<Void> deleteDoctor(@PathVariable Long id,
@@ -136,4 +181,16 @@ public class DoctorController {
 
         return ResponseEntity.ok(result);
     }
+
+    /** ⭐ FREE SLOTS OF A DOCTOR (from the in-memory booked slot index) */
+    @GetMapping("/{id}/free-slots")
+    public ResponseEntity<List<FreeSlotDTO>> getFreeSlots(
+            @PathVariable Long id,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @RequestParam(required = false) Long duration) {
+
+        doctorService.getById(id);  // 404 for unknown doctors; bookings reference any doctor
+        return ResponseEntity.ok(doctorAvailabilityService.findFreeSlots(id, from, to, duration));
+    }
 }
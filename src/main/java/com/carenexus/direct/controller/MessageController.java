@@ -1,12 +1,21 @@
 package com.carenexus.direct.controller;
 
+import com.carenexus.direct.dto.AttachmentDTO;
+import com.carenexus.direct.dto.InboxEntryDTO;
+import com.carenexus.direct.dto.ContentSearchPageDTO;
 import com.carenexus.direct.dto.MessageDTO;
 import com.carenexus.direct.mapper.MessageMapper;
 import com.carenexus.direct.model.Appointment;
 import com.carenexus.direct.model.Message;
 import com.carenexus.direct.service.AppointmentService;
+import com.carenexus.direct.service.AttachmentService;
+import com.carenexus.direct.service.InboxService;
+import com.carenexus.direct.service.MergePatchService;
+import com.carenexus.direct.service.MessageIngestService;
+import com.carenexus.direct.service.MessagePushService;
 import com.carenexus.direct.service.MessageService;
 
+import com.fasterxml.jackson.databind.JsonNode;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import org.springframework.data.domain.Page;
@@ -14,12 +23,15 @@ import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import java.security.Principal;
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Optional;
 import java.util.stream.Collectors;
 
 @RestController
@@ -27,8 +39,16 @@ import java.util.stream.Collectors;
 @RequiredArgsConstructor
 public class MessageController {
 
+    static final String CONTENT_SEARCH_SCOPE = "X-Content-Search-Scope";
+
     private final MessageService messageService;
     private final AppointmentService appointmentService;
+    private final MessagePushService messagePushService;
+    private final InboxService inboxService;
+    private final AttachmentService attachmentService;
+
+    /** Present only when messages.ingest.enabled=true */
+    private final Optional<MessageIngestService> messageIngestService;
 
     @PostMapping
     public ResponseEntity<MessageDTO> createMessage(
@@ -36,14 +56,25 @@ public class MessageController {
             Principal principal
     ) {
         String email = principal.getName();
+        boolean withAttachments = dto.getAttachmentIds() != null && !dto.getAttachmentIds().isEmpty();
 
-        Appointment appointment = appointmentService.getByIdAndUser(dto.getAppointmentId(), email);
+        // Write-behind mode: acknowledged once durable in the local log, inserted in batches later.
+        // Messages with attachments are inserted directly: linking needs the message id,
+        // as is everything once the ingest log has failed to replay
+        Optional<MessageIngestService> ingest = messageIngestService.filter(MessageIngestService::isAvailable);
+        if (ingest.isPresent() && !withAttachments) {
+            return ResponseEntity.accepted().body(ingest.get().submit(dto, email));
+        }
 
-        Message saved = messageService.save(
-                MessageMapper.toEntity(dto, appointment, email)
-        );
+        Appointment appointment = appointmentService.getByIdAndUser(dto.getAppointmentId(), email);
+        Message message = MessageMapper.toEntity(dto, appointment, email);
 
-        return ResponseEntity.ok(MessageMapper.toDto(saved));
+        if (withAttachments) {
+            MessageDTO saved = MessageMapper.toDto(messageService.saveWithAttachments(message, dto.getAttachmentIds()));
+            saved.setAttachmentIds(dto.getAttachmentIds());
+            return ResponseEntity.ok(saved);
+        }
+        return ResponseEntity.ok(MessageMapper.toDto(messageService.save(message)));
     }
 
     @GetMapping
@@ -82,6 +113,54 @@ public class MessageController {
         return ResponseEntity.ok(list);
     }
 
+    @GetMapping("/{id}/attachments")
+    public ResponseEntity<List<AttachmentDTO>> getMessageAttachments(
+            @PathVariable Long id,
+            Principal principal
+    ) {
+        String email = principal.getName();
+        messageService.getByIdAndUser(id, email);  // Validates ownership
+        return ResponseEntity.ok(attachmentService.getByMessage(id, email));
+    }
+
+    /** Live stream of message changes for an appointment (replaces polling) */
+    @GetMapping(value = "/appointment/{appointmentId}/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamMessagesByAppointment(
+            @PathVariable Long appointmentId,
+            @RequestHeader(value = "Last-Event-ID", required = false) Long lastEventIdHeader,
+            @RequestParam(required = false) Long lastEventId,
+            Principal principal
+    ) {
+        Long resumeFrom = lastEventIdHeader != null ? lastEventIdHeader : lastEventId;
+        return messagePushService.subscribe(appointmentId, principal.getName(), resumeFrom);
+    }
+
+    /** Conversations addressed to the caller (recipient), most recent first */
+    @GetMapping("/inbox")
+    public ResponseEntity<Page<InboxEntryDTO>> getInbox(
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "20") int size,
+            Principal principal
+    ) {
+        return ResponseEntity.ok(inboxService.getInbox(principal.getName(), PageRequest.of(page, size)));
+    }
+
+    /** Unread badge count */
+    @GetMapping("/inbox/unread-count")
+    public ResponseEntity<Long> getUnreadCount(Principal principal) {
+        return ResponseEntity.ok(inboxService.getUnreadCount(principal.getName()));
+    }
+
+    /** Mark a conversation read; omit appointmentId for messages without an appointment */
+    @PostMapping("/inbox/read")
+    public ResponseEntity<Void> markInboxRead(
+            @RequestParam(required = false) Long appointmentId,
+            Principal principal
+    ) {
+        inboxService.markRead(principal.getName(), appointmentId);
+        return ResponseEntity.noContent().build();
+    }
+
     @PutMapping("/{id}")
     public ResponseEntity<MessageDTO> updateMessage(
             @PathVariable Long id,
@@ -93,6 +172,15 @@ public class MessageController {
         return ResponseEntity.ok(MessageMapper.toDto(updated));
     }
 
+    @PatchMapping(value = "/{id}", consumes = MergePatchService.MEDIA_TYPE)
+    public ResponseEntity<MessageDTO> patchMessage(
+            @PathVariable Long id,
+            @RequestBody JsonNode patch,
+            Principal principal
+    ) {
+        return ResponseEntity.ok(MessageMapper.toDto(messageService.patch(id, patch, principal.getName())));
+    }
+
     @DeleteMapping("/{id}")
     public ResponseEntity<Void> deleteMessage(
             @PathVariable Long id,
@@ -133,9 +221,17 @@ public class MessageController {
         return ResponseEntity.ok(result);
     }
 
+    /**
+     * Matches a window of encryption.content-search-scan of the caller's
+     * messages, newest first (compressed bodies included). When older
+     * messages were not searched the body has truncated=true and a
+     * continueBefore cursor; pass it back as ?before= to search the next
+     * window. X-Content-Search-Scope gives the window size.
+     */
     @GetMapping("/search/by-content")
-    public ResponseEntity<Page<MessageDTO>> searchMessagesByContent(
+    public ResponseEntity<ContentSearchPageDTO> searchMessagesByContent(
             @RequestParam String content,
+            @RequestParam(required = false) String before,
             @RequestParam(defaultValue = "0") int page,
             @RequestParam(defaultValue = "20") int size,
             @RequestParam(defaultValue = "timestamp") String sortBy,
@@ -144,9 +240,11 @@ public class MessageController {
 
         String email = principal.getName();
         Pageable pageable = PageRequest.of(page, size, Sort.by(direction, sortBy));
-        Page<MessageDTO> result = messageService.searchByContent(email, content, pageable);
+        ContentSearchPageDTO result = messageService.searchByContent(email, content, before, pageable);
 
-        return ResponseEntity.ok(result);
+        return ResponseEntity.ok()
+                .header(CONTENT_SEARCH_SCOPE, "newest=" + messageService.getContentSearchScan())
+                .body(result);
     }
 
     @GetMapping("/search/by-date-range")
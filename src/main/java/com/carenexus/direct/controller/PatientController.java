@@ -1,7 +1,14 @@
 package com.carenexus.direct.controller;
 
 import com.carenexus.direct.dto.PatientDTO;
+import com.carenexus.direct.dto.TypeaheadDTO;
+import com.carenexus.direct.event.EntityChangedEvent.EntityType;
+import com.carenexus.direct.exception.BadRequestException;
+import com.carenexus.direct.service.AuditService;
+import com.carenexus.direct.service.MergePatchService;
 import com.carenexus.direct.service.PatientService;
+import com.carenexus.direct.service.TypeaheadService;
+import com.fasterxml.jackson.databind.JsonNode;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
@@ -17,10 +24,19 @@ import java.util.List;
 @RequestMapping("/api/patients")
 public class PatientController {
 
+    private static final String CONTAINS = "contains";
+    private static final String PREFIX = "prefix";
+    private static final String EXACT = "exact";
+
     private final PatientService patientService;
+    private final TypeaheadService typeaheadService;
+    private final AuditService auditService;
 
-    public PatientController(PatientService patientService) {
+    public PatientController(PatientService patientService, TypeaheadService typeaheadService,
+                             AuditService auditService) {
         this.patientService = patientService;
+        this.typeaheadService = typeaheadService;
+        this.auditService = auditService;
     }
 
     @GetMapping
@@ -50,6 +66,14 @@ public class PatientController {
         return ResponseEntity.ok(patientService.updatePatient(id, dto, user.getUsername()));
     }
 
+    /** Partial update: JSON merge patch of name / email / phone (and the version read) */
+    @PatchMapping(value = "/{id}", consumes = MergePatchService.MEDIA_TYPE)
+    public ResponseEntity<PatientDTO> patchPatient(@PathVariable Long id,
+                                                   @RequestBody JsonNode patch,
+                                                   @AuthenticationPrincipal UserDetails user) {
+        return ResponseEntity.ok(patientService.patchPatient(id, patch, user.getUsername()));
+    }
+
     @DeleteMapping("/{id}")
     public ResponseEntity<Void> deletePatient(@PathVariable Long id,
                                               @AuthenticationPrincipal UserDetails user) {
@@ -71,12 +95,20 @@ public class PatientController {
         Pageable pageable = PageRequest.of(page, size, Sort.by(direction, sortBy));
         Page<PatientDTO> result = patientService.getAllWithPagination(user.getUsername(), pageable);
 
+        if (PatientService.sortsByEncryptedProperty(pageable.getSort())) {
+            return deprecated("sorting by name, email or phone decrypts every patient; sort by id").body(result);
+        }
         return ResponseEntity.ok(result);
     }
 
+    /**
+     * match=contains (default, deprecated): substring, as before V7, by decrypting every patient.
+     * match=prefix: blind-index prefix search of at least 3 characters.
+     */
     @GetMapping("/search/by-name")
     public ResponseEntity<Page<PatientDTO>> searchPatientsByName(
             @RequestParam String name,
+            @RequestParam(defaultValue = CONTAINS) String match,
             @RequestParam(defaultValue = "0") int page,
             @RequestParam(defaultValue = "20") int size,
             @RequestParam(defaultValue = "name") String sortBy,
@@ -84,14 +116,23 @@ public class PatientController {
             @AuthenticationPrincipal UserDetails user) {
 
         Pageable pageable = PageRequest.of(page, size, Sort.by(direction, sortBy));
+        if (PREFIX.equals(match)) {
+            return ResponseEntity.ok(patientService.searchByNamePrefix(user.getUsername(), name, pageable));
+        }
+        requireMatch(match, PREFIX);
         Page<PatientDTO> result = patientService.searchByName(user.getUsername(), name, pageable);
 
-        return ResponseEntity.ok(result);
+        return deprecated("match=contains decrypts every patient; use match=prefix").body(result);
     }
 
+    /**
+     * match=contains (default, deprecated): substring, as before V7, by decrypting every patient.
+     * match=exact: blind-index lookup of the whole email.
+     */
     @GetMapping("/search/by-email")
     public ResponseEntity<Page<PatientDTO>> searchPatientsByEmail(
             @RequestParam String email,
+            @RequestParam(defaultValue = CONTAINS) String match,
             @RequestParam(defaultValue = "0") int page,
             @RequestParam(defaultValue = "20") int size,
             @RequestParam(defaultValue = "email") String sortBy,
@@ -99,8 +140,38 @@ public class PatientController {
             @AuthenticationPrincipal UserDetails user) {
 
         Pageable pageable = PageRequest.of(page, size, Sort.by(direction, sortBy));
+        if (EXACT.equals(match)) {
+            return ResponseEntity.ok(patientService.searchByExactEmail(user.getUsername(), email, pageable));
+        }
+        requireMatch(match, EXACT);
         Page<PatientDTO> result = patientService.searchByEmail(user.getUsername(), email, pageable);
 
-        return ResponseEntity.ok(result);
+        return deprecated("match=contains decrypts every patient; use match=exact").body(result);
+    }
+
+    /** Patient names are PHI, but AuditResponseAdvice cannot tell these suggestions from doctors': recorded here */
+    @GetMapping("/typeahead")
+    public ResponseEntity<List<TypeaheadDTO>> typeahead(
+            @RequestParam String q,
+            @RequestParam(defaultValue = "10") int limit,
+            @AuthenticationPrincipal UserDetails user) {
+
+        List<TypeaheadDTO> suggestions = typeaheadService.suggest(user.getUsername(), EntityType.PATIENT, q, limit);
+        auditService.record(user.getUsername(), EntityType.PATIENT.name(),
+                suggestions.stream().map(TypeaheadDTO::getId).toList(), "/api/patients/typeahead");
+        return ResponseEntity.ok(suggestions);
+    }
+
+    private static void requireMatch(String match, String indexed) {
+        if (!CONTAINS.equals(match)) {
+            throw new BadRequestException("match must be " + CONTAINS + " or " + indexed);
+        }
+    }
+
+    /** Still served, but on the way out (RFC 9745 Deprecation header, plus a human-readable Warning) */
+    private static ResponseEntity.BodyBuilder deprecated(String reason) {
+        return ResponseEntity.ok()
+                .header("Deprecation", "true")
+                .header("Warning", "299 - \"Deprecated: " + reason + "\"");
     }
 }
@@ -0,0 +1,30 @@
+package com.carenexus.direct.controller;
+
+import com.carenexus.direct.dto.SyncResponseDTO;
+import com.carenexus.direct.service.SyncService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.security.Principal;
+
+@RestController
+@RequestMapping("/api/sync")
+@RequiredArgsConstructor
+public class SyncController {
+
+    private final SyncService syncService;
+
+    /** Changes to the user's patients, doctors, appointments and messages since a token */
+    @GetMapping
+    public ResponseEntity<SyncResponseDTO> sync(
+            @RequestParam(required = false) Long since,
+            @RequestParam(required = false) Integer limit,
+            Principal principal) {
+
+        return ResponseEntity.ok(syncService.changesSince(principal.getName(), since, limit));
+    }
+}
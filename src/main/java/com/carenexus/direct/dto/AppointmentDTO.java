@@ -1,6 +1,8 @@
 package com.carenexus.direct.dto;
 
+import jakarta.validation.constraints.Max;
 import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Positive;
 import lombok.*;
 
 import java.time.LocalDateTime;
@@ -17,5 +19,12 @@ public class AppointmentDTO {
     private Long patientId;
 
     private LocalDateTime appointmentTime;
+    /** Booked length; bounded because a booking claims one slot row per grid cell it covers */
+    @Positive(message = "Duration must be positive")
+    @Max(value = 1440, message = "Duration may not exceed 1440 minutes")
+    private Integer durationMinutes;
     private String reason;
+
+    /** Version read; sent back on update, a stale one gets 409 Conflict */
+    private Long version;
 }
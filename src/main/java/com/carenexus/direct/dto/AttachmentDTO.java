@@ -0,0 +1,23 @@
+package com.carenexus.direct.dto;
+
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class AttachmentDTO {
+
+    private Long id;
+
+    /** Null until the attachment is sent with a message */
+    private Long messageId;
+
+    private String fileName;
+    private String contentType;
+    private long size;
+    private String sha256;
+    private LocalDateTime createdAt;
+}
@@ -0,0 +1,46 @@
+package com.carenexus.direct.dto;
+
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.Pattern;
+import jakarta.validation.constraints.Positive;
+import jakarta.validation.constraints.Size;
+import lombok.*;
+
+/**
+ * Resumable upload: the client declares the file, then PUTs chunks at
+ * offset until offset == size, then completes it. If sha256 is given
+ * and the caller already uploaded that content, the upload is done
+ * at once (attachment set, nothing to send).
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class AttachmentUploadDTO {
+
+    private String id;
+
+    @NotBlank(message = "File name is required")
+    @Size(max = 255, message = "File name is too long")
+    private String fileName;
+
+    @NotBlank(message = "Content type is required")
+    @Size(max = 255, message = "Content type is too long")
+    private String contentType;
+
+    @Positive(message = "Size must be positive")
+    private long size;
+
+    /** Optional hex SHA-256 of the whole file, verified on completion */
+    @Pattern(regexp = "[0-9a-f]{64}", message = "sha256 must be 64 lowercase hex characters")
+    private String sha256;
+
+    /** Bytes received so far: where the next chunk starts */
+    private long offset;
+
+    /** Largest chunk accepted per PUT */
+    private long maxChunkBytes;
+
+    /** Set once the upload is complete */
+    private AttachmentDTO attachment;
+}
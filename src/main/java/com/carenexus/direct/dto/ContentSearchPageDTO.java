@@ -0,0 +1,35 @@
+package com.carenexus.direct.dto;
+
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+
+import java.util.List;
+
+/**
+ * One page of a message content search, which only searches a window of
+ * the caller's messages (newest first, encryption.content-search-scan of
+ * them). Serialized like any other page, plus where the window ended.
+ */
+public class ContentSearchPageDTO extends PageImpl<MessageDTO> {
+
+    /** Older messages exist that this window did not search */
+    private final boolean truncated;
+
+    /** Pass back as ?before= to search the next, older window; null when not truncated */
+    private final String continueBefore;
+
+    public ContentSearchPageDTO(List<MessageDTO> content, Pageable pageable, long total,
+                                boolean truncated, String continueBefore) {
+        super(content, pageable, total);
+        this.truncated = truncated;
+        this.continueBefore = continueBefore;
+    }
+
+    public boolean isTruncated() {
+        return truncated;
+    }
+
+    public String getContinueBefore() {
+        return continueBefore;
+    }
+}
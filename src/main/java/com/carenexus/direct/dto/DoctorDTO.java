@@ -28,4 +28,7 @@ public class DoctorDTO {
 
     @NotBlank(message = "Phone number is required")
     private String phone;
+
+    /** Optimistic lock: echo it on update; a stale version gets 409 */
+    private Long version;
 }
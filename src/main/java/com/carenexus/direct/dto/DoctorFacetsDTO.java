@@ -0,0 +1,18 @@
+package com.carenexus.direct.dto;
+
+import lombok.*;
+
+import java.util.Map;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class DoctorFacetsDTO {
+
+    /** Doctors matching the all/any filter */
+    private long total;
+
+    /** Normalized specialization → doctor count within the filter, largest first */
+    private Map<String, Integer> specializations;
+}
@@ -0,0 +1,15 @@
+package com.carenexus.direct.dto;
+
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+/** A free window in a doctor's schedule: [start, end) */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class FreeSlotDTO {
+
+    private LocalDateTime start;
+    private LocalDateTime end;
+}
@@ -0,0 +1,21 @@
+package com.carenexus.direct.dto;
+
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class InboxEntryDTO {
+
+    /** Null for messages without an appointment */
+    private Long appointmentId;
+
+    private Long lastMessageId;
+    private String lastSender;
+    private String lastPreview;
+    private LocalDateTime lastMessageAt;
+    private int unreadCount;
+}
@@ -0,0 +1,25 @@
+package com.carenexus.direct.dto;
+
+import lombok.*;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class LoginStatsDTO {
+
+    /** Epoch millis when this snapshot was computed */
+    private long generatedAt;
+
+    private long loginsLastMinute;
+    private long loginsLastHour;
+    private long loginsLast24Hours;
+
+    /** HyperLogLog estimates (~1.6% standard error) */
+    private long uniqueUsersLast24Hours;
+    private long uniqueIpsLast24Hours;
+
+    /** Oldest first, ending with the current minute / hour */
+    private long[] perMinute;
+    private long[] perHour;
+}
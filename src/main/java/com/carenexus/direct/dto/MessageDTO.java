@@ -1,8 +1,14 @@
 package com.carenexus.direct.dto;
 
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.fasterxml.jackson.databind.ser.std.ToStringSerializer;
 import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.Size;
 import lombok.*;
 
+import java.util.List;
+
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -18,6 +24,17 @@ public class MessageDTO {
     @NotBlank(message = "Recipient is required")
     private String recipient;
 
+    /** A String from requests; a CompressedText from the database, inflated only when serialized */
     @NotBlank(message = "Message cannot be empty")
-    private String content;
+    @Size(max = 65535, message = "Message is too long")
+    @JsonSerialize(using = ToStringSerializer.class)
+    @JsonDeserialize(as = String.class)
+    @ToString.Exclude
+    private CharSequence content;
+
+    /** Completed uploads to send with a new message (AttachmentService) */
+    private List<Long> attachmentIds;
+
+    /** Version of the message read (updates with a stale one get 409) */
+    private Long version;
 }
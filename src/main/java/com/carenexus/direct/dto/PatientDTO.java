@@ -20,4 +20,7 @@ public class PatientDTO {
 
     @NotBlank(message = "Phone number cannot be blank")
     private String phone;
+
+    /** Version this copy was read at; send it back on update to get 409 instead of overwriting a newer edit */
+    private Long version;
 }
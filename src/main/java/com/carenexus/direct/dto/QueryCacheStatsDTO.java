@@ -0,0 +1,16 @@
+package com.carenexus.direct.dto;
+
+import lombok.*;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class QueryCacheStatsDTO {
+
+    private long hits;
+    private long misses;
+
+    /** hits / (hits + misses), 0 when unused */
+    private double hitRatio;
+}
@@ -0,0 +1,23 @@
+package com.carenexus.direct.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.*;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class SyncChangeDTO {
+
+    /** PATIENT, DOCTOR, APPOINTMENT or MESSAGE */
+    private String type;
+
+    /** "upsert" or "delete" (tombstone) */
+    private String op;
+
+    private Long id;
+
+    /** Current DTO for upserts; absent for deletes */
+    private Object data;
+}
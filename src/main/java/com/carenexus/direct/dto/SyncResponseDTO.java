@@ -0,0 +1,27 @@
+package com.carenexus.direct.dto;
+
+import lombok.*;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class SyncResponseDTO {
+
+    /** Pass back as ?since= on the next call */
+    private long token;
+
+    /** More changes are waiting: call again immediately with the new token */
+    private boolean hasMore;
+
+    /**
+     * The given token is unknown or older than the retained history:
+     * re-download the lists, then sync from the returned token
+     */
+    private boolean resetRequired;
+
+    /** Latest state per entity, oldest change first */
+    private List<SyncChangeDTO> changes;
+}
@@ -0,0 +1,13 @@
+package com.carenexus.direct.dto;
+
+import lombok.*;
+
+/** One typeahead suggestion */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class TypeaheadDTO {
+
+    private Long id;
+    private String name;
+}
@@ -0,0 +1,23 @@
+package com.carenexus.direct.event;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+import java.time.LocalDateTime;
+
+/**
+ * Emitted (in-process) by AppointmentReminderService when an appointment
+ * reminder falls due. Only the instance holding the reminder lease emits
+ * it, so notification senders can listen with @EventListener.
+ */
+@Getter
+@ToString
+@AllArgsConstructor
+public class AppointmentReminderEvent {
+
+    private final Long appointmentId;
+    private final String userEmail;
+    private final LocalDateTime appointmentTime;
+    private final LocalDateTime remindAt;
+}
@@ -1,10 +1,12 @@
 package com.carenexus.direct.event;
 
+import com.carenexus.direct.service.LoginAnalyticsService;
+import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.Data;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.kafka.annotation.KafkaListener;
-import org.springframework.kafka.rebalance.ConsumerSeekToCurrentErrorHandler;
 import org.springframework.kafka.support.Acknowledgment;
 import org.springframework.kafka.support.KafkaHeaders;
 import org.springframework.messaging.handler.annotation.Header;
@@ -20,7 +22,7 @@ import org.springframework.stereotype.Service;
  *
  * Events Consumed:
  * - user.registered     → Create corresponding doctor/patient record
- * - user.loggedIn       → Update user last login timestamp
+ * - user.loggedIn       → Update user last login timestamp, feed login analytics
  * - user.loggedOut      → Clear user sessions/cache
  * - token.refreshed     → Log token refresh events
  *
@@ -35,6 +37,7 @@ import org.springframework.stereotype.Service;
  * - If processing fails, message stays in queue for retry
  * - Failed messages logged with full context
  * - Can implement Dead Letter Queue for persistent failures
+ * - Unreadable payloads are counted in KafkaConsumerMetrics
  *
  * Concurrency:
  * - Each listener method runs in its own thread
@@ -48,6 +51,8 @@ import org.springframework.stereotype.Service;
 public class AuthEventListener {
 
     private final ObjectMapper objectMapper;
+    private final LoginAnalyticsService loginAnalyticsService;
+    private final KafkaConsumerMetrics consumerMetrics;
 
     /**
      * Listen for user registration events.
@@ -103,6 +108,9 @@ public class AuthEventListener {
             ack.acknowledge();
             log.debug("[AuthEventListener] ✓ Message acknowledged for offset {}", offset);
 
+        } catch (JsonProcessingException e) {
+            consumerMetrics.recordDeserializationFailure("user.registered");
+            log.error("[AuthEventListener] ✗ Unreadable user.registered event: {}", e.getOriginalMessage());
         } catch (Exception e) {
             log.error("[AuthEventListener] ✗ Failed to process user.registered event: {}", e.getMessage(), e);
             // Don't acknowledge - message will be retried
@@ -140,15 +148,20 @@ public class AuthEventListener {
             UserLoggedInEvent event = objectMapper.readValue(eventJson, UserLoggedInEvent.class);
             log.info("[AuthEventListener] User logged in: {}", event.getEmail());
 
+            // Feed in-memory login analytics (sliding windows + unique counts)
+            loginAnalyticsService.record(event);
+
             // Process the event
             // TODO: Implement business logic
             // - Update last login timestamp
             // - Clear lockout status if any
-            // - Log activity
 
             log.info("[AuthEventListener] ✓ Login event processed: {}", event.getEmail());
             ack.acknowledge();
 
+        } catch (JsonProcessingException e) {
+            consumerMetrics.recordDeserializationFailure("user.loggedIn");
+            log.error("[AuthEventListener] ✗ Unreadable user.loggedIn event: {}", e.getOriginalMessage());
         } catch (Exception e) {
             log.error("[AuthEventListener] ✗ Failed to process user.loggedIn event: {}", e.getMessage(), e);
         }
@@ -193,6 +206,9 @@ public class AuthEventListener {
             log.info("[AuthEventListener] ✓ Logout event processed: {}", event.getEmail());
             ack.acknowledge();
 
+        } catch (JsonProcessingException e) {
+            consumerMetrics.recordDeserializationFailure("user.loggedOut");
+            log.error("[AuthEventListener] ✗ Unreadable user.loggedOut event: {}", e.getOriginalMessage());
         } catch (Exception e) {
             log.error("[AuthEventListener] ✗ Failed to process user.loggedOut event: {}", e.getMessage(), e);
         }
@@ -236,6 +252,9 @@ public class AuthEventListener {
             log.debug("[AuthEventListener] ✓ Token refresh event processed: {}", event.getEmail());
             ack.acknowledge();
 
+        } catch (JsonProcessingException e) {
+            consumerMetrics.recordDeserializationFailure("token.refreshed");
+            log.error("[AuthEventListener] ✗ Unreadable token.refreshed event: {}", e.getOriginalMessage());
         } catch (Exception e) {
             log.error("[AuthEventListener] ✗ Failed to process token.refreshed event: {}", e.getMessage(), e);
         }
@@ -247,30 +266,34 @@ public class AuthEventListener {
      * These match the event classes in auth-service/event package.
      */
 
+    @Data
     public static class UserRegisteredEvent {
-        public Long userId;
-        public String email;
-        public String fullName;
-        public String role;
-        public String timestamp;
+        private Long userId;
+        private String email;
+        private String fullName;
+        private String role;
+        private String timestamp;
     }
 
+    @Data
     public static class UserLoggedInEvent {
-        public Long userId;
-        public String email;
-        public String timestamp;
-        public String ipAddress;
+        private Long userId;
+        private String email;
+        private String timestamp;
+        private String ipAddress;
     }
 
+    @Data
     public static class UserLoggedOutEvent {
-        public Long userId;
-        public String email;
-        public String timestamp;
+        private Long userId;
+        private String email;
+        private String timestamp;
     }
 
+    @Data
     public static class TokenRefreshedEvent {
-        public Long userId;
-        public String email;
-        public String timestamp;
+        private Long userId;
+        private String email;
+        private String timestamp;
     }
 }
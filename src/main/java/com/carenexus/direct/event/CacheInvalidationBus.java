@@ -0,0 +1,259 @@
+package com.carenexus.direct.event;
+
+import com.carenexus.direct.event.EntityChangedEvent.EntityType;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.common.TopicPartition;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.listener.ConsumerSeekAware;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * ====================================================================
+ * Cache Invalidation Bus - Cross-Instance Cache Coherence over Kafka
+ * ====================================================================
+ *
+ * In-process caches (EntityVersionService, QueryResultCache, ...) only
+ * see writes made on their own instance. This bus forwards every local
+ * EntityChangedEvent to the other Direct instances, which republish it
+ * in-process as a RemoteInvalidationEvent.
+ *
+ * Wire format (topic cache-bus.topic, key = origin node):
+ *   {"n":"<node>","b":<batchSeq>,"e":[{"t":"P","o":"<owner>","i":42,"s":<seq>}, ...]}
+ * - Local writes are queued and flushed every cache-bus.flush-ms as one
+ *   record; repeated writes to the same (type, owner, id) in a flush
+ *   collapse to one entry
+ *
+ * Epochs and ordering:
+ * - <node> is random per process start, i.e. an epoch: a restarted
+ *   instance never reuses an old sequence space
+ * - Each entry carries a per-node sequence number. Receivers remember
+ *   the last sequence applied per (node, type, owner, id) and drop
+ *   anything not newer, so redelivered or reordered messages are
+ *   harmless. Entries from different nodes are always applied
+ *   (invalidation is idempotent)
+ * - An entry of type "*" (invalidateAll) makes receivers drop all
+ *   their caches, as does any type code they do not know
+ * - Batches carry a per-node batch sequence. A gap means a batch was
+ *   lost (e.g. the producer could not reach Kafka), so the receiver
+ *   drops all its caches rather than risk serving stale data
+ *
+ * ====================================================================
+ */
+@Slf4j
+@Service
+@ConditionalOnProperty(name = "cache-bus.enabled", havingValue = "true", matchIfMissing = true)
+public class CacheInvalidationBus implements ConsumerSeekAware {
+
+    /** Type code of an entry that drops every cache */
+    private static final String ALL = "*";
+
+    private final KafkaTemplate<String, String> kafkaTemplate;
+    private final ObjectMapper objectMapper;
+    private final ApplicationEventPublisher eventPublisher;
+
+    private final String topic;
+    private final long flushMillis;
+    private final int maxBatch;
+
+    private final String nodeId = UUID.randomUUID().toString().substring(0, 12);
+    private final AtomicLong entrySeq = new AtomicLong();
+    private final AtomicLong batchSeq = new AtomicLong();
+    private final Queue<Entry> outbox = new ConcurrentLinkedQueue<>();
+    private final ScheduledExecutorService flusher;
+
+    /** Last entry sequence applied per (node, type, owner, id) */
+    private final Cache<String, Long> applied;
+    /** Last batch sequence seen per node */
+    private final Map<String, Long> lastBatch = new ConcurrentHashMap<>();
+
+    private final Counter sentEntries;
+    private final Counter receivedEntries;
+    private final Counter droppedEntries;
+    private final Counter gaps;
+
+    public CacheInvalidationBus(@Qualifier("cacheInvalidationKafkaTemplate") KafkaTemplate<String, String> kafkaTemplate,
+                                ObjectMapper objectMapper,
+                                ApplicationEventPublisher eventPublisher,
+                                MeterRegistry meterRegistry,
+                                @Value("${cache-bus.topic:direct.cache.invalidation}") String topic,
+                                @Value("${cache-bus.flush-ms:20}") long flushMillis,
+                                @Value("${cache-bus.max-batch:500}") int maxBatch,
+                                @Value("${cache-bus.dedup-entries:100000}") long dedupEntries) {
+        this.kafkaTemplate = kafkaTemplate;
+        this.objectMapper = objectMapper;
+        this.eventPublisher = eventPublisher;
+        this.topic = topic;
+        this.flushMillis = flushMillis;
+        this.maxBatch = maxBatch;
+        this.applied = Caffeine.newBuilder()
+                .maximumSize(dedupEntries)
+                .expireAfterAccess(Duration.ofMinutes(10))
+                .build();
+        this.flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "cache-invalidation-flusher");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        this.sentEntries = meterRegistry.counter("carenexus.cache.bus.entries", "direction", "sent");
+        this.receivedEntries = meterRegistry.counter("carenexus.cache.bus.entries", "direction", "applied");
+        this.droppedEntries = meterRegistry.counter("carenexus.cache.bus.entries", "direction", "stale");
+        this.gaps = meterRegistry.counter("carenexus.cache.bus.gaps");
+    }
+
+    @PostConstruct
+    public void start() {
+        flusher.scheduleWithFixedDelay(this::flush, flushMillis, flushMillis, TimeUnit.MILLISECONDS);
+        log.info("[CacheInvalidationBus] ✓ Broadcasting invalidations on {} as node {}", topic, nodeId);
+    }
+
+    @PreDestroy
+    public void stop() {
+        flusher.shutdown();
+        flush();
+    }
+
+    /** Queue local writes for broadcast */
+    @EventListener
+    public void onEntityChanged(EntityChangedEvent event) {
+        outbox.add(new Entry(code(event.getEntityType()), event.getOwnerEmail(), event.getEntityId(),
+                entrySeq.incrementAndGet()));
+    }
+
+    /**
+     * Have the other instances drop all their caches, for bulk removals
+     * made behind the services' back (PartitionMaintenanceService)
+     */
+    public void invalidateAll() {
+        outbox.add(new Entry(ALL, null, null, entrySeq.incrementAndGet()));
+    }
+
+    /**
+     * Start at the end of every assigned partition. The group is reused
+     * across restarts (CacheInvalidationBusConfig), but invalidations
+     * missed while down are moot: the caches start empty.
+     */
+    @Override
+    public void onPartitionsAssigned(Map<TopicPartition, Long> assignments, ConsumerSeekCallback callback) {
+        callback.seekToEnd(assignments.keySet());
+    }
+
+    /** Apply invalidations from other instances */
+    @KafkaListener(
+            topics = "${cache-bus.topic:direct.cache.invalidation}",
+            containerFactory = "cacheInvalidationListenerContainerFactory"
+    )
+    public void onBatch(String payload) {
+        Batch batch;
+        try {
+            batch = objectMapper.readValue(payload, Batch.class);
+        } catch (JsonProcessingException e) {
+            log.warn("[CacheInvalidationBus] ✗ Unreadable invalidation batch: {}", e.getMessage());
+            return;
+        }
+        if (nodeId.equals(batch.n())) {
+            return;  // Our own write: local caches already reacted to EntityChangedEvent
+        }
+
+        Long previous = lastBatch.get(batch.n());
+        if (previous == null || batch.b() > previous) {
+            lastBatch.put(batch.n(), batch.b());
+        }
+        if (previous != null && batch.b() > previous + 1) {
+            gaps.increment();
+            log.warn("[CacheInvalidationBus] Missed {} batch(es) from node {}, dropping all caches",
+                    batch.b() - previous - 1, batch.n());
+            eventPublisher.publishEvent(RemoteInvalidationEvent.all());
+        }
+
+        for (Entry entry : batch.e()) {
+            String key = batch.n() + "|" + entry.t() + "|" + entry.o() + "|" + entry.i();
+            Long last = applied.getIfPresent(key);
+            if (last != null && last >= entry.s()) {
+                droppedEntries.increment();  // Redelivered or overtaken by a newer entry
+                continue;
+            }
+            applied.put(key, entry.s());
+            receivedEntries.increment();
+
+            EntityType type = type(entry.t());
+            eventPublisher.publishEvent(type != null
+                    ? new RemoteInvalidationEvent(type, entry.o(), entry.i())
+                    : RemoteInvalidationEvent.all());  // Type from a newer peer: be conservative
+        }
+    }
+
+    /** Send everything queued so far, collapsed, one record per max-batch entries */
+    private void flush() {
+        try {
+            while (!outbox.isEmpty()) {
+                Map<String, Entry> collapsed = new LinkedHashMap<>();
+                Entry entry;
+                while (collapsed.size() < maxBatch && (entry = outbox.poll()) != null) {
+                    collapsed.put(entry.t() + "|" + entry.o() + "|" + entry.i(), entry);  // Later seq wins
+                }
+                List<Entry> entries = new ArrayList<>(collapsed.values());
+                String payload = objectMapper.writeValueAsString(new Batch(nodeId, batchSeq.incrementAndGet(), entries));
+                kafkaTemplate.send(topic, nodeId, payload).whenComplete((result, error) -> {
+                    if (error != null) {
+                        // Receivers detect the batch gap and drop their caches
+                        log.error("[CacheInvalidationBus] ✗ Failed to publish {} invalidations: {}",
+                                entries.size(), error.getMessage());
+                    }
+                });
+                sentEntries.increment(entries.size());
+            }
+        } catch (Exception e) {
+            log.error("[CacheInvalidationBus] ✗ Flush failed: {}", e.getMessage(), e);
+        }
+    }
+
+    private static String code(EntityType type) {
+        return type.name().substring(0, 1);
+    }
+
+    private static EntityType type(String code) {
+        for (EntityType type : EntityType.values()) {
+            if (type.name().startsWith(code)) {
+                return type;
+            }
+        }
+        return null;
+    }
+
+    /** t = type code, o = owner, i = entity id, s = sender sequence */
+    record Entry(String t, String o, Long i, long s) {
+    }
+
+    /** n = sender node, b = batch sequence, e = entries */
+    record Batch(String n, long b, List<Entry> e) {
+    }
+}
@@ -0,0 +1,45 @@
+package com.carenexus.direct.event;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * ====================================================================
+ * Entity Changed Event - In-Process Write Notification
+ * ====================================================================
+ *
+ * Published by the Direct services (via Spring's ApplicationEventPublisher)
+ * after a Patient, Doctor, Appointment or Message has been written.
+ *
+ * Listeners use @EventListener and run synchronously on the writing
+ * thread, so they must be cheap or hand work off themselves.
+ *
+ * Fields:
+ * - entityType → which aggregate changed
+ * - changeType → CREATED / UPDATED / DELETED
+ * - entityId   → primary key of the row
+ * - ownerEmail → owning user (userEmail column)
+ * - entity     → the saved entity, or the last known state for deletes
+ *
+ * ====================================================================
+ */
+@Getter
+@ToString(exclude = "entity")
+@AllArgsConstructor
+public class EntityChangedEvent {
+
+    public enum EntityType { PATIENT, DOCTOR, APPOINTMENT, MESSAGE }
+
+    public enum ChangeType { CREATED, UPDATED, DELETED }
+
+    private final EntityType entityType;
+    private final ChangeType changeType;
+    private final Long entityId;
+    private final String ownerEmail;
+    private final Object entity;
+
+    public boolean is(EntityType type) {
+        return entityType == type;
+    }
+}
@@ -0,0 +1,319 @@
+package com.carenexus.direct.event;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.errors.InvalidGroupIdException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.kafka.listener.ConsumerAwareRebalanceListener;
+import org.springframework.kafka.listener.RecordInterceptor;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.OptionalLong;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * ====================================================================
+ * Kafka Consumer Metrics - Lag, Latency and Rebalance Instrumentation
+ * ====================================================================
+ *
+ * Plugged into the listener container factory (see KafkaConsumerConfig)
+ * as both a RecordInterceptor and a rebalance listener, so every
+ * @KafkaListener in AuthEventListener is measured without touching its
+ * business logic.
+ *
+ * Meters, tagged with the consumer's group.id (one set per group, so
+ * the auth event consumers and the cache bus consumer do not mix):
+ * - carenexus.kafka.consumer.lag{topic,partition}     → records behind the log end
+ * - carenexus.kafka.consumer.lag.max                   → worst partition lag
+ * - carenexus.kafka.consumer.lag.alarm                 → 1 while max lag > threshold
+ * - carenexus.kafka.listener.latency{topic,outcome}    → processing time histogram
+ * - carenexus.kafka.record.age{topic}                  → produce → process delay
+ * - carenexus.kafka.consumer.poll.records              → records per poll (batch size)
+ * - carenexus.kafka.consumer.rebalances{type}          → assigned / revoked / lost
+ * - carenexus.kafka.deserialization.failures{topic}    → unreadable event payloads
+ *
+ * Lag Alarm:
+ * - kafka.consumer.lag-alarm-threshold (default 10000 records)
+ * - The alarm gauge is meant to drive consumer autoscaling rules
+ *
+ * Lag comes from Consumer.currentLag(), which reads the last fetch
+ * response locally and never makes a broker round trip.
+ *
+ * The group is read from the consumer (groupMetadata) on the container
+ * thread and, for poll sizes, from ConsumerConfig.GROUP_ID_CONFIG in
+ * KafkaPollMetricsInterceptor. Consumers without a group are tagged "none".
+ *
+ * ====================================================================
+ */
+@Slf4j
+@Component
+public class KafkaConsumerMetrics implements RecordInterceptor<String, String>, ConsumerAwareRebalanceListener {
+
+    /** Tag for consumers without a group.id (assign()ed partitions) */
+    public static final String NO_GROUP = "none";
+
+    private final MeterRegistry meterRegistry;
+    private final long lagAlarmThreshold;
+
+    private final Map<String, GroupMeters> groups = new ConcurrentHashMap<>();
+    private final ThreadLocal<Long> processingStart = new ThreadLocal<>();
+
+    /** Each container thread polls one consumer for its whole life, so its group is looked up once */
+    private final ThreadLocal<String> consumerGroup = new ThreadLocal<>();
+
+    public KafkaConsumerMetrics(MeterRegistry meterRegistry,
+                                @Value("${kafka.consumer.lag-alarm-threshold:10000}") long lagAlarmThreshold) {
+        this.meterRegistry = meterRegistry;
+        this.lagAlarmThreshold = lagAlarmThreshold;
+
+        log.info("[KafkaConsumerMetrics] Consumer instrumentation enabled (lag alarm threshold={})", lagAlarmThreshold);
+    }
+
+    // ========== RecordInterceptor ==========
+
+    @Override
+    public ConsumerRecord<String, String> intercept(ConsumerRecord<String, String> record,
+                                                    Consumer<String, String> consumer) {
+        processingStart.set(System.nanoTime());
+        GroupMeters meters = meters(groupOf(consumer));
+
+        if (record.timestamp() > 0) {
+            long age = System.currentTimeMillis() - record.timestamp();
+            if (age >= 0) {
+                meters.recordAgeTimers.computeIfAbsent(record.topic(), meters::recordAgeTimer)
+                        .record(age, TimeUnit.MILLISECONDS);
+            }
+        }
+
+        TopicPartition tp = new TopicPartition(record.topic(), record.partition());
+        OptionalLong lag = consumer.currentLag(tp);
+        if (lag.isPresent()) {
+            meters.updateLag(tp, lag.getAsLong());
+        }
+        return record;
+    }
+
+    @Override
+    public void success(ConsumerRecord<String, String> record, Consumer<String, String> consumer) {
+        GroupMeters meters = meters(groupOf(consumer));
+        stopTimer(meters.successTimers.computeIfAbsent(record.topic(), topic -> meters.latencyTimer(topic, "success")));
+    }
+
+    @Override
+    public void failure(ConsumerRecord<String, String> record, Exception exception, Consumer<String, String> consumer) {
+        GroupMeters meters = meters(groupOf(consumer));
+        stopTimer(meters.failureTimers.computeIfAbsent(record.topic(), topic -> meters.latencyTimer(topic, "failure")));
+    }
+
+    // ========== Rebalance Listener ==========
+
+    @Override
+    public void onPartitionsAssigned(Consumer<?, ?> consumer, Collection<TopicPartition> partitions) {
+        String group = groupOf(consumer);
+        meters(group).assignedRebalances.increment();
+        log.info("[KafkaConsumerMetrics] Partitions assigned to {}: {}", group, partitions);
+    }
+
+    @Override
+    public void onPartitionsRevokedAfterCommit(Consumer<?, ?> consumer, Collection<TopicPartition> partitions) {
+        String group = groupOf(consumer);
+        GroupMeters meters = meters(group);
+        meters.revokedRebalances.increment();
+        meters.clearLag(partitions);
+        log.info("[KafkaConsumerMetrics] Partitions revoked from {}: {}", group, partitions);
+    }
+
+    @Override
+    public void onPartitionsLost(Consumer<?, ?> consumer, Collection<TopicPartition> partitions) {
+        String group = groupOf(consumer);
+        GroupMeters meters = meters(group);
+        meters.lostRebalances.increment();
+        meters.clearLag(partitions);
+        log.warn("[KafkaConsumerMetrics] Partitions lost by {}: {}", group, partitions);
+    }
+
+    // ========== Called from listeners / poll interceptor ==========
+
+    /** Record the number of records returned by one poll of a consumer in the group */
+    public void recordPoll(String group, int recordCount) {
+        if (recordCount > 0) {
+            meters(group).pollRecords.record(recordCount);
+        }
+    }
+
+    /** Count an event payload that could not be deserialized (called on the listener's container thread) */
+    public void recordDeserializationFailure(String topic) {
+        String group = consumerGroup.get();
+        GroupMeters meters = meters(group != null ? group : NO_GROUP);
+        meters.deserializationFailures.computeIfAbsent(topic, meters::deserializationFailureCounter).increment();
+    }
+
+    // ========== Internals ==========
+
+    private GroupMeters meters(String group) {
+        return groups.computeIfAbsent(group, GroupMeters::new);
+    }
+
+    private String groupOf(Consumer<?, ?> consumer) {
+        String group = consumerGroup.get();
+        if (group == null) {
+            try {
+                group = consumer.groupMetadata().groupId();
+            } catch (InvalidGroupIdException e) {
+                group = NO_GROUP;
+            }
+            consumerGroup.set(group);
+        }
+        return group;
+    }
+
+    private void stopTimer(Timer timer) {
+        Long start = processingStart.get();
+        if (start != null) {
+            timer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            processingStart.remove();
+        }
+    }
+
+    /** Meters and lag state of one consumer group */
+    private final class GroupMeters {
+
+        private final String group;
+
+        private final Map<TopicPartition, AtomicLong> partitionLag = new ConcurrentHashMap<>();
+        private final Map<String, Timer> successTimers = new ConcurrentHashMap<>();
+        private final Map<String, Timer> failureTimers = new ConcurrentHashMap<>();
+        private final Map<String, Timer> recordAgeTimers = new ConcurrentHashMap<>();
+        private final Map<String, Counter> deserializationFailures = new ConcurrentHashMap<>();
+
+        private final DistributionSummary pollRecords;
+        private final Counter assignedRebalances;
+        private final Counter revokedRebalances;
+        private final Counter lostRebalances;
+        private final Counter lagAlarms;
+        private final AtomicBoolean lagAlarmRaised = new AtomicBoolean(false);
+
+        GroupMeters(String group) {
+            this.group = group;
+
+            this.pollRecords = DistributionSummary.builder("carenexus.kafka.consumer.poll.records")
+                    .description("Records returned per consumer poll")
+                    .tag("group", group)
+                    .publishPercentileHistogram()
+                    .register(meterRegistry);
+
+            this.assignedRebalances = rebalanceCounter("assigned");
+            this.revokedRebalances = rebalanceCounter("revoked");
+            this.lostRebalances = rebalanceCounter("lost");
+
+            this.lagAlarms = Counter.builder("carenexus.kafka.consumer.lag.alarms")
+                    .description("Times max consumer lag crossed the alarm threshold")
+                    .tag("group", group)
+                    .register(meterRegistry);
+
+            Gauge.builder("carenexus.kafka.consumer.lag.max", this, GroupMeters::maxLag)
+                    .description("Largest lag across assigned partitions")
+                    .tag("group", group)
+                    .register(meterRegistry);
+
+            Gauge.builder("carenexus.kafka.consumer.lag.alarm", lagAlarmRaised, raised -> raised.get() ? 1 : 0)
+                    .description("1 while max lag exceeds kafka.consumer.lag-alarm-threshold")
+                    .tag("group", group)
+                    .tag("threshold", String.valueOf(lagAlarmThreshold))
+                    .register(meterRegistry);
+        }
+
+        private void updateLag(TopicPartition tp, long lag) {
+            partitionLag.computeIfAbsent(tp, this::registerLagGauge).set(lag);
+
+            if (lag > lagAlarmThreshold) {
+                if (lagAlarmRaised.compareAndSet(false, true)) {
+                    lagAlarms.increment();
+                    log.warn("[KafkaConsumerMetrics] ✗ Consumer lag alarm: {} of {} is {} records behind (threshold {})",
+                            tp, group, lag, lagAlarmThreshold);
+                }
+            } else if (lagAlarmRaised.get() && maxLag() <= lagAlarmThreshold
+                    && lagAlarmRaised.compareAndSet(true, false)) {
+                log.info("[KafkaConsumerMetrics] ✓ Consumer lag of {} back under threshold ({})", group, lagAlarmThreshold);
+            }
+        }
+
+        private void clearLag(Collection<TopicPartition> partitions) {
+            for (TopicPartition tp : partitions) {
+                AtomicLong lag = partitionLag.get(tp);
+                if (lag != null) {
+                    lag.set(0);
+                }
+            }
+            if (maxLag() <= lagAlarmThreshold) {
+                lagAlarmRaised.set(false);
+            }
+        }
+
+        private double maxLag() {
+            long max = 0;
+            for (AtomicLong lag : partitionLag.values()) {
+                max = Math.max(max, lag.get());
+            }
+            return max;
+        }
+
+        private AtomicLong registerLagGauge(TopicPartition tp) {
+            AtomicLong holder = new AtomicLong();
+            Gauge.builder("carenexus.kafka.consumer.lag", holder, AtomicLong::get)
+                    .description("Records between the committed position and the log end")
+                    .tag("group", group)
+                    .tag("topic", tp.topic())
+                    .tag("partition", String.valueOf(tp.partition()))
+                    .register(meterRegistry);
+            return holder;
+        }
+
+        private Timer latencyTimer(String topic, String outcome) {
+            return Timer.builder("carenexus.kafka.listener.latency")
+                    .description("Time spent in the @KafkaListener method")
+                    .tag("group", group)
+                    .tag("topic", topic)
+                    .tag("outcome", outcome)
+                    .publishPercentileHistogram()
+                    .register(meterRegistry);
+        }
+
+        private Timer recordAgeTimer(String topic) {
+            return Timer.builder("carenexus.kafka.record.age")
+                    .description("Delay between record production and processing")
+                    .tag("group", group)
+                    .tag("topic", topic)
+                    .publishPercentileHistogram()
+                    .register(meterRegistry);
+        }
+
+        private Counter deserializationFailureCounter(String topic) {
+            return Counter.builder("carenexus.kafka.deserialization.failures")
+                    .description("Event payloads that could not be deserialized")
+                    .tag("group", group)
+                    .tag("topic", topic)
+                    .register(meterRegistry);
+        }
+
+        private Counter rebalanceCounter(String type) {
+            return Counter.builder("carenexus.kafka.consumer.rebalances")
+                    .description("Consumer group rebalance callbacks")
+                    .tag("group", group)
+                    .tag("type", type)
+                    .register(meterRegistry);
+        }
+    }
+}
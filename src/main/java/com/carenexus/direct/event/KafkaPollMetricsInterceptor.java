@@ -0,0 +1,56 @@
+package com.carenexus.direct.event;
+
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.ConsumerInterceptor;
+import org.apache.kafka.clients.consumer.ConsumerRecords;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.common.TopicPartition;
+
+import java.util.Map;
+
+/**
+ * Kafka client interceptor that reports the size of every poll to
+ * {@link KafkaConsumerMetrics}.
+ *
+ * Kafka instantiates this class itself, so the Spring-managed metrics
+ * bean is handed over through the consumer config map under
+ * {@link #METRICS_CONFIG} (see KafkaConsumerConfig). The group the
+ * poll sizes are tagged with is this consumer's own group.id.
+ */
+public class KafkaPollMetricsInterceptor implements ConsumerInterceptor<String, String> {
+
+    public static final String METRICS_CONFIG = "carenexus.kafka.consumer.metrics";
+
+    private KafkaConsumerMetrics metrics;
+    private String group = KafkaConsumerMetrics.NO_GROUP;
+
+    @Override
+    public void configure(Map<String, ?> configs) {
+        Object bean = configs.get(METRICS_CONFIG);
+        if (bean instanceof KafkaConsumerMetrics) {
+            this.metrics = (KafkaConsumerMetrics) bean;
+        }
+        Object groupId = configs.get(ConsumerConfig.GROUP_ID_CONFIG);
+        if (groupId != null && !groupId.toString().isBlank()) {
+            this.group = groupId.toString();
+        }
+    }
+
+    @Override
+    public ConsumerRecords<String, String> onConsume(ConsumerRecords<String, String> records) {
+        if (metrics != null) {
+            metrics.recordPoll(group, records.count());
+        }
+        return records;
+    }
+
+    @Override
+    public void onCommit(Map<TopicPartition, OffsetAndMetadata> offsets) {
+        // Nothing to record on commit
+    }
+
+    @Override
+    public void close() {
+        // Nothing to release
+    }
+}
@@ -0,0 +1,32 @@
+package com.carenexus.direct.event;
+
+import com.carenexus.direct.event.EntityChangedEvent.EntityType;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * Published in-process when another Direct instance reports a write
+ * (via CacheInvalidationBus). In-process caches listen to this alongside
+ * EntityChangedEvent.
+ *
+ * A null entityType means "everything": the bus lost track of a peer
+ * and every cache should drop all entries.
+ */
+@Getter
+@ToString
+@AllArgsConstructor
+public class RemoteInvalidationEvent {
+
+    private final EntityType entityType;
+    private final String ownerEmail;
+    private final Long entityId;
+
+    public static RemoteInvalidationEvent all() {
+        return new RemoteInvalidationEvent(null, null, null);
+    }
+
+    public boolean isAll() {
+        return entityType == null;
+    }
+}
@@ -4,6 +4,7 @@ import com.carenexus.direct.dto.AppointmentDTO;
 import com.carenexus.direct.model.Appointment;
 import com.carenexus.direct.model.Doctor;
 import com.carenexus.direct.model.Patient;
+import com.carenexus.direct.util.MonthlyPartitions;
 import org.springframework.stereotype.Component;
 
 @Component
@@ -13,18 +14,22 @@ public class AppointmentMapper {
         return Appointment.builder()
                 .id(dto.getId())
                 .appointmentTime(dto.getAppointmentTime())
+                .durationMinutes(dto.getDurationMinutes())
                 .reason(dto.getReason())
                 .userEmail(userEmail)
                 .doctor(doctor)
                 .patient(patient)
+                .version(dto.getVersion())
                 .build();
     }
 
     public static AppointmentDTO toDto(Appointment entity) {
         return AppointmentDTO.builder()
                 .id(entity.getId())
-                .appointmentTime(entity.getAppointmentTime())
+                .appointmentTime(MonthlyPartitions.knownOrNull(entity.getAppointmentTime()))
+                .durationMinutes(entity.getDurationMinutes())
                 .reason(entity.getReason())
+                .version(entity.getVersion())
                 .build();
     }
 }
@@ -0,0 +1,21 @@
+package com.carenexus.direct.mapper;
+
+import com.carenexus.direct.dto.AttachmentDTO;
+import com.carenexus.direct.model.Attachment;
+import org.springframework.stereotype.Component;
+
+@Component
+public class AttachmentMapper {
+
+    public static AttachmentDTO toDto(Attachment entity) {
+        return AttachmentDTO.builder()
+                .id(entity.getId())
+                .messageId(entity.getMessageId())
+                .fileName(entity.getFileName())
+                .contentType(entity.getContentType())
+                .size(entity.getSize())
+                .sha256(entity.getSha256())
+                .createdAt(entity.getCreatedAt())
+                .build();
+    }
+}
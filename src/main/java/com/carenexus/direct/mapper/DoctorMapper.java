@@ -15,6 +15,7 @@ public class DoctorMapper {
                 .email(dto.getEmail())
                 .phone(dto.getPhone())
                 .userEmail(userEmail)
+                .version(dto.getVersion())
                 .build();
     }
 
@@ -25,6 +26,7 @@ public class DoctorMapper {
                 .specialization(entity.getSpecialization())
                 .email(entity.getEmail())
                 .phone(entity.getPhone())
+                .version(entity.getVersion())
                 .build();
     }
 }
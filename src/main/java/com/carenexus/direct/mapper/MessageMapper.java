@@ -3,6 +3,7 @@ package com.carenexus.direct.mapper;
 import com.carenexus.direct.dto.MessageDTO;
 import com.carenexus.direct.model.Appointment;
 import com.carenexus.direct.model.Message;
+import com.carenexus.direct.util.CompressedText;
 import org.springframework.stereotype.Component;
 
 @Component
@@ -12,10 +13,12 @@ public class MessageMapper {
         return Message.builder()
                 .id(dto.getId())
                 .recipient(dto.getRecipient())
-                .content(dto.getContent())
+                .content(CompressedText.of(dto.getContent()))
                 .timestamp(java.time.LocalDateTime.now())
                 .sender(sender)
+                .userEmail(sender)
                 .appointment(appointment)
+                .version(dto.getVersion())
                 .build();
     }
 
@@ -26,6 +29,7 @@ public class MessageMapper {
                 .sender(entity.getSender())
                 .recipient(entity.getRecipient())
                 .content(entity.getContent())
+                .version(entity.getVersion())
                 .build();
     }
 }
@@ -14,6 +14,7 @@ public class PatientMapper {
                 .email(dto.getEmail())
                 .phone(dto.getPhone())
                 .userEmail(userEmail)
+                .version(dto.getVersion())
                 .build();
     }
 
@@ -23,6 +24,7 @@ public class PatientMapper {
                 .name(entity.getName())
                 .email(entity.getEmail())
                 .phone(entity.getPhone())
+                .version(entity.getVersion())
                 .build();
     }
 }
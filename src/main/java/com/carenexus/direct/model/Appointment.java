@@ -2,20 +2,29 @@ package com.carenexus.direct.model;
 
 import jakarta.persistence.*;
 import lombok.*;
+import org.hibernate.annotations.DynamicUpdate;
 import java.time.LocalDateTime;
 
 @Entity
+@DynamicUpdate
+@EntityListeners(OwnerAssignmentListener.class)
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
 @Builder
-public class Appointment {
+public class Appointment implements Owned {
 
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
 
+    /** Partitioning column (monthly RANGE partitions), hence NOT NULL */
+    @Column(nullable = false)
     private LocalDateTime appointmentTime;
+
+    /** Slot length; null means availability.default-duration-minutes */
+    private Integer durationMinutes;
+
     private String reason;
 
     @ManyToOne
@@ -28,6 +37,11 @@ public class Appointment {
     private Patient patient;
 
     /** 🔥 ADD THIS */
-    @Column(nullable = false)
+    @Convert(converter = OwnerIdConverter.class)
+    @Column(name = "owner_id", nullable = false)
     private String userEmail;
+
+    /** Optimistic lock (V9): merging a stale copy fails instead of overwriting */
+    @Version
+    private Long version;
 }
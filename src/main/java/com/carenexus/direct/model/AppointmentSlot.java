@@ -0,0 +1,37 @@
+package com.carenexus.direct.model;
+
+import jakarta.persistence.*;
+import lombok.*;
+import java.time.LocalDateTime;
+
+/**
+ * One grid cell of a doctor's calendar held by an appointment. The
+ * unique (doctor_id, slot_start) key lets exactly one appointment hold
+ * a cell, across every Direct instance: a conflicting booking fails on
+ * insert instead of needing a table lock.
+ */
+@Entity
+@Table(name = "appointment_slot",
+        uniqueConstraints = @UniqueConstraint(name = "uk_appointment_slot_doctor_start",
+                columnNames = {"doctor_id", "slot_start"}),
+        indexes = @Index(name = "idx_appointment_slot_appointment", columnList = "appointment_id"))
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class AppointmentSlot {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "doctor_id", nullable = false)
+    private Long doctorId;
+
+    /** Start of the grid cell (booking.slot-grid-minutes wide) */
+    @Column(name = "slot_start", nullable = false)
+    private LocalDateTime slotStart;
+
+    @Column(name = "appointment_id", nullable = false)
+    private Long appointmentId;
+}
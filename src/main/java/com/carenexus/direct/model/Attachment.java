@@ -0,0 +1,52 @@
+package com.carenexus.direct.model;
+
+import jakarta.persistence.*;
+import lombok.*;
+import java.time.LocalDateTime;
+
+/**
+ * A file attached to a message. The bytes are stored once per distinct
+ * content under their SHA-256 (AttachmentStore); rows with the same
+ * sha256 share the file. messageId stays null until the message that
+ * carries the attachment is created.
+ */
+@Entity
+@Table(name = "attachment",
+        indexes = {
+                @Index(name = "idx_attachment_message_created", columnList = "message_id, created_at"),
+                @Index(name = "idx_attachment_sha256_owner", columnList = "sha256, owner_id")
+        })
+@EntityListeners(OwnerAssignmentListener.class)
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class Attachment implements Owned {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Convert(converter = OwnerIdConverter.class)
+    @Column(name = "owner_id", nullable = false)
+    private String userEmail;
+
+    @Column(name = "message_id")
+    private Long messageId;
+
+    /** Hex SHA-256 of the content, also its storage key */
+    @Column(nullable = false, length = 64)
+    private String sha256;
+
+    @Column(nullable = false)
+    private long size;
+
+    @Column(nullable = false)
+    private String contentType;
+
+    @Column(nullable = false)
+    private String fileName;
+
+    @Column(nullable = false)
+    private LocalDateTime createdAt;
+}
@@ -0,0 +1,47 @@
+package com.carenexus.direct.model;
+
+import jakarta.persistence.*;
+import lombok.*;
+import java.time.LocalDateTime;
+
+/**
+ * An upload in progress. The bytes received so far are the partial file
+ * in AttachmentStore; its length is the offset the next chunk must start
+ * at, so an interrupted upload resumes from there.
+ */
+@Entity
+@Table(name = "attachment_upload",
+        indexes = @Index(name = "idx_attachment_upload_created", columnList = "created_at"))
+@EntityListeners(OwnerAssignmentListener.class)
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class AttachmentUpload implements Owned {
+
+    /** Random UUID, also the partial file's name */
+    @Id
+    @Column(length = 36)
+    private String id;
+
+    @Convert(converter = OwnerIdConverter.class)
+    @Column(name = "owner_id", nullable = false)
+    private String userEmail;
+
+    /** Declared total size in bytes */
+    @Column(nullable = false)
+    private long size;
+
+    /** Optional hex SHA-256 declared by the client, verified on completion */
+    @Column(length = 64)
+    private String sha256;
+
+    @Column(nullable = false)
+    private String contentType;
+
+    @Column(nullable = false)
+    private String fileName;
+
+    @Column(nullable = false)
+    private LocalDateTime createdAt;
+}
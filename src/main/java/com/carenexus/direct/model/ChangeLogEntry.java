@@ -0,0 +1,44 @@
+package com.carenexus.direct.model;
+
+import com.carenexus.direct.event.EntityChangedEvent.ChangeType;
+import com.carenexus.direct.event.EntityChangedEvent.EntityType;
+import jakarta.persistence.*;
+import lombok.*;
+import java.time.LocalDateTime;
+
+/**
+ * One write to a Patient, Doctor, Appointment or Message, recorded for
+ * delta sync. The id is the sync token: it only ever increases, so
+ * "everything after token X" for an owner is a range scan on
+ * (owner_email, id). DELETED rows are the tombstones.
+ */
+@Entity
+@Table(name = "change_log",
+        indexes = @Index(name = "idx_change_log_owner_id", columnList = "owner_email, id"))
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ChangeLogEntry {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "owner_email", nullable = false)
+    private String ownerEmail;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 16)
+    private EntityType entityType;
+
+    @Column(nullable = false)
+    private Long entityId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 16)
+    private ChangeType changeType;
+
+    @Column(nullable = false)
+    private LocalDateTime changedAt;
+}
@@ -2,13 +2,16 @@ package com.carenexus.direct.model;
 
 import jakarta.persistence.*;
 import lombok.*;
+import org.hibernate.annotations.DynamicUpdate;
 
 @Entity
+@DynamicUpdate
+@EntityListeners(OwnerAssignmentListener.class)
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
 @Builder
-public class Doctor {
+public class Doctor implements Owned {
 
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -20,6 +23,11 @@ public class Doctor {
     private String phone;
 
     /** 🔥 Add this */
-    @Column(nullable = false)
+    @Convert(converter = OwnerIdConverter.class)
+    @Column(name = "owner_id", nullable = false)
     private String userEmail; // owner from JWT
+
+    /** Optimistic lock (V9) */
+    @Version
+    private Long version;
 }
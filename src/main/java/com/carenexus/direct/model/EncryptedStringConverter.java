@@ -0,0 +1,35 @@
+package com.carenexus.direct.model;
+
+import com.carenexus.direct.service.FieldEncryptionService;
+import jakarta.persistence.AttributeConverter;
+import jakarta.persistence.Converter;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Stores a String column AES-GCM encrypted (FieldEncryptionService).
+ * Values written before encryption are read as plain UTF-8. Encrypted
+ * columns cannot be searched or sorted in SQL; equality / prefix
+ * lookups go through blind index columns instead.
+ */
+@Component
+@Converter
+public class EncryptedStringConverter implements AttributeConverter<String, byte[]> {
+
+    private final FieldEncryptionService fieldEncryptionService;
+
+    public EncryptedStringConverter(FieldEncryptionService fieldEncryptionService) {
+        this.fieldEncryptionService = fieldEncryptionService;
+    }
+
+    @Override
+    public byte[] convertToDatabaseColumn(String value) {
+        return value != null ? fieldEncryptionService.encrypt(value.getBytes(StandardCharsets.UTF_8)) : null;
+    }
+
+    @Override
+    public String convertToEntityAttribute(byte[] stored) {
+        return stored != null ? new String(fieldEncryptionService.decrypt(stored), StandardCharsets.UTF_8) : null;
+    }
+}
@@ -0,0 +1,53 @@
+package com.carenexus.direct.model;
+
+import jakarta.persistence.*;
+import lombok.*;
+import java.time.LocalDateTime;
+
+/**
+ * Materialized inbox row: one per (recipient, appointment) conversation,
+ * holding the latest message and the recipient's unread count.
+ * Maintained by InboxService from message writes; appointment_id 0
+ * stands for messages without an appointment so the unique key holds.
+ */
+@Entity
+@Table(name = "inbox_entry",
+        uniqueConstraints = @UniqueConstraint(name = "uk_inbox_recipient_appointment",
+                columnNames = {"recipient", "appointment_id"}),
+        indexes = @Index(name = "idx_inbox_recipient_last_message", columnList = "recipient, last_message_at"))
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class InboxEntry {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false)
+    private String recipient;
+
+    @Column(name = "appointment_id", nullable = false)
+    private Long appointmentId;
+
+    @Column(name = "last_message_id", nullable = false)
+    private Long lastMessageId;
+
+    private String lastSender;
+
+    /** First inbox.preview-length characters of the latest message, stored encrypted */
+    @Convert(converter = EncryptedStringConverter.class)
+    @ToString.Exclude
+    private String lastPreview;
+
+    @Column(name = "last_message_at")
+    private LocalDateTime lastMessageAt;
+
+    /** Messages after lastReadMessageId */
+    @Column(name = "unread_count", nullable = false)
+    private int unreadCount;
+
+    @Column(name = "last_read_message_id", nullable = false)
+    private long lastReadMessageId;
+}
@@ -1,15 +1,20 @@
 package com.carenexus.direct.model;
 
+import com.carenexus.direct.util.CompressedText;
 import jakarta.persistence.*;
 import lombok.*;
+import org.hibernate.annotations.DynamicUpdate;
 import java.time.LocalDateTime;
 
 @Entity
+@DynamicUpdate
+@Table(indexes = @Index(name = "idx_message_recipient_appointment", columnList = "recipient, appointment_id, id"))
+@EntityListeners(OwnerAssignmentListener.class)
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
 @Builder
-public class Message {
+public class Message implements Owned {
 
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -18,15 +23,36 @@ public class Message {
     private String sender;
     private String recipient;
 
+    /** Stored as bytes, compressed when large and encrypted (MessageBodyConverter) */
+    @Convert(converter = MessageBodyConverter.class)
     @Column(nullable = false)
-    private String content;
+    @ToString.Exclude
+    private CompressedText content;
 
+    /** Partitioning column (monthly RANGE partitions), hence NOT NULL */
+    @Column(nullable = false)
     private LocalDateTime timestamp;
 
     @ManyToOne
     private Appointment appointment;
 
     /** 🔥 Ownership — who created this message */
-    @Column(nullable = false)
+    @Convert(converter = OwnerIdConverter.class)
+    @Column(name = "owner_id", nullable = false)
     private String userEmail;
+
+    /** Write-behind ingestion key (V12): a replayed log record is not inserted twice */
+    @Column(name = "ingest_key", length = 36, updatable = false)
+    private String ingestKey;
+
+    /** Optimistic lock (V9) */
+    @Version
+    private Long version;
+
+    @PrePersist
+    void defaultTimestamp() {
+        if (timestamp == null) {
+            timestamp = LocalDateTime.now();
+        }
+    }
 }
@@ -0,0 +1,64 @@
+package com.carenexus.direct.model;
+
+import com.carenexus.direct.service.FieldEncryptionService;
+import com.carenexus.direct.util.CompressedText;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.persistence.AttributeConverter;
+import jakarta.persistence.Converter;
+import org.hibernate.annotations.Immutable;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Stores Message.content as bytes, Deflate-compressed at or above
+ * messages.compression.threshold-bytes (CompressedText), then encrypted
+ * (FieldEncryptionService; compression first, ciphertext does not
+ * compress). Reads decrypt but hand back the compressed bytes; the text
+ * is inflated only when something reads it, normally the JSON
+ * serialization of the DTO. Bodies stored before encryption are read as
+ * they are.
+ *
+ * Immutable for Hibernate: a CompressedText is never modified in place,
+ * so dirty checking compares references instead of inflating bodies.
+ * Raw and stored byte counters publish the storage savings.
+ */
+@Component
+@Converter
+@Immutable
+public class MessageBodyConverter implements AttributeConverter<CompressedText, byte[]> {
+
+    private final FieldEncryptionService fieldEncryptionService;
+    private final int thresholdBytes;
+    private final Counter rawBytes;
+    private final Counter storedBytes;
+
+    public MessageBodyConverter(FieldEncryptionService fieldEncryptionService,
+                                MeterRegistry meterRegistry,
+                                @Value("${messages.compression.threshold-bytes:512}") int thresholdBytes) {
+        this.fieldEncryptionService = fieldEncryptionService;
+        this.thresholdBytes = thresholdBytes;
+        this.rawBytes = meterRegistry.counter("carenexus.messages.body.bytes", "form", "raw");
+        this.storedBytes = meterRegistry.counter("carenexus.messages.body.bytes", "form", "stored");
+    }
+
+    @Override
+    public byte[] convertToDatabaseColumn(CompressedText body) {
+        if (body == null) {
+            return null;
+        }
+        boolean fresh = !body.isEncoded();
+        byte[] stored = fieldEncryptionService.encrypt(body.encode(thresholdBytes));
+        if (fresh) {
+            // Count new text once; bodies read back and re-bound are already counted
+            rawBytes.increment(body.utf8Length());
+            storedBytes.increment(stored.length);
+        }
+        return stored;
+    }
+
+    @Override
+    public CompressedText convertToEntityAttribute(byte[] stored) {
+        return stored != null ? CompressedText.fromStored(fieldEncryptionService.decrypt(stored)) : null;
+    }
+}
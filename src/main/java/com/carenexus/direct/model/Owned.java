@@ -0,0 +1,10 @@
+package com.carenexus.direct.model;
+
+/**
+ * An entity whose userEmail is stored as an owner_id (OwnerIdConverter),
+ * so OwnerAssignmentListener can assign the owner before it is written.
+ */
+public interface Owned {
+
+    String getUserEmail();
+}
@@ -0,0 +1,31 @@
+package com.carenexus.direct.model;
+
+import com.carenexus.direct.service.OwnerDirectory;
+import jakarta.persistence.PrePersist;
+import jakarta.persistence.PreUpdate;
+import org.springframework.stereotype.Component;
+
+/**
+ * Assigns an owner id to a new owner before its first row is written:
+ * OwnerIdConverter only looks ids up, since it converts query
+ * parameters too. Runs before Hibernate converts the entity's values,
+ * and is a cache hit for any owner that has written before.
+ * A Spring bean, like the converters (SpringBeanContainer).
+ */
+@Component
+public class OwnerAssignmentListener {
+
+    private final OwnerDirectory ownerDirectory;
+
+    public OwnerAssignmentListener(OwnerDirectory ownerDirectory) {
+        this.ownerDirectory = ownerDirectory;
+    }
+
+    @PrePersist
+    @PreUpdate
+    public void assign(Owned entity) {
+        if (entity.getUserEmail() != null) {
+            ownerDirectory.idOfOrCreate(entity.getUserEmail());
+        }
+    }
+}
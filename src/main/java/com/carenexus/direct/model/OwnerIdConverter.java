@@ -0,0 +1,41 @@
+package com.carenexus.direct.model;
+
+import com.carenexus.direct.service.OwnerDirectory;
+import jakarta.persistence.AttributeConverter;
+import jakarta.persistence.Converter;
+import org.springframework.stereotype.Component;
+
+/**
+ * Stores an entity's owner email as its numeric owner_id (OwnerDirectory).
+ * Applied to userEmail of Patient, Doctor, Appointment and Message; query
+ * parameters compared against that attribute are converted too, so
+ * findByUserEmail(email) becomes WHERE owner_id = ?.
+ *
+ * Hibernate converts query parameters and inserted values alike, so
+ * this only looks owners up: an email without an id converts to
+ * OwnerDirectory.UNKNOWN_OWNER_ID and its queries find nothing.
+ * OwnerAssignmentListener assigns the id before an entity is persisted.
+ *
+ * A Spring bean: Hibernate obtains converters from the application
+ * context (SpringBeanContainer).
+ */
+@Component
+@Converter
+public class OwnerIdConverter implements AttributeConverter<String, Integer> {
+
+    private final OwnerDirectory ownerDirectory;
+
+    public OwnerIdConverter(OwnerDirectory ownerDirectory) {
+        this.ownerDirectory = ownerDirectory;
+    }
+
+    @Override
+    public Integer convertToDatabaseColumn(String email) {
+        return email != null ? ownerDirectory.findId(email).orElse(OwnerDirectory.UNKNOWN_OWNER_ID) : null;
+    }
+
+    @Override
+    public String convertToEntityAttribute(Integer ownerId) {
+        return ownerId != null ? ownerDirectory.emailOf(ownerId) : null;
+    }
+}
@@ -2,23 +2,50 @@ package com.carenexus.direct.model;
 
 import jakarta.persistence.*;
 import lombok.*;
+import org.hibernate.annotations.DynamicUpdate;
 
 @Entity
+@DynamicUpdate
+@EntityListeners({OwnerAssignmentListener.class, PatientBlindIndexListener.class})
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
 @Builder
-public class Patient {
+public class Patient implements Owned {
 
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
 
+    /** PHI: stored encrypted, never in logs */
+    @Convert(converter = EncryptedStringConverter.class)
+    @ToString.Exclude
     private String name;
+
+    @Convert(converter = EncryptedStringConverter.class)
+    @ToString.Exclude
     private String email;
+
+    @Convert(converter = EncryptedStringConverter.class)
+    @ToString.Exclude
     private String phone;
 
     /** 🔥 Add this */
-    @Column(nullable = false)
+    @Convert(converter = OwnerIdConverter.class)
+    @Column(name = "owner_id", nullable = false)
     private String userEmail;
+
+    /** Blind index of the name's first characters (PatientBlindIndexListener) */
+    @Column(name = "name_prefix_bidx")
+    @ToString.Exclude
+    private byte[] namePrefixIndex;
+
+    /** Blind index of the whole email */
+    @Column(name = "email_bidx")
+    @ToString.Exclude
+    private byte[] emailIndex;
+
+    /** Optimistic lock (V9): checked and bumped by PatientRepository.updateOwned */
+    @Version
+    private Long version;
 }
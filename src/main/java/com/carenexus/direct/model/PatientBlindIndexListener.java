@@ -0,0 +1,65 @@
+package com.carenexus.direct.model;
+
+import com.carenexus.direct.service.FieldEncryptionService;
+import jakarta.persistence.PrePersist;
+import jakarta.persistence.PreUpdate;
+import org.springframework.stereotype.Component;
+
+import java.text.Normalizer;
+import java.util.Locale;
+
+/**
+ * Keeps Patient's blind index columns in step with its encrypted name
+ * and email, and computes the same tokens for searches:
+ * - name: the first NAME_PREFIX_CHARS characters of the normalized name,
+ *   so indexed name search (match=prefix) is a prefix search of at least
+ *   that many characters (rows are then filtered on the decrypted name)
+ * - email: the whole normalized email, so indexed email search
+ *   (match=exact) is exact
+ *
+ * Normalized = NFKC, lower case, trimmed, inner whitespace collapsed.
+ * A Spring bean, like the converters (SpringBeanContainer).
+ */
+@Component
+public class PatientBlindIndexListener {
+
+    public static final int NAME_PREFIX_CHARS = 3;
+
+    private final FieldEncryptionService fieldEncryptionService;
+
+    public PatientBlindIndexListener(FieldEncryptionService fieldEncryptionService) {
+        this.fieldEncryptionService = fieldEncryptionService;
+    }
+
+    @PrePersist
+    @PreUpdate
+    public void index(Patient patient) {
+        patient.setNamePrefixIndex(namePrefixToken(patient.getUserEmail(), patient.getName()));
+        patient.setEmailIndex(emailToken(patient.getUserEmail(), patient.getEmail()));
+    }
+
+    /** Token of a name, or of a search prefix of at least NAME_PREFIX_CHARS characters */
+    public byte[] namePrefixToken(String owner, String name) {
+        String normalized = normalize(name);
+        if (normalized == null) {
+            return null;
+        }
+        int end = normalized.offsetByCodePoints(0, Math.min(NAME_PREFIX_CHARS, normalized.codePointCount(0, normalized.length())));
+        return fieldEncryptionService.blindIndex(owner, "patient.name", normalized.substring(0, end));
+    }
+
+    public byte[] emailToken(String owner, String email) {
+        String normalized = normalize(email);
+        return normalized != null ? fieldEncryptionService.blindIndex(owner, "patient.email", normalized) : null;
+    }
+
+    /** Form that tokens and decrypted values are compared in; null for blank values */
+    public static String normalize(String value) {
+        if (value == null) {
+            return null;
+        }
+        String normalized = Normalizer.normalize(value, Normalizer.Form.NFKC)
+                .trim().replaceAll("\\s+", " ").toLowerCase(Locale.ROOT);
+        return normalized.isEmpty() ? null : normalized;
+    }
+}
@@ -0,0 +1,42 @@
+package com.carenexus.direct.model;
+
+import jakarta.persistence.*;
+import lombok.*;
+import java.time.LocalDateTime;
+
+/**
+ * Claim record for one appointment reminder, shared by all Direct
+ * instances. The unique (appointment_id, remind_at) key lets exactly one
+ * instance insert the claim; an unfired claim whose lease has expired
+ * can be taken over by another instance.
+ */
+@Entity
+@Table(name = "appointment_reminder_lease",
+        uniqueConstraints = @UniqueConstraint(name = "uk_reminder_lease_slot",
+                columnNames = {"appointment_id", "remind_at"}))
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ReminderLease {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "appointment_id", nullable = false)
+    private Long appointmentId;
+
+    @Column(name = "remind_at", nullable = false)
+    private LocalDateTime remindAt;
+
+    /** Instance that currently holds the lease */
+    @Column(nullable = false)
+    private String owner;
+
+    @Column(nullable = false)
+    private LocalDateTime leaseUntil;
+
+    /** Set once the reminder has been emitted */
+    private LocalDateTime firedAt;
+}
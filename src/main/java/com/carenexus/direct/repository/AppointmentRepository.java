@@ -4,6 +4,7 @@ import com.carenexus.direct.model.Appointment;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
@@ -19,6 +20,41 @@ public interface AppointmentRepository extends JpaRepository<Appointment, Long>
 
     Optional<Appointment> findByIdAndUserEmail(Long id, String email);
 
+    /** Ownership check without hydrating the appointment (or its doctor/patient) */
+    boolean existsByIdAndUserEmail(Long id, String email);
+
+    /**
+     * Reschedule an owned appointment in one statement (runs in the booking
+     * transaction); a null duration keeps the current one. 0 rows when it is
+     * not the owner's or (version given) was changed since it was read.
+     */
+    @Modifying(flushAutomatically = true)
+    @Query("UPDATE Appointment a SET a.appointmentTime = :appointmentTime, " +
+           "a.durationMinutes = COALESCE(:durationMinutes, a.durationMinutes), a.reason = :reason, " +
+           "a.version = a.version + 1 " +
+           "WHERE a.id = :id AND a.userEmail = :userEmail AND (:version IS NULL OR a.version = :version)")
+    int updateOwned(@Param("id") Long id,
+                    @Param("userEmail") String userEmail,
+                    @Param("version") Long version,
+                    @Param("appointmentTime") LocalDateTime appointmentTime,
+                    @Param("durationMinutes") Integer durationMinutes,
+                    @Param("reason") String reason);
+
+    /** Delete an owned appointment in one statement (runs in the booking transaction) */
+    @Modifying(flushAutomatically = true)
+    @Query("DELETE FROM Appointment a WHERE a.id = :id AND a.userEmail = :userEmail")
+    int deleteOwned(@Param("id") Long id, @Param("userEmail") String userEmail);
+
+    /** Share-lock the appointment's row until commit (see DoctorRepository.lockForShare); empty when gone */
+    @Query(value = "SELECT id FROM appointment WHERE id = :id FOR SHARE", nativeQuery = true)
+    Optional<Long> lockForShare(@Param("id") Long id);
+
+    /** Whether any appointment is booked with the doctor (guards the doctor's delete) */
+    boolean existsByDoctorId(Long doctorId);
+
+    /** Whether any appointment is booked for the patient (guards the patient's delete) */
+    boolean existsByPatientId(Long patientId);
+
     /** Search appointments by user email with pagination */
     Page<Appointment> findByUserEmail(String email, Pageable pageable);
 
@@ -36,4 +72,49 @@ public interface AppointmentRepository extends JpaRepository<Appointment, Long>
                                                     @Param("startDate") LocalDateTime startDate,
                                                     @Param("endDate") LocalDateTime endDate,
                                                     Pageable pageable);
+
+    /**
+     * Keyset page of upcoming appointments across all owners, ordered by
+     * (appointmentTime, id) and starting strictly after the given cursor.
+     * Used by the reminder scheduler; selects only the columns it needs.
+     */
+    @Query("SELECT a.id AS id, a.appointmentTime AS appointmentTime, a.userEmail AS userEmail " +
+           "FROM Appointment a WHERE a.appointmentTime <= :until AND " +
+           "(a.appointmentTime > :afterTime OR (a.appointmentTime = :afterTime AND a.id > :afterId)) " +
+           "ORDER BY a.appointmentTime ASC, a.id ASC")
+    List<UpcomingAppointment> findUpcomingAfter(@Param("afterTime") LocalDateTime afterTime,
+                                                @Param("afterId") Long afterId,
+                                                @Param("until") LocalDateTime until,
+                                                Pageable pageable);
+
+    /** One appointment in the reminder projection (re-scheduling a reminder whose claim expired unfired) */
+    @Query("SELECT a.id AS id, a.appointmentTime AS appointmentTime, a.userEmail AS userEmail " +
+           "FROM Appointment a WHERE a.id = :id")
+    Optional<UpcomingAppointment> findUpcomingById(@Param("id") Long id);
+
+    /** Every booked slot of one doctor, for the in-memory availability index */
+    @Query("SELECT a.id AS id, a.doctor.id AS doctorId, a.appointmentTime AS appointmentTime, " +
+           "a.durationMinutes AS durationMinutes FROM Appointment a " +
+           "WHERE a.doctor.id = :doctorId AND a.appointmentTime IS NOT NULL")
+    List<BookedSlot> findSlotsByDoctorId(@Param("doctorId") Long doctorId);
+
+    /** Slot of a single appointment (used to apply writes made on other instances) */
+    @Query("SELECT a.id AS id, a.doctor.id AS doctorId, a.appointmentTime AS appointmentTime, " +
+           "a.durationMinutes AS durationMinutes FROM Appointment a WHERE a.id = :id")
+    Optional<BookedSlot> findSlotById(@Param("id") Long id);
+
+    /** Lightweight projection for the availability index */
+    interface BookedSlot {
+        Long getId();
+        Long getDoctorId();
+        LocalDateTime getAppointmentTime();
+        Integer getDurationMinutes();
+    }
+
+    /** Lightweight projection for reminder scheduling */
+    interface UpcomingAppointment {
+        Long getId();
+        LocalDateTime getAppointmentTime();
+        String getUserEmail();
+    }
 }
@@ -0,0 +1,15 @@
+package com.carenexus.direct.repository;
+
+import com.carenexus.direct.model.AppointmentSlot;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+public interface AppointmentSlotRepository extends JpaRepository<AppointmentSlot, Long> {
+
+    /** Release every cell held by an appointment (runs in the booking transaction) */
+    @Modifying(flushAutomatically = true)
+    @Query("DELETE FROM AppointmentSlot s WHERE s.appointmentId = :appointmentId")
+    int deleteByAppointmentId(@Param("appointmentId") Long appointmentId);
+}
@@ -0,0 +1,41 @@
+package com.carenexus.direct.repository;
+
+import com.carenexus.direct.model.Attachment;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+public interface AttachmentRepository extends JpaRepository<Attachment, Long> {
+
+    Optional<Attachment> findByIdAndUserEmail(Long id, String userEmail);
+
+    /** A message's attachments (idx_attachment_message_created) */
+    List<Attachment> findByMessageIdAndUserEmailOrderByIdAsc(Long messageId, String userEmail);
+
+    /** The owner's earlier upload of the same content, for dedupe without re-upload */
+    Optional<Attachment> findFirstBySha256AndUserEmail(String sha256, String userEmail);
+
+    /** Whether any attachment still references the stored file */
+    boolean existsBySha256(String sha256);
+
+    /** Uploaded but never attached to a message */
+    @Query("SELECT a FROM Attachment a WHERE a.messageId IS NULL AND a.createdAt < :cutoff ORDER BY a.createdAt")
+    List<Attachment> findUnlinkedBefore(@Param("cutoff") LocalDateTime cutoff, Pageable pageable);
+
+    /** Attach the owner's unlinked attachments to a message; returns how many were linked */
+    @Modifying
+    @Transactional
+    @Query("UPDATE Attachment a SET a.messageId = :messageId " +
+           "WHERE a.id IN :ids AND a.userEmail = :userEmail AND a.messageId IS NULL")
+    int link(@Param("ids") Collection<Long> ids,
+             @Param("messageId") Long messageId,
+             @Param("userEmail") String userEmail);
+}
@@ -0,0 +1,17 @@
+package com.carenexus.direct.repository;
+
+import com.carenexus.direct.model.AttachmentUpload;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+public interface AttachmentUploadRepository extends JpaRepository<AttachmentUpload, String> {
+
+    Optional<AttachmentUpload> findByIdAndUserEmail(String id, String userEmail);
+
+    /** Abandoned uploads (idx_attachment_upload_created) */
+    List<AttachmentUpload> findByCreatedAtBefore(LocalDateTime cutoff, Pageable pageable);
+}
@@ -0,0 +1,36 @@
+package com.carenexus.direct.repository;
+
+import com.carenexus.direct.model.ChangeLogEntry;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+public interface ChangeLogRepository extends JpaRepository<ChangeLogEntry, Long> {
+
+    /** Changes for an owner after a sync token, oldest first */
+    List<ChangeLogEntry> findByOwnerEmailAndIdGreaterThanOrderByIdAsc(String ownerEmail, Long afterId, Pageable pageable);
+
+    /** Oldest retained entry; tokens older than this have lost history */
+    @Query("SELECT MIN(c.id) FROM ChangeLogEntry c")
+    Long findMinId();
+
+    /** Newest settled entry, handed out as the token after a full download (walks the id index backwards) */
+    Optional<ChangeLogEntry> findFirstByChangedAtBeforeOrderByIdDesc(LocalDateTime settled);
+
+    /** Newest entry written before the cutoff */
+    @Query("SELECT MAX(c.id) FROM ChangeLogEntry c WHERE c.changedAt < :cutoff")
+    Long findMaxIdBefore(@Param("cutoff") LocalDateTime cutoff);
+
+    /** Drop entries below an id (retention) */
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM ChangeLogEntry c WHERE c.id < :id")
+    int deleteByIdLessThan(@Param("id") Long id);
+}
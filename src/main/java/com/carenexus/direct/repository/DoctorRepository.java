@@ -4,9 +4,12 @@ import com.carenexus.direct.model.Doctor;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -16,6 +19,39 @@ public interface DoctorRepository extends JpaRepository<Doctor, Long> {
 
     Optional<Doctor> findByIdAndUserEmail(Long id, String userEmail);
 
+    /** Whether the owner has the doctor (after an update matched 0 rows: 409 if so, else 404) */
+    boolean existsByIdAndUserEmail(Long id, String userEmail);
+
+    /**
+     * Overwrite an owned doctor's contact details in one statement; 0 rows when
+     * it is not the owner's or (version given) was changed since it was read
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE Doctor d SET d.email = :email, d.phone = :phone, d.specialization = :specialization, " +
+           "d.version = d.version + 1 " +
+           "WHERE d.id = :id AND d.userEmail = :userEmail AND (:version IS NULL OR d.version = :version)")
+    int updateOwned(@Param("id") Long id,
+                    @Param("userEmail") String userEmail,
+                    @Param("version") Long version,
+                    @Param("email") String email,
+                    @Param("phone") String phone,
+                    @Param("specialization") String specialization);
+
+    /** Delete an owned doctor in one statement; 0 rows when it is not the owner's */
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM Doctor d WHERE d.id = :id AND d.userEmail = :userEmail")
+    int deleteOwned(@Param("id") Long id, @Param("userEmail") String userEmail);
+
+    /**
+     * Share-lock the doctor's row until commit, the check the dropped
+     * appointment → doctor FK made (V3): a concurrent delete waits for the
+     * booking, or the booking sees the doctor gone. Empty when it is gone.
+     */
+    @Query(value = "SELECT id FROM doctor WHERE id = :id FOR SHARE", nativeQuery = true)
+    Optional<Long> lockForShare(@Param("id") Long id);
+
     /** Search doctors by user email with pagination */
     Page<Doctor> findByUserEmail(String userEmail, Pageable pageable);
 
@@ -32,4 +68,28 @@ public interface DoctorRepository extends JpaRepository<Doctor, Long> {
     Page<Doctor> searchBySpecializationAndUserEmail(@Param("userEmail") String userEmail,
                                                     @Param("specialization") String specialization,
                                                     Pageable pageable);
+
+    /** Page of an owner's doctors restricted to ids resolved by the facet index */
+    Page<Doctor> findByUserEmailAndIdIn(String userEmail, Collection<Long> ids, Pageable pageable);
+
+    /** Every doctor's owner and specialization, for building the facet index */
+    @Query("SELECT d.id AS id, d.userEmail AS userEmail, d.specialization AS specialization FROM Doctor d")
+    List<FacetRow> findAllFacetRows();
+
+    /** Lightweight projection for the facet index */
+    interface FacetRow {
+        Long getId();
+        String getUserEmail();
+        String getSpecialization();
+    }
+
+    /** Id and name of every doctor of an owner, for the typeahead trie */
+    @Query("SELECT d.id AS id, d.name AS name FROM Doctor d WHERE d.userEmail = :userEmail")
+    List<NameRow> findNamesByUserEmail(@Param("userEmail") String userEmail);
+
+    /** Lightweight projection for typeahead */
+    interface NameRow {
+        Long getId();
+        String getName();
+    }
 }
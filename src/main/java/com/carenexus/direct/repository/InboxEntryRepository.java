@@ -0,0 +1,98 @@
+package com.carenexus.direct.repository;
+
+import com.carenexus.direct.model.InboxEntry;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+
+public interface InboxEntryRepository extends JpaRepository<InboxEntry, Long> {
+
+    /** Recipient's conversations, most recent first (idx_inbox_recipient_last_message) */
+    Page<InboxEntry> findByRecipientOrderByLastMessageAtDesc(String recipient, Pageable pageable);
+
+    /** Badge count: sum over the recipient's conversations */
+    @Query("SELECT COALESCE(SUM(e.unreadCount), 0) FROM InboxEntry e WHERE e.recipient = :recipient")
+    long sumUnreadByRecipient(@Param("recipient") String recipient);
+
+    /**
+     * Record a new message: create the conversation row or bump its unread
+     * count, replacing the latest-message fields only if this message is
+     * newer. last_message_id is assigned last because MySQL evaluates the
+     * assignments left to right. Native, so preview must already be
+     * encrypted (the JPQL updates below convert it).
+     */
+    @Modifying
+    @Transactional
+    @Query(value = "INSERT INTO inbox_entry (recipient, appointment_id, last_message_id, last_sender, last_preview, " +
+                   "last_message_at, unread_count, last_read_message_id) " +
+                   "VALUES (:recipient, :appointmentId, :messageId, :sender, :preview, :sentAt, 1, 0) " +
+                   "ON DUPLICATE KEY UPDATE " +
+                   "unread_count = unread_count + 1, " +
+                   "last_sender = IF(VALUES(last_message_id) > last_message_id, VALUES(last_sender), last_sender), " +
+                   "last_preview = IF(VALUES(last_message_id) > last_message_id, VALUES(last_preview), last_preview), " +
+                   "last_message_at = IF(VALUES(last_message_id) > last_message_id, VALUES(last_message_at), last_message_at), " +
+                   "last_message_id = GREATEST(last_message_id, VALUES(last_message_id))",
+           nativeQuery = true)
+    int recordMessage(@Param("recipient") String recipient,
+                      @Param("appointmentId") Long appointmentId,
+                      @Param("messageId") Long messageId,
+                      @Param("sender") String sender,
+                      @Param("preview") byte[] preview,
+                      @Param("sentAt") LocalDateTime sentAt);
+
+    /** A deleted message the recipient had not read yet no longer counts */
+    @Modifying
+    @Transactional
+    @Query("UPDATE InboxEntry e SET e.unreadCount = e.unreadCount - 1 " +
+           "WHERE e.recipient = :recipient AND e.appointmentId = :appointmentId " +
+           "AND e.lastReadMessageId < :messageId AND e.unreadCount > 0")
+    int forgetUnread(@Param("recipient") String recipient,
+                     @Param("appointmentId") Long appointmentId,
+                     @Param("messageId") Long messageId);
+
+    /** Edited latest message: refresh the preview */
+    @Modifying
+    @Transactional
+    @Query("UPDATE InboxEntry e SET e.lastPreview = :preview " +
+           "WHERE e.recipient = :recipient AND e.appointmentId = :appointmentId AND e.lastMessageId = :messageId")
+    int updatePreview(@Param("recipient") String recipient,
+                      @Param("appointmentId") Long appointmentId,
+                      @Param("messageId") Long messageId,
+                      @Param("preview") String preview);
+
+    /** Point the conversation at a new latest message (after the previous one was deleted) */
+    @Modifying
+    @Transactional
+    @Query("UPDATE InboxEntry e SET e.lastMessageId = :newMessageId, e.lastSender = :sender, " +
+           "e.lastPreview = :preview, e.lastMessageAt = :sentAt " +
+           "WHERE e.recipient = :recipient AND e.appointmentId = :appointmentId AND e.lastMessageId = :oldMessageId")
+    int replaceLast(@Param("recipient") String recipient,
+                    @Param("appointmentId") Long appointmentId,
+                    @Param("oldMessageId") Long oldMessageId,
+                    @Param("newMessageId") Long newMessageId,
+                    @Param("sender") String sender,
+                    @Param("preview") String preview,
+                    @Param("sentAt") LocalDateTime sentAt);
+
+    /** Conversation whose last message was deleted and has no messages left */
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM InboxEntry e " +
+           "WHERE e.recipient = :recipient AND e.appointmentId = :appointmentId AND e.lastMessageId = :messageId")
+    int deleteIfLast(@Param("recipient") String recipient,
+                     @Param("appointmentId") Long appointmentId,
+                     @Param("messageId") Long messageId);
+
+    /** Mark the whole conversation read, atomically with concurrent deliveries (row lock) */
+    @Modifying
+    @Transactional
+    @Query("UPDATE InboxEntry e SET e.unreadCount = 0, e.lastReadMessageId = e.lastMessageId " +
+           "WHERE e.recipient = :recipient AND e.appointmentId = :appointmentId")
+    int markRead(@Param("recipient") String recipient, @Param("appointmentId") Long appointmentId);
+}
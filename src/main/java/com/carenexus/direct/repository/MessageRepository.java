@@ -1,17 +1,21 @@
 package com.carenexus.direct.repository;
 
 import com.carenexus.direct.model.Message;
+import com.carenexus.direct.util.CompressedText;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
-public interface MessageRepository extends JpaRepository<Message, Long> {
+public interface MessageRepository extends JpaRepository<Message, Long>, MessageRepositoryCustom {
 
     List<Message> findByUserEmail(String userEmail);
 
@@ -19,18 +23,63 @@ public interface MessageRepository extends JpaRepository<Message, Long> {
 
     Optional<Message> findByIdAndUserEmail(Long id, String userEmail);
 
+    /** Whether the owner has the message (after an update matched 0 rows: 409 if so, else 404) */
+    boolean existsByIdAndUserEmail(Long id, String userEmail);
+
+    /**
+     * Edit an owned hot message in one statement (the body is compressed and
+     * encrypted by the converter). 0 rows when it is not the owner's, is
+     * archived, or (version given) was changed since it was read.
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE Message m SET m.content = :content, m.timestamp = :timestamp, m.version = m.version + 1 " +
+           "WHERE m.id = :id AND m.userEmail = :userEmail AND (:version IS NULL OR m.version = :version)")
+    int updateOwned(@Param("id") Long id,
+                    @Param("userEmail") String userEmail,
+                    @Param("version") Long version,
+                    @Param("content") CompressedText content,
+                    @Param("timestamp") LocalDateTime timestamp);
+
+    /** Delete an owned message; the timestamp confines it to one partition */
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM Message m WHERE m.id = :id AND m.userEmail = :userEmail AND m.timestamp = :timestamp")
+    int deleteOwned(@Param("id") Long id,
+                    @Param("userEmail") String userEmail,
+                    @Param("timestamp") LocalDateTime timestamp);
+
+    /** Whether any hot message belongs to the appointment (guards the appointment's delete) */
+    boolean existsByAppointmentId(Long appointmentId);
+
     /** Search messages by user email with pagination */
     Page<Message> findByUserEmail(String userEmail, Pageable pageable);
 
+    /** Messages of an appointment newer than a given id (SSE resume), oldest first */
+    List<Message> findByAppointmentIdAndUserEmailAndIdGreaterThanOrderByIdAsc(Long appointmentId,
+                                                                            String userEmail,
+                                                                            Long afterId,
+                                                                            Pageable pageable);
+
+    /** Newest message id of an appointment, null if it has none (where a live SSE stream starts) */
+    @Query("SELECT MAX(m.id) FROM Message m WHERE m.appointment.id = :appointmentId AND m.userEmail = :userEmail")
+    Long findLatestId(@Param("appointmentId") Long appointmentId, @Param("userEmail") String userEmail);
+
     /** Search messages by appointment with pagination */
     Page<Message> findByAppointmentIdAndUserEmail(Long appointmentId, String userEmail, Pageable pageable);
 
-    /** Search messages by content and user email */
+    /**
+     * The owner's messages just older than (beforeTimestamp, beforeId), newest
+     * first (idx_message_owner_timestamp). Keyset batches for the content
+     * search, which can only match decrypted bodies.
+     */
     @Query("SELECT m FROM Message m WHERE m.userEmail = :userEmail AND " +
-           "LOWER(m.content) LIKE LOWER(CONCAT('%', :content, '%'))")
-    Page<Message> searchByContentAndUserEmail(@Param("userEmail") String userEmail,
-                                              @Param("content") String content,
-                                              Pageable pageable);
+           "(m.timestamp < :beforeTimestamp OR (m.timestamp = :beforeTimestamp AND m.id < :beforeId)) " +
+           "ORDER BY m.timestamp DESC, m.id DESC")
+    List<Message> findOlderByUserEmail(@Param("userEmail") String userEmail,
+                                       @Param("beforeTimestamp") LocalDateTime beforeTimestamp,
+                                       @Param("beforeId") Long beforeId,
+                                       Pageable pageable);
 
     /** Search messages by date range */
     @Query("SELECT m FROM Message m WHERE m.userEmail = :userEmail AND " +
@@ -39,4 +88,43 @@ public interface MessageRepository extends JpaRepository<Message, Long> {
                                                 @Param("startDate") LocalDateTime startDate,
                                                 @Param("endDate") LocalDateTime endDate,
                                                 Pageable pageable);
+
+    /** Latest remaining message of a recipient's conversation (idx_message_recipient_appointment) */
+    Optional<Message> findFirstByRecipientAndAppointmentIdOrderByIdDesc(String recipient, Long appointmentId);
+
+    /** Same, for messages without an appointment */
+    Optional<Message> findFirstByRecipientAndAppointmentIsNullOrderByIdDesc(String recipient);
+
+    /** Next batch of messages older than the cutoff, by id (archiver keyset; prunes to old partitions) */
+    @Query("SELECT m.id AS id, m.userEmail AS userEmail, m.sender AS sender, m.recipient AS recipient, " +
+           "m.content AS content, m.timestamp AS timestamp, m.appointment.id AS appointmentId " +
+           "FROM Message m WHERE m.timestamp < :cutoff AND m.id > :afterId ORDER BY m.id")
+    List<ArchiveRow> findArchivable(@Param("cutoff") LocalDateTime cutoff,
+                                    @Param("afterId") Long afterId,
+                                    Pageable pageable);
+
+    /** Remove archived rows; rows edited since they were read (newer timestamp) stay */
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM Message m WHERE m.id IN :ids AND m.timestamp < :cutoff")
+    int deleteArchived(@Param("ids") List<Long> ids, @Param("cutoff") LocalDateTime cutoff);
+
+    /** Ingest keys already stored (a replayed ingest batch skips these) */
+    @Query("SELECT m.ingestKey FROM Message m WHERE m.ingestKey IN :keys")
+    List<String> findIngestKeys(@Param("keys") Collection<String> keys);
+
+    /** Ids still in the message table (rows deleteArchived kept) */
+    @Query("SELECT m.id FROM Message m WHERE m.id IN :ids")
+    List<Long> findHotIds(@Param("ids") List<Long> ids);
+
+    /** Flat projection for the archiver (no appointment join) */
+    interface ArchiveRow {
+        Long getId();
+        String getUserEmail();
+        String getSender();
+        String getRecipient();
+        CompressedText getContent();
+        LocalDateTime getTimestamp();
+        Long getAppointmentId();
+    }
 }
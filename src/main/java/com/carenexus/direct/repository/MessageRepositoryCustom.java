@@ -0,0 +1,18 @@
+package com.carenexus.direct.repository;
+
+import com.carenexus.direct.model.Message;
+
+import java.util.List;
+
+/**
+ * Hand-written additions to MessageRepository.
+ */
+public interface MessageRepositoryCustom {
+
+    /**
+     * Insert new messages as one JDBC batch (rewritten into multi-row
+     * INSERTs by the MySQL driver) and assign the generated ids back onto
+     * the given entities. Bypasses the persistence context entirely.
+     */
+    void insertBatch(List<Message> messages);
+}
@@ -0,0 +1,75 @@
+package com.carenexus.direct.repository;
+
+import com.carenexus.direct.model.Message;
+import com.carenexus.direct.model.MessageBodyConverter;
+import com.carenexus.direct.service.OwnerDirectory;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+@RequiredArgsConstructor
+public class MessageRepositoryCustomImpl implements MessageRepositoryCustom {
+
+    private static final String INSERT_SQL =
+            "INSERT INTO message (sender, recipient, content, timestamp, appointment_id, owner_id, ingest_key) " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final OwnerDirectory ownerDirectory;
+    private final MessageBodyConverter messageBodyConverter;
+
+    @Override
+    @Transactional
+    public void insertBatch(List<Message> messages) {
+        if (messages.isEmpty()) {
+            return;
+        }
+
+        int[] ownerIds = messages.stream().mapToInt(m -> ownerDirectory.idOfOrCreate(m.getUserEmail())).toArray();
+        KeyHolder keyHolder = new GeneratedKeyHolder();
+        jdbcTemplate.batchUpdate(
+                connection -> connection.prepareStatement(INSERT_SQL, Statement.RETURN_GENERATED_KEYS),
+                new BatchPreparedStatementSetter() {
+                    @Override
+                    public void setValues(PreparedStatement ps, int i) throws SQLException {
+                        Message m = messages.get(i);
+                        ps.setString(1, m.getSender());
+                        ps.setString(2, m.getRecipient());
+                        ps.setBytes(3, messageBodyConverter.convertToDatabaseColumn(m.getContent()));
+                        ps.setTimestamp(4, Timestamp.valueOf(m.getTimestamp() != null ? m.getTimestamp() : LocalDateTime.now()));
+                        if (m.getAppointment() != null && m.getAppointment().getId() != null) {
+                            ps.setLong(5, m.getAppointment().getId());
+                        } else {
+                            ps.setNull(5, Types.BIGINT);
+                        }
+                        ps.setInt(6, ownerIds[i]);
+                        ps.setString(7, m.getIngestKey());
+                    }
+
+                    @Override
+                    public int getBatchSize() {
+                        return messages.size();
+                    }
+                },
+                keyHolder);
+
+        List<Map<String, Object>> keys = keyHolder.getKeyList();
+        for (int i = 0; i < keys.size() && i < messages.size(); i++) {
+            Object id = keys.get(i).values().iterator().next();
+            messages.get(i).setId(((Number) id).longValue());
+            messages.get(i).setVersion(0L);  // Column default (V9)
+        }
+    }
+}
@@ -4,8 +4,10 @@ import com.carenexus.direct.model.Patient;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.util.List;
 import java.util.Optional;
@@ -16,20 +18,59 @@ public interface PatientRepository extends JpaRepository<Patient, Long> {
 
     Optional<Patient> findByIdAndUserEmail(Long id, String userEmail);
 
+    /** Whether the owner has the patient (after an update matched 0 rows: 409 if so, else 404) */
+    boolean existsByIdAndUserEmail(Long id, String userEmail);
+
+    /**
+     * Overwrite an owned patient in one statement: 0 rows when it is not the
+     * owner's, or when version is given and the row has moved past it. The
+     * values are encrypted by the converters; the blind index tokens must be
+     * passed (the entity listener does not see bulk updates).
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE Patient p SET p.name = :name, p.email = :email, p.phone = :phone, " +
+           "p.namePrefixIndex = :namePrefixIndex, p.emailIndex = :emailIndex, p.version = p.version + 1 " +
+           "WHERE p.id = :id AND p.userEmail = :userEmail AND (:version IS NULL OR p.version = :version)")
+    int updateOwned(@Param("id") Long id,
+                    @Param("userEmail") String userEmail,
+                    @Param("version") Long version,
+                    @Param("name") String name,
+                    @Param("email") String email,
+                    @Param("phone") String phone,
+                    @Param("namePrefixIndex") byte[] namePrefixIndex,
+                    @Param("emailIndex") byte[] emailIndex);
+
+    /** Delete an owned patient in one statement; 0 rows when it is not the owner's */
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM Patient p WHERE p.id = :id AND p.userEmail = :userEmail")
+    int deleteOwned(@Param("id") Long id, @Param("userEmail") String userEmail);
+
+    /** Share-lock the patient's row until commit (see DoctorRepository.lockForShare); empty when gone */
+    @Query(value = "SELECT id FROM patient WHERE id = :id FOR SHARE", nativeQuery = true)
+    Optional<Long> lockForShare(@Param("id") Long id);
+
     /** Search patients by user email with pagination */
     Page<Patient> findByUserEmail(String userEmail, Pageable pageable);
 
-    /** Search patients by name and user email */
-    @Query("SELECT p FROM Patient p WHERE p.userEmail = :userEmail AND " +
-           "LOWER(p.name) LIKE LOWER(CONCAT('%', :name, '%'))")
-    Page<Patient> searchByNameAndUserEmail(@Param("userEmail") String userEmail,
-                                           @Param("name") String name,
-                                           Pageable pageable);
-
-    /** Search patients by email and user email */
-    @Query("SELECT p FROM Patient p WHERE p.userEmail = :userEmail AND " +
-           "LOWER(p.email) LIKE LOWER(CONCAT('%', :email, '%'))")
-    Page<Patient> searchByEmailAndUserEmail(@Param("userEmail") String userEmail,
-                                            @Param("email") String email,
-                                            Pageable pageable);
+    /**
+     * Patients whose name starts with the prefix the token was computed from
+     * (PatientBlindIndexListener; idx_patient_owner_name_prefix). Names
+     * are encrypted, so ordering and the full prefix are applied by the caller.
+     */
+    List<Patient> findByUserEmailAndNamePrefixIndex(String userEmail, byte[] namePrefixIndex);
+
+    /** Patients with exactly this email (blind index token; idx_patient_owner_email_bidx) */
+    List<Patient> findByUserEmailAndEmailIndex(String userEmail, byte[] emailIndex);
+
+    /** Id and name of every patient of an owner, for the typeahead trie */
+    @Query("SELECT p.id AS id, p.name AS name FROM Patient p WHERE p.userEmail = :userEmail")
+    List<NameRow> findNamesByUserEmail(@Param("userEmail") String userEmail);
+
+    /** Lightweight projection for typeahead */
+    interface NameRow {
+        Long getId();
+        String getName();
+    }
 }
@@ -0,0 +1,48 @@
+package com.carenexus.direct.repository;
+
+import com.carenexus.direct.model.ReminderLease;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+public interface ReminderLeaseRepository extends JpaRepository<ReminderLease, Long> {
+
+    /**
+     * Unfired claims whose lease ran out: the holder died between claim and
+     * markFired (idx_reminder_lease_unfired). Only reminders due after
+     * notBefore, so ones for appointments that have started are left alone.
+     */
+    @Query("SELECT l FROM ReminderLease l WHERE l.firedAt IS NULL AND l.leaseUntil < :now " +
+           "AND l.remindAt > :notBefore ORDER BY l.leaseUntil ASC")
+    List<ReminderLease> findExpiredUnfired(@Param("now") LocalDateTime now,
+                                           @Param("notBefore") LocalDateTime notBefore,
+                                           Pageable pageable);
+
+    /** Take over an unfired claim whose lease has expired (returns 1 on success) */
+    @Modifying
+    @Transactional
+    @Query("UPDATE ReminderLease l SET l.owner = :owner, l.leaseUntil = :leaseUntil " +
+           "WHERE l.appointmentId = :appointmentId AND l.remindAt = :remindAt " +
+           "AND l.firedAt IS NULL AND l.leaseUntil < :now")
+    int takeOverExpired(@Param("appointmentId") Long appointmentId,
+                        @Param("remindAt") LocalDateTime remindAt,
+                        @Param("owner") String owner,
+                        @Param("leaseUntil") LocalDateTime leaseUntil,
+                        @Param("now") LocalDateTime now);
+
+    /** Mark a claimed reminder as emitted */
+    @Modifying
+    @Transactional
+    @Query("UPDATE ReminderLease l SET l.firedAt = :firedAt " +
+           "WHERE l.appointmentId = :appointmentId AND l.remindAt = :remindAt AND l.owner = :owner")
+    int markFired(@Param("appointmentId") Long appointmentId,
+                  @Param("remindAt") LocalDateTime remindAt,
+                  @Param("owner") String owner,
+                  @Param("firedAt") LocalDateTime firedAt);
+}
@@ -0,0 +1,296 @@
+package com.carenexus.direct.service;
+
+import com.carenexus.direct.event.EntityChangedEvent.ChangeType;
+import com.carenexus.direct.event.EntityChangedEvent.EntityType;
+import com.carenexus.direct.exception.BadRequestException;
+import com.carenexus.direct.exception.ConflictException;
+import com.carenexus.direct.exception.NotFoundException;
+import com.carenexus.direct.exception.ServiceUnavailableException;
+import com.carenexus.direct.model.Appointment;
+import com.carenexus.direct.model.AppointmentSlot;
+import com.carenexus.direct.repository.AppointmentRepository;
+import com.carenexus.direct.repository.AppointmentSlotRepository;
+import com.carenexus.direct.repository.DoctorRepository;
+import com.carenexus.direct.repository.MessageRepository;
+import com.carenexus.direct.repository.PatientRepository;
+import com.carenexus.direct.util.StripedLocks;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * ====================================================================
+ * Appointment Booking Service - Double-Booking Prevention
+ * ====================================================================
+ *
+ * Every appointment write that places a booking on a doctor's calendar
+ * goes through book() (new appointments) or reschedule() (edits), which
+ * guarantee no two appointments of the same doctor overlap.
+ *
+ * Within one instance:
+ * - Bookings are serialized per doctor by striped locks
+ *   (booking.lock-stripes); different doctors proceed in parallel
+ * - Under the lock the doctor's availability index is checked first,
+ *   which rejects most conflicts without touching the database
+ *
+ * Across instances (the database guard):
+ * - A booking claims one AppointmentSlot row per grid cell it covers
+ *   (booking.slot-grid-minutes) in the same transaction as the
+ *   appointment. The unique (doctor_id, slot_start) key makes the
+ *   second of two conflicting inserts fail, so the loser's whole
+ *   transaction rolls back and the caller gets 409 Conflict
+ * - Bookings not aligned to the grid hold every cell they touch
+ * - durationMinutes is bounded (booking.max-duration-minutes), so the
+ *   cells claimed under the doctor's lock stay few
+ * - Bookings are at most booking.max-advance-months ahead, the months
+ *   PartitionMaintenanceService keeps partitions ready for
+ *
+ * Referential integrity (the foreign keys were dropped by V3):
+ * - A booking share-locks its doctor and patient rows before writing,
+ *   as the FK checks did, and fails with 404 if either is gone
+ * - cancel() refuses (409) while hot messages belong to the
+ *   appointment; doctor and patient deletes refuse while appointments
+ *   reference them (DoctorService / PatientService)
+ *
+ * Edits are one UPDATE conditional on ownership and version, with no
+ * read first; the row it locked is then read back for its doctor, whose
+ * lock is taken inside that transaction before the calendar is checked
+ * and the cells re-claimed. A conflict rolls the UPDATE back.
+ *
+ * The change log entry (SyncService.record) is written in the booking's
+ * transaction. The afterCommit callback (event publishing) runs before
+ * the lock is released, so the next booking for that doctor sees the
+ * index updated.
+ *
+ * ====================================================================
+ */
+@Service
+public class AppointmentBookingService {
+
+    private final AppointmentRepository appointmentRepository;
+    private final AppointmentSlotRepository slotRepository;
+    private final DoctorRepository doctorRepository;
+    private final PatientRepository patientRepository;
+    private final MessageRepository messageRepository;
+    private final DoctorAvailabilityService availabilityService;
+    private final TransactionTemplate transactionTemplate;
+    private final SyncService syncService;
+
+    private final StripedLocks locks;
+    private final long gridMinutes;
+    private final long maxDurationMinutes;
+    private final int maxAdvanceMonths;
+    private final long lockTimeoutMillis;
+
+    private final Timer lockWait;
+    private final Counter indexConflicts;
+    private final Counter databaseConflicts;
+
+    public AppointmentBookingService(AppointmentRepository appointmentRepository,
+                                     AppointmentSlotRepository slotRepository,
+                                     DoctorRepository doctorRepository,
+                                     PatientRepository patientRepository,
+                                     MessageRepository messageRepository,
+                                     DoctorAvailabilityService availabilityService,
+                                     TransactionTemplate transactionTemplate,
+                                     SyncService syncService,
+                                     MeterRegistry meterRegistry,
+                                     @Value("${booking.lock-stripes:256}") int lockStripes,
+                                     @Value("${booking.slot-grid-minutes:5}") long gridMinutes,
+                                     @Value("${booking.lock-timeout-ms:5000}") long lockTimeoutMillis,
+                                     @Value("${booking.max-duration-minutes:1440}") long maxDurationMinutes,
+                                     @Value("${booking.max-advance-months:24}") int maxAdvanceMonths) {
+        this.appointmentRepository = appointmentRepository;
+        this.slotRepository = slotRepository;
+        this.doctorRepository = doctorRepository;
+        this.patientRepository = patientRepository;
+        this.messageRepository = messageRepository;
+        this.availabilityService = availabilityService;
+        this.transactionTemplate = transactionTemplate;
+        this.syncService = syncService;
+        this.locks = new StripedLocks(lockStripes);
+        this.gridMinutes = gridMinutes;
+        this.maxDurationMinutes = maxDurationMinutes;
+        this.maxAdvanceMonths = maxAdvanceMonths;
+        this.lockTimeoutMillis = lockTimeoutMillis;
+
+        this.lockWait = Timer.builder("carenexus.appointments.booking.lock.wait")
+                .description("Time spent waiting for a doctor's booking lock")
+                .register(meterRegistry);
+        this.indexConflicts = meterRegistry.counter("carenexus.appointments.booking.conflicts", "guard", "index");
+        this.databaseConflicts = meterRegistry.counter("carenexus.appointments.booking.conflicts", "guard", "database");
+    }
+
+    /** Save a new or changed appointment, rejecting overlaps with the doctor's other bookings */
+    public Appointment book(Appointment appointment, ChangeType changeType, Consumer<Appointment> afterCommit) {
+        validate(appointment);
+        Long doctorId = appointment.getDoctor() != null ? appointment.getDoctor().getId() : null;
+        if (doctorId == null) {
+            Appointment saved = transactionTemplate.execute(status -> persist(appointment, changeType, null));
+            afterCommit.accept(saved);
+            return saved;
+        }
+
+        LocalDateTime start = appointment.getAppointmentTime();
+        LocalDateTime end = availabilityService.endOf(start, appointment.getDurationMinutes());
+        ReentrantLock lock = locks.lockFor(doctorId);
+        acquire(lock);
+        try {
+            if (!availabilityService.isFree(doctorId, start, end, appointment.getId())) {
+                indexConflicts.increment();
+                throw new ConflictException("Doctor is already booked at that time");
+            }
+            Appointment saved = transactionTemplate.execute(status ->
+                    persist(appointment, changeType, cells(doctorId, start, end)));
+            afterCommit.accept(saved);
+            return saved;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Change an owned appointment's time, duration (null keeps it) and reason
+     * with one UPDATE conditional on the version in {@code changes} (none:
+     * last write wins). 404 / 409 from one existence check when it matches
+     * nothing; 409 if the doctor is booked at the new time.
+     */
+    public Appointment reschedule(Long id, String userEmail, Appointment changes, Consumer<Appointment> afterCommit) {
+        validate(changes);
+        ReentrantLock[] held = new ReentrantLock[1];
+        try {
+            Appointment saved = transactionTemplate.execute(status -> {
+                if (appointmentRepository.updateOwned(id, userEmail, changes.getVersion(), changes.getAppointmentTime(),
+                        changes.getDurationMinutes(), changes.getReason()) == 0) {
+                    throw appointmentRepository.existsByIdAndUserEmail(id, userEmail)
+                            ? new ConflictException("Appointment was modified by another request")
+                            : new NotFoundException("Appointment not found");
+                }
+                Appointment appointment = appointmentRepository.findByIdAndUserEmail(id, userEmail)
+                        .orElseThrow(() -> new NotFoundException("Appointment not found"));
+                Long doctorId = appointment.getDoctor() != null ? appointment.getDoctor().getId() : null;
+                if (doctorId != null) {
+                    ReentrantLock lock = locks.lockFor(doctorId);
+                    acquire(lock);  // Before touching the doctor's cells, as in book()
+                    held[0] = lock;
+                }
+                slotRepository.deleteByAppointmentId(id);
+                if (doctorId != null) {
+                    LocalDateTime start = appointment.getAppointmentTime();
+                    LocalDateTime end = availabilityService.endOf(start, appointment.getDurationMinutes());
+                    if (!availabilityService.isFree(doctorId, start, end, id)) {
+                        indexConflicts.increment();
+                        throw new ConflictException("Doctor is already booked at that time");
+                    }
+                    claim(cells(doctorId, start, end), id);
+                }
+                syncService.record(EntityType.APPOINTMENT, ChangeType.UPDATED, id, userEmail);
+                return appointment;
+            });
+            afterCommit.accept(saved);
+            return saved;
+        } finally {
+            if (held[0] != null) {
+                held[0].unlock();
+            }
+        }
+    }
+
+    /**
+     * Delete an owned appointment and release its cells; false if the owner
+     * has no such appointment, 409 while hot messages belong to it
+     */
+    public boolean cancel(Long appointmentId, String userEmail) {
+        return Boolean.TRUE.equals(transactionTemplate.execute(status -> {
+            if (appointmentRepository.deleteOwned(appointmentId, userEmail) == 0) {
+                return false;
+            }
+            if (messageRepository.existsByAppointmentId(appointmentId)) {
+                throw new ConflictException("Appointment still has messages");  // Rolls back the delete
+            }
+            slotRepository.deleteByAppointmentId(appointmentId);
+            syncService.record(EntityType.APPOINTMENT, ChangeType.DELETED, appointmentId, userEmail);
+            return true;
+        }));
+    }
+
+    private Appointment persist(Appointment appointment, ChangeType changeType, List<AppointmentSlot> cells) {
+        if (appointment.getDoctor() != null && doctorRepository.lockForShare(appointment.getDoctor().getId()).isEmpty()) {
+            throw new NotFoundException("Doctor not found");
+        }
+        if (appointment.getPatient() != null && patientRepository.lockForShare(appointment.getPatient().getId()).isEmpty()) {
+            throw new NotFoundException("Patient not found");
+        }
+        Appointment saved = appointmentRepository.saveAndFlush(appointment);
+        slotRepository.deleteByAppointmentId(saved.getId());  // Rebooking releases the old cells
+        if (cells != null) {
+            claim(cells, saved.getId());
+        }
+        syncService.record(EntityType.APPOINTMENT, changeType, saved.getId(), saved.getUserEmail());
+        return saved;
+    }
+
+    private void validate(Appointment appointment) {
+        if (appointment.getAppointmentTime() == null) {
+            throw new BadRequestException("appointmentTime is required");
+        }
+        if (appointment.getAppointmentTime().isAfter(LocalDateTime.now().plusMonths(maxAdvanceMonths))) {
+            throw new BadRequestException("Appointments can be booked at most " + maxAdvanceMonths + " months ahead");
+        }
+        Integer duration = appointment.getDurationMinutes();
+        if (duration != null && (duration <= 0 || duration > maxDurationMinutes)) {
+            throw new BadRequestException("durationMinutes must be between 1 and " + maxDurationMinutes);
+        }
+    }
+
+    /** Insert the appointment's cells; the unique key fails the transaction if another booking holds one */
+    private void claim(List<AppointmentSlot> cells, Long appointmentId) {
+        cells.forEach(cell -> cell.setAppointmentId(appointmentId));
+        try {
+            slotRepository.saveAllAndFlush(cells);
+        } catch (DataIntegrityViolationException e) {
+            databaseConflicts.increment();  // Another instance won the race; rolls back the appointment too
+            throw new ConflictException("Doctor is already booked at that time");
+        }
+    }
+
+    /** Grid cells covered by [start, end) */
+    private List<AppointmentSlot> cells(Long doctorId, LocalDateTime start, LocalDateTime end) {
+        LocalDateTime dayStart = start.truncatedTo(ChronoUnit.DAYS);
+        long offset = ChronoUnit.MINUTES.between(dayStart, start);
+        LocalDateTime cell = dayStart.plusMinutes(offset - offset % gridMinutes);
+
+        List<AppointmentSlot> cells = new ArrayList<>();
+        while (cell.isBefore(end)) {
+            cells.add(AppointmentSlot.builder().doctorId(doctorId).slotStart(cell).build());
+            cell = cell.plusMinutes(gridMinutes);
+        }
+        return cells;
+    }
+
+    private void acquire(ReentrantLock lock) {
+        long startedAt = System.nanoTime();
+        try {
+            if (!lock.tryLock(lockTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                throw new ServiceUnavailableException("Booking is busy, please retry");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ServiceUnavailableException("Interrupted while waiting to book");
+        } finally {
+            lockWait.record(System.nanoTime() - startedAt, TimeUnit.NANOSECONDS);
+        }
+    }
+}
@@ -0,0 +1,354 @@
+package com.carenexus.direct.service;
+
+import com.carenexus.direct.event.AppointmentReminderEvent;
+import com.carenexus.direct.event.EntityChangedEvent;
+import com.carenexus.direct.event.EntityChangedEvent.ChangeType;
+import com.carenexus.direct.event.EntityChangedEvent.EntityType;
+import com.carenexus.direct.event.RemoteInvalidationEvent;
+import com.carenexus.direct.model.Appointment;
+import com.carenexus.direct.model.ReminderLease;
+import com.carenexus.direct.repository.AppointmentRepository;
+import com.carenexus.direct.repository.AppointmentRepository.BookedSlot;
+import com.carenexus.direct.repository.AppointmentRepository.UpcomingAppointment;
+import com.carenexus.direct.repository.ReminderLeaseRepository;
+import com.carenexus.direct.util.HashedTimingWheel;
+import com.carenexus.direct.util.HashedTimingWheel.Timeout;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.net.InetAddress;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ====================================================================
+ * Appointment Reminder Service - Hashed Timing Wheel Scheduler
+ * ====================================================================
+ *
+ * Replaces the external cron that paged through AppointmentRepository.
+ *
+ * How reminders get onto the wheel:
+ * - Loader (@Scheduled): keyset-pages upcoming appointments up to
+ *   now + lead time + horizon, continuing from where the last run
+ *   stopped, so each row is read once
+ * - Writes: AppointmentService publishes EntityChangedEvent on
+ *   save/update/delete; the timer is (re)scheduled or cancelled in O(1)
+ * - Writes on other instances (RemoteInvalidationEvent): the
+ *   appointment's time is re-read by id and its timer moved or cancelled
+ *
+ * When a reminder falls due (appointmentTime - lead time):
+ * 1. Re-read the appointment's time; skip if it was deleted or moved
+ *    (a missed invalidation must not send a stale reminder)
+ * 2. Claim the lease row in appointment_reminder_lease (unique slot key)
+ * 3. If the claim succeeds, publish AppointmentReminderEvent
+ * 4. Mark the lease fired
+ * Every instance keeps its own wheel; other instances fail the claim and
+ * skip, so each reminder fires once across the cluster. A claim whose
+ * holder died before firing is on no wheel any more: each loader run
+ * puts unfired claims whose lease (reminders.lease-seconds) has run out
+ * back on the wheel, due now, and delivery takes the claim over. The
+ * reminder goes out late (up to one lease plus one loader interval)
+ * rather than never.
+ *
+ * Configuration (application.yml → reminders.*):
+ * - enabled, lead-time-minutes, horizon-hours, tick-ms, wheel-size,
+ *   loader-interval-ms, page-size, lease-seconds
+ *
+ * ====================================================================
+ */
+@Slf4j
+@Service
+@ConditionalOnProperty(name = "reminders.enabled", havingValue = "true", matchIfMissing = true)
+public class AppointmentReminderService {
+
+    private final AppointmentRepository appointmentRepository;
+    private final ReminderLeaseRepository leaseRepository;
+    private final ApplicationEventPublisher eventPublisher;
+
+    private final Duration leadTime;
+    private final Duration horizon;
+    private final Duration leaseDuration;
+    private final int pageSize;
+    private final String instanceId;
+
+    private final HashedTimingWheel<Reminder> wheel;
+    private final Map<Long, Timeout<Reminder>> timers = new ConcurrentHashMap<>();
+    private final ExecutorService deliveryExecutor;
+
+    // Loader cursor (only touched by the scheduled loader thread)
+    private LocalDateTime cursorTime;
+    private Long cursorId = 0L;
+
+    /** Appointments up to this time are on the wheel (or will be loaded next run) */
+    private volatile LocalDateTime loadedUntil;
+
+    public AppointmentReminderService(AppointmentRepository appointmentRepository,
+                                      ReminderLeaseRepository leaseRepository,
+                                      ApplicationEventPublisher eventPublisher,
+                                      MeterRegistry meterRegistry,
+                                      @Value("${reminders.lead-time-minutes:60}") long leadTimeMinutes,
+                                      @Value("${reminders.horizon-hours:24}") long horizonHours,
+                                      @Value("${reminders.lease-seconds:60}") long leaseSeconds,
+                                      @Value("${reminders.page-size:1000}") int pageSize,
+                                      @Value("${reminders.tick-ms:1000}") long tickMillis,
+                                      @Value("${reminders.wheel-size:512}") int wheelSize,
+                                      @Value("${reminders.delivery-threads:2}") int deliveryThreads) {
+        this.appointmentRepository = appointmentRepository;
+        this.leaseRepository = leaseRepository;
+        this.eventPublisher = eventPublisher;
+        this.leadTime = Duration.ofMinutes(leadTimeMinutes);
+        this.horizon = Duration.ofHours(horizonHours);
+        this.leaseDuration = Duration.ofSeconds(leaseSeconds);
+        this.pageSize = pageSize;
+        this.instanceId = resolveInstanceId();
+
+        this.wheel = new HashedTimingWheel<>("appointment-reminder-wheel", tickMillis, wheelSize, this::onDue);
+        this.deliveryExecutor = Executors.newFixedThreadPool(deliveryThreads, runnable -> {
+            Thread thread = new Thread(runnable, "appointment-reminder-delivery");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        Gauge.builder("carenexus.reminders.pending", wheel, HashedTimingWheel::pendingCount)
+                .description("Appointment reminders waiting on the timing wheel")
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void start() {
+        wheel.start();
+        log.info("[AppointmentReminderService] ✓ Reminder wheel started (instance={}, lead={}, horizon={})",
+                instanceId, leadTime, horizon);
+    }
+
+    @PreDestroy
+    public void stop() {
+        wheel.stop();
+        deliveryExecutor.shutdown();
+        try {
+            deliveryExecutor.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Incrementally load upcoming appointments onto the wheel.
+     * Each run continues from the last (appointmentTime, id) seen.
+     */
+    @Scheduled(fixedDelayString = "${reminders.loader-interval-ms:60000}",
+               initialDelayString = "${reminders.loader-initial-delay-ms:5000}")
+    public void loadUpcoming() {
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime until = now.plus(leadTime).plus(horizon);
+
+        if (cursorTime == null || cursorTime.isBefore(now.plus(leadTime))) {
+            // First run, or the cursor is older than anything still worth reminding about.
+            // Nothing after now + lead can be behind the cursor, so this never re-reads rows.
+            cursorTime = now.plus(leadTime);
+            cursorId = 0L;
+        }
+
+        int loaded = 0;
+        List<UpcomingAppointment> page;
+        do {
+            page = appointmentRepository.findUpcomingAfter(cursorTime, cursorId, until, PageRequest.of(0, pageSize));
+            for (UpcomingAppointment row : page) {
+                schedule(new Reminder(row.getId(), row.getAppointmentTime(), row.getUserEmail()));
+                cursorTime = row.getAppointmentTime();
+                cursorId = row.getId();
+            }
+            loaded += page.size();
+        } while (page.size() == pageSize);
+
+        loadedUntil = until;
+        int recovered = recoverExpiredClaims(now);
+        log.debug("[AppointmentReminderService] Loaded {} reminders, recovered {} (until={}, pending={})",
+                loaded, recovered, until, wheel.pendingCount());
+    }
+
+    /**
+     * Put reminders whose claim expired unfired back on the wheel, due now.
+     * Skipped when the appointment was deleted or moved (a moved one has
+     * its own reminder), or when this wheel already has it.
+     */
+    private int recoverExpiredClaims(LocalDateTime now) {
+        int recovered = 0;
+        for (ReminderLease lease : leaseRepository.findExpiredUnfired(now, now.minus(leadTime),
+                PageRequest.of(0, pageSize))) {
+            Optional<UpcomingAppointment> row = appointmentRepository.findUpcomingById(lease.getAppointmentId());
+            if (row.isEmpty() || row.get().getAppointmentTime() == null
+                    || !row.get().getAppointmentTime().minus(leadTime).equals(lease.getRemindAt())) {
+                continue;
+            }
+            Reminder reminder = new Reminder(row.get().getId(), row.get().getAppointmentTime(), row.get().getUserEmail());
+            Timeout<Reminder> existing = timers.get(reminder.appointmentId());
+            if (existing != null && !existing.isCancelled() && existing.getTask().equals(reminder)) {
+                continue;  // Already being retried here
+            }
+            Timeout<Reminder> previous = timers.put(reminder.appointmentId(),
+                    wheel.schedule(reminder, toEpochMillis(now)));
+            if (previous != null) {
+                previous.cancel();
+            }
+            recovered++;
+            log.warn("[AppointmentReminderService] ✗ Claim on the reminder for appointment {} expired unfired "
+                    + "(holder {}), retrying", reminder.appointmentId(), lease.getOwner());
+        }
+        return recovered;
+    }
+
+    /** Keep the wheel in sync with AppointmentService writes */
+    @EventListener
+    public void onAppointmentChanged(EntityChangedEvent event) {
+        if (!event.is(EntityType.APPOINTMENT)) {
+            return;
+        }
+        if (event.getChangeType() == ChangeType.DELETED) {
+            cancel(event.getEntityId());
+            return;
+        }
+        Appointment appointment = (Appointment) event.getEntity();
+        schedule(new Reminder(appointment.getId(), appointment.getAppointmentTime(), appointment.getUserEmail()));
+    }
+
+    /** Appointment writes made on other instances (CacheInvalidationBus) */
+    @EventListener
+    public void onRemoteInvalidation(RemoteInvalidationEvent event) {
+        if (event.getEntityType() != EntityType.APPOINTMENT || event.getEntityId() == null) {
+            return;  // A full invalidation is covered by the re-read before delivery
+        }
+        Long id = event.getEntityId();
+        appointmentRepository.findSlotById(id).ifPresentOrElse(
+                slot -> schedule(new Reminder(id, slot.getAppointmentTime(), event.getOwnerEmail())),
+                () -> cancel(id));
+    }
+
+    /** Number of reminders currently scheduled on this instance */
+    public long pendingCount() {
+        return wheel.pendingCount();
+    }
+
+    private void schedule(Reminder reminder) {
+        LocalDateTime horizonEnd = loadedUntil;
+        LocalDateTime appointmentTime = reminder.appointmentTime();
+        if (appointmentTime == null
+                || horizonEnd == null || appointmentTime.isAfter(horizonEnd)  // Loader will pick it up
+                || reminder.remindAt(leadTime).isBefore(LocalDateTime.now())) {
+            cancel(reminder.appointmentId());
+            return;
+        }
+
+        long deadline = toEpochMillis(reminder.remindAt(leadTime));
+        Timeout<Reminder> existing = timers.get(reminder.appointmentId());
+        if (existing != null && existing.getDeadline() == deadline && !existing.isCancelled()) {
+            return;  // Already scheduled for the same time
+        }
+
+        Timeout<Reminder> previous = timers.put(reminder.appointmentId(), wheel.schedule(reminder, deadline));
+        if (previous != null) {
+            previous.cancel();
+        }
+    }
+
+    private void cancel(Long appointmentId) {
+        if (appointmentId == null) {
+            return;
+        }
+        Timeout<Reminder> timeout = timers.remove(appointmentId);
+        if (timeout != null) {
+            timeout.cancel();
+        }
+    }
+
+    /** Runs on the wheel thread: just hand off */
+    private void onDue(Reminder reminder) {
+        timers.computeIfPresent(reminder.appointmentId(), (id, timeout) -> timeout.getTask() == reminder ? null : timeout);
+        deliveryExecutor.execute(() -> deliver(reminder));
+    }
+
+    private void deliver(Reminder reminder) {
+        LocalDateTime remindAt = reminder.remindAt(leadTime);
+        try {
+            LocalDateTime current = appointmentRepository.findSlotById(reminder.appointmentId())
+                    .map(BookedSlot::getAppointmentTime)
+                    .orElse(null);
+            if (!reminder.appointmentTime().equals(current)) {
+                log.debug("[AppointmentReminderService] Appointment {} was deleted or moved, reminder skipped",
+                        reminder.appointmentId());
+                return;
+            }
+            if (!claim(reminder.appointmentId(), remindAt)) {
+                log.debug("[AppointmentReminderService] Reminder for appointment {} claimed by another instance",
+                        reminder.appointmentId());
+                return;
+            }
+
+            eventPublisher.publishEvent(new AppointmentReminderEvent(
+                    reminder.appointmentId(), reminder.userEmail(), reminder.appointmentTime(), remindAt));
+            leaseRepository.markFired(reminder.appointmentId(), remindAt, instanceId, LocalDateTime.now());
+
+            log.info("[AppointmentReminderService] ✓ Reminder emitted for appointment {} ({})",
+                    reminder.appointmentId(), reminder.appointmentTime());
+        } catch (Exception e) {
+            log.error("[AppointmentReminderService] ✗ Failed to deliver reminder for appointment {}: {}",
+                    reminder.appointmentId(), e.getMessage(), e);
+        }
+    }
+
+    /** Insert the lease row, or take over an expired unfired one */
+    private boolean claim(Long appointmentId, LocalDateTime remindAt) {
+        LocalDateTime now = LocalDateTime.now();
+        try {
+            leaseRepository.saveAndFlush(ReminderLease.builder()
+                    .appointmentId(appointmentId)
+                    .remindAt(remindAt)
+                    .owner(instanceId)
+                    .leaseUntil(now.plus(leaseDuration))
+                    .build());
+            return true;
+        } catch (DataIntegrityViolationException e) {
+            return leaseRepository.takeOverExpired(appointmentId, remindAt, instanceId,
+                    now.plus(leaseDuration), now) == 1;
+        }
+    }
+
+    private static long toEpochMillis(LocalDateTime time) {
+        return time.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    private static String resolveInstanceId() {
+        String suffix = UUID.randomUUID().toString().substring(0, 8);
+        try {
+            return InetAddress.getLocalHost().getHostName() + "-" + suffix;
+        } catch (Exception e) {
+            return "direct-" + suffix;
+        }
+    }
+
+    private record Reminder(Long appointmentId, LocalDateTime appointmentTime, String userEmail) {
+        LocalDateTime remindAt(Duration leadTime) {
+            return appointmentTime.minus(leadTime);
+        }
+    }
+}
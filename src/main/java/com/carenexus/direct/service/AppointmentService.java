@@ -1,11 +1,15 @@
 package com.carenexus.direct.service;
 
 import com.carenexus.direct.dto.AppointmentDTO;
+import com.carenexus.direct.event.EntityChangedEvent;
+import com.carenexus.direct.event.EntityChangedEvent.ChangeType;
+import com.carenexus.direct.event.EntityChangedEvent.EntityType;
 import com.carenexus.direct.exception.NotFoundException;
 import com.carenexus.direct.mapper.AppointmentMapper;
 import com.carenexus.direct.model.Appointment;
 import com.carenexus.direct.repository.AppointmentRepository;
 import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
@@ -18,9 +22,14 @@ import java.util.List;
 public class AppointmentService {
 
     private final AppointmentRepository appointmentRepository;
+    private final AppointmentBookingService bookingService;
+    private final ApplicationEventPublisher eventPublisher;
+    private final QueryResultCache queryResultCache;
 
+    /** Save with double-booking prevention (409 if the doctor is already booked) */
     public Appointment save(Appointment appointment) {
-        return appointmentRepository.save(appointment);
+        ChangeType changeType = appointment.getId() == null ? ChangeType.CREATED : ChangeType.UPDATED;
+        return bookingService.book(appointment, changeType, saved -> publish(changeType, saved));
     }
 
     /** Get all appointments belonging to the authenticated user */
@@ -34,35 +43,54 @@ public class AppointmentService {
                 .orElseThrow(() -> new NotFoundException("Appointment not found"));
     }
 
-    /** Update appointment with ownership validation */
+    /** Validate ownership without loading the appointment */
+    public void assertOwnedBy(Long id, String userEmail) {
+        if (id == null || !appointmentRepository.existsByIdAndUserEmail(id, userEmail)) {
+            throw new NotFoundException("Appointment not found");
+        }
+    }
+
+    /**
+     * Update appointment with one UPDATE conditional on ownership and the
+     * version the client sent, without reading it first; the booking service
+     * then re-checks the doctor's calendar in the same transaction.
+     */
     public Appointment update(Long id, Appointment appointmentDetails, String userEmail) {
-        Appointment appointment = getByIdAndUser(id, userEmail);  // Validates ownership
-        appointment.setAppointmentTime(appointmentDetails.getAppointmentTime());
-        appointment.setReason(appointmentDetails.getReason());
-        return appointmentRepository.save(appointment);
+        return bookingService.reschedule(id, userEmail, appointmentDetails,
+                saved -> publish(ChangeType.UPDATED, saved));
     }
 
-    /** Delete appointment with ownership validation */
+    /** Delete appointment with ownership checked by the DELETE */
     public void delete(Long id, String userEmail) {
-        Appointment appt = getByIdAndUser(id, userEmail);
-        appointmentRepository.delete(appt);
+        if (!bookingService.cancel(id, userEmail)) {
+            throw new NotFoundException("Appointment not found");
+        }
+        publish(ChangeType.DELETED, Appointment.builder().id(id).userEmail(userEmail).build());
     }
 
     /** Get all appointments with pagination */
     public Page<AppointmentDTO> getAllWithPagination(String userEmail, Pageable pageable) {
-        return appointmentRepository.findByUserEmail(userEmail, pageable)
-                .map(AppointmentMapper::toDto);
+        return queryResultCache.get(userEmail, EntityType.APPOINTMENT, "appointment.getAllWithPagination", List.of(pageable),
+                () -> appointmentRepository.findByUserEmail(userEmail, pageable)
+                        .map(AppointmentMapper::toDto));
     }
 
     /** Search appointments by reason with pagination */
     public Page<AppointmentDTO> searchByReason(String userEmail, String reason, Pageable pageable) {
-        return appointmentRepository.searchByReasonAndUserEmail(userEmail, reason, pageable)
-                .map(AppointmentMapper::toDto);
+        return queryResultCache.get(userEmail, EntityType.APPOINTMENT, "appointment.searchByReason", List.of(reason, pageable),
+                () -> appointmentRepository.searchByReasonAndUserEmail(userEmail, reason, pageable)
+                        .map(AppointmentMapper::toDto));
     }
 
     /** Search appointments by date range with pagination */
     public Page<AppointmentDTO> searchByDateRange(String userEmail, LocalDateTime startDate, LocalDateTime endDate, Pageable pageable) {
-        return appointmentRepository.searchByDateRangeAndUserEmail(userEmail, startDate, endDate, pageable)
-                .map(AppointmentMapper::toDto);
+        return queryResultCache.get(userEmail, EntityType.APPOINTMENT, "appointment.searchByDateRange", List.of(startDate, endDate, pageable),
+                () -> appointmentRepository.searchByDateRangeAndUserEmail(userEmail, startDate, endDate, pageable)
+                        .map(AppointmentMapper::toDto));
+    }
+
+    private void publish(ChangeType changeType, Appointment appointment) {
+        eventPublisher.publishEvent(new EntityChangedEvent(
+                EntityType.APPOINTMENT, changeType, appointment.getId(), appointment.getUserEmail(), appointment));
     }
 }
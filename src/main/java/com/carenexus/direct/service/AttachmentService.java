@@ -0,0 +1,352 @@
+package com.carenexus.direct.service;
+
+import com.carenexus.direct.dto.AttachmentDTO;
+import com.carenexus.direct.dto.AttachmentUploadDTO;
+import com.carenexus.direct.exception.BadRequestException;
+import com.carenexus.direct.exception.NotFoundException;
+import com.carenexus.direct.exception.ServiceUnavailableException;
+import com.carenexus.direct.mapper.AttachmentMapper;
+import com.carenexus.direct.model.Attachment;
+import com.carenexus.direct.model.AttachmentUpload;
+import com.carenexus.direct.repository.AttachmentRepository;
+import com.carenexus.direct.repository.AttachmentUploadRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.function.Supplier;
+
+/**
+ * ====================================================================
+ * Attachment Service - Resumable Uploads, Dedupe, Message Linking
+ * ====================================================================
+ *
+ * Upload flow (AttachmentController):
+ * 1. POST the file's name, type, size (and optionally its SHA-256).
+ *    If the caller already uploaded that content, the attachment is
+ *    created at once and nothing is sent
+ * 2. PUT chunks of at most attachments.max-chunk-mb at the current
+ *    offset; after a failure GET the upload for the offset to resume at
+ * 3. Complete: the file is hashed, checked against the declared hash
+ *    and stored under it (AttachmentStore); identical content is kept
+ *    once however often it is uploaded
+ * 4. Send a message with the attachment ids (MessageService links them)
+ *
+ * Storing a file and inserting the attachment row that references it
+ * run under a MySQL named lock per hash, as does deleting a file no row
+ * references any more, so a delete never races a dedupe onto the same
+ * file (also across instances). The lock lives on the writing
+ * transaction's connection and is released once it has committed.
+ *
+ * Cleanup (attachments.cleanup-cron): uploads not completed and
+ * attachments never sent within attachments.upload-expiry-hours are
+ * deleted.
+ *
+ * ====================================================================
+ */
+@Slf4j
+@Service
+public class AttachmentService {
+
+    private static final int LOCK_TIMEOUT_SECONDS = 10;
+    private static final int CLEANUP_BATCH = 500;
+
+    private final AttachmentRepository attachmentRepository;
+    private final AttachmentUploadRepository uploadRepository;
+    private final AttachmentStore store;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final long maxFileBytes;
+    private final long maxChunkBytes;
+    private final int uploadExpiryHours;
+    private final Counter storedFiles;
+    private final Counter deduplicatedFiles;
+
+    public AttachmentService(AttachmentRepository attachmentRepository,
+                             AttachmentUploadRepository uploadRepository,
+                             AttachmentStore store,
+                             JdbcTemplate jdbcTemplate,
+                             TransactionTemplate transactionTemplate,
+                             MeterRegistry meterRegistry,
+                             @Value("${attachments.max-file-mb:50}") long maxFileMb,
+                             @Value("${attachments.max-chunk-mb:8}") long maxChunkMb,
+                             @Value("${attachments.upload-expiry-hours:24}") int uploadExpiryHours) {
+        this.attachmentRepository = attachmentRepository;
+        this.uploadRepository = uploadRepository;
+        this.store = store;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.maxFileBytes = maxFileMb * 1024 * 1024;
+        this.maxChunkBytes = maxChunkMb * 1024 * 1024;
+        this.uploadExpiryHours = uploadExpiryHours;
+        this.storedFiles = meterRegistry.counter("carenexus.attachments.files", "result", "stored");
+        this.deduplicatedFiles = meterRegistry.counter("carenexus.attachments.files", "result", "deduplicated");
+    }
+
+    /** Declare a file to upload; done at once if the caller already has that content */
+    public AttachmentUploadDTO startUpload(AttachmentUploadDTO request, String email) {
+        if (request.getSize() > maxFileBytes) {
+            throw new BadRequestException("Attachments are limited to " + maxFileBytes / (1024 * 1024) + " MB");
+        }
+        if (request.getSha256() != null) {
+            Attachment existing = attachmentRepository.findFirstBySha256AndUserEmail(request.getSha256(), email)
+                    .filter(attachment -> attachment.getSize() == request.getSize())
+                    .orElse(null);
+            if (existing != null) {
+                Attachment copy = withFileLock(existing.getSha256(), () -> store.exists(existing.getSha256())
+                        ? attachmentRepository.save(newAttachment(email, existing.getSha256(), existing.getSize(),
+                                request.getContentType(), request.getFileName()))
+                        : null);
+                if (copy != null) {
+                    deduplicatedFiles.increment();
+                    return toDto(request, copy);
+                }
+            }
+        }
+
+        AttachmentUpload upload = AttachmentUpload.builder()
+                .id(UUID.randomUUID().toString())
+                .userEmail(email)
+                .size(request.getSize())
+                .sha256(request.getSha256())
+                .contentType(request.getContentType())
+                .fileName(request.getFileName())
+                .createdAt(LocalDateTime.now())
+                .build();
+        try {
+            store.createPart(upload.getId());
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to start upload", e);
+        }
+        return toDto(uploadRepository.save(upload), 0);
+    }
+
+    /** Upload state, including the offset to resume at */
+    public AttachmentUploadDTO getUpload(String uploadId, String email) {
+        AttachmentUpload upload = getOwnedUpload(uploadId, email);
+        try {
+            return toDto(upload, store.partSize(uploadId));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read upload " + uploadId, e);
+        }
+    }
+
+    /** Append a chunk of length bytes (the request's Content-Length) at offset */
+    public AttachmentUploadDTO writeChunk(String uploadId, long offset, long length, InputStream body, String email)
+            throws IOException {
+        AttachmentUpload upload = getOwnedUpload(uploadId, email);
+        if (length <= 0) {
+            throw new BadRequestException("Chunks need a Content-Length");
+        }
+        if (length > maxChunkBytes) {
+            throw new BadRequestException("Chunks are limited to " + maxChunkBytes + " bytes");
+        }
+        if (offset < 0 || offset + length > upload.getSize()) {
+            throw new BadRequestException("Chunk exceeds the declared size of " + upload.getSize() + " bytes");
+        }
+        return toDto(upload, store.appendChunk(uploadId, offset, body, length));
+    }
+
+    /** Verify and store a fully received upload */
+    public AttachmentDTO complete(String uploadId, String email) {
+        AttachmentUpload upload = getOwnedUpload(uploadId, email);
+        String sha256;
+        try {
+            long received = store.partSize(uploadId);
+            if (received != upload.getSize()) {
+                throw new BadRequestException("Upload has " + received + " of " + upload.getSize() + " bytes");
+            }
+            sha256 = store.sha256(uploadId);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read upload " + uploadId, e);
+        }
+        if (upload.getSha256() != null && !upload.getSha256().equals(sha256)) {
+            discard(upload);
+            throw new BadRequestException("Upload does not match the declared sha256, start it again");
+        }
+
+        Attachment attachment = withFileLock(sha256, () -> {
+            try {
+                if (store.commit(uploadId, sha256)) {
+                    storedFiles.increment();
+                } else {
+                    deduplicatedFiles.increment();
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to store upload " + uploadId, e);
+            }
+            return attachmentRepository.save(newAttachment(email, sha256, upload.getSize(),
+                    upload.getContentType(), upload.getFileName()));
+        });
+        uploadRepository.delete(upload);
+        return AttachmentMapper.toDto(attachment);
+    }
+
+    /** Abandon an upload */
+    public void cancelUpload(String uploadId, String email) {
+        discard(getOwnedUpload(uploadId, email));
+    }
+
+    /** Attachment with ownership validation */
+    public Attachment getByIdAndUser(Long id, String email) {
+        return attachmentRepository.findByIdAndUserEmail(id, email)
+                .orElseThrow(() -> new NotFoundException("Attachment not found"));
+    }
+
+    public List<AttachmentDTO> getByMessage(Long messageId, String email) {
+        return attachmentRepository.findByMessageIdAndUserEmailOrderByIdAsc(messageId, email).stream()
+                .map(AttachmentMapper::toDto)
+                .toList();
+    }
+
+    /** Attach the owner's unsent attachments to a new message (inside the message's transaction) */
+    public void link(Collection<Long> attachmentIds, Long messageId, String email) {
+        Set<Long> ids = new HashSet<>(attachmentIds);
+        if (ids.isEmpty()) {
+            return;
+        }
+        if (attachmentRepository.link(ids, messageId, email) != ids.size()) {
+            throw new BadRequestException("Attachments must be your own completed uploads, not yet sent");
+        }
+    }
+
+    /** Drop a deleted message's attachments, and their files if nothing else references them */
+    public void deleteByMessage(Long messageId, String email) {
+        List<Attachment> attachments = attachmentRepository.findByMessageIdAndUserEmailOrderByIdAsc(messageId, email);
+        if (!attachments.isEmpty()) {
+            attachmentRepository.deleteAll(attachments);
+            release(attachments);
+        }
+    }
+
+    /** Delete uploads and unsent attachments past attachments.upload-expiry-hours */
+    @Scheduled(cron = "${attachments.cleanup-cron:0 30 4 * * *}")
+    public void cleanup() {
+        LocalDateTime cutoff = LocalDateTime.now().minusHours(uploadExpiryHours);
+        int uploads = 0;
+        List<AttachmentUpload> expiredUploads;
+        while (!(expiredUploads = uploadRepository.findByCreatedAtBefore(cutoff, PageRequest.of(0, CLEANUP_BATCH))).isEmpty()) {
+            expiredUploads.forEach(this::discard);
+            uploads += expiredUploads.size();
+        }
+        int attachments = 0;
+        List<Attachment> unsent;
+        while (!(unsent = attachmentRepository.findUnlinkedBefore(cutoff, PageRequest.of(0, CLEANUP_BATCH))).isEmpty()) {
+            attachmentRepository.deleteAll(unsent);
+            release(unsent);
+            attachments += unsent.size();
+        }
+        if (uploads > 0 || attachments > 0) {
+            log.info("[AttachmentService] ✓ Removed {} abandoned uploads and {} unsent attachments", uploads, attachments);
+        }
+    }
+
+    /** Delete the files of deleted attachments that no other attachment shares */
+    private void release(List<Attachment> deleted) {
+        Set<String> hashes = new TreeSet<>();  // One lock order, as a joined transaction holds them all until it ends
+        deleted.forEach(attachment -> hashes.add(attachment.getSha256()));
+        for (String sha256 : hashes) {
+            withFileLock(sha256, () -> {
+                if (!attachmentRepository.existsBySha256(sha256)) {
+                    store.deleteBlob(sha256);
+                }
+                return null;
+            });
+        }
+    }
+
+    private void discard(AttachmentUpload upload) {
+        store.deletePart(upload.getId());
+        uploadRepository.delete(upload);
+    }
+
+    private AttachmentUpload getOwnedUpload(String uploadId, String email) {
+        return uploadRepository.findByIdAndUserEmail(uploadId, email)
+                .orElseThrow(() -> new NotFoundException("Upload not found"));
+    }
+
+    /**
+     * Run action in a transaction (joining the caller's, if any) holding the
+     * named lock of one stored file; GET_LOCK names are at most 64
+     * characters. The lock is taken on the transaction's own connection, the
+     * one the repositories write on, so the caller holds one pooled
+     * connection rather than two. It is released when that transaction
+     * completes, so a row written under it is committed before anyone else
+     * can look for it.
+     */
+    private <T> T withFileLock(String sha256, Supplier<T> action) {
+        String name = "carenexus.attachment." + sha256.substring(0, 40);
+        return transactionTemplate.execute(status -> {
+            Integer acquired = jdbcTemplate.queryForObject("SELECT GET_LOCK(?, ?)", Integer.class,
+                    name, LOCK_TIMEOUT_SECONDS);
+            if (acquired == null || acquired != 1) {
+                throw new ServiceUnavailableException("Attachment storage is busy, retry shortly");
+            }
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int completionStatus) {
+                    // Still on the transaction's connection: it is returned to the pool after this
+                    try {
+                        jdbcTemplate.queryForObject("SELECT RELEASE_LOCK(?)", Integer.class, name);
+                    } catch (RuntimeException e) {
+                        log.error("[AttachmentService] ✗ Failed to release file lock {}: {}", name, e.getMessage(), e);
+                    }
+                }
+            });
+            return action.get();
+        });
+    }
+
+    private static Attachment newAttachment(String email, String sha256, long size, String contentType, String fileName) {
+        return Attachment.builder()
+                .userEmail(email)
+                .sha256(sha256)
+                .size(size)
+                .contentType(contentType)
+                .fileName(fileName)
+                .createdAt(LocalDateTime.now())
+                .build();
+    }
+
+    private AttachmentUploadDTO toDto(AttachmentUpload upload, long offset) {
+        return AttachmentUploadDTO.builder()
+                .id(upload.getId())
+                .fileName(upload.getFileName())
+                .contentType(upload.getContentType())
+                .size(upload.getSize())
+                .sha256(upload.getSha256())
+                .offset(offset)
+                .maxChunkBytes(maxChunkBytes)
+                .build();
+    }
+
+    private AttachmentUploadDTO toDto(AttachmentUploadDTO request, Attachment attachment) {
+        return AttachmentUploadDTO.builder()
+                .fileName(request.getFileName())
+                .contentType(request.getContentType())
+                .size(request.getSize())
+                .sha256(request.getSha256())
+                .offset(request.getSize())
+                .maxChunkBytes(maxChunkBytes)
+                .attachment(AttachmentMapper.toDto(attachment))
+                .build();
+    }
+}
@@ -0,0 +1,208 @@
+package com.carenexus.direct.service;
+
+import com.carenexus.direct.exception.ConflictException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+/**
+ * ====================================================================
+ * Attachment Store - Content-Addressed Files on a Local Volume
+ * ====================================================================
+ *
+ *   {attachments.directory}/uploads/{uploadId}.part   uploads in progress
+ *   {attachments.directory}/blobs/ab/cd/{sha256}      finished files
+ *
+ * - Chunks are copied from the request stream straight into the partial
+ *   file at their offset (FileChannel.transferFrom); the length of the
+ *   partial file is the resume offset. Nothing is held in heap beyond
+ *   the copy buffer
+ * - A finished upload is hashed from disk and renamed to its SHA-256
+ *   name; if that file already exists the upload is a duplicate and is
+ *   dropped. Stored files are never modified, only deleted once no
+ *   attachment references them (AttachmentService serializes that with
+ *   commits of the same hash)
+ * - Downloads copy from the file with FileChannel.transferTo
+ *
+ * uploads/ and blobs/ must be on the same file system (atomic rename),
+ * and the directory shared by all instances.
+ *
+ * ====================================================================
+ */
+@Slf4j
+@Service
+public class AttachmentStore {
+
+    private static final HexFormat HEX = HexFormat.of();
+
+    private final Path uploads;
+    private final Path blobs;
+
+    public AttachmentStore(@Value("${attachments.directory:./data/attachments}") String directory) {
+        Path root = Paths.get(directory).toAbsolutePath().normalize();
+        this.uploads = root.resolve("uploads");
+        this.blobs = root.resolve("blobs");
+        try {
+            Files.createDirectories(uploads);
+            Files.createDirectories(blobs);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot create attachment directory " + root, e);
+        }
+    }
+
+    /** Start an empty partial file */
+    public void createPart(String uploadId) throws IOException {
+        Files.createFile(partPath(uploadId));
+    }
+
+    /** Bytes received so far */
+    public long partSize(String uploadId) throws IOException {
+        return Files.size(partPath(uploadId));
+    }
+
+    /**
+     * Copy up to length bytes from the stream into the partial file at offset.
+     * Bytes that arrived before the stream ended are kept (the client
+     * resumes from the returned size).
+     *
+     * @return the partial file's new size
+     * @throws ConflictException if offset is not the current size or another chunk is being written
+     */
+    public long appendChunk(String uploadId, long offset, InputStream in, long length) throws IOException {
+        try (FileChannel channel = FileChannel.open(partPath(uploadId), StandardOpenOption.WRITE);
+             FileLock lock = tryLock(channel)) {
+            if (lock == null) {
+                throw new ConflictException("Another chunk of this upload is being written");
+            }
+            if (channel.size() != offset) {
+                throw new ConflictException("Upload is at offset " + channel.size() + ", not " + offset);
+            }
+            ReadableByteChannel source = Channels.newChannel(in);
+            long written = 0;
+            while (written < length) {
+                long n = channel.transferFrom(source, offset + written, length - written);
+                if (n <= 0) {
+                    break;  // Client stopped sending
+                }
+                written += n;
+            }
+            channel.force(false);
+            return offset + written;
+        }
+    }
+
+    /** Hex SHA-256 of the partial file, read from disk */
+    public String sha256(String uploadId) throws IOException {
+        MessageDigest digest = newDigest();
+        ByteBuffer buffer = ByteBuffer.allocateDirect(64 * 1024);
+        try (FileChannel channel = FileChannel.open(partPath(uploadId), StandardOpenOption.READ)) {
+            while (channel.read(buffer) >= 0) {
+                buffer.flip();
+                digest.update(buffer);
+                buffer.clear();
+            }
+        }
+        return HEX.formatHex(digest.digest());
+    }
+
+    /**
+     * Turn a finished upload into the stored file for its hash.
+     *
+     * @return false if that content was already stored (the upload is discarded)
+     */
+    public boolean commit(String uploadId, String sha256) throws IOException {
+        Path part = partPath(uploadId);
+        Path blob = blobPath(sha256);
+        if (Files.exists(blob)) {
+            Files.deleteIfExists(part);
+            return false;
+        }
+        Files.createDirectories(blob.getParent());
+        try {
+            Files.move(part, blob, StandardCopyOption.ATOMIC_MOVE);
+        } catch (FileAlreadyExistsException e) {
+            Files.deleteIfExists(part);
+            return false;
+        }
+        return true;
+    }
+
+    public boolean exists(String sha256) {
+        return Files.isRegularFile(blobPath(sha256));
+    }
+
+    /** Absolute path of a stored file (for sendfile) */
+    public Path blobPath(String sha256) {
+        return blobs.resolve(sha256.substring(0, 2)).resolve(sha256.substring(2, 4)).resolve(sha256);
+    }
+
+    /** Copy count bytes of a stored file starting at position */
+    public void transferTo(String sha256, long position, long count, WritableByteChannel target) throws IOException {
+        try (FileChannel channel = FileChannel.open(blobPath(sha256), StandardOpenOption.READ)) {
+            long sent = 0;
+            while (sent < count) {
+                long n = channel.transferTo(position + sent, count - sent, target);
+                if (n <= 0) {
+                    break;
+                }
+                sent += n;
+            }
+        }
+    }
+
+    public void deletePart(String uploadId) {
+        try {
+            Files.deleteIfExists(partPath(uploadId));
+        } catch (IOException e) {
+            log.warn("[AttachmentStore] ✗ Failed to delete upload {}: {}", uploadId, e.getMessage());
+        }
+    }
+
+    public void deleteBlob(String sha256) {
+        try {
+            Files.deleteIfExists(blobPath(sha256));
+        } catch (IOException e) {
+            log.warn("[AttachmentStore] ✗ Failed to delete {}: {}", sha256, e.getMessage());
+        }
+    }
+
+    private Path partPath(String uploadId) {
+        return uploads.resolve(uploadId + ".part");
+    }
+
+    private static FileLock tryLock(FileChannel channel) throws IOException {
+        try {
+            return channel.tryLock();
+        } catch (OverlappingFileLockException e) {
+            return null;  // Held by another request on this instance
+        }
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,270 @@
+package com.carenexus.direct.service;
+
+import com.carenexus.direct.exception.ServiceUnavailableException;
+import com.carenexus.direct.util.SegmentedAppendLog;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.nio.file.Path;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * ====================================================================
+ * Audit Service - Asynchronous, Append-Only PHI Access Log
+ * ====================================================================
+ *
+ * Records who read which patients, messages and attachments without a
+ * database write on the read path. AuditResponseAdvice reports every
+ * GET body that carries patients or messages; what does not go through
+ * it records explicitly: the message push stream (MessagePushService),
+ * patient typeahead and attachment downloads (their controllers).
+ *
+ * 1. record() puts the access on a lock-free queue and returns. The
+ *    queue is bounded by audit.buffer-capacity (a counter reserved with
+ *    CAS before the offer)
+ * 2. A single writer thread drains up to audit.batch-size accesses,
+ *    appends them as JSON records to a SegmentedAppendLog under
+ *    audit.directory and forces them with one fsync per batch. Segments
+ *    rotate at audit.segment-mb and are never rewritten
+ * 3. With audit.database-mirror, the batch is also inserted into
+ *    audit_access (one row per resource, one batched statement). The
+ *    files stay the record: a failed mirror insert is counted and logged
+ *
+ * When the queue is full (audit.overflow-policy):
+ * - DROP:  the access is not recorded; the request goes on
+ *   (carenexus.audit.events{result=dropped})
+ * - BLOCK: the request waits up to audit.block-timeout-ms for space,
+ *   then fails with 503, so no PHI is served unaudited
+ *
+ * Accesses still queued when the process is killed are lost; a clean
+ * shutdown drains the queue first. Request paths are recorded without
+ * query strings (search terms may be PHI).
+ *
+ * ====================================================================
+ */
+@Slf4j
+@Service
+public class AuditService {
+
+    public enum OverflowPolicy { DROP, BLOCK }
+
+    /** Resource type of attachment downloads (the others are EntityType names) */
+    public static final String ATTACHMENT = "ATTACHMENT";
+
+    /** One read of one or more resources of a type */
+    public record Access(LocalDateTime at, String actor, String resourceType, List<Long> resourceIds, String path) {
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ObjectMapper objectMapper;
+    private final boolean enabled;
+    private final Path directory;
+    private final long segmentBytes;
+    private final int capacity;
+    private final int batchSize;
+    private final long flushIntervalNanos;
+    private final OverflowPolicy overflowPolicy;
+    private final long blockTimeoutNanos;
+    private final boolean databaseMirror;
+
+    private final Queue<Access> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger queued = new AtomicInteger();
+
+    private final Counter written;
+    private final Counter dropped;
+    private final Counter rejected;
+    private final Counter failed;
+    private final Counter mirrorFailed;
+
+    private SegmentedAppendLog auditLog;
+    private Thread writer;
+    private volatile boolean running;
+
+    public AuditService(JdbcTemplate jdbcTemplate,
+                        ObjectMapper objectMapper,
+                        MeterRegistry meterRegistry,
+                        @Value("${audit.enabled:true}") boolean enabled,
+                        @Value("${audit.directory:./data/audit}") String directory,
+                        @Value("${audit.segment-mb:64}") int segmentMb,
+                        @Value("${audit.buffer-capacity:50000}") int capacity,
+                        @Value("${audit.batch-size:1000}") int batchSize,
+                        @Value("${audit.flush-interval-ms:200}") long flushIntervalMillis,
+                        @Value("${audit.overflow-policy:DROP}") OverflowPolicy overflowPolicy,
+                        @Value("${audit.block-timeout-ms:100}") long blockTimeoutMillis,
+                        @Value("${audit.database-mirror:false}") boolean databaseMirror) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.objectMapper = objectMapper;
+        this.enabled = enabled;
+        this.directory = Path.of(directory);
+        this.segmentBytes = segmentMb * 1024L * 1024L;
+        this.capacity = capacity;
+        this.batchSize = batchSize;
+        this.flushIntervalNanos = TimeUnit.MILLISECONDS.toNanos(flushIntervalMillis);
+        this.overflowPolicy = overflowPolicy;
+        this.blockTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(blockTimeoutMillis);
+        this.databaseMirror = databaseMirror;
+
+        this.written = meterRegistry.counter("carenexus.audit.events", "result", "written");
+        this.dropped = meterRegistry.counter("carenexus.audit.events", "result", "dropped");
+        this.rejected = meterRegistry.counter("carenexus.audit.events", "result", "rejected");
+        this.failed = meterRegistry.counter("carenexus.audit.events", "result", "failed");
+        this.mirrorFailed = meterRegistry.counter("carenexus.audit.mirror.failures");
+        Gauge.builder("carenexus.audit.queued", queued, AtomicInteger::get)
+                .description("Accesses recorded but not yet written to the audit log")
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            auditLog = new SegmentedAppendLog(directory, "audit-" + hostName(), segmentBytes);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot open audit directory " + directory, e);
+        }
+        running = true;
+        writer = new Thread(this::runWriter, "audit-writer");
+        writer.setDaemon(true);
+        writer.start();
+        log.info("[AuditService] ✓ PHI access audit enabled (directory={}, overflow={}, mirror={})",
+                directory, overflowPolicy, databaseMirror);
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        if (writer != null) {
+            LockSupport.unpark(writer);
+            writer.join(TimeUnit.SECONDS.toMillis(10));  // Writer drains the queue before exiting
+        }
+    }
+
+    /**
+     * Queue an access for the audit log; never waits for I/O.
+     *
+     * @throws ServiceUnavailableException if the queue stays full under the BLOCK policy
+     */
+    public void record(String actor, String resourceType, List<Long> resourceIds, String path) {
+        if (!enabled || resourceIds.isEmpty()) {
+            return;
+        }
+        if (!reserve()) {
+            if (overflowPolicy == OverflowPolicy.DROP) {
+                dropped.increment();
+                return;
+            }
+            long deadline = System.nanoTime() + blockTimeoutNanos;
+            do {
+                LockSupport.unpark(writer);
+                LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(100));
+                if (System.nanoTime() - deadline > 0) {
+                    rejected.increment();
+                    throw new ServiceUnavailableException("Audit log is backed up, retry shortly");
+                }
+            } while (!reserve());
+        }
+        queue.offer(new Access(LocalDateTime.now(), actor, resourceType, List.copyOf(resourceIds), path));
+        if (queued.get() >= batchSize) {
+            LockSupport.unpark(writer);  // A full batch is waiting: don't sleep out the flush interval
+        }
+    }
+
+    /** Take a queue slot without locking; false when the queue is at capacity */
+    private boolean reserve() {
+        int current;
+        do {
+            current = queued.get();
+            if (current >= capacity) {
+                return false;
+            }
+        } while (!queued.compareAndSet(current, current + 1));
+        return true;
+    }
+
+    private void runWriter() {
+        List<Access> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            Access access;
+            while (batch.size() < batchSize && (access = queue.poll()) != null) {
+                batch.add(access);
+            }
+            if (batch.isEmpty()) {
+                LockSupport.parkNanos(flushIntervalNanos);
+                continue;
+            }
+            queued.addAndGet(-batch.size());
+            write(batch);
+            batch.clear();
+        }
+        try {
+            auditLog.close();
+        } catch (IOException e) {
+            log.error("[AuditService] ✗ Failed to close audit log: {}", e.getMessage());
+        }
+    }
+
+    private void write(List<Access> batch) {
+        try {
+            for (Access access : batch) {
+                auditLog.append(objectMapper.writeValueAsBytes(access));
+            }
+            auditLog.sync();  // One fsync for the whole batch
+            written.increment(batch.size());
+        } catch (IOException e) {
+            failed.increment(batch.size());
+            log.error("[AuditService] ✗ Failed to write {} accesses to {}: {}",
+                    batch.size(), auditLog.currentSegment(), e.getMessage());
+            return;
+        }
+        if (databaseMirror) {
+            mirror(batch);
+        }
+    }
+
+    private void mirror(List<Access> batch) {
+        List<Object[]> rows = new ArrayList<>();
+        for (Access access : batch) {
+            for (Long resourceId : access.resourceIds()) {
+                rows.add(new Object[]{Timestamp.valueOf(access.at()), access.actor(), access.resourceType(),
+                        resourceId, access.path()});
+            }
+        }
+        try {
+            jdbcTemplate.batchUpdate("INSERT INTO audit_access (accessed_at, actor, resource_type, resource_id, path) " +
+                    "VALUES (?, ?, ?, ?, ?)", rows);
+        } catch (DataAccessException e) {
+            mirrorFailed.increment();
+            log.warn("[AuditService] ✗ Failed to mirror {} accesses to audit_access: {}", rows.size(), e.getMessage());
+        }
+    }
+
+    private static String hostName() {
+        try {
+            return InetAddress.getLocalHost().getHostName();
+        } catch (IOException e) {
+            return "direct";
+        }
+    }
+}
@@ -0,0 +1,257 @@
+package com.carenexus.direct.service;
+
+import com.carenexus.direct.dto.FreeSlotDTO;
+import com.carenexus.direct.event.EntityChangedEvent;
+import com.carenexus.direct.event.EntityChangedEvent.ChangeType;
+import com.carenexus.direct.event.EntityChangedEvent.EntityType;
+import com.carenexus.direct.event.RemoteInvalidationEvent;
+import com.carenexus.direct.exception.BadRequestException;
+import com.carenexus.direct.model.Appointment;
+import com.carenexus.direct.repository.AppointmentRepository;
+import com.carenexus.direct.repository.AppointmentRepository.BookedSlot;
+import com.carenexus.direct.util.IntervalIndex;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * ====================================================================
+ * Doctor Availability Service - In-Memory Booked Slot Index
+ * ====================================================================
+ *
+ * Answers "when is this doctor free between from and to?" from a
+ * per-doctor IntervalIndex of booked appointments instead of scanning
+ * the appointment table: O(log n + k) for k bookings in the window.
+ *
+ * Loading and maintenance:
+ * - A doctor's index is loaded on first query (one projection query)
+ * - Local writes (EntityChangedEvent from AppointmentService) are applied
+ *   incrementally; writes seen while the index is loading win over the
+ *   rows the loader read
+ * - Writes on other instances (RemoteInvalidationEvent) re-read that one
+ *   appointment's slot by id
+ * - Above availability.max-doctors indexed doctors everything is
+ *   dropped and reloaded on demand
+ *
+ * Slot length is Appointment.durationMinutes, or
+ * availability.default-duration-minutes when it is not set.
+ *
+ * ====================================================================
+ */
+@Slf4j
+@Service
+public class DoctorAvailabilityService {
+
+    private final AppointmentRepository appointmentRepository;
+    private final long defaultDurationMinutes;
+    private final long maxRangeDays;
+    private final int maxDoctors;
+
+    private final Map<Long, Schedule> schedules = new ConcurrentHashMap<>();
+    /** Doctor each indexed appointment is booked with (an update may move it) */
+    private final Map<Long, Long> doctorOf = new ConcurrentHashMap<>();
+
+    public DoctorAvailabilityService(AppointmentRepository appointmentRepository,
+                                     MeterRegistry meterRegistry,
+                                     @Value("${availability.default-duration-minutes:30}") long defaultDurationMinutes,
+                                     @Value("${availability.max-range-days:31}") long maxRangeDays,
+                                     @Value("${availability.max-doctors:10000}") int maxDoctors) {
+        this.appointmentRepository = appointmentRepository;
+        this.defaultDurationMinutes = defaultDurationMinutes;
+        this.maxRangeDays = maxRangeDays;
+        this.maxDoctors = maxDoctors;
+
+        Gauge.builder("carenexus.availability.indexed.doctors", schedules, Map::size)
+                .description("Doctors with a loaded booked-slot index")
+                .register(meterRegistry);
+    }
+
+    /** Free windows of at least the given length between from and to */
+    public List<FreeSlotDTO> findFreeSlots(Long doctorId, LocalDateTime from, LocalDateTime to, Long durationMinutes) {
+        long minutes = durationMinutes != null ? durationMinutes : defaultDurationMinutes;
+        if (from == null || to == null || !to.isAfter(from)) {
+            throw new BadRequestException("'to' must be after 'from'");
+        }
+        if (minutes <= 0) {
+            throw new BadRequestException("duration must be positive");
+        }
+        if (Duration.between(from, to).toDays() > maxRangeDays) {
+            throw new BadRequestException("Range may not exceed " + maxRangeDays + " days");
+        }
+
+        return schedule(doctorId).index
+                .gaps(toMillis(from), toMillis(to), Duration.ofMinutes(minutes).toMillis())
+                .stream()
+                .map(gap -> new FreeSlotDTO(toTime(gap.start()), toTime(gap.end())))
+                .toList();
+    }
+
+    /** True if no booking other than excludeAppointmentId overlaps [start, end) */
+    public boolean isFree(Long doctorId, LocalDateTime start, LocalDateTime end, Long excludeAppointmentId) {
+        for (IntervalIndex.Interval booked : schedule(doctorId).index.overlapping(toMillis(start), toMillis(end))) {
+            if (excludeAppointmentId == null || booked.id() != excludeAppointmentId) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Booked slot end for an appointment (start + its duration) */
+    public LocalDateTime endOf(LocalDateTime start, Integer durationMinutes) {
+        return start.plusMinutes(durationMinutes != null && durationMinutes > 0 ? durationMinutes : defaultDurationMinutes);
+    }
+
+    /** Apply local appointment writes; drop the index of a deleted doctor */
+    @EventListener
+    public void onEntityChanged(EntityChangedEvent event) {
+        if (event.getEntityType() == EntityType.DOCTOR && event.getChangeType() == ChangeType.DELETED) {
+            schedules.remove(event.getEntityId());
+            return;
+        }
+        if (event.getEntityType() != EntityType.APPOINTMENT) {
+            return;
+        }
+        if (event.getChangeType() == ChangeType.DELETED) {
+            unbook(event.getEntityId());
+        } else if (event.getEntity() instanceof Appointment appointment) {
+            book(appointment.getId(),
+                    appointment.getDoctor() != null ? appointment.getDoctor().getId() : null,
+                    appointment.getAppointmentTime(), appointment.getDurationMinutes());
+        }
+    }
+
+    /** Appointment writes made on other instances (CacheInvalidationBus) */
+    @EventListener
+    public void onRemoteInvalidation(RemoteInvalidationEvent event) {
+        if (event.isAll()) {
+            schedules.clear();
+            doctorOf.clear();
+            return;
+        }
+        if (event.getEntityType() != EntityType.APPOINTMENT || event.getEntityId() == null || schedules.isEmpty()) {
+            return;
+        }
+        appointmentRepository.findSlotById(event.getEntityId()).ifPresentOrElse(
+                slot -> book(slot.getId(), slot.getDoctorId(), slot.getAppointmentTime(), slot.getDurationMinutes()),
+                () -> unbook(event.getEntityId()));
+    }
+
+    private void book(Long appointmentId, Long doctorId, LocalDateTime start, Integer durationMinutes) {
+        Long previousDoctor = doctorOf.get(appointmentId);
+        if (previousDoctor != null && !previousDoctor.equals(doctorId)) {
+            unbook(appointmentId);
+        }
+        if (doctorId == null || start == null) {
+            return;
+        }
+        Schedule schedule = schedules.get(doctorId);
+        if (schedule != null) {
+            schedule.apply(appointmentId, toMillis(start), toMillis(endOf(start, durationMinutes)));
+            doctorOf.put(appointmentId, doctorId);
+        }
+    }
+
+    private void unbook(Long appointmentId) {
+        Long doctorId = doctorOf.remove(appointmentId);
+        Schedule schedule = doctorId != null ? schedules.get(doctorId) : null;
+        if (schedule != null) {
+            schedule.apply(appointmentId, 0, 0);
+        }
+        // A loader may already have read this row without recording it yet
+        for (Schedule loading : schedules.values()) {
+            if (!loading.loaded) {
+                loading.apply(appointmentId, 0, 0);
+            }
+        }
+    }
+
+    private Schedule schedule(Long doctorId) {
+        Schedule schedule = schedules.get(doctorId);
+        if (schedule == null) {
+            if (schedules.size() >= maxDoctors) {
+                schedules.clear();  // Reloaded on demand
+                doctorOf.clear();
+            }
+            schedule = schedules.computeIfAbsent(doctorId, id -> new Schedule());
+        }
+        if (!schedule.loaded) {
+            load(doctorId, schedule);
+        }
+        return schedule;
+    }
+
+    private void load(Long doctorId, Schedule schedule) {
+        synchronized (schedule.loadLock) {
+            if (schedule.loaded) {
+                return;
+            }
+            long startedAt = System.currentTimeMillis();
+            List<BookedSlot> slots = appointmentRepository.findSlotsByDoctorId(doctorId);
+            for (BookedSlot slot : slots) {
+                if (schedule.load(slot.getId(), toMillis(slot.getAppointmentTime()),
+                        toMillis(endOf(slot.getAppointmentTime(), slot.getDurationMinutes())))) {
+                    doctorOf.put(slot.getId(), doctorId);
+                }
+            }
+            schedule.finishLoading();
+            log.info("[DoctorAvailabilityService] ✓ Indexed {} slots for doctor {} in {} ms",
+                    slots.size(), doctorId, System.currentTimeMillis() - startedAt);
+        }
+    }
+
+    /** Wall-clock times are indexed as if UTC: only ordering and differences matter */
+    private static long toMillis(LocalDateTime time) {
+        return time.toInstant(ZoneOffset.UTC).toEpochMilli();
+    }
+
+    private static LocalDateTime toTime(long millis) {
+        return LocalDateTime.ofEpochSecond(Math.floorDiv(millis, 1000), (int) Math.floorMod(millis, 1000) * 1_000_000,
+                ZoneOffset.UTC);
+    }
+
+    /** One doctor's index plus the ids written while it was loading */
+    private static final class Schedule {
+        private final IntervalIndex index = new IntervalIndex();
+        private final Object loadLock = new Object();
+        private final Set<Long> writtenWhileLoading = new HashSet<>();
+        private volatile boolean loaded;
+
+        /** Live write; end <= start removes the appointment */
+        synchronized void apply(long appointmentId, long start, long end) {
+            if (end > start) {
+                index.put(appointmentId, start, end);
+            } else {
+                index.remove(appointmentId);
+            }
+            if (!loaded) {
+                writtenWhileLoading.add(appointmentId);
+            }
+        }
+
+        /** Row read by the loader; skipped if a live write already covered it */
+        synchronized boolean load(long appointmentId, long start, long end) {
+            if (writtenWhileLoading.contains(appointmentId)) {
+                return false;
+            }
+            index.put(appointmentId, start, end);
+            return true;
+        }
+
+        synchronized void finishLoading() {
+            loaded = true;
+            writtenWhileLoading.clear();
+        }
+    }
+}
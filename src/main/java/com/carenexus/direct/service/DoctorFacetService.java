@@ -0,0 +1,231 @@
+package com.carenexus.direct.service;
+
+import com.carenexus.direct.dto.DoctorFacetsDTO;
+import com.carenexus.direct.event.EntityChangedEvent;
+import com.carenexus.direct.event.EntityChangedEvent.ChangeType;
+import com.carenexus.direct.event.EntityChangedEvent.EntityType;
+import com.carenexus.direct.event.RemoteInvalidationEvent;
+import com.carenexus.direct.model.Doctor;
+import com.carenexus.direct.repository.DoctorRepository;
+import com.carenexus.direct.repository.DoctorRepository.FacetRow;
+import com.carenexus.direct.util.FacetIndex;
+import lombok.extern.slf4j.Slf4j;
+import org.roaringbitmap.RoaringBitmap;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * ====================================================================
+ * Doctor Facet Service - Specialization Facets from Bitmap Postings
+ * ====================================================================
+ *
+ * Keeps a FacetIndex of doctor ids per normalized specialization (and
+ * per owner), so the directory's "doctors per specialization" counts
+ * and specialization filters are bitmap operations instead of
+ * LIKE '%x%' scans.
+ *
+ * Normalization: a specialization such as "Cardiology / Pediatrics" is
+ * split on , / ; into terms, trimmed, lower-cased and whitespace
+ * collapsed: {"cardiology", "pediatrics"}.
+ *
+ * Maintenance:
+ * - Built from one projection query when the application is ready
+ * - DoctorService writes (EntityChangedEvent) update it incrementally
+ * - Writes on other instances (RemoteInvalidationEvent) re-read that
+ *   doctor; a full invalidation rebuilds the index
+ * - Doctors written during a rebuild are re-read once it completes
+ *
+ * Until the index is built (or if ids outgrow int) callers fall back to
+ * the repository queries.
+ *
+ * ====================================================================
+ */
+@Slf4j
+@Service
+public class DoctorFacetService {
+
+    private final DoctorRepository doctorRepository;
+    private final int maxIdsPerQuery;
+
+    private volatile FacetIndex index;
+    private volatile boolean rebuilding;
+    private final Set<Long> writtenDuringRebuild = ConcurrentHashMap.newKeySet();
+
+    public DoctorFacetService(DoctorRepository doctorRepository,
+                              @Value("${doctor-facets.max-ids-per-query:5000}") int maxIdsPerQuery) {
+        this.doctorRepository = doctorRepository;
+        this.maxIdsPerQuery = maxIdsPerQuery;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onReady() {
+        rebuild();
+    }
+
+    /** Facet counts for the owner's doctors matching every term in all and any term in any */
+    public DoctorFacetsDTO facets(String userEmail, Collection<String> all, Collection<String> any) {
+        List<String> allTerms = normalizeAll(all);
+        List<String> anyTerms = normalizeAll(any);
+        FacetIndex current = index;
+        if (current == null) {
+            current = ownerIndex(userEmail);  // Not built yet (or disabled): index just this owner
+        }
+        return DoctorFacetsDTO.builder()
+                .total(current.filter(userEmail, allTerms, anyTerms).getLongCardinality())
+                .specializations(current.counts(userEmail, allTerms, anyTerms))
+                .build();
+    }
+
+    /**
+     * Ids of the owner's doctors with a specialization term containing the
+     * given text (the LIKE '%x%' semantics of the search endpoint), or null
+     * when the index can't answer and the caller should query the database.
+     */
+    public List<Long> matchingIds(String userEmail, String specialization) {
+        FacetIndex current = index;
+        if (current == null || specialization == null) {
+            return null;
+        }
+        String needle = normalizeTerm(specialization);
+        List<String> terms = new ArrayList<>();
+        for (String term : current.terms()) {
+            if (term.contains(needle)) {
+                terms.add(term);
+            }
+        }
+        if (terms.isEmpty()) {
+            return List.of();
+        }
+        RoaringBitmap matching = current.filter(userEmail, List.of(), terms);
+        if (matching.getLongCardinality() > maxIdsPerQuery) {
+            return null;  // Too many for an IN list: let the database filter
+        }
+        List<Long> ids = new ArrayList<>(matching.getCardinality());
+        matching.forEach((int id) -> ids.add((long) id));
+        return ids;
+    }
+
+    @EventListener
+    public void onEntityChanged(EntityChangedEvent event) {
+        if (event.getEntityType() != EntityType.DOCTOR) {
+            return;
+        }
+        if (event.getChangeType() == ChangeType.DELETED) {
+            remove(event.getEntityId());
+        } else if (event.getEntity() instanceof Doctor doctor) {
+            put(doctor.getId(), doctor.getUserEmail(), doctor.getSpecialization());
+        }
+    }
+
+    /** Doctor writes made on other instances (CacheInvalidationBus) */
+    @EventListener
+    public void onRemoteInvalidation(RemoteInvalidationEvent event) {
+        if (event.isAll()) {
+            rebuild();
+        } else if (event.getEntityType() == EntityType.DOCTOR && event.getEntityId() != null) {
+            reload(event.getEntityId());
+        }
+    }
+
+    /** Build a fresh index from the database and swap it in */
+    public synchronized void rebuild() {
+        rebuilding = true;
+        writtenDuringRebuild.clear();
+        long startedAt = System.currentTimeMillis();
+
+        FacetIndex fresh = new FacetIndex();
+        List<FacetRow> rows = doctorRepository.findAllFacetRows();
+        for (FacetRow row : rows) {
+            if (row.getId() > Integer.MAX_VALUE) {
+                log.warn("[DoctorFacetService] ✗ Doctor ids exceed int range, facet index disabled");
+                index = null;
+                rebuilding = false;
+                return;
+            }
+            fresh.put(row.getId().intValue(), row.getUserEmail(), normalize(row.getSpecialization()));
+        }
+        index = fresh;
+        rebuilding = false;
+
+        for (Long id : writtenDuringRebuild) {
+            reload(id);
+        }
+        writtenDuringRebuild.clear();
+        log.info("[DoctorFacetService] ✓ Indexed {} doctors, {} specializations in {} ms",
+                fresh.size(), fresh.terms().size(), System.currentTimeMillis() - startedAt);
+    }
+
+    /** Throwaway index of one owner's doctors, keyed by position rather than id */
+    private FacetIndex ownerIndex(String userEmail) {
+        FacetIndex owned = new FacetIndex();
+        int position = 0;
+        for (Doctor doctor : doctorRepository.findByUserEmail(userEmail)) {
+            owned.put(position++, userEmail, normalize(doctor.getSpecialization()));
+        }
+        return owned;
+    }
+
+    private void reload(Long id) {
+        doctorRepository.findById(id).ifPresentOrElse(
+                doctor -> put(doctor.getId(), doctor.getUserEmail(), doctor.getSpecialization()),
+                () -> remove(id));
+    }
+
+    private void put(Long id, String userEmail, String specialization) {
+        FacetIndex current = index;
+        if (current != null && id != null && id <= Integer.MAX_VALUE) {
+            current.put(id.intValue(), userEmail, normalize(specialization));
+        }
+        if (rebuilding) {
+            writtenDuringRebuild.add(id);
+        }
+    }
+
+    private void remove(Long id) {
+        FacetIndex current = index;
+        if (current != null && id != null && id <= Integer.MAX_VALUE) {
+            current.remove(id.intValue());
+        }
+        if (rebuilding) {
+            writtenDuringRebuild.add(id);
+        }
+    }
+
+    /** "Cardiology / Pediatric  Surgery" → {"cardiology", "pediatric surgery"} */
+    static Set<String> normalize(String specialization) {
+        Set<String> terms = new LinkedHashSet<>();
+        if (specialization != null) {
+            for (String part : specialization.split("[,;/]")) {
+                String term = normalizeTerm(part);
+                if (!term.isEmpty()) {
+                    terms.add(term);
+                }
+            }
+        }
+        return terms;
+    }
+
+    private static String normalizeTerm(String text) {
+        return text.trim().replaceAll("\\s+", " ").toLowerCase(Locale.ROOT);
+    }
+
+    private static List<String> normalizeAll(Collection<String> values) {
+        List<String> terms = new ArrayList<>();
+        if (values != null) {
+            for (String value : values) {
+                terms.addAll(normalize(value));
+            }
+        }
+        return terms;
+    }
+}
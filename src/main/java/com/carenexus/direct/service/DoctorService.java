@@ -1,26 +1,54 @@
 package com.carenexus.direct.service;
 
 import com.carenexus.direct.dto.DoctorDTO;
+import com.carenexus.direct.dto.DoctorFacetsDTO;
+import com.carenexus.direct.event.EntityChangedEvent;
+import com.carenexus.direct.event.EntityChangedEvent.ChangeType;
+import com.carenexus.direct.event.EntityChangedEvent.EntityType;
+import com.carenexus.direct.exception.ConflictException;
 import com.carenexus.direct.exception.ForbiddenException;
 import com.carenexus.direct.exception.NotFoundException;
 import com.carenexus.direct.mapper.DoctorMapper;
 import com.carenexus.direct.model.Doctor;
+import com.carenexus.direct.repository.AppointmentRepository;
 import com.carenexus.direct.repository.DoctorRepository;
+import com.fasterxml.jackson.databind.JsonNode;
 import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.util.List;
+import java.util.Objects;
+import java.util.Set;
 
 @Service
 @RequiredArgsConstructor
 public class DoctorService {
 
+    /** Members a merge patch may change (the ones PUT updates) */
+    private static final Set<String> PATCHABLE = Set.of("email", "phone", "specialization");
+
     private final DoctorRepository doctorRepository;
+    private final AppointmentRepository appointmentRepository;
+    private final ApplicationEventPublisher eventPublisher;
+    private final QueryResultCache queryResultCache;
+    private final DoctorFacetService doctorFacetService;
+    private final MergePatchService mergePatchService;
+    private final TransactionTemplate transactionTemplate;
+    private final SyncService syncService;
 
     public Doctor save(Doctor doctor) {
-        return doctorRepository.save(doctor);
+        ChangeType changeType = doctor.getId() == null ? ChangeType.CREATED : ChangeType.UPDATED;
+        Doctor saved = transactionTemplate.execute(status -> {
+            Doctor written = doctorRepository.save(doctor);
+            syncService.record(EntityType.DOCTOR, changeType, written.getId(), written.getUserEmail());
+            return written;
+        });
+        publish(changeType, saved);
+        return saved;
     }
 
     /** Get all doctors belonging to the authenticated user */
@@ -40,36 +68,107 @@ public class DoctorService {
                 .orElseThrow(() -> new NotFoundException("Doctor not found"));
     }
 
-    /** Update doctor with ownership validation */
+    /**
+     * Update doctor in one statement conditional on ownership and the version
+     * the client sent (none: last write wins), without reading it first. If
+     * it matches nothing, one existence check tells 409 from 404. The row is
+     * then read back in the same transaction for the name the update keeps.
+     */
     public Doctor update(Long id, Doctor doctorDetails, String userEmail) {
-        Doctor doctor = getById(id, userEmail);  // Validates ownership
-        doctor.setEmail(doctorDetails.getEmail());
-        doctor.setPhone(doctorDetails.getPhone());
-        doctor.setSpecialization(doctorDetails.getSpecialization());
-        return doctorRepository.save(doctor);
+        Doctor doctor = transactionTemplate.execute(status -> {
+            if (doctorRepository.updateOwned(id, userEmail, doctorDetails.getVersion(), doctorDetails.getEmail(),
+                    doctorDetails.getPhone(), doctorDetails.getSpecialization()) == 0) {
+                throw doctorRepository.existsByIdAndUserEmail(id, userEmail)
+                        ? new ConflictException("Doctor was modified by another request")
+                        : new NotFoundException("Doctor not found");
+            }
+            syncService.record(EntityType.DOCTOR, ChangeType.UPDATED, id, userEmail);
+            return getById(id, userEmail);
+        });
+        publish(ChangeType.UPDATED, doctor);
+        return doctor;
+    }
+
+    /** Apply a JSON merge patch; writes only changed columns, or nothing */
+    public Doctor patch(Long id, JsonNode patch, String userEmail) {
+        MergePatchService.Outcome<Doctor> outcome = transactionTemplate.execute(status -> {
+            Doctor doctor = getById(id, userEmail);  // Validates ownership
+            DoctorDTO patched = mergePatchService.apply(DoctorMapper.toDto(doctor), patch, PATCHABLE);
+            mergePatchService.checkVersion(patched.getVersion(), doctor.getVersion(), "Doctor");
+            boolean changed = !Objects.equals(doctor.getEmail(), patched.getEmail())
+                    || !Objects.equals(doctor.getPhone(), patched.getPhone())
+                    || !Objects.equals(doctor.getSpecialization(), patched.getSpecialization());
+            doctor.setEmail(patched.getEmail());
+            doctor.setPhone(patched.getPhone());
+            doctor.setSpecialization(patched.getSpecialization());
+            if (changed) {
+                syncService.record(EntityType.DOCTOR, ChangeType.UPDATED, id, userEmail);
+            }
+            return new MergePatchService.Outcome<>(doctor, changed);
+        });
+        if (outcome.changed()) {
+            publish(ChangeType.UPDATED, outcome.entity());
+        }
+        return outcome.entity();
     }
 
-    /** Delete doctor with ownership validation */
+    /**
+     * Delete doctor with ownership checked by the DELETE. There is no foreign
+     * key from appointment (V3), so a doctor with appointments is refused
+     * here (409): checked after the DELETE, whose row lock a concurrent
+     * booking's share lock waits on, and rolled back with it.
+     */
     public void delete(Long id, String userEmail) {
-        Doctor doctor = getById(id, userEmail);  // Validates ownership
-        doctorRepository.delete(doctor);
+        transactionTemplate.executeWithoutResult(status -> {
+            if (doctorRepository.deleteOwned(id, userEmail) == 0) {
+                throw new NotFoundException("Doctor not found");
+            }
+            if (appointmentRepository.existsByDoctorId(id)) {
+                throw new ConflictException("Doctor still has appointments");
+            }
+            syncService.record(EntityType.DOCTOR, ChangeType.DELETED, id, userEmail);
+        });
+        publish(ChangeType.DELETED, Doctor.builder().id(id).userEmail(userEmail).build());
     }
 
     /** Get all doctors with pagination */
     public Page<DoctorDTO> getAllWithPagination(String userEmail, Pageable pageable) {
-        return doctorRepository.findByUserEmail(userEmail, pageable)
-                .map(DoctorMapper::toDto);
+        return queryResultCache.get(userEmail, EntityType.DOCTOR, "doctor.getAllWithPagination", List.of(pageable),
+                () -> doctorRepository.findByUserEmail(userEmail, pageable)
+                        .map(DoctorMapper::toDto));
     }
 
     /** Search doctors by name with pagination */
     public Page<DoctorDTO> searchByName(String userEmail, String name, Pageable pageable) {
-        return doctorRepository.searchByNameAndUserEmail(userEmail, name, pageable)
-                .map(DoctorMapper::toDto);
+        return queryResultCache.get(userEmail, EntityType.DOCTOR, "doctor.searchByName", List.of(name, pageable),
+                () -> doctorRepository.searchByNameAndUserEmail(userEmail, name, pageable)
+                        .map(DoctorMapper::toDto));
     }
 
     /** Search doctors by specialization with pagination */
     public Page<DoctorDTO> searchBySpecialization(String userEmail, String specialization, Pageable pageable) {
-        return doctorRepository.searchBySpecializationAndUserEmail(userEmail, specialization, pageable)
-                .map(DoctorMapper::toDto);
+        return queryResultCache.get(userEmail, EntityType.DOCTOR, "doctor.searchBySpecialization", List.of(specialization, pageable),
+                () -> {
+                    List<Long> ids = doctorFacetService.matchingIds(userEmail, specialization);
+                    if (ids == null) {
+                        return doctorRepository.searchBySpecializationAndUserEmail(userEmail, specialization, pageable)
+                                .map(DoctorMapper::toDto);
+                    }
+                    if (ids.isEmpty()) {
+                        return Page.<DoctorDTO>empty(pageable);
+                    }
+                    return doctorRepository.findByUserEmailAndIdIn(userEmail, ids, pageable)
+                            .map(DoctorMapper::toDto);
+                });
+    }
+
+    /** Specialization facet counts, optionally filtered (all = AND, any = OR) */
+    public DoctorFacetsDTO getFacets(String userEmail, List<String> all, List<String> any) {
+        return doctorFacetService.facets(userEmail, all, any);
+    }
+
+    private void publish(ChangeType changeType, Doctor doctor) {
+        eventPublisher.publishEvent(new EntityChangedEvent(
+                EntityType.DOCTOR, changeType, doctor.getId(), doctor.getUserEmail(), doctor));
     }
 }
@@ -0,0 +1,112 @@
+package com.carenexus.direct.service;
+
+import com.carenexus.direct.event.EntityChangedEvent;
+import com.carenexus.direct.event.EntityChangedEvent.EntityType;
+import com.carenexus.direct.event.RemoteInvalidationEvent;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Service;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * ====================================================================
+ * Entity Version Service - Per-Owner Version Counters for ETags
+ * ====================================================================
+ *
+ * Keeps one version number per (owner, entity type). Every write the
+ * services publish as EntityChangedEvent bumps the owner's counter for
+ * that type, so "has anything of this type changed for this user?" is a
+ * map lookup instead of a query.
+ *
+ * Version values:
+ * - Drawn from one node-wide clock, so a value is never reused for any
+ *   owner; an owner seen for the first time starts at a fresh value
+ * - The ETag also carries this node's start time, so tags from another
+ *   node or an earlier run never match
+ * - When more than etag.max-owners are tracked the map is cleared; every
+ *   owner then gets a fresh value (a cache miss, never a false 304)
+ *
+ * Other instances:
+ * - Writes made elsewhere arrive as RemoteInvalidationEvent
+ *   (CacheInvalidationBus) and bump the same counters
+ *
+ * Ordering:
+ * - Services publish after the repository write has committed, and the
+ *   ETag is computed before the handler reads, so a response is never
+ *   older than its tag
+ *
+ * ====================================================================
+ */
+@Service
+public class EntityVersionService {
+
+    private final String nodeEpoch = Long.toString(System.currentTimeMillis(), 36);
+    private final AtomicLong clock = new AtomicLong();
+    private final Map<String, AtomicLongArray> versions = new ConcurrentHashMap<>();
+    private final int maxOwners;
+
+    public EntityVersionService(@Value("${etag.max-owners:100000}") int maxOwners) {
+        this.maxOwners = maxOwners;
+    }
+
+    /** Bump the owner's version for the written entity type (before caches react to the same event) */
+    @EventListener
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    public void onEntityChanged(EntityChangedEvent event) {
+        bump(event.getOwnerEmail(), event.getEntityType());
+    }
+
+    /** Writes made on other instances (CacheInvalidationBus) */
+    @EventListener
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    public void onRemoteInvalidation(RemoteInvalidationEvent event) {
+        if (event.isAll()) {
+            versions.clear();  // Every owner restarts from a fresh value
+        } else {
+            bump(event.getOwnerEmail(), event.getEntityType());
+        }
+    }
+
+    public void bump(String ownerEmail, EntityType type) {
+        if (ownerEmail == null) {
+            return;
+        }
+        AtomicLongArray owner = versions.get(ownerEmail);
+        if (owner != null) {
+            owner.set(type.ordinal(), clock.incrementAndGet());
+        }
+        // Untracked owner: its first read starts from a fresh value anyway
+    }
+
+    /** Current version of an owner's data of one type */
+    public long version(String ownerEmail, EntityType type) {
+        AtomicLongArray owner = versions.get(ownerEmail);
+        if (owner == null) {
+            if (versions.size() >= maxOwners) {
+                versions.clear();
+            }
+            owner = versions.computeIfAbsent(ownerEmail, key -> track());
+        }
+        return owner.get(type.ordinal());
+    }
+
+    /** Strong ETag for an owner's data of one type, quoted */
+    public String etag(String ownerEmail, EntityType type) {
+        return "\"" + type.name().charAt(0) + nodeEpoch + "-" + Long.toString(version(ownerEmail, type), 36) + "\"";
+    }
+
+    private AtomicLongArray track() {
+        long start = clock.incrementAndGet();
+        AtomicLongArray owner = new AtomicLongArray(EntityType.values().length);
+        for (int i = 0; i < owner.length(); i++) {
+            owner.set(i, start);
+        }
+        return owner;
+    }
+}
@@ -0,0 +1,222 @@
+package com.carenexus.direct.service;
+
+import com.carenexus.direct.model.PatientBlindIndexListener;
+import com.carenexus.direct.util.FieldCipher;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * ====================================================================
+ * Field Encryption Backfill - Encrypt Rows Written Before V7
+ * ====================================================================
+ *
+ * Patients, message bodies and inbox previews stored before field
+ * encryption are read as plaintext (the converters pass them through)
+ * and patients without blind index tokens are not found by searches.
+ * After startup this rewrites them, once per deployment, on a background
+ * thread and on one instance at a time (MySQL named lock):
+ *
+ * - Keyset batches of encryption.backfill-batch-size rows by id; rows
+ *   already in the encrypted format are skipped
+ * - Each update is conditional on the values that were read, so a row
+ *   changed by the application in the meantime (already encrypted) is
+ *   left alone; message updates also name the partition (timestamp)
+ *
+ * Re-running is harmless: a finished backfill only reads.
+ *
+ * ====================================================================
+ */
+@Slf4j
+@Service
+public class FieldEncryptionBackfillService {
+
+    private static final String LOCK_NAME = "carenexus.encryption-backfill";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final FieldEncryptionService fieldEncryptionService;
+    private final PatientBlindIndexListener blindIndexes;
+    private final OwnerDirectory ownerDirectory;
+    private final boolean enabled;
+    private final int batchSize;
+
+    public FieldEncryptionBackfillService(JdbcTemplate jdbcTemplate,
+                                          FieldEncryptionService fieldEncryptionService,
+                                          PatientBlindIndexListener blindIndexes,
+                                          OwnerDirectory ownerDirectory,
+                                          @Value("${encryption.backfill-enabled:true}") boolean enabled,
+                                          @Value("${encryption.backfill-batch-size:500}") int batchSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.fieldEncryptionService = fieldEncryptionService;
+        this.blindIndexes = blindIndexes;
+        this.ownerDirectory = ownerDirectory;
+        this.enabled = enabled;
+        this.batchSize = batchSize;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onReady() {
+        if (!enabled) {
+            return;
+        }
+        Thread thread = new Thread(this::backfill, "field-encryption-backfill");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /** Encrypt every legacy row; returns when done or when another instance is on it */
+    public void backfill() {
+        try {
+            jdbcTemplate.execute((ConnectionCallback<Void>) connection -> {
+                try (PreparedStatement lock = connection.prepareStatement("SELECT GET_LOCK(?, 0)")) {
+                    lock.setString(1, LOCK_NAME);
+                    try (ResultSet acquired = lock.executeQuery()) {
+                        if (!acquired.next() || acquired.getInt(1) != 1) {
+                            log.info("[FieldEncryptionBackfillService] Backfill already running on another instance");
+                            return null;
+                        }
+                    }
+                }
+                try {
+                    int patients = backfillPatients();
+                    int messages = backfillMessages();
+                    int previews = backfillInbox();
+                    if (patients + messages + previews > 0) {
+                        log.info("[FieldEncryptionBackfillService] ✓ Encrypted {} patients, {} messages, {} inbox previews",
+                                patients, messages, previews);
+                    }
+                } finally {
+                    try (PreparedStatement unlock = connection.prepareStatement("SELECT RELEASE_LOCK(?)")) {
+                        unlock.setString(1, LOCK_NAME);
+                        unlock.execute();
+                    }
+                }
+                return null;
+            });
+        } catch (DataAccessException e) {
+            log.error("[FieldEncryptionBackfillService] ✗ Backfill stopped, remaining rows stay readable: {}", e.getMessage());
+        }
+    }
+
+    private record PatientRow(long id, int ownerId, byte[] name, byte[] email, byte[] phone, boolean indexed) {
+    }
+
+    private int backfillPatients() {
+        int updated = 0;
+        long afterId = 0;
+        while (true) {
+            List<PatientRow> batch = jdbcTemplate.query(
+                    "SELECT id, owner_id, name, email, phone, " +
+                    "(name IS NULL OR name_prefix_bidx IS NOT NULL) AND (email IS NULL OR email_bidx IS NOT NULL) AS indexed " +
+                    "FROM patient WHERE id > ? ORDER BY id LIMIT ?",
+                    (row, n) -> new PatientRow(row.getLong("id"), row.getInt("owner_id"), row.getBytes("name"),
+                            row.getBytes("email"), row.getBytes("phone"), row.getBoolean("indexed")),
+                    afterId, batchSize);
+            if (batch.isEmpty()) {
+                return updated;
+            }
+            List<Object[]> updates = new ArrayList<>();
+            for (PatientRow row : batch) {
+                if (isLegacy(row.name()) || isLegacy(row.email()) || isLegacy(row.phone()) || !row.indexed()) {
+                    String owner = ownerDirectory.emailOf(row.ownerId());
+                    updates.add(new Object[]{
+                            encrypt(row.name()), encrypt(row.email()), encrypt(row.phone()),
+                            blindIndexes.namePrefixToken(owner, text(row.name())),
+                            blindIndexes.emailToken(owner, text(row.email())),
+                            row.id(), row.name(), row.email(), row.phone()});
+                }
+            }
+            updated += update(
+                    "UPDATE patient SET name = ?, email = ?, phone = ?, name_prefix_bidx = ?, email_bidx = ? " +
+                    "WHERE id = ? AND name <=> ? AND email <=> ? AND phone <=> ?", updates);
+            afterId = batch.get(batch.size() - 1).id();
+        }
+    }
+
+    private record ContentRow(long id, Timestamp timestamp, byte[] content) {
+    }
+
+    private int backfillMessages() {
+        int updated = 0;
+        long afterId = 0;
+        while (true) {
+            List<ContentRow> batch = jdbcTemplate.query(
+                    "SELECT id, timestamp, content FROM message WHERE id > ? ORDER BY id LIMIT ?",
+                    (row, n) -> new ContentRow(row.getLong("id"), row.getTimestamp("timestamp"), row.getBytes("content")),
+                    afterId, batchSize);
+            if (batch.isEmpty()) {
+                return updated;
+            }
+            List<Object[]> updates = new ArrayList<>();
+            for (ContentRow row : batch) {
+                if (isLegacy(row.content())) {
+                    // Stored form (plain or compressed) is encrypted as it is, like MessageBodyConverter does
+                    updates.add(new Object[]{encrypt(row.content()), row.id(), row.timestamp(), row.content()});
+                }
+            }
+            updated += update(
+                    "UPDATE message SET content = ? WHERE id = ? AND timestamp = ? AND content = ?", updates);
+            afterId = batch.get(batch.size() - 1).id();
+        }
+    }
+
+    private int backfillInbox() {
+        int updated = 0;
+        long afterId = 0;
+        while (true) {
+            List<ContentRow> batch = jdbcTemplate.query(
+                    "SELECT id, last_preview FROM inbox_entry WHERE id > ? ORDER BY id LIMIT ?",
+                    (row, n) -> new ContentRow(row.getLong("id"), null, row.getBytes("last_preview")),
+                    afterId, batchSize);
+            if (batch.isEmpty()) {
+                return updated;
+            }
+            List<Object[]> updates = new ArrayList<>();
+            for (ContentRow row : batch) {
+                if (isLegacy(row.content())) {
+                    updates.add(new Object[]{encrypt(row.content()), row.id(), row.content()});
+                }
+            }
+            updated += update(
+                    "UPDATE inbox_entry SET last_preview = ? WHERE id = ? AND last_preview = ?", updates);
+            afterId = batch.get(batch.size() - 1).id();
+        }
+    }
+
+    private static boolean isLegacy(byte[] stored) {
+        return stored != null && !FieldCipher.isEncrypted(stored);
+    }
+
+    /** Encrypted form of a legacy value; encrypted values and nulls are kept */
+    private byte[] encrypt(byte[] stored) {
+        return isLegacy(stored) ? fieldEncryptionService.encrypt(stored) : stored;
+    }
+
+    private String text(byte[] stored) {
+        return stored != null ? new String(fieldEncryptionService.decrypt(stored), StandardCharsets.UTF_8) : null;
+    }
+
+    private int update(String sql, List<Object[]> updates) {
+        if (updates.isEmpty()) {
+            return 0;
+        }
+        int total = 0;
+        for (int count : jdbcTemplate.batchUpdate(sql, updates)) {
+            total += count == Statement.SUCCESS_NO_INFO ? 1 : Math.max(count, 0);
+        }
+        return total;
+    }
+}
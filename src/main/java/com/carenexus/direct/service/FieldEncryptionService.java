@@ -0,0 +1,230 @@
+package com.carenexus.direct.service;
+
+import com.carenexus.direct.util.FieldCipher;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import javax.crypto.KeyGenerator;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * ====================================================================
+ * Field Encryption Service - Envelope Keys for PHI Columns
+ * ====================================================================
+ *
+ * Patient name / email / phone, message bodies and inbox previews are
+ * stored AES-GCM encrypted (FieldCipher, via EncryptedStringConverter
+ * and MessageBodyConverter).
+ *
+ * Keys (envelope encryption):
+ * - encryption.master-key (32 bytes, base64, from the environment) only
+ *   wraps keys; it never touches data. There is no default: startup
+ *   fails without it
+ * - Data keys and the blind index key are random AES-256 keys stored
+ *   wrapped in encryption_key. They are unwrapped once and kept in
+ *   memory, so a field costs one AES-GCM operation and no lookups
+ * - Values name their data key, so a rotation (new key every
+ *   encryption.data-key-rotation-days) leaves old values readable;
+ *   a key written by another instance is loaded on first sight
+ * - The blind index key never rotates: tokens of existing rows would
+ *   stop matching
+ *
+ * Blind indexes: HMAC-SHA256(key, owner | field | normalized value),
+ * truncated to 16 bytes. Scoping tokens to the owner means equal values
+ * of different owners do not share a token.
+ *
+ * Values written before encryption are read as they are until
+ * FieldEncryptionBackfillService rewrites them.
+ *
+ * ====================================================================
+ */
+@Slf4j
+@Service
+public class FieldEncryptionService {
+
+    public static final int BLIND_INDEX_BYTES = 16;
+
+    private static final String LOCK_NAME = "carenexus.encryption-keys";
+    private static final String DATA = "DATA";
+    private static final String BLIND_INDEX = "BLIND_INDEX";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final SecretKey masterKey;
+    private final int rotationDays;
+    private final Map<Integer, SecretKey> dataKeys = new ConcurrentHashMap<>();
+
+    /** Loaded on first use: the schema may not be migrated yet while beans are created */
+    private volatile Keys keys;
+
+    private record Keys(int activeId, SecretKey active, LocalDateTime activeCreatedAt, FieldCipher.BlindIndex blindIndex) {
+    }
+
+    private record KeyRow(int id, String purpose, SecretKey key, LocalDateTime createdAt) {
+    }
+
+    public FieldEncryptionService(JdbcTemplate jdbcTemplate,
+                                  @Value("${encryption.master-key:}") String masterKey,
+                                  @Value("${encryption.data-key-rotation-days:90}") int rotationDays) {
+        if (masterKey.isBlank()) {
+            throw new IllegalStateException("encryption.master-key is not set: export ENCRYPTION_MASTER_KEY "
+                    + "(32 random bytes, base64, e.g. openssl rand -base64 32)");
+        }
+        byte[] raw = Base64.getDecoder().decode(masterKey);
+        if (raw.length != 32) {
+            throw new IllegalStateException("encryption.master-key must be 32 bytes, base64-encoded");
+        }
+        this.jdbcTemplate = jdbcTemplate;
+        this.masterKey = new SecretKeySpec(raw, "AES");
+        this.rotationDays = rotationDays;
+    }
+
+    public byte[] encrypt(byte[] plain) {
+        Keys current = keys();
+        return FieldCipher.encrypt(current.activeId(), current.active(), plain);
+    }
+
+    /** Plaintext of a stored value; values written before encryption come back unchanged */
+    public byte[] decrypt(byte[] stored) {
+        if (!FieldCipher.isEncrypted(stored)) {
+            return stored;
+        }
+        keys();
+        int keyId = FieldCipher.keyId(stored);
+        SecretKey key = dataKeys.get(keyId);
+        if (key == null) {
+            key = dataKeys.computeIfAbsent(keyId, this::loadDataKey);  // Rotated in by another instance
+        }
+        return FieldCipher.decrypt(key, stored);
+    }
+
+    /** Equality token for a normalized value of one of the owner's fields */
+    public byte[] blindIndex(String owner, String field, String normalizedValue) {
+        return keys().blindIndex().token((owner + '\0' + field + '\0' + normalizedValue).getBytes(StandardCharsets.UTF_8));
+    }
+
+    /** Start a new data key when the active one is older than encryption.data-key-rotation-days */
+    @Scheduled(cron = "${encryption.rotation-cron:0 0 5 * * *}")
+    public void rotateIfDue() {
+        Keys current = keys();
+        if (rotationDays > 0 && current.activeCreatedAt().isBefore(LocalDateTime.now().minusDays(rotationDays))) {
+            withKeyLock(() -> {
+                // Re-read under the lock: another instance may have rotated already
+                Keys latest = load();
+                if (latest.activeCreatedAt().isBefore(LocalDateTime.now().minusDays(rotationDays))) {
+                    insertKey(DATA);
+                    log.info("[FieldEncryptionService] ✓ Rotated data key (previous id {})", latest.activeId());
+                }
+            });
+        }
+        keys = load();  // Also picks up keys rotated by other instances
+    }
+
+    private Keys keys() {
+        Keys current = keys;
+        if (current == null) {
+            synchronized (this) {
+                current = keys;
+                if (current == null) {
+                    withKeyLock(() -> {
+                        Integer present = jdbcTemplate.queryForObject(
+                                "SELECT COUNT(*) FROM encryption_key WHERE purpose = ?", Integer.class, BLIND_INDEX);
+                        if (present == null || present == 0) {
+                            insertKey(BLIND_INDEX);
+                            insertKey(DATA);
+                            log.info("[FieldEncryptionService] ✓ Generated data and blind index keys");
+                        }
+                    });
+                    current = load();
+                    keys = current;
+                    log.info("[FieldEncryptionService] ✓ Loaded keys, active data key {}", current.activeId());
+                }
+            }
+        }
+        return current;
+    }
+
+    private Keys load() {
+        List<KeyRow> rows = jdbcTemplate.query("SELECT id, purpose, wrapped_key, created_at FROM encryption_key ORDER BY id",
+                (row, n) -> new KeyRow(row.getInt("id"), row.getString("purpose"), unwrap(row.getBytes("wrapped_key")),
+                        row.getTimestamp("created_at").toLocalDateTime()));
+        KeyRow active = null;
+        FieldCipher.BlindIndex blindIndex = null;
+        for (KeyRow row : rows) {
+            if (BLIND_INDEX.equals(row.purpose())) {
+                blindIndex = new FieldCipher.BlindIndex(new SecretKeySpec(row.key().getEncoded(), "HmacSHA256"), BLIND_INDEX_BYTES);
+            } else {
+                dataKeys.put(row.id(), row.key());
+                active = row;  // Newest data key
+            }
+        }
+        if (active == null || blindIndex == null) {
+            throw new IllegalStateException("encryption_key has no data or blind index key");
+        }
+        return new Keys(active.id(), active.key(), active.createdAt(), blindIndex);
+    }
+
+    private SecretKey loadDataKey(int id) {
+        byte[] wrapped = jdbcTemplate.queryForObject(
+                "SELECT wrapped_key FROM encryption_key WHERE id = ? AND purpose = ?", byte[].class, id, DATA);
+        return unwrap(wrapped);
+    }
+
+    private void insertKey(String purpose) {
+        try {
+            KeyGenerator generator = KeyGenerator.getInstance("AES");
+            generator.init(256);
+            byte[] wrapped = FieldCipher.encrypt(0, masterKey, generator.generateKey().getEncoded());
+            jdbcTemplate.update("INSERT INTO encryption_key (purpose, wrapped_key, created_at) VALUES (?, ?, ?)",
+                    purpose, wrapped, Timestamp.valueOf(LocalDateTime.now()));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("AES key generation unavailable", e);
+        }
+    }
+
+    private SecretKey unwrap(byte[] wrapped) {
+        try {
+            return new SecretKeySpec(FieldCipher.decrypt(masterKey, wrapped), "AES");
+        } catch (IllegalStateException e) {
+            throw new IllegalStateException("Cannot unwrap encryption keys: wrong encryption.master-key?", e);
+        }
+    }
+
+    /** Serialize key creation across instances (MySQL named lock) */
+    private void withKeyLock(Runnable action) {
+        jdbcTemplate.execute((ConnectionCallback<Void>) connection -> {
+            try (PreparedStatement lock = connection.prepareStatement("SELECT GET_LOCK(?, 30)")) {
+                lock.setString(1, LOCK_NAME);
+                try (ResultSet acquired = lock.executeQuery()) {
+                    if (!acquired.next() || acquired.getInt(1) != 1) {
+                        throw new SQLException("Timed out waiting for " + LOCK_NAME);
+                    }
+                }
+            }
+            try {
+                action.run();
+            } finally {
+                try (PreparedStatement unlock = connection.prepareStatement("SELECT RELEASE_LOCK(?)")) {
+                    unlock.setString(1, LOCK_NAME);
+                    unlock.execute();
+                }
+            }
+            return null;
+        });
+    }
+}
@@ -0,0 +1,157 @@
+package com.carenexus.direct.service;
+
+import com.carenexus.direct.dto.InboxEntryDTO;
+import com.carenexus.direct.event.EntityChangedEvent.ChangeType;
+import com.carenexus.direct.exception.NotFoundException;
+import com.carenexus.direct.model.InboxEntry;
+import com.carenexus.direct.model.Message;
+import com.carenexus.direct.repository.InboxEntryRepository;
+import com.carenexus.direct.repository.MessageRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+/**
+ * ====================================================================
+ * Inbox Service - Materialized Per-Recipient Conversations
+ * ====================================================================
+ *
+ * Messages are stored by creator (userEmail); "messages sent to me" is
+ * served from inbox_entry instead: one row per (recipient, appointment)
+ * with the latest message and an unread counter.
+ *
+ * Every change is one single-statement write on that row, so counters
+ * stay exact under concurrency without read-modify-write:
+ * - New message  → INSERT ... ON DUPLICATE KEY UPDATE unread + 1
+ * - Edit         → refresh the preview if it is the latest message
+ * - Delete       → unread - 1 if it was unread; if it was the latest
+ *                  message, point at the previous one (or drop the row)
+ * - Mark read    → unread = 0, read watermark = latest message id
+ *
+ * Reads: the inbox page and the badge count are each one indexed query
+ * on recipient.
+ *
+ * Previews are message text and stored encrypted like the bodies
+ * (EncryptedStringConverter).
+ *
+ * Fed by MessageService inside each message write's transaction (save,
+ * batch ingestion, update, patch, delete), next to the change log entry:
+ * the inbox row commits or rolls back with the message, so a failure or
+ * crash can never leave a counter off. The table is shared, so other
+ * instances need no notification.
+ *
+ * ====================================================================
+ */
+@Service
+public class InboxService {
+
+    /** appointment_id value for messages without an appointment */
+    private static final long NO_APPOINTMENT = 0L;
+
+    private final InboxEntryRepository inboxRepository;
+    private final MessageRepository messageRepository;
+    private final FieldEncryptionService fieldEncryptionService;
+    private final int previewLength;
+
+    public InboxService(InboxEntryRepository inboxRepository,
+                        MessageRepository messageRepository,
+                        FieldEncryptionService fieldEncryptionService,
+                        @Value("${inbox.preview-length:140}") int previewLength) {
+        this.inboxRepository = inboxRepository;
+        this.messageRepository = messageRepository;
+        this.fieldEncryptionService = fieldEncryptionService;
+        this.previewLength = previewLength;
+    }
+
+    /** Conversations addressed to the user, most recent first */
+    public Page<InboxEntryDTO> getInbox(String recipient, Pageable pageable) {
+        return inboxRepository.findByRecipientOrderByLastMessageAtDesc(recipient, pageable)
+                .map(InboxService::toDto);
+    }
+
+    /** Total unread messages for the badge */
+    public long getUnreadCount(String recipient) {
+        return inboxRepository.sumUnreadByRecipient(recipient);
+    }
+
+    /** Mark one conversation read (appointmentId null = messages without an appointment) */
+    public void markRead(String recipient, Long appointmentId) {
+        if (inboxRepository.markRead(recipient, appointmentId != null ? appointmentId : NO_APPOINTMENT) == 0) {
+            throw new NotFoundException("Conversation not found");
+        }
+    }
+
+    /**
+     * Apply a message write to its recipient's conversation row. Must run
+     * in the message write's transaction; failures propagate and roll the
+     * write back.
+     */
+    public void apply(ChangeType changeType, Message message) {
+        if (message.getRecipient() == null || message.getId() == null) {
+            return;
+        }
+        switch (changeType) {
+            case CREATED -> inboxRepository.recordMessage(message.getRecipient(), appointmentKey(message),
+                    message.getId(), message.getSender(), encryptedPreview(message.getContent()), sentAt(message));
+            case UPDATED -> inboxRepository.updatePreview(message.getRecipient(), appointmentKey(message),
+                    message.getId(), preview(message.getContent()));
+            case DELETED -> onDeleted(message);
+        }
+    }
+
+    private void onDeleted(Message message) {
+        String recipient = message.getRecipient();
+        long appointmentKey = appointmentKey(message);
+        inboxRepository.forgetUnread(recipient, appointmentKey, message.getId());
+
+        Optional<Message> previous = appointmentKey == NO_APPOINTMENT
+                ? messageRepository.findFirstByRecipientAndAppointmentIsNullOrderByIdDesc(recipient)
+                : messageRepository.findFirstByRecipientAndAppointmentIdOrderByIdDesc(recipient, appointmentKey);
+        if (previous.isPresent()) {
+            Message last = previous.get();
+            inboxRepository.replaceLast(recipient, appointmentKey, message.getId(), last.getId(),
+                    last.getSender(), preview(last.getContent()), sentAt(last));
+        } else {
+            inboxRepository.deleteIfLast(recipient, appointmentKey, message.getId());
+        }
+    }
+
+    private String preview(CharSequence content) {
+        if (content == null) {
+            return null;
+        }
+        String text = content.toString();
+        return text.length() <= previewLength ? text : text.substring(0, previewLength);
+    }
+
+    private byte[] encryptedPreview(CharSequence content) {
+        String preview = preview(content);
+        return preview != null ? fieldEncryptionService.encrypt(preview.getBytes(StandardCharsets.UTF_8)) : null;
+    }
+
+    private static long appointmentKey(Message message) {
+        return message.getAppointment() != null && message.getAppointment().getId() != null
+                ? message.getAppointment().getId()
+                : NO_APPOINTMENT;
+    }
+
+    private static LocalDateTime sentAt(Message message) {
+        return message.getTimestamp() != null ? message.getTimestamp() : LocalDateTime.now();
+    }
+
+    private static InboxEntryDTO toDto(InboxEntry entry) {
+        return InboxEntryDTO.builder()
+                .appointmentId(entry.getAppointmentId() == NO_APPOINTMENT ? null : entry.getAppointmentId())
+                .lastMessageId(entry.getLastMessageId())
+                .lastSender(entry.getLastSender())
+                .lastPreview(entry.getLastPreview())
+                .lastMessageAt(entry.getLastMessageAt())
+                .unreadCount(entry.getUnreadCount())
+                .build();
+    }
+}
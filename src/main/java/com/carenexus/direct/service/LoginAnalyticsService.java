@@ -0,0 +1,198 @@
+package com.carenexus.direct.service;
+
+import com.carenexus.direct.dto.LoginStatsDTO;
+import com.carenexus.direct.event.AuthEventListener.UserLoggedInEvent;
+import com.carenexus.direct.util.HyperLogLog;
+import com.carenexus.direct.util.SlidingWindowCounter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeParseException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * ====================================================================
+ * Login Analytics Service - In-Memory Sliding Window Statistics
+ * ====================================================================
+ *
+ * Aggregates user.loggedIn events (see AuthEventListener) without
+ * touching the database.
+ *
+ * Structures:
+ * - Per-minute ring of 60 counters   → logins over the last hour
+ * - Per-hour ring of 24 counters     → logins over the last day
+ * - Per-hour ring of 24 HLL pairs    → unique users / unique IPs (24h)
+ *
+ * Event time:
+ * - Timestamps with an offset (or Z) are taken as they are; bare local
+ *   date-times (what auth-service sends) are read in
+ *   analytics.login.producer-zone
+ * - Events up to analytics.login.max-clock-skew-ms in the future are
+ *   counted now instead of dropped
+ *
+ * Memory:
+ * - Fixed at startup (~800 KB with precision 12), independent of the
+ *   number of users or IP addresses seen
+ *
+ * Reads:
+ * - getStats() returns a pre-computed snapshot (O(1))
+ * - The snapshot is rebuilt by at most one caller once it is older than
+ *   analytics.login.snapshot-ttl-ms; other callers keep the old one
+ *
+ * ====================================================================
+ */
+@Slf4j
+@Service
+public class LoginAnalyticsService {
+
+    private static final int MINUTE_BUCKETS = 60;
+    private static final int HOUR_BUCKETS = 24;
+    private static final long MINUTE_MILLIS = 60_000L;
+    private static final long HOUR_MILLIS = 3_600_000L;
+
+    private final int precision;
+    private final long snapshotTtlMillis;
+    private final ZoneId producerZone;
+
+    private final SlidingWindowCounter perMinute;
+    private final SlidingWindowCounter perHour;
+    private final AtomicReferenceArray<HourSketch> sketches = new AtomicReferenceArray<>(HOUR_BUCKETS);
+
+    private final AtomicBoolean refreshing = new AtomicBoolean(false);
+    private volatile LoginStatsDTO snapshot;
+
+    public LoginAnalyticsService(
+            @Value("${analytics.login.hll-precision:12}") int precision,
+            @Value("${analytics.login.snapshot-ttl-ms:5000}") long snapshotTtlMillis,
+            @Value("${analytics.login.producer-zone:}") String producerZone,
+            @Value("${analytics.login.max-clock-skew-ms:60000}") long maxClockSkewMillis) {
+        this.precision = precision;
+        this.snapshotTtlMillis = snapshotTtlMillis;
+        this.producerZone = producerZone.isBlank() ? ZoneId.systemDefault() : ZoneId.of(producerZone);
+        this.perMinute = new SlidingWindowCounter(MINUTE_BUCKETS, MINUTE_MILLIS, maxClockSkewMillis);
+        this.perHour = new SlidingWindowCounter(HOUR_BUCKETS, HOUR_MILLIS, maxClockSkewMillis);
+        this.snapshot = buildSnapshot(System.currentTimeMillis());
+        log.info("[LoginAnalyticsService] Initialized (hll precision={}, snapshot ttl={}ms, producer zone={})",
+                precision, snapshotTtlMillis, this.producerZone);
+    }
+
+    /** Record a login event; events outside the 24h window are ignored */
+    public void record(UserLoggedInEvent event) {
+        long now = System.currentTimeMillis();
+        long eventMillis = parseTimestamp(event.getTimestamp(), now);
+
+        if (!perHour.increment(eventMillis, now)) {
+            log.debug("[LoginAnalyticsService] Ignoring login outside analytics window: {}", event.getTimestamp());
+            return;
+        }
+        perMinute.increment(eventMillis, now);
+        eventMillis = Math.min(eventMillis, now);  // Accepted future events (skew) count in the current hour
+
+        HourSketch sketch = sketchFor(eventMillis / HOUR_MILLIS);
+        if (sketch != null) {
+            sketch.users.add(event.getUserId() != null ? String.valueOf(event.getUserId()) : event.getEmail());
+            sketch.ips.add(event.getIpAddress());
+        }
+    }
+
+    /** Current login statistics (served from the cached snapshot) */
+    public LoginStatsDTO getStats() {
+        long now = System.currentTimeMillis();
+        LoginStatsDTO current = snapshot;
+        if (now - current.getGeneratedAt() >= snapshotTtlMillis && refreshing.compareAndSet(false, true)) {
+            try {
+                current = buildSnapshot(now);
+                snapshot = current;
+            } finally {
+                refreshing.set(false);
+            }
+        }
+        return current;
+    }
+
+    private LoginStatsDTO buildSnapshot(long now) {
+        long[] minutes = perMinute.snapshot(MINUTE_BUCKETS, now);
+        long[] hours = perHour.snapshot(HOUR_BUCKETS, now);
+
+        HyperLogLog users = new HyperLogLog(precision);
+        HyperLogLog ips = new HyperLogLog(precision);
+        long nowHour = now / HOUR_MILLIS;
+        for (int i = 0; i < HOUR_BUCKETS; i++) {
+            HourSketch sketch = sketches.get(i);
+            if (sketch != null && sketch.hour > nowHour - HOUR_BUCKETS) {
+                users.merge(sketch.users);
+                ips.merge(sketch.ips);
+            }
+        }
+
+        return LoginStatsDTO.builder()
+                .generatedAt(now)
+                .loginsLastMinute(minutes[MINUTE_BUCKETS - 1])
+                .loginsLastHour(sum(minutes))
+                .loginsLast24Hours(sum(hours))
+                .uniqueUsersLast24Hours(users.estimate())
+                .uniqueIpsLast24Hours(ips.estimate())
+                .perMinute(minutes)
+                .perHour(hours)
+                .build();
+    }
+
+    /** Get (or lock-free replace) the sketch pair for an hour bucket */
+    private HourSketch sketchFor(long hour) {
+        int index = (int) (hour % HOUR_BUCKETS);
+        while (true) {
+            HourSketch current = sketches.get(index);
+            if (current != null && current.hour == hour) {
+                return current;
+            }
+            if (current != null && current.hour > hour) {
+                return null;  // Bucket already recycled for a newer hour
+            }
+            HourSketch fresh = new HourSketch(hour, precision);
+            if (sketches.compareAndSet(index, current, fresh)) {
+                return fresh;
+            }
+        }
+    }
+
+    /** Event time in epoch millis: with its own offset if it has one, else in the producer's zone */
+    private long parseTimestamp(String timestamp, long fallback) {
+        if (timestamp == null || timestamp.isBlank()) {
+            return fallback;
+        }
+        try {
+            return OffsetDateTime.parse(timestamp).toInstant().toEpochMilli();
+        } catch (DateTimeParseException e) {
+            try {
+                return LocalDateTime.parse(timestamp).atZone(producerZone).toInstant().toEpochMilli();
+            } catch (DateTimeParseException ignored) {
+                return fallback;
+            }
+        }
+    }
+
+    private static long sum(long[] values) {
+        long total = 0;
+        for (long v : values) {
+            total += v;
+        }
+        return total;
+    }
+
+    private static final class HourSketch {
+        private final long hour;
+        private final HyperLogLog users;
+        private final HyperLogLog ips;
+
+        private HourSketch(long hour, int precision) {
+            this.hour = hour;
+            this.users = new HyperLogLog(precision);
+            this.ips = new HyperLogLog(precision);
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package com.carenexus.direct.service;
+
+import com.carenexus.direct.exception.BadRequestException;
+import com.carenexus.direct.exception.ConflictException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.Objects;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * ====================================================================
+ * Merge Patch Service - JSON Merge Patch (RFC 7396) onto DTOs
+ * ====================================================================
+ *
+ * PATCH endpoints (application/merge-patch+json) send only the members
+ * that change: a member with a value replaces the current one, a null
+ * member clears it, an absent member stays as it is.
+ *
+ * apply() merges the patch into the DTO of the current row and
+ * validates the result against the DTO's constraints, so a patch
+ * cannot leave a row that a validated full body would not describe.
+ *
+ * The services then copy the result onto the entity they loaded in the
+ * same transaction. Hibernate writes only the columns whose values
+ * changed (@DynamicUpdate), checking the version, and issues no UPDATE
+ * at all when the patch changed nothing.
+ *
+ * Members a patch may carry:
+ * - the properties the resource allows to change (others are 400)
+ * - "version": the version the client read; if it is no longer the
+ *   current one the patch is refused with 409
+ *
+ * ====================================================================
+ */
+@Service
+@RequiredArgsConstructor
+public class MergePatchService {
+
+    public static final String MEDIA_TYPE = "application/merge-patch+json";
+
+    private static final String VERSION = "version";
+
+    private final ObjectMapper objectMapper;
+    private final Validator validator;
+
+    /** Patched copy of current (which is updated in place) */
+    public <T> T apply(T current, JsonNode patch, Set<String> patchable) {
+        if (patch == null || !patch.isObject()) {
+            throw new BadRequestException("A merge patch must be a JSON object");
+        }
+        for (Iterator<String> names = patch.fieldNames(); names.hasNext(); ) {
+            String name = names.next();
+            if (!patchable.contains(name) && !VERSION.equals(name)) {
+                throw new BadRequestException(name + " cannot be patched");
+            }
+        }
+        T patched;
+        try {
+            patched = objectMapper.readerForUpdating(current).readValue(patch);
+        } catch (IOException e) {
+            throw new BadRequestException("Invalid merge patch: " + e.getMessage());
+        }
+        Set<ConstraintViolation<T>> violations = validator.validate(patched);
+        if (!violations.isEmpty()) {
+            throw new BadRequestException(violations.stream()
+                    .map(ConstraintViolation::getMessage)
+                    .sorted()
+                    .collect(Collectors.joining(", ")));
+        }
+        return patched;
+    }
+
+    /** 409 unless the patched DTO's version (the client's, if it sent one) is still the current one */
+    public void checkVersion(Long patchedVersion, Long currentVersion, String resource) {
+        if (!Objects.equals(patchedVersion, currentVersion)) {
+            throw new ConflictException(resource + " was modified by another request");
+        }
+    }
+
+    /** Result of a patch transaction; changed is false when no column was written */
+    public record Outcome<E>(E entity, boolean changed) {
+    }
+}
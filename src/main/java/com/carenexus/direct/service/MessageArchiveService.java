@@ -0,0 +1,436 @@
+package com.carenexus.direct.service;
+
+import com.carenexus.direct.event.EntityChangedEvent.EntityType;
+import com.carenexus.direct.model.Appointment;
+import com.carenexus.direct.model.Message;
+import com.carenexus.direct.repository.MessageRepository;
+import com.carenexus.direct.repository.MessageRepository.ArchiveRow;
+import com.carenexus.direct.util.CompressedText;
+import com.carenexus.direct.util.MessageSegment;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ====================================================================
+ * Message Archive Service - Hot/Cold Tiering of Old Messages
+ * ====================================================================
+ *
+ * Messages older than archive.min-age-days are moved out of the message
+ * table into immutable MessageSegment files (block-compressed and
+ * encrypted with the field data keys, sparse per-owner index,
+ * memory-mapped) under archive.directory, so years of
+ * rarely read history stop competing for the InnoDB buffer pool.
+ *
+ * Archiving (archive.cron, one instance at a time via a MySQL named
+ * lock):
+ * 1. Read old messages in keyset batches of archive.batch-size
+ *    (plain reads, no locks; the timestamp range prunes to old
+ *    partitions) until a segment's worth is collected
+ * 2. Write the segment (temp file + fsync + atomic rename) and load it
+ * 3. Delete those rows in batches of archive.batch-size, each its own
+ *    short transaction. Rows edited in the meantime have a new
+ *    timestamp and are kept
+ * A crash between 2 and 3 leaves rows in both tiers; the hot copy wins
+ * on read and the next run archives them again.
+ *
+ * Reads (MessageService): hot table first, then the segments, newest
+ * first. Paged and search endpoints cover the hot table only.
+ *
+ * Tombstones (message_archive_tombstone) hide archived copies that must
+ * not be read any more; a tombstone hides the message in every segment
+ * written before it:
+ * - rows step 3 kept because they were edited meanwhile (the segment
+ *   holds the old body)
+ * - hot rows old enough to be archived, when they are deleted (a crash
+ *   between 2 and 3 may have left a copy)
+ * - archived messages the owner deletes (erase()); they cannot be edited
+ * Each archive run then rewrites the segments holding tombstoned copies
+ * without them, so deleted PHI leaves the files too, and drops
+ * tombstones older than archive.tombstone-retention-hours (by then every
+ * instance has swapped in the rewritten segments).
+ *
+ * The directory must be shared by all instances (e.g. a mounted
+ * volume); segments written elsewhere are picked up every
+ * archive.refresh-ms.
+ *
+ * ====================================================================
+ */
+@Slf4j
+@Service
+public class MessageArchiveService {
+
+    private static final String LOCK_NAME = "carenexus.message-archive";
+    private static final String SUFFIX = ".seg";
+    private static final String PREFIX = "messages-";
+
+    private final MessageRepository messageRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final EntityVersionService entityVersionService;
+    private final QueryResultCache queryResultCache;
+    private final FieldEncryptionService fieldEncryptionService;
+    private final OwnerDirectory ownerDirectory;
+    private final boolean enabled;
+    private final Path directory;
+    private final int minAgeDays;
+    private final int batchSize;
+    private final int segmentMaxMessages;
+    private final int blockBytes;
+    private final long tombstoneRetentionMillis;
+    private final Counter archivedMessages;
+
+    /** Loaded segments, newest first (copy-on-write) */
+    private volatile List<MessageSegment> segments = List.of();
+
+    public MessageArchiveService(MessageRepository messageRepository,
+                                 JdbcTemplate jdbcTemplate,
+                                 EntityVersionService entityVersionService,
+                                 QueryResultCache queryResultCache,
+                                 FieldEncryptionService fieldEncryptionService,
+                                 OwnerDirectory ownerDirectory,
+                                 MeterRegistry meterRegistry,
+                                 @Value("${archive.enabled:true}") boolean enabled,
+                                 @Value("${archive.directory:./data/message-archive}") String directory,
+                                 @Value("${archive.min-age-days:365}") int minAgeDays,
+                                 @Value("${archive.batch-size:500}") int batchSize,
+                                 @Value("${archive.segment-max-messages:100000}") int segmentMaxMessages,
+                                 @Value("${archive.block-kb:16}") int blockKb,
+                                 @Value("${archive.tombstone-retention-hours:24}") long tombstoneRetentionHours) {
+        this.messageRepository = messageRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.entityVersionService = entityVersionService;
+        this.queryResultCache = queryResultCache;
+        this.fieldEncryptionService = fieldEncryptionService;
+        this.ownerDirectory = ownerDirectory;
+        this.enabled = enabled;
+        this.directory = Paths.get(directory);
+        this.minAgeDays = minAgeDays;
+        this.batchSize = batchSize;
+        this.segmentMaxMessages = segmentMaxMessages;
+        this.blockBytes = blockKb * 1024;
+        this.tombstoneRetentionMillis = TimeUnit.HOURS.toMillis(tombstoneRetentionHours);
+
+        this.archivedMessages = meterRegistry.counter("carenexus.messages.archived");
+        Gauge.builder("carenexus.messages.archive.segments", this, service -> service.segments.size())
+                .description("Message archive segment files loaded")
+                .register(meterRegistry);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onReady() {
+        refreshSegments();
+    }
+
+    /** Archived message by id, if it belongs to the owner and is not tombstoned */
+    public Optional<Message> find(Long id, String owner) {
+        if (id == null) {
+            return Optional.empty();
+        }
+        for (MessageSegment segment : segments) {
+            Optional<MessageSegment.Record> record = segment.find(owner, id);
+            if (record.isPresent()) {
+                // Newest copy; if it is hidden, so are the older ones
+                return visible(segment, id, tombstones(List.of(id)))
+                        ? record.map(MessageArchiveService::toMessage)
+                        : Optional.empty();
+            }
+        }
+        return Optional.empty();
+    }
+
+    /** The owner's archived, not tombstoned messages of an appointment, in id order */
+    public List<Message> findByAppointment(Long appointmentId, String owner) {
+        Map<Long, MessageSegment.Record> newest = new HashMap<>();
+        Map<Long, MessageSegment> segmentOf = new HashMap<>();
+        for (MessageSegment segment : segments) {
+            for (MessageSegment.Record record : segment.scan(owner, r -> appointmentId.equals(r.appointmentId()))) {
+                if (newest.putIfAbsent(record.id(), record) == null) {
+                    segmentOf.put(record.id(), segment);
+                }
+            }
+        }
+        Map<Long, Long> tombstones = tombstones(newest.keySet());
+        List<Message> messages = new ArrayList<>();
+        newest.forEach((id, record) -> {
+            if (visible(segmentOf.get(id), id, tombstones)) {
+                messages.add(toMessage(record));
+            }
+        });
+        messages.sort(Comparator.comparing(Message::getId));
+        return messages;
+    }
+
+    /**
+     * Delete an archived message: tombstone it, so reads stop returning it
+     * now and the next archive run removes it from its segment.
+     *
+     * @return the erased message, empty if the owner has no such archived message
+     */
+    public Optional<Message> erase(Long id, String owner) {
+        Optional<Message> message = find(id, owner);
+        message.ifPresent(archived -> tombstone(owner, List.of(id)));
+        return message;
+    }
+
+    /** A hot message was deleted: hide any archived copy left by an interrupted archive run */
+    public void onHotDeleted(Message message) {
+        if (enabled && message.getTimestamp() != null
+                && message.getTimestamp().isBefore(LocalDateTime.now().minusDays(minAgeDays))) {
+            tombstone(message.getUserEmail(), List.of(message.getId()));
+        }
+    }
+
+    /** Move messages past the age limit to new segments */
+    @Scheduled(cron = "${archive.cron:0 45 3 * * *}")
+    public void archive() {
+        if (!enabled) {
+            return;
+        }
+        jdbcTemplate.execute((ConnectionCallback<Void>) connection -> {
+            try (PreparedStatement lock = connection.prepareStatement("SELECT GET_LOCK(?, 0)")) {
+                lock.setString(1, LOCK_NAME);
+                try (ResultSet acquired = lock.executeQuery()) {
+                    if (!acquired.next() || acquired.getInt(1) != 1) {
+                        log.info("[MessageArchiveService] Archiving already running on another instance");
+                        return null;
+                    }
+                }
+            }
+            try {
+                archiveLocked();
+            } finally {
+                try (PreparedStatement unlock = connection.prepareStatement("SELECT RELEASE_LOCK(?)")) {
+                    unlock.setString(1, LOCK_NAME);
+                    unlock.execute();
+                }
+            }
+            return null;
+        });
+    }
+
+    private void archiveLocked() {
+        LocalDateTime cutoff = LocalDateTime.now().minusDays(minAgeDays);
+        try {
+            Files.createDirectories(directory);
+            refreshSegments();
+            long afterId = 0;
+            int total = 0;
+            while (true) {
+                List<MessageSegment.Record> records = new ArrayList<>();
+                while (records.size() < segmentMaxMessages) {
+                    List<ArchiveRow> batch = messageRepository.findArchivable(cutoff, afterId,
+                            PageRequest.of(0, Math.min(batchSize, segmentMaxMessages - records.size())));
+                    if (batch.isEmpty()) {
+                        break;
+                    }
+                    for (ArchiveRow row : batch) {
+                        records.add(new MessageSegment.Record(row.getId(), row.getUserEmail(), row.getSender(),
+                                row.getRecipient(), row.getContent().toString(), row.getTimestamp(), row.getAppointmentId()));
+                    }
+                    afterId = batch.get(batch.size() - 1).getId();
+                }
+                if (records.isEmpty()) {
+                    break;
+                }
+                total += writeAndDelete(records, cutoff);
+            }
+            if (total > 0) {
+                log.info("[MessageArchiveService] ✓ Archived {} messages older than {}", total, cutoff.toLocalDate());
+            }
+            compact();
+        } catch (IOException e) {
+            log.error("[MessageArchiveService] ✗ Archiving failed, messages stay in the database: {}", e.getMessage());
+        }
+    }
+
+    private int writeAndDelete(List<MessageSegment.Record> records, LocalDateTime cutoff) throws IOException {
+        Path path = directory.resolve(String.format("%s%013d%s", PREFIX, System.currentTimeMillis(), SUFFIX));
+        MessageSegment.write(path, records, blockBytes, fieldEncryptionService::encrypt);
+        load(path);
+
+        int deleted = 0;
+        Map<Long, String> ownerOf = new HashMap<>();
+        records.forEach(record -> ownerOf.put(record.id(), record.owner()));
+        List<Long> ids = List.copyOf(ownerOf.keySet());
+        for (int from = 0; from < ids.size(); from += batchSize) {
+            List<Long> batch = ids.subList(from, Math.min(from + batchSize, ids.size()));
+            deleted += messageRepository.deleteArchived(batch, cutoff);
+            // Rows kept because they were edited after being read: their segment copy is stale
+            for (Long kept : messageRepository.findHotIds(batch)) {
+                tombstone(ownerOf.get(kept), List.of(kept));
+            }
+        }
+        archivedMessages.increment(deleted);
+
+        Set<String> owners = new HashSet<>();
+        records.forEach(record -> owners.add(record.owner()));
+        for (String owner : owners) {
+            // Paged lists no longer include these messages
+            entityVersionService.bump(owner, EntityType.MESSAGE);
+            queryResultCache.invalidate(owner, EntityType.MESSAGE);
+        }
+        log.info("[MessageArchiveService] ✓ Wrote {} ({} messages, {} bytes)",
+                path.getFileName(), records.size(), Files.size(path));
+        return deleted;
+    }
+
+    /**
+     * Rewrite every segment holding a tombstoned copy without it (the
+     * rewrite keeps the original write time in its name), then drop
+     * tombstones every instance has had time to stop needing.
+     */
+    private void compact() throws IOException {
+        long startedAt = System.currentTimeMillis();
+        List<Tombstone> tombstones = jdbcTemplate.query(
+                "SELECT message_id, owner_id, tombstoned_at FROM message_archive_tombstone",
+                (row, n) -> new Tombstone(row.getLong(1), ownerDirectory.emailOf(row.getInt(2)), row.getLong(3)));
+        if (tombstones.isEmpty()) {
+            return;
+        }
+        Map<Long, Long> hiddenUntil = new HashMap<>();
+        tombstones.forEach(tombstone -> hiddenUntil.put(tombstone.messageId(), tombstone.at()));
+        int erased = 0;
+        for (MessageSegment segment : segments) {
+            long writtenAt = writtenAt(segment);
+            boolean affected = tombstones.stream().anyMatch(tombstone ->
+                    tombstone.at() >= writtenAt && segment.find(tombstone.owner(), tombstone.messageId()).isPresent());
+            if (!affected) {
+                continue;
+            }
+            List<MessageSegment.Record> records = segment.records();
+            List<MessageSegment.Record> kept = records.stream()
+                    .filter(record -> visible(segment, record.id(), hiddenUntil))
+                    .toList();
+            if (!kept.isEmpty()) {
+                Path path = directory.resolve(String.format("%s%013d-%013d%s", PREFIX, writtenAt, System.currentTimeMillis(), SUFFIX));
+                MessageSegment.write(path, kept, blockBytes, fieldEncryptionService::encrypt);
+                load(path);
+            }
+            unload(segment);
+            Files.delete(segment.path());
+            erased += records.size() - kept.size();
+        }
+        // Other instances swap segments on their next refresh; the tombstones cover them until then
+        long settled = Math.min(startedAt, System.currentTimeMillis() - tombstoneRetentionMillis);
+        int dropped = jdbcTemplate.update("DELETE FROM message_archive_tombstone WHERE tombstoned_at < ?", settled);
+        log.info("[MessageArchiveService] ✓ Erased {} tombstoned messages from segments, dropped {} tombstones", erased, dropped);
+    }
+
+    /** Load segment files written since the last refresh (here or by another instance), drop removed ones */
+    @Scheduled(fixedDelayString = "${archive.refresh-ms:60000}")
+    public synchronized void refreshSegments() {
+        if (!enabled || !Files.isDirectory(directory)) {
+            return;
+        }
+        segments.stream().filter(segment -> !Files.exists(segment.path())).toList().forEach(this::unload);
+        Set<Path> loaded = new HashSet<>();
+        segments.forEach(segment -> loaded.add(segment.path()));
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*" + SUFFIX)) {
+            for (Path file : files) {
+                if (!loaded.contains(file)) {
+                    load(file);
+                }
+            }
+        } catch (IOException e) {
+            log.error("[MessageArchiveService] ✗ Failed to list {}: {}", directory, e.getMessage());
+        }
+    }
+
+    private synchronized void load(Path path) {
+        try {
+            MessageSegment segment = MessageSegment.open(path, fieldEncryptionService::decrypt);
+            List<MessageSegment> updated = new ArrayList<>(segments);
+            updated.add(segment);
+            updated.sort(Comparator.comparing((MessageSegment s) -> s.path().getFileName().toString()).reversed());
+            segments = List.copyOf(updated);
+            log.info("[MessageArchiveService] ✓ Loaded segment {} ({} messages)", path.getFileName(), segment.messageCount());
+        } catch (IOException e) {
+            log.error("[MessageArchiveService] ✗ Skipping segment {}: {}", path.getFileName(), e.getMessage());
+        }
+    }
+
+    private synchronized void unload(MessageSegment segment) {
+        List<MessageSegment> updated = new ArrayList<>(segments);
+        updated.remove(segment);
+        segments = List.copyOf(updated);
+    }
+
+    private void tombstone(String owner, List<Long> ids) {
+        int ownerId = ownerDirectory.idOfOrCreate(owner);
+        long now = System.currentTimeMillis();
+        jdbcTemplate.batchUpdate("INSERT INTO message_archive_tombstone (message_id, owner_id, tombstoned_at) " +
+                        "VALUES (?, ?, ?) ON DUPLICATE KEY UPDATE tombstoned_at = VALUES(tombstoned_at)",
+                ids.stream().map(id -> new Object[]{id, ownerId, now}).toList());
+    }
+
+    /** Tombstone time of each of the ids that has one */
+    private Map<Long, Long> tombstones(Collection<Long> ids) {
+        Map<Long, Long> tombstones = new HashMap<>();
+        if (ids.isEmpty()) {
+            return tombstones;
+        }
+        String placeholders = String.join(", ", Collections.nCopies(ids.size(), "?"));
+        jdbcTemplate.query("SELECT message_id, tombstoned_at FROM message_archive_tombstone WHERE message_id IN (" + placeholders + ")",
+                row -> {
+                    tombstones.put(row.getLong(1), row.getLong(2));
+                },
+                ids.toArray());
+        return tombstones;
+    }
+
+    /** A copy is visible unless the message was tombstoned after its segment was written */
+    private static boolean visible(MessageSegment segment, long id, Map<Long, Long> tombstones) {
+        Long tombstonedAt = tombstones.get(id);
+        return tombstonedAt == null || tombstonedAt < writtenAt(segment);
+    }
+
+    /** Epoch millis the segment's records were archived at (rewrites keep the original) */
+    private static long writtenAt(MessageSegment segment) {
+        String name = segment.path().getFileName().toString();
+        return Long.parseLong(name.substring(PREFIX.length(), PREFIX.length() + 13));
+    }
+
+    private record Tombstone(long messageId, String owner, long at) {
+    }
+
+    private static Message toMessage(MessageSegment.Record record) {
+        return Message.builder()
+                .id(record.id())
+                .userEmail(record.owner())
+                .sender(record.sender())
+                .recipient(record.recipient())
+                .content(CompressedText.of(record.content()))
+                .timestamp(record.timestamp())
+                .appointment(record.appointmentId() != null ? Appointment.builder().id(record.appointmentId()).build() : null)
+                .build();
+    }
+}
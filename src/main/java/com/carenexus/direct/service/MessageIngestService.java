@@ -0,0 +1,462 @@
+package com.carenexus.direct.service;
+
+import com.carenexus.direct.dto.MessageDTO;
+import com.carenexus.direct.exception.ServiceUnavailableException;
+import com.carenexus.direct.model.Appointment;
+import com.carenexus.direct.model.Message;
+import com.carenexus.direct.util.CompressedText;
+import com.carenexus.direct.util.MappedAppendLog;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.RecoverableDataAccessException;
+import org.springframework.dao.TransientDataAccessException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.CannotCreateTransactionException;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ====================================================================
+ * Message Ingest Service - Write-Behind Pipeline for Chat Bursts
+ * ====================================================================
+ *
+ * Optional ingestion mode for POST /api/messages
+ * (messages.ingest.enabled=true). Instead of one INSERT per request:
+ *
+ * 1. Ownership is checked with an exists query (no entity hydration)
+ * 2. A slot in the bounded buffer is reserved (503 if full for too long)
+ * 3. The message is appended to a local memory-mapped log and forced to
+ *    disk (group commit) → only then is the request acknowledged (202)
+ * 4. A single writer thread drains the buffer and inserts up to
+ *    batch-size messages per statement via MessageService.saveBatch
+ * 5. After each batch the log is checkpointed
+ *
+ * Failed batches:
+ * - A batch is retried whole, with backoff, up to max-batch-attempts
+ *   times; after that it is inserted row by row and every row the
+ *   database rejects is dead-lettered (appended with the error to the
+ *   dead-letter file, forced to disk) and checkpointed past, so one bad
+ *   row cannot stop the single writer and with it every later POST
+ * - Failures that mean the database is unreachable (connection, lock or
+ *   timeout errors) are never dead-lettered: the writer keeps retrying
+ *   until it is back, and POST returns 503 once the buffer is full
+ *
+ * Crash Recovery:
+ * - Once the application is ready (every listener of the CREATED events
+ *   is up) the writer thread re-inserts each log record after the
+ *   checkpoint, with the same retry / dead-letter rules; until then
+ *   POST returns 503
+ * - Replay is idempotent: every record carries an ingest key (unique
+ *   per message, V12) and MessageService.saveBatch skips keys already
+ *   stored, so a crash between a batch commit and its checkpoint
+ *   neither duplicates the batch nor announces it (unread counts) twice
+ * - If the log cannot be replayed at all, the error is logged and the
+ *   service reports itself unavailable: messages are inserted directly
+ *   and the log is left untouched for the next start
+ *
+ * Ordering:
+ * - Records enter the buffer under the log's append lock, so the buffer
+ *   is in sequence order and checkpoints never skip a record
+ *
+ * ====================================================================
+ */
+@Slf4j
+@Service
+@ConditionalOnProperty(name = "messages.ingest.enabled", havingValue = "true")
+public class MessageIngestService {
+
+    private static final long INITIAL_BACKOFF_MILLIS = 100;
+    private static final long MAX_BACKOFF_MILLIS = 5000;
+
+    private final MessageService messageService;
+    private final AppointmentService appointmentService;
+
+    private final Path logPath;
+    private final Path deadLetterPath;
+    private final int logSizeBytes;
+    private final int batchSize;
+    private final long offerTimeoutMillis;
+    private final int maxBatchAttempts;
+
+    private final BlockingQueue<Pending> buffer;
+    private final Semaphore slots;
+    private final Counter deadLettered;
+
+    private MappedAppendLog appendLog;
+    private Thread writer;
+    private volatile boolean running;
+    /** Recovery done: submit() accepts messages */
+    private volatile boolean accepting;
+    /** Recovery failed: the controller inserts directly */
+    private volatile boolean failed;
+
+    public MessageIngestService(MessageService messageService,
+                                AppointmentService appointmentService,
+                                MeterRegistry meterRegistry,
+                                @Value("${messages.ingest.log-path:./data/message-ingest.log}") String logPath,
+                                @Value("${messages.ingest.log-size-mb:64}") int logSizeMb,
+                                @Value("${messages.ingest.buffer-capacity:10000}") int bufferCapacity,
+                                @Value("${messages.ingest.batch-size:500}") int batchSize,
+                                @Value("${messages.ingest.offer-timeout-ms:100}") long offerTimeoutMillis,
+                                @Value("${messages.ingest.max-batch-attempts:5}") int maxBatchAttempts,
+                                @Value("${messages.ingest.dead-letter-path:./data/message-ingest.dead}") String deadLetterPath) {
+        this.messageService = messageService;
+        this.appointmentService = appointmentService;
+        this.logPath = Path.of(logPath);
+        this.deadLetterPath = Path.of(deadLetterPath);
+        this.logSizeBytes = logSizeMb * 1024 * 1024;
+        this.batchSize = batchSize;
+        this.offerTimeoutMillis = offerTimeoutMillis;
+        this.maxBatchAttempts = maxBatchAttempts;
+        this.buffer = new ArrayBlockingQueue<>(bufferCapacity);
+        this.slots = new Semaphore(bufferCapacity);
+
+        Gauge.builder("carenexus.messages.ingest.buffered", buffer, BlockingQueue::size)
+                .description("Messages acknowledged but not yet written to the database")
+                .register(meterRegistry);
+        this.deadLettered = Counter.builder("carenexus.messages.ingest.dead_lettered")
+                .description("Messages the database rejected, moved to the dead-letter file")
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void open() throws IOException {
+        appendLog = new MappedAppendLog(logPath, logSizeBytes);
+    }
+
+    /** Starts the writer, which replays the log before accepting messages */
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        running = true;
+        writer = new Thread(this::runWriter, "message-ingest-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    @PreDestroy
+    public void stop() throws IOException, InterruptedException {
+        running = false;
+        if (writer != null) {
+            writer.join(TimeUnit.SECONDS.toMillis(10));  // Writer drains the buffer before exiting
+        }
+        appendLog.close();
+    }
+
+    /**
+     * Accept a message once it is durable in the local log.
+     *
+     * @return the accepted message (id is assigned when it reaches the database)
+     */
+    public MessageDTO submit(MessageDTO dto, String email) {
+        if (!accepting) {
+            throw new ServiceUnavailableException("Message ingestion is starting, retry shortly");
+        }
+        appointmentService.assertOwnedBy(dto.getAppointmentId(), email);
+
+        Message message = Message.builder()
+                .appointment(Appointment.builder().id(dto.getAppointmentId()).build())
+                .sender(email)
+                .recipient(dto.getRecipient())
+                .content(CompressedText.of(dto.getContent()))
+                .timestamp(LocalDateTime.now())
+                .userEmail(email)
+                .ingestKey(UUID.randomUUID().toString())
+                .build();
+
+        byte[] record = encode(message);
+        try {
+            if (!slots.tryAcquire(offerTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                throw new ServiceUnavailableException("Message ingestion buffer is full, retry shortly");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ServiceUnavailableException("Interrupted while accepting message");
+        }
+
+        boolean[] queued = new boolean[1];
+        try {
+            appendLog.append(record, seq -> {
+                buffer.add(new Pending(seq, message));  // Never blocks: a slot is already reserved
+                queued[0] = true;
+            });
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            if (!queued[0]) {
+                slots.release();
+            }
+            throw new ServiceUnavailableException("Interrupted while accepting message");
+        } catch (RuntimeException e) {
+            if (!queued[0]) {
+                slots.release();
+            }
+            throw e;
+        }
+
+        return MessageDTO.builder()
+                .appointmentId(dto.getAppointmentId())
+                .sender(email)
+                .recipient(message.getRecipient())
+                .content(message.getContent())
+                .build();
+    }
+
+    /** Messages acknowledged but not yet flushed */
+    public int getBufferedCount() {
+        return buffer.size();
+    }
+
+    /** False once recovery has failed: callers insert directly instead */
+    public boolean isAvailable() {
+        return !failed;
+    }
+
+    private void recover() throws InterruptedException {
+        List<MappedAppendLog.Entry> entries = appendLog.replay();
+        if (entries.isEmpty()) {
+            return;
+        }
+        log.warn("[MessageIngestService] Replaying {} unflushed messages from {}", entries.size(), logPath);
+
+        List<Pending> batch = new ArrayList<>(batchSize);
+        for (MappedAppendLog.Entry entry : entries) {
+            batch.add(new Pending(entry.getSeq(), decode(entry.getPayload())));
+            if (batch.size() == batchSize) {
+                flush(batch);
+                batch.clear();
+            }
+        }
+        if (!batch.isEmpty()) {
+            flush(batch);
+        }
+        log.info("[MessageIngestService] ✓ Recovery complete");
+    }
+
+    private void runWriter() {
+        try {
+            recover();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        } catch (RuntimeException e) {
+            failed = true;
+            log.error("[MessageIngestService] ✗ Replay of {} failed, inserting messages directly until restart: {}",
+                    logPath, e.getMessage(), e);
+            return;
+        }
+        accepting = true;
+        log.info("[MessageIngestService] ✓ Write-behind ingestion enabled (log={}, batch={})", logPath, batchSize);
+
+        List<Pending> batch = new ArrayList<>(batchSize);
+        while (running || !buffer.isEmpty()) {
+            try {
+                Pending first = buffer.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                buffer.drainTo(batch, batchSize - 1);
+                flush(batch);
+                slots.release(batch.size());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    /**
+     * Insert one batch and checkpoint past it: retried whole up to
+     * max-batch-attempts, then row by row with rejected rows dead-lettered.
+     * While the database is unreachable it is retried without limit.
+     */
+    private void flush(List<Pending> batch) throws InterruptedException {
+        List<Message> messages = new ArrayList<>(batch.size());
+        for (Pending pending : batch) {
+            messages.add(pending.message());
+        }
+
+        long backoff = INITIAL_BACKOFF_MILLIS;
+        for (int attempt = 1; ; attempt++) {
+            try {
+                messageService.saveBatch(messages);
+                break;
+            } catch (RuntimeException e) {
+                if (attempt >= maxBatchAttempts && !isOutage(e)) {
+                    log.error("[MessageIngestService] ✗ Batch insert of {} messages failed {} times, inserting row by row: {}",
+                            messages.size(), attempt, e.getMessage());
+                    flushRows(batch);
+                    break;
+                }
+                log.error("[MessageIngestService] ✗ Batch insert of {} messages failed, retrying in {}ms: {}",
+                        messages.size(), backoff, e.getMessage());
+                Thread.sleep(backoff);
+                backoff = Math.min(backoff * 2, MAX_BACKOFF_MILLIS);
+            }
+        }
+
+        appendLog.checkpoint(batch.get(batch.size() - 1).seq());
+        log.debug("[MessageIngestService] Flushed {} messages", batch.size());
+    }
+
+    /** Insert a failed batch one row at a time; rows the database rejects are dead-lettered */
+    private void flushRows(List<Pending> batch) throws InterruptedException {
+        for (Pending pending : batch) {
+            long backoff = INITIAL_BACKOFF_MILLIS;
+            while (true) {
+                try {
+                    messageService.saveBatch(List.of(pending.message()));
+                    break;
+                } catch (RuntimeException e) {
+                    if (!isOutage(e) && deadLetter(pending, e)) {
+                        break;
+                    }
+                    log.error("[MessageIngestService] ✗ Message {} not stored, retrying in {}ms: {}",
+                            pending.message().getIngestKey(), backoff, e.getMessage());
+                    Thread.sleep(backoff);
+                    backoff = Math.min(backoff * 2, MAX_BACKOFF_MILLIS);
+                }
+            }
+        }
+    }
+
+    /**
+     * Append the row's log record and the error to the dead-letter file and
+     * force it to disk; only then may the checkpoint move past the row.
+     * Line format: seq, ingest key, Base64 log record, error (tab-separated).
+     *
+     * @return false if the file could not be written (the row is retried)
+     */
+    private boolean deadLetter(Pending pending, RuntimeException error) {
+        String reason = String.valueOf(error.getMessage()).replaceAll("\\s+", " ");
+        String line = pending.seq() + "\t" + pending.message().getIngestKey() + "\t"
+                + Base64.getEncoder().encodeToString(encode(pending.message())) + "\t" + reason + "\n";
+        try {
+            Path parent = deadLetterPath.toAbsolutePath().getParent();
+            if (parent != null) {
+                Files.createDirectories(parent);
+            }
+            try (FileChannel file = FileChannel.open(deadLetterPath,
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+                ByteBuffer bytes = ByteBuffer.wrap(line.getBytes(StandardCharsets.UTF_8));
+                while (bytes.hasRemaining()) {
+                    file.write(bytes);
+                }
+                file.force(true);
+            }
+        } catch (IOException e) {
+            log.error("[MessageIngestService] ✗ Could not write {}: {}", deadLetterPath, e.getMessage());
+            return false;
+        }
+        deadLettered.increment();
+        log.error("[MessageIngestService] ✗ Message {} (seq {}) rejected, moved to {}: {}",
+                pending.message().getIngestKey(), pending.seq(), deadLetterPath, reason);
+        return true;
+    }
+
+    /** The database could not be reached (or the statement may succeed on retry): never dead-letter */
+    private static boolean isOutage(RuntimeException e) {
+        return e instanceof TransientDataAccessException
+                || e instanceof RecoverableDataAccessException
+                || e instanceof DataAccessResourceFailureException
+                || e instanceof CannotCreateTransactionException;
+    }
+
+    // ========== Log record encoding ==========
+
+    private static byte[] encode(Message message) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(128 + message.getContent().length() * 2);
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeLong(message.getAppointment().getId());
+            writeString(out, message.getSender());
+            writeString(out, message.getRecipient());
+            writeString(out, message.getContent().toString());
+            writeString(out, message.getUserEmail());
+            out.writeLong(message.getTimestamp().toEpochSecond(ZoneOffset.UTC));
+            out.writeInt(message.getTimestamp().getNano());
+            writeString(out, message.getIngestKey());
+            return bytes.toByteArray();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static Message decode(byte[] payload) {
+        try {
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+            long appointmentId = in.readLong();
+            String sender = readString(in);
+            String recipient = readString(in);
+            String content = readString(in);
+            String userEmail = readString(in);
+            LocalDateTime timestamp = LocalDateTime.ofEpochSecond(in.readLong(), in.readInt(), ZoneOffset.UTC);
+            String ingestKey = in.available() > 0 ? readString(in) : null;  // Records logged before V12 have none
+            return Message.builder()
+                    .appointment(Appointment.builder().id(appointmentId).build())
+                    .sender(sender)
+                    .recipient(recipient)
+                    .content(CompressedText.of(content))
+                    .userEmail(userEmail)
+                    .timestamp(timestamp)
+                    .ingestKey(ingestKey)
+                    .build();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private record Pending(long seq, Message message) {
+    }
+}
@@ -0,0 +1,418 @@
+package com.carenexus.direct.service;
+
+import com.carenexus.direct.dto.MessageDTO;
+import com.carenexus.direct.event.EntityChangedEvent;
+import com.carenexus.direct.event.EntityChangedEvent.EntityType;
+import com.carenexus.direct.event.RemoteInvalidationEvent;
+import com.carenexus.direct.exception.ServiceUnavailableException;
+import com.carenexus.direct.mapper.MessageMapper;
+import com.carenexus.direct.model.Message;
+import com.carenexus.direct.repository.MessageRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * ====================================================================
+ * Message Push Service - Server-Sent Events per Appointment
+ * ====================================================================
+ *
+ * Replaces polling of GET /api/messages/appointment/{id}. Clients open
+ * GET /api/messages/appointment/{id}/stream and receive:
+ * - "message"         → new message (SSE id = message id)
+ * - "message-updated" → edited message
+ * - "message-deleted" → { id } of a removed message
+ * - "reset"           → too far behind; refetch the list, then resubscribe
+ *
+ * Fan-out:
+ * - MessageService publishes EntityChangedEvent; this service enqueues
+ *   the DTO on every subscriber of that appointment
+ * - Writes on other instances arrive as RemoteInvalidationEvent (id
+ *   only): the message is re-read by id. A message the stream already
+ *   holds - up to where it started (the latest message when opened
+ *   live, or its Last-Event-ID) or sent since - is pushed as
+ *   "message-updated"; newer ones by a keyset read after what the
+ *   stream holds (covering any it missed), and a message that is gone
+ *   as "message-deleted" to the owner's streams.
+ *   If the bus lost track of a peer every stream gets "reset"
+ * - Each connection has a bounded queue (messages.push.buffer-size);
+ *   a subscriber whose queue is full is evicted (slow consumer)
+ * - A small shared pool drains queues, so idle connections hold no
+ *   thread (Servlet async) and cost only the emitter + an empty queue
+ *
+ * Resume:
+ * - Last-Event-ID header (or lastEventId param) replays up to
+ *   messages.push.replay-limit newer messages before going live;
+ *   live events the replay already covered are skipped by id
+ *
+ * Liveness:
+ * - A heartbeat comment is queued on every connection periodically so
+ *   dead connections are detected and removed
+ *
+ * Audit:
+ * - Events bypass AuditResponseAdvice, so every message sent (replayed,
+ *   new or edited) is recorded with AuditService just before the send.
+ *   If the audit log refuses it (BLOCK policy) the stream is closed
+ *   instead, and the client resumes from its Last-Event-ID
+ *
+ * ====================================================================
+ */
+@Slf4j
+@Service
+public class MessagePushService {
+
+    private static final String RESET = "reset";
+
+    private final MessageRepository messageRepository;
+    private final AppointmentService appointmentService;
+    private final AuditService auditService;
+
+    private final long emitterTimeoutMillis;
+    private final int bufferSize;
+    private final int replayLimit;
+
+    private final Map<Long, Set<Subscriber>> subscribers = new ConcurrentHashMap<>();
+    private final AtomicInteger subscriberCount = new AtomicInteger();
+    private final ExecutorService senders;
+    private final Counter evictions;
+
+    public MessagePushService(MessageRepository messageRepository,
+                              AppointmentService appointmentService,
+                              AuditService auditService,
+                              MeterRegistry meterRegistry,
+                              @Value("${messages.push.timeout-ms:1800000}") long emitterTimeoutMillis,
+                              @Value("${messages.push.buffer-size:64}") int bufferSize,
+                              @Value("${messages.push.replay-limit:500}") int replayLimit,
+                              @Value("${messages.push.sender-threads:4}") int senderThreads) {
+        this.messageRepository = messageRepository;
+        this.appointmentService = appointmentService;
+        this.auditService = auditService;
+        this.emitterTimeoutMillis = emitterTimeoutMillis;
+        this.bufferSize = bufferSize;
+        this.replayLimit = replayLimit;
+        this.senders = Executors.newFixedThreadPool(senderThreads, runnable -> {
+            Thread thread = new Thread(runnable, "message-push-sender");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        Gauge.builder("carenexus.messages.push.subscribers", subscriberCount, AtomicInteger::get)
+                .description("Open message push (SSE) connections")
+                .register(meterRegistry);
+        this.evictions = Counter.builder("carenexus.messages.push.evictions")
+                .description("Subscribers dropped because their buffer overflowed")
+                .register(meterRegistry);
+    }
+
+    @PreDestroy
+    public void stop() {
+        senders.shutdownNow();
+        subscribers.values().forEach(set -> set.forEach(s -> s.emitter.complete()));
+    }
+
+    /**
+     * Open a push stream for an appointment owned by the user.
+     *
+     * @param lastEventId last message id the client has seen, or null to start live
+     */
+    public SseEmitter subscribe(Long appointmentId, String email, Long lastEventId) {
+        appointmentService.assertOwnedBy(appointmentId, email);
+
+        SseEmitter emitter = createEmitter();
+        Subscriber subscriber = new Subscriber(appointmentId, email, emitter);
+        emitter.onCompletion(() -> unregister(subscriber));
+        emitter.onTimeout(() -> unregister(subscriber));
+        emitter.onError(e -> unregister(subscriber));
+
+        // Register first so nothing published during the replay query is missed
+        subscribers.computeIfAbsent(appointmentId, id -> ConcurrentHashMap.newKeySet()).add(subscriber);
+        subscriberCount.incrementAndGet();
+
+        try {
+            if (lastEventId != null) {
+                subscriber.startId.set(lastEventId);
+                replay(subscriber, email, lastEventId);
+            } else {
+                // Opened live after loading the list: the client holds everything up to the newest message
+                Long latest = messageRepository.findLatestId(appointmentId, email);
+                subscriber.startId.set(latest != null ? latest : 0);
+            }
+            subscriber.ready.set(true);
+            scheduleDrain(subscriber);
+        } catch (IOException | IllegalStateException e) {
+            unregister(subscriber);
+        } catch (ServiceUnavailableException e) {
+            unregister(subscriber);  // Audit log backed up: 503 rather than an unaudited replay
+            throw e;
+        }
+        return emitter;
+    }
+
+    /** Fan message writes out to the appointment's subscribers */
+    @EventListener
+    public void onMessageChanged(EntityChangedEvent event) {
+        if (!event.is(EntityType.MESSAGE)) {
+            return;
+        }
+        Message message = (Message) event.getEntity();
+        Long appointmentId = message.getAppointment() != null ? message.getAppointment().getId() : null;
+        if (appointmentId == null) {
+            return;
+        }
+        Set<Subscriber> targets = subscribers.get(appointmentId);
+        if (targets == null || targets.isEmpty()) {
+            return;
+        }
+
+        Outbound outbound;
+        switch (event.getChangeType()) {
+            case CREATED:
+                outbound = new Outbound("message", message.getId(), MessageMapper.toDto(message));
+                break;
+            case UPDATED:
+                outbound = new Outbound("message-updated", null, MessageMapper.toDto(message));
+                break;
+            default:
+                outbound = new Outbound("message-deleted", null, Map.of("id", message.getId()));
+                break;
+        }
+        for (Subscriber subscriber : targets) {
+            offer(subscriber, outbound);
+        }
+    }
+
+    /** Message writes made on other instances (CacheInvalidationBus) */
+    @EventListener
+    public void onRemoteInvalidation(RemoteInvalidationEvent event) {
+        if (subscribers.isEmpty()) {
+            return;
+        }
+        if (event.isAll()) {
+            subscribers.values().forEach(set -> set.forEach(this::reset));
+            return;
+        }
+        if (event.getEntityType() != EntityType.MESSAGE) {
+            return;
+        }
+        String owner = event.getOwnerEmail();
+        Long id = event.getEntityId();
+        if (id == null) {
+            subscribers.values().forEach(set -> set.stream().filter(s -> s.email.equals(owner)).forEach(this::reset));
+            return;
+        }
+
+        Message message = messageRepository.findByIdAndUserEmail(id, owner).orElse(null);
+        if (message == null) {
+            // Deleted (or archived): its appointment is unknown, streams ignore ids they do not hold
+            Outbound deleted = new Outbound("message-deleted", null, Map.of("id", id));
+            subscribers.values().forEach(set -> set.stream().filter(s -> s.email.equals(owner)).forEach(s -> offer(s, deleted)));
+            return;
+        }
+        Long appointmentId = message.getAppointment() != null ? message.getAppointment().getId() : null;
+        Set<Subscriber> targets = appointmentId != null ? subscribers.get(appointmentId) : null;
+        if (targets == null || targets.isEmpty()) {
+            return;
+        }
+
+        // Streams that already hold the message get the edit; the others catch up from what they hold
+        Outbound updated = new Outbound("message-updated", null, MessageMapper.toDto(message));
+        List<Subscriber> behind = new ArrayList<>();
+        for (Subscriber subscriber : targets) {
+            if (subscriber.heldThrough() >= id) {
+                offer(subscriber, updated);
+            } else {
+                behind.add(subscriber);
+            }
+        }
+        if (behind.isEmpty()) {
+            return;
+        }
+        // Streams on an appointment that had no messages when they opened only need this one
+        long after = behind.stream()
+                .mapToLong(s -> s.heldThrough() > 0 ? s.heldThrough() : id - 1)
+                .min()
+                .getAsLong();
+        List<Message> created = messageRepository.findByAppointmentIdAndUserEmailAndIdGreaterThanOrderByIdAsc(
+                appointmentId, owner, after, PageRequest.of(0, replayLimit));
+        for (Message next : created) {
+            Outbound outbound = new Outbound("message", next.getId(), MessageMapper.toDto(next));
+            behind.forEach(s -> offer(s, outbound));  // Ids a stream already has are skipped by drain()
+        }
+    }
+
+    /** Queue a heartbeat on every connection so dead ones surface as send errors */
+    @Scheduled(fixedDelayString = "${messages.push.heartbeat-ms:30000}")
+    public void heartbeat() {
+        Outbound ping = new Outbound(null, null, null);
+        subscribers.values().forEach(set -> set.forEach(s -> offer(s, ping)));
+    }
+
+    public int getSubscriberCount() {
+        return subscriberCount.get();
+    }
+
+    private void replay(Subscriber subscriber, String email, Long lastEventId) throws IOException {
+        List<Message> missed = messageRepository.findByAppointmentIdAndUserEmailAndIdGreaterThanOrderByIdAsc(
+                subscriber.appointmentId, email, lastEventId, PageRequest.of(0, replayLimit + 1));
+
+        if (missed.size() > replayLimit) {
+            subscriber.emitter.send(SseEmitter.event().name(RESET).data(Map.of("reason", "too-far-behind")));
+            subscriber.emitter.complete();
+            return;
+        }
+        auditService.record(email, EntityType.MESSAGE.name(), missed.stream().map(Message::getId).toList(),
+                subscriber.path());
+        for (Message message : missed) {
+            subscriber.emitter.send(SseEmitter.event()
+                    .name("message")
+                    .id(String.valueOf(message.getId()))
+                    .data(MessageMapper.toDto(message)));
+            subscriber.lastSentId.set(message.getId());
+        }
+        if (subscriber.lastSentId.get() < lastEventId) {
+            subscriber.lastSentId.set(lastEventId);
+        }
+    }
+
+    /** The stream's emitter; overridden in tests to record what is sent */
+    SseEmitter createEmitter() {
+        return new SseEmitter(emitterTimeoutMillis);
+    }
+
+    private void offer(Subscriber subscriber, Outbound outbound) {
+        if (subscriber.queued.incrementAndGet() > bufferSize) {
+            evict(subscriber);
+            return;
+        }
+        subscriber.queue.add(outbound);
+        scheduleDrain(subscriber);
+    }
+
+    private void scheduleDrain(Subscriber subscriber) {
+        if (subscriber.ready.get() && !subscriber.queue.isEmpty() && subscriber.draining.compareAndSet(false, true)) {
+            senders.execute(() -> drain(subscriber));
+        }
+    }
+
+    private void drain(Subscriber subscriber) {
+        try {
+            Outbound outbound;
+            while ((outbound = subscriber.queue.poll()) != null) {
+                subscriber.queued.decrementAndGet();
+                if (outbound.id != null && outbound.id <= subscriber.lastSentId.get()) {
+                    continue;  // Already delivered by the resume replay
+                }
+                if (outbound.name == null) {
+                    subscriber.emitter.send(SseEmitter.event().comment("ping"));
+                    continue;
+                }
+                if (outbound.data instanceof MessageDTO message) {
+                    auditService.record(subscriber.email, EntityType.MESSAGE.name(), List.of(message.getId()),
+                            subscriber.path());
+                }
+                SseEmitter.SseEventBuilder event = SseEmitter.event().name(outbound.name).data(outbound.data);
+                if (outbound.id != null) {
+                    event.id(String.valueOf(outbound.id));
+                    subscriber.lastSentId.set(outbound.id);
+                }
+                subscriber.emitter.send(event);
+                if (RESET.equals(outbound.name)) {
+                    unregister(subscriber);  // The client refetches, then resubscribes
+                    subscriber.emitter.complete();
+                    return;
+                }
+            }
+        } catch (IOException | IllegalStateException e) {
+            unregister(subscriber);
+            return;
+        } catch (ServiceUnavailableException e) {
+            unregister(subscriber);  // Not sent unaudited: the client resumes from its Last-Event-ID
+            subscriber.emitter.complete();
+            return;
+        } finally {
+            subscriber.draining.set(false);
+        }
+        scheduleDrain(subscriber);  // Items that raced in after the loop ended
+    }
+
+    private void reset(Subscriber subscriber) {
+        offer(subscriber, new Outbound(RESET, null, Map.of("reason", "missed-updates")));
+    }
+
+    private void evict(Subscriber subscriber) {
+        if (unregister(subscriber)) {
+            evictions.increment();
+            log.warn("[MessagePushService] Evicting slow subscriber on appointment {}", subscriber.appointmentId);
+            subscriber.emitter.complete();
+        }
+    }
+
+    private boolean unregister(Subscriber subscriber) {
+        if (!subscriber.closed.compareAndSet(false, true)) {
+            return false;
+        }
+        subscribers.computeIfPresent(subscriber.appointmentId, (id, set) -> {
+            set.remove(subscriber);
+            return set.isEmpty() ? null : set;
+        });
+        subscriberCount.decrementAndGet();
+        subscriber.queue.clear();
+        return true;
+    }
+
+    private static final class Subscriber {
+        private final Long appointmentId;
+        private final String email;
+        private final SseEmitter emitter;
+        private final Queue<Outbound> queue = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger queued = new AtomicInteger();
+        private final AtomicBoolean draining = new AtomicBoolean(false);
+        private final AtomicBoolean ready = new AtomicBoolean(false);
+        private final AtomicBoolean closed = new AtomicBoolean(false);
+        private final AtomicLong lastSentId = new AtomicLong(0);
+        /** Newest message id the client held when the stream opened */
+        private final AtomicLong startId = new AtomicLong(0);
+
+        private Subscriber(Long appointmentId, String email, SseEmitter emitter) {
+            this.appointmentId = appointmentId;
+            this.email = email;
+            this.emitter = emitter;
+        }
+
+        /** Newest message id the client holds: where it started, or the last one sent since */
+        private long heldThrough() {
+            return Math.max(startId.get(), lastSentId.get());
+        }
+
+        /** Request path the stream was opened on, for the audit log */
+        private String path() {
+            return "/api/messages/appointment/" + appointmentId + "/stream";
+        }
+    }
+
+    /** One queued SSE event; a null name is a heartbeat comment */
+    private record Outbound(String name, Long id, Object data) {
+    }
+}
@@ -1,26 +1,113 @@
 package com.carenexus.direct.service;
 
+import com.carenexus.direct.dto.ContentSearchPageDTO;
 import com.carenexus.direct.dto.MessageDTO;
+import com.carenexus.direct.event.EntityChangedEvent;
+import com.carenexus.direct.event.EntityChangedEvent.ChangeType;
+import com.carenexus.direct.event.EntityChangedEvent.EntityType;
+import com.carenexus.direct.exception.BadRequestException;
+import com.carenexus.direct.exception.ConflictException;
 import com.carenexus.direct.exception.NotFoundException;
 import com.carenexus.direct.mapper.MessageMapper;
 import com.carenexus.direct.model.Message;
+import com.carenexus.direct.repository.AppointmentRepository;
 import com.carenexus.direct.repository.MessageRepository;
+import com.carenexus.direct.util.CompressedText;
+import com.fasterxml.jackson.databind.JsonNode;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
 
 @Service
 @RequiredArgsConstructor
 public class MessageService {
 
+    /** Keyset start of the content search scan: after any stored timestamp */
+    private static final LocalDateTime SCAN_START = LocalDateTime.of(9999, 12, 31, 0, 0);
+    private static final int SCAN_BATCH = 500;
+    /** Members a merge patch may change */
+    private static final Set<String> PATCHABLE = Set.of("content");
+
     private final MessageRepository messageRepository;
+    private final AppointmentRepository appointmentRepository;
+    private final ApplicationEventPublisher eventPublisher;
+    private final QueryResultCache queryResultCache;
+    private final MessageArchiveService messageArchiveService;
+    private final AttachmentService attachmentService;
+    private final TransactionTemplate transactionTemplate;
+    private final MergePatchService mergePatchService;
+    private final SyncService syncService;
+    private final InboxService inboxService;
+
+    /** Messages one content search window decrypts and matches */
+    @Value("${encryption.content-search-scan:5000}")
+    private int contentSearchScan;
+
+    /** Messages per window that searchByContent looks at (see X-Content-Search-Scope) */
+    public int getContentSearchScan() {
+        return contentSearchScan;
+    }
 
     public Message save(Message message) {
-        return messageRepository.save(message);
+        ChangeType changeType = message.getId() == null ? ChangeType.CREATED : ChangeType.UPDATED;
+        Message saved = transactionTemplate.execute(status -> {
+            lockAppointment(message);
+            Message written = messageRepository.save(message);
+            record(changeType, written);
+            return written;
+        });
+        publish(changeType, saved);
+        return saved;
+    }
+
+    /** Insert a new message and link its attachments in one transaction */
+    public Message saveWithAttachments(Message message, List<Long> attachmentIds) {
+        Message saved = transactionTemplate.execute(status -> {
+            lockAppointment(message);
+            Message inserted = messageRepository.save(message);
+            attachmentService.link(attachmentIds, inserted.getId(), inserted.getUserEmail());
+            record(ChangeType.CREATED, inserted);
+            return inserted;
+        });
+        publish(ChangeType.CREATED, saved);
+        return saved;
+    }
+
+    /** Insert new messages in one multi-row batch (write-behind ingestion); returns those inserted */
+    public List<Message> saveBatch(List<Message> messages) {
+        List<Message> fresh = messages;
+        List<String> keys = messages.stream().map(Message::getIngestKey).filter(Objects::nonNull).toList();
+        if (!keys.isEmpty()) {
+            // Replayed or retried ingest batch: skip (and do not announce again) what is already stored
+            Set<String> stored = new HashSet<>(messageRepository.findIngestKeys(keys));
+            fresh = messages.stream().filter(message -> !stored.contains(message.getIngestKey())).toList();
+        }
+        List<Message> inserted = fresh;
+        transactionTemplate.executeWithoutResult(status -> {
+            inserted.forEach(this::lockAppointment);
+            messageRepository.insertBatch(inserted);
+            inserted.forEach(message -> record(ChangeType.CREATED, message));
+        });
+        inserted.forEach(message -> publish(ChangeType.CREATED, message));
+        return inserted;
     }
 
     /** Get all messages belonging to the authenticated user */
@@ -28,52 +115,221 @@ public class MessageService {
         return messageRepository.findByUserEmail(email);
     }
 
-    /** Get messages for a specific appointment with ownership validation */
+    /** Get messages for a specific appointment with ownership validation, including archived ones */
     public List<Message> getByAppointment(Long appointmentId, String email) {
-        return messageRepository.findByAppointmentIdAndUserEmail(appointmentId, email);
+        TreeMap<Long, Message> byId = new TreeMap<>();
+        messageArchiveService.findByAppointment(appointmentId, email).forEach(m -> byId.put(m.getId(), m));
+        messageRepository.findByAppointmentIdAndUserEmail(appointmentId, email).forEach(m -> byId.put(m.getId(), m));
+        return List.copyOf(byId.values());
     }
 
-    /** Get message by ID with ownership validation */
+    /** Get message by ID with ownership validation, falling through to the archive */
     public Message getByIdAndUser(Long id, String email) {
         return messageRepository.findByIdAndUserEmail(id, email)
+                .or(() -> messageArchiveService.find(id, email))
                 .orElseThrow(() -> new NotFoundException("Message not found"));
     }
 
-    /** Update message with ownership validation */
+    /**
+     * Update message in one statement conditional on ownership and the version
+     * the client sent (none: last write wins), without reading it first. If
+     * it matches nothing, one existence check tells 409 from 404 (or 409 for
+     * an archived message). The row is then read back in the same transaction
+     * for the recipient and appointment the inbox and listeners need.
+     */
     public Message update(Long id, Message messageDetails, String userEmail) {
-        Message message = getByIdAndUser(id, userEmail);  // Validates ownership
-        message.setContent(messageDetails.getContent());
-        message.setTimestamp(messageDetails.getTimestamp());
-        return messageRepository.save(message);
+        Message message = transactionTemplate.execute(status -> {
+            if (messageRepository.updateOwned(id, userEmail, messageDetails.getVersion(),
+                    messageDetails.getContent(), messageDetails.getTimestamp()) == 0) {
+                throw messageRepository.existsByIdAndUserEmail(id, userEmail)
+                        ? new ConflictException("Message was modified by another request")
+                        : notWritable(id, userEmail);
+            }
+            Message written = messageRepository.findByIdAndUserEmail(id, userEmail)
+                    .orElseThrow(() -> new NotFoundException("Message not found"));
+            record(ChangeType.UPDATED, written);
+            return written;
+        });
+        publish(ChangeType.UPDATED, message);
+        return message;
     }
 
-    /** Delete message with ownership validation */
+    /**
+     * Apply a JSON merge patch to a hot message. A changed body is written
+     * with a new timestamp, as by update(); an unchanged one writes nothing.
+     */
+    public Message patch(Long id, JsonNode patch, String userEmail) {
+        MergePatchService.Outcome<Message> outcome = transactionTemplate.execute(status -> {
+            Message message = getWritable(id, userEmail);  // Validates ownership
+            MessageDTO patched = mergePatchService.apply(MessageMapper.toDto(message), patch, PATCHABLE);
+            mergePatchService.checkVersion(patched.getVersion(), message.getVersion(), "Message");
+            String content = patched.getContent().toString();
+            if (content.contentEquals(message.getContent())) {
+                return new MergePatchService.Outcome<>(message, false);
+            }
+            message.setContent(CompressedText.of(content));
+            message.setTimestamp(LocalDateTime.now());  // The archiver keeps rows edited after it read them
+            record(ChangeType.UPDATED, message);
+            return new MergePatchService.Outcome<>(message, true);
+        });
+        if (outcome.changed()) {
+            publish(ChangeType.UPDATED, outcome.entity());
+        }
+        return outcome.entity();
+    }
+
+    /**
+     * Delete message with ownership validation. The message is read first:
+     * the inbox and push listener need its recipient and appointment.
+     * Archived messages are erased from the archive (tombstoned).
+     */
     public void delete(Long id, String userEmail) {
-        Message message = getByIdAndUser(id, userEmail);
-        messageRepository.delete(message);
+        Message hot = messageRepository.findByIdAndUserEmail(id, userEmail).orElse(null);
+        Message message = transactionTemplate.execute(status -> {
+            Message deleted = hot;
+            if (deleted == null) {
+                deleted = messageArchiveService.erase(id, userEmail)
+                        .orElseThrow(() -> new NotFoundException("Message not found"));
+            } else if (messageRepository.deleteOwned(id, userEmail, deleted.getTimestamp()) == 0) {
+                throw new ConflictException("Message was changed or deleted by another request");
+            } else {
+                messageArchiveService.onHotDeleted(deleted);
+            }
+            record(ChangeType.DELETED, deleted);
+            return deleted;
+        });
+        attachmentService.deleteByMessage(id, userEmail);
+        publish(ChangeType.DELETED, message);
     }
 
     /** Get all messages with pagination */
     public Page<MessageDTO> getAllWithPagination(String userEmail, Pageable pageable) {
-        return messageRepository.findByUserEmail(userEmail, pageable)
-                .map(MessageMapper::toDto);
+        return queryResultCache.get(userEmail, EntityType.MESSAGE, "message.getAllWithPagination", List.of(pageable),
+                () -> messageRepository.findByUserEmail(userEmail, pageable)
+                        .map(MessageMapper::toDto));
     }
 
     /** Get messages for specific appointment with pagination */
     public Page<MessageDTO> getAppointmentMessagesWithPagination(Long appointmentId, String userEmail, Pageable pageable) {
-        return messageRepository.findByAppointmentIdAndUserEmail(appointmentId, userEmail, pageable)
-                .map(MessageMapper::toDto);
+        return queryResultCache.get(userEmail, EntityType.MESSAGE, "message.getAppointmentMessagesWithPagination", List.of(appointmentId, pageable),
+                () -> messageRepository.findByAppointmentIdAndUserEmail(appointmentId, userEmail, pageable)
+                        .map(MessageMapper::toDto));
     }
 
-    /** Search messages by content with pagination */
-    public Page<MessageDTO> searchByContent(String userEmail, String content, Pageable pageable) {
-        return messageRepository.searchByContentAndUserEmail(userEmail, content, pageable)
-                .map(MessageMapper::toDto);
+    /**
+     * Messages containing the text (case-insensitive). Bodies are encrypted,
+     * so this decrypts (and, for compressed bodies, inflates) a window of
+     * the owner's encryption.content-search-scan messages, newest first and
+     * older than the {@code before} cursor (null: from the newest), in
+     * keyset batches, and matches in memory. The page says whether older
+     * messages were left unsearched and the cursor to search them with.
+     */
+    public ContentSearchPageDTO searchByContent(String userEmail, String content, String before, Pageable pageable) {
+        String needle = content.toLowerCase(Locale.ROOT);
+        Comparator<Message> order = comparator(pageable.getSort());
+        LocalDateTime startTimestamp = SCAN_START;
+        long startId = Long.MAX_VALUE;
+        if (before != null) {
+            int comma = before.lastIndexOf(',');
+            try {
+                startTimestamp = LocalDateTime.parse(before.substring(0, Math.max(comma, 0)));
+                startId = Long.parseLong(before.substring(comma + 1));
+            } catch (DateTimeParseException | NumberFormatException e) {
+                throw new BadRequestException("before must be a continueBefore value of an earlier search");
+            }
+        }
+        LocalDateTime fromTimestamp = startTimestamp;
+        long fromId = startId;
+        return queryResultCache.get(userEmail, EntityType.MESSAGE, "message.searchByContent",
+                List.of(content, Objects.toString(before, ""), pageable), () -> {
+            List<Message> matches = new ArrayList<>();
+            LocalDateTime beforeTimestamp = fromTimestamp;
+            long beforeId = fromId;
+            int scanned = 0;
+            while (scanned < contentSearchScan) {
+                int limit = Math.min(SCAN_BATCH, contentSearchScan - scanned);
+                List<Message> batch = messageRepository.findOlderByUserEmail(userEmail, beforeTimestamp, beforeId,
+                        PageRequest.of(0, limit));
+                for (Message message : batch) {
+                    if (message.getContent().toString().toLowerCase(Locale.ROOT).contains(needle)) {
+                        matches.add(message);
+                    }
+                }
+                scanned += batch.size();
+                if (!batch.isEmpty()) {
+                    Message last = batch.get(batch.size() - 1);
+                    beforeTimestamp = last.getTimestamp();
+                    beforeId = last.getId();
+                }
+                if (batch.size() < limit) {
+                    break;  // Reached the owner's oldest message
+                }
+            }
+            // A full window may have stopped just short of older messages: one probe row tells
+            boolean truncated = scanned == contentSearchScan && !messageRepository.findOlderByUserEmail(
+                    userEmail, beforeTimestamp, beforeId, PageRequest.of(0, 1)).isEmpty();
+            matches.sort(order);
+            int from = (int) Math.min(pageable.isPaged() ? pageable.getOffset() : 0, matches.size());
+            int to = pageable.isPaged() ? Math.min(from + pageable.getPageSize(), matches.size()) : matches.size();
+            return new ContentSearchPageDTO(matches.subList(from, to).stream().map(MessageMapper::toDto).toList(),
+                    pageable, matches.size(), truncated, truncated ? beforeTimestamp + "," + beforeId : null);
+        });
     }
 
     /** Search messages by date range with pagination */
     public Page<MessageDTO> searchByDateRange(String userEmail, LocalDateTime startDate, LocalDateTime endDate, Pageable pageable) {
-        return messageRepository.searchByDateRangeAndUserEmail(userEmail, startDate, endDate, pageable)
-                .map(MessageMapper::toDto);
+        return queryResultCache.get(userEmail, EntityType.MESSAGE, "message.searchByDateRange", List.of(startDate, endDate, pageable),
+                () -> messageRepository.searchByDateRangeAndUserEmail(userEmail, startDate, endDate, pageable)
+                        .map(MessageMapper::toDto));
+    }
+
+    private static Comparator<Message> comparator(Sort sort) {
+        Comparator<Message> byId = Comparator.comparing(Message::getId);
+        Comparator<Message> comparator = null;
+        for (Sort.Order order : sort) {
+            Comparator<Message> next = switch (order.getProperty()) {
+                case "id" -> byId;
+                case "timestamp" -> Comparator.comparing(Message::getTimestamp);
+                case "sender" -> Comparator.comparing(Message::getSender, Comparator.nullsLast(Comparator.naturalOrder()));
+                case "recipient" -> Comparator.comparing(Message::getRecipient, Comparator.nullsLast(Comparator.naturalOrder()));
+                default -> throw new BadRequestException("Cannot sort messages by " + order.getProperty());
+            };
+            next = order.isDescending() ? next.reversed() : next;
+            comparator = comparator == null ? next : comparator.thenComparing(next);
+        }
+        return comparator == null ? byId : comparator.thenComparing(byId);
+    }
+
+    /** Hot message for update; archived messages can only be deleted */
+    private Message getWritable(Long id, String email) {
+        return messageRepository.findByIdAndUserEmail(id, email).orElseThrow(() -> notWritable(id, email));
+    }
+
+    private RuntimeException notWritable(Long id, String email) {
+        return messageArchiveService.find(id, email).isPresent()
+                ? new ConflictException("Archived messages are read-only")
+                : new NotFoundException("Message not found");
+    }
+
+    /**
+     * Share-lock the message's appointment until commit, the check the dropped
+     * message → appointment FK made (V3); 404 if it was deleted meanwhile
+     */
+    private void lockAppointment(Message message) {
+        if (message.getAppointment() != null
+                && appointmentRepository.lockForShare(message.getAppointment().getId()).isEmpty()) {
+            throw new NotFoundException("Appointment not found");
+        }
+    }
+
+    /** Change log entry and recipient's inbox row of a write; called inside the write's transaction */
+    private void record(ChangeType changeType, Message message) {
+        syncService.record(EntityType.MESSAGE, changeType, message.getId(), message.getUserEmail());
+        inboxService.apply(changeType, message);
+    }
+
+    private void publish(ChangeType changeType, Message message) {
+        eventPublisher.publishEvent(new EntityChangedEvent(
+                EntityType.MESSAGE, changeType, message.getId(), message.getUserEmail(), message));
     }
 }
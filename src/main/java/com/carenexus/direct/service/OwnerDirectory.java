@@ -0,0 +1,174 @@
+package com.carenexus.direct.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.stereotype.Service;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Optional;
+
+/**
+ * ====================================================================
+ * Owner Directory - Email ↔ Compact Numeric Owner Id
+ * ====================================================================
+ *
+ * patient, doctor, appointment and message store their owner as a
+ * 4-byte owner_id into the owner dictionary table instead of the
+ * user's email, which keeps rows and every (owner, ...) index narrow.
+ * The application keeps working with emails: OwnerIdConverter maps the
+ * entities' userEmail attribute through this directory, for writes,
+ * reads and query parameters alike.
+ *
+ * - Only writes assign ids (idOfOrCreate: OwnerAssignmentListener before
+ *   an entity is persisted, the JDBC write paths, and
+ *   OwnerResolutionInterceptor for mutating requests). Reads look up
+ *   (findId): an email that never wrote has no id, gets no owner row,
+ *   and its queries run against UNKNOWN_OWNER_ID, which matches nothing
+ *
+ * - Both directions are cached (Caffeine, owners.cache-size); owners
+ *   never change id, so entries never go stale. The cache is filled
+ *   with one query at startup, ahead of the index builds that read
+ *   every row
+ * - OwnerResolutionInterceptor resolves the caller once per request
+ *   before any transaction starts, so the lookups inside Hibernate's
+ *   flush / result mapping are cache hits
+ * - Only known owners are cached: a lookup of an unknown email queries
+ *   again next time, so an id assigned since (here or on another
+ *   instance) is found
+ * - A miss runs on its own auto-commit connection, never the caller's
+ *   transaction: an id handed out is committed even if that
+ *   transaction rolls back
+ * - New emails get an id with INSERT IGNORE + SELECT, so concurrent
+ *   first writes by the same user on several instances agree
+ *
+ * ====================================================================
+ */
+@Slf4j
+@Service
+public class OwnerDirectory {
+
+    /** Never assigned (owner.id is AUTO_INCREMENT from 1): owner_id = 0 matches no row */
+    public static final int UNKNOWN_OWNER_ID = 0;
+
+    private final DataSource dataSource;
+    private final long cacheSize;
+    private final Cache<String, Integer> ids;
+    private final Cache<Integer, String> emails;
+
+    public OwnerDirectory(DataSource dataSource,
+                          MeterRegistry meterRegistry,
+                          @Value("${owners.cache-size:100000}") long cacheSize) {
+        this.dataSource = dataSource;
+        this.cacheSize = cacheSize;
+        this.ids = Caffeine.newBuilder().maximumSize(cacheSize).recordStats().build();
+        this.emails = Caffeine.newBuilder().maximumSize(cacheSize).recordStats().build();
+        CaffeineCacheMetrics.monitor(meterRegistry, ids, "owner-ids");
+        CaffeineCacheMetrics.monitor(meterRegistry, emails, "owner-emails");
+    }
+
+    @EventListener(ContextRefreshedEvent.class)
+    public void preload() {
+        int loaded = 0;
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement query = connection.prepareStatement("SELECT id, email FROM owner ORDER BY id DESC LIMIT ?")) {
+            query.setLong(1, cacheSize);
+            try (ResultSet rows = query.executeQuery()) {
+                while (rows.next()) {
+                    ids.put(rows.getString(2), rows.getInt(1));
+                    emails.put(rows.getInt(1), rows.getString(2));
+                    loaded++;
+                }
+            }
+            log.info("[OwnerDirectory] ✓ Preloaded {} owners", loaded);
+        } catch (SQLException e) {
+            log.warn("[OwnerDirectory] ✗ Preload failed, owners resolve on demand: {}", e.getMessage());
+        }
+    }
+
+    /** Owner id of an email, empty if it never wrote anything; never assigns one */
+    public Optional<Integer> findId(String email) {
+        return Optional.ofNullable(ids.get(email, this::find));
+    }
+
+    /** Owner id of an email, assigning one on first use; write paths only */
+    public int idOfOrCreate(String email) {
+        return ids.get(email, this::resolve);
+    }
+
+    /** Email of an owner id */
+    public String emailOf(int id) {
+        String email = emails.get(id, this::lookup);
+        if (email == null) {
+            throw new IllegalStateException("Unknown owner id " + id);
+        }
+        return email;
+    }
+
+    private Integer resolve(String email) {
+        try (Connection connection = dataSource.getConnection()) {
+            connection.setAutoCommit(true);
+            Integer id = select(connection, email);
+            if (id == null) {
+                try (PreparedStatement insert = connection.prepareStatement("INSERT IGNORE INTO owner (email) VALUES (?)")) {
+                    insert.setString(1, email);
+                    insert.executeUpdate();
+                }
+                id = select(connection, email);  // Ours, or the one a concurrent insert won with
+                log.debug("[OwnerDirectory] ✓ Owner {} → {}", email, id);
+            }
+            emails.put(id, email);
+            return id;
+        } catch (SQLException e) {
+            throw new DataAccessResourceFailureException("Failed to resolve owner id", e);
+        }
+    }
+
+    private Integer find(String email) {
+        try (Connection connection = dataSource.getConnection()) {
+            Integer id = select(connection, email);
+            if (id != null) {
+                emails.put(id, email);
+            }
+            return id;  // null: not cached
+        } catch (SQLException e) {
+            throw new DataAccessResourceFailureException("Failed to look up owner id", e);
+        }
+    }
+
+    private String lookup(Integer id) {
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement query = connection.prepareStatement("SELECT email FROM owner WHERE id = ?")) {
+            query.setInt(1, id);
+            try (ResultSet row = query.executeQuery()) {
+                if (!row.next()) {
+                    return null;
+                }
+                String email = row.getString(1);
+                ids.put(email, id);
+                return email;
+            }
+        } catch (SQLException e) {
+            throw new DataAccessResourceFailureException("Failed to look up owner " + id, e);
+        }
+    }
+
+    private static Integer select(Connection connection, String email) throws SQLException {
+        try (PreparedStatement query = connection.prepareStatement("SELECT id FROM owner WHERE email = ?")) {
+            query.setString(1, email);
+            try (ResultSet row = query.executeQuery()) {
+                return row.next() ? row.getInt(1) : null;
+            }
+        }
+    }
+}
@@ -0,0 +1,246 @@
+package com.carenexus.direct.service;
+
+import com.carenexus.direct.event.CacheInvalidationBus;
+import com.carenexus.direct.event.EntityChangedEvent.ChangeType;
+import com.carenexus.direct.event.EntityChangedEvent.EntityType;
+import com.carenexus.direct.event.RemoteInvalidationEvent;
+import com.carenexus.direct.util.MonthlyPartitions;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * ====================================================================
+ * Partition Maintenance Service - Monthly Partitions of message and
+ * appointment (created by the V3 migration)
+ * ====================================================================
+ *
+ * Runs on startup and daily (partitioning.cron):
+ *
+ * 1. Ahead: splits new months off p_future so there are always
+ *    partitioning.months-ahead months ready. That defaults to the
+ *    booking horizon (booking.max-advance-months), so p_future is empty
+ *    and the split is a metadata change. A row dated past the horizon
+ *    (e.g. a message with a client-set timestamp) makes REORGANIZE copy
+ *    it under a table lock: this is logged, and the job runs off-peak.
+ *
+ * 2. Retention (off unless *-retention-months > 0): months entirely
+ *    older than the retention window are removed with DROP PARTITION -
+ *    a file unlink instead of a DELETE that scans, undo-logs and
+ *    fragments millions of rows. p_history is emptied (TRUNCATE
+ *    PARTITION) once its whole range is past the window.
+ *    Before an appointment month is dropped, messages referencing its
+ *    appointments are detached (appointment_id = NULL) and its slot
+ *    cells released, since there are no foreign keys to do it.
+ *
+ * Removals bypass the services, so they are made visible here:
+ * - Every dropped row gets a DELETED change log entry and every detached
+ *   message an UPDATED one (written in batches before the DDL), so sync
+ *   clients drop them. A failed drop leaves tombstones for rows that are
+ *   removed on the next run
+ * - Every instance drops its caches afterwards (CacheInvalidationBus)
+ * - No EntityChangedEvents are published: inbox rows keep the preview
+ *   of a dropped message, and live SSE subscribers are reset with the
+ *   caches rather than told about each row
+ *
+ * Queries stay prunable as long as they filter on the raw partitioning
+ * column (BETWEEN / >= on timestamp or appointment_time), which every
+ * date-range and upcoming-appointment query in the repositories does.
+ *
+ * DDL is idempotent and re-checked on each run, so concurrent instances
+ * at worst log a failed duplicate attempt.
+ *
+ * ====================================================================
+ */
+@Slf4j
+@Service
+public class PartitionMaintenanceService {
+
+    /** Change log entries written per statement for removed rows */
+    private static final int LOG_BATCH = 5_000;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ApplicationEventPublisher eventPublisher;
+    private final ObjectProvider<CacheInvalidationBus> cacheBus;
+    private final boolean enabled;
+    private final int monthsAhead;
+    private final int messageRetentionMonths;
+    private final int appointmentRetentionMonths;
+
+    public PartitionMaintenanceService(JdbcTemplate jdbcTemplate,
+                                       ApplicationEventPublisher eventPublisher,
+                                       ObjectProvider<CacheInvalidationBus> cacheBus,
+                                       @Value("${partitioning.enabled:true}") boolean enabled,
+                                       @Value("${partitioning.months-ahead:${booking.max-advance-months:24}}") int monthsAhead,
+                                       @Value("${partitioning.message-retention-months:0}") int messageRetentionMonths,
+                                       @Value("${partitioning.appointment-retention-months:0}") int appointmentRetentionMonths) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.eventPublisher = eventPublisher;
+        this.cacheBus = cacheBus;
+        this.enabled = enabled;
+        this.monthsAhead = monthsAhead;
+        this.messageRetentionMonths = messageRetentionMonths;
+        this.appointmentRetentionMonths = appointmentRetentionMonths;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onReady() {
+        maintain();
+    }
+
+    @Scheduled(cron = "${partitioning.cron:0 15 3 * * *}")
+    public void maintain() {
+        if (!enabled) {
+            return;
+        }
+        maintain("message", messageRetentionMonths);
+        maintain("appointment", appointmentRetentionMonths);
+    }
+
+    private void maintain(String table, int retentionMonths) {
+        try {
+            List<String> partitions = partitions(table);
+            if (partitions.isEmpty()) {
+                log.warn("[PartitionMaintenanceService] ✗ Table {} is not partitioned, skipping", table);
+                return;
+            }
+            addMonthsAhead(table, partitions);
+            if (retentionMonths > 0) {
+                dropAged(table, partitions, YearMonth.now().minusMonths(retentionMonths));
+            }
+        } catch (DataAccessException e) {
+            log.error("[PartitionMaintenanceService] ✗ Maintenance of {} failed: {}", table, e.getMessage());
+        }
+    }
+
+    private void addMonthsAhead(String table, List<String> partitions) {
+        YearMonth target = YearMonth.now().plusMonths(monthsAhead);
+        YearMonth last = partitions.stream()
+                .map(MonthlyPartitions::month)
+                .flatMap(Optional::stream)
+                .max(YearMonth::compareTo)
+                .orElse(YearMonth.now().minusMonths(1));
+
+        List<YearMonth> missing = new ArrayList<>();
+        for (YearMonth month = last.plusMonths(1); !month.isAfter(target); month = month.plusMonths(1)) {
+            missing.add(month);
+        }
+        if (missing.isEmpty()) {
+            return;
+        }
+        if (hasRows(table, MonthlyPartitions.FUTURE)) {
+            log.warn("[PartitionMaintenanceService] {}.{} has rows dated past the last month: "
+                    + "splitting it copies them under a table lock", table, MonthlyPartitions.FUTURE);
+        }
+        jdbcTemplate.execute(MonthlyPartitions.addMonths(table, missing));
+        log.info("[PartitionMaintenanceService] ✓ Added {} partitions {}..{}", table,
+                MonthlyPartitions.name(missing.get(0)), MonthlyPartitions.name(missing.get(missing.size() - 1)));
+    }
+
+    /** Drop partitions whose whole range is before the cutoff month */
+    private void dropAged(String table, List<String> partitions, YearMonth cutoff) {
+        YearMonth firstMonthly = null;
+        List<String> aged = new ArrayList<>();
+        for (String partition : partitions) {
+            Optional<YearMonth> month = MonthlyPartitions.month(partition);
+            if (month.isEmpty()) {
+                continue;
+            }
+            if (firstMonthly == null || month.get().isBefore(firstMonthly)) {
+                firstMonthly = month.get();
+            }
+            if (month.get().isBefore(cutoff)) {
+                aged.add(partition);
+            }
+        }
+        // p_history ends where the first monthly partition starts
+        if (partitions.contains(MonthlyPartitions.HISTORY) && firstMonthly != null && !firstMonthly.isAfter(cutoff)
+                && hasRows(table, MonthlyPartitions.HISTORY)) {
+            aged.add(0, MonthlyPartitions.HISTORY);
+        }
+        if (aged.isEmpty()) {
+            return;
+        }
+
+        String dropped = String.join(", ", aged);
+        EntityType type = "appointment".equals(table) ? EntityType.APPOINTMENT : EntityType.MESSAGE;
+        for (String partition : aged) {
+            if (type == EntityType.APPOINTMENT) {
+                detachAppointments(partition);
+            }
+            logChanges("`" + table + "` PARTITION (" + partition + ") t", "", type, ChangeType.DELETED);
+        }
+        // p_history itself can't be dropped (it would widen the next partition down to MINVALUE): empty it
+        if (aged.remove(MonthlyPartitions.HISTORY)) {
+            jdbcTemplate.execute("ALTER TABLE `" + table + "` TRUNCATE PARTITION " + MonthlyPartitions.HISTORY);
+        }
+        if (!aged.isEmpty()) {
+            jdbcTemplate.execute("ALTER TABLE `" + table + "` DROP PARTITION " + String.join(", ", aged));
+        }
+        log.info("[PartitionMaintenanceService] ✓ Dropped {} partitions older than {}: {}", table,
+                MonthlyPartitions.name(cutoff), dropped);
+        eventPublisher.publishEvent(RemoteInvalidationEvent.all());
+        cacheBus.ifAvailable(CacheInvalidationBus::invalidateAll);
+    }
+
+    /** Messages keep existing without their appointment; its slot cells are freed */
+    private void detachAppointments(String partition) {
+        String ids = "SELECT id FROM appointment PARTITION (" + partition + ")";
+        logChanges("message t", " AND t.appointment_id IN (" + ids + ")", EntityType.MESSAGE, ChangeType.UPDATED);
+        int messages = jdbcTemplate.update("UPDATE message SET appointment_id = NULL WHERE appointment_id IN (" + ids + ")");
+        jdbcTemplate.update("DELETE FROM appointment_slot WHERE appointment_id IN (" + ids + ")");
+        if (messages > 0) {
+            log.info("[PartitionMaintenanceService] ✓ Detached {} messages from appointments in {}", messages, partition);
+        }
+    }
+
+    /**
+     * Change log entry for every row of source (aliased t) matching the
+     * condition, for its owner; keyset batches of LOG_BATCH ids
+     */
+    private void logChanges(String source, String condition, EntityType type, ChangeType change) {
+        long after = 0;
+        int logged = 0;
+        while (true) {
+            Long last = jdbcTemplate.queryForObject("SELECT MAX(id) FROM (SELECT t.id FROM " + source
+                    + " WHERE t.id > ?" + condition + " ORDER BY t.id LIMIT " + LOG_BATCH + ") b", Long.class, after);
+            if (last == null) {
+                break;
+            }
+            logged += jdbcTemplate.update("INSERT INTO change_log (owner_email, entity_type, entity_id, change_type, changed_at) "
+                    + "SELECT o.email, ?, t.id, ?, NOW(6) FROM " + source + " JOIN owner o ON o.id = t.owner_id "
+                    + "WHERE t.id > ? AND t.id <= ?" + condition, type.name(), change.name(), after, last);
+            after = last;
+        }
+        if (logged > 0) {
+            log.info("[PartitionMaintenanceService] ✓ Logged {} {} {} changes for sync", logged, type, change);
+        }
+    }
+
+    private boolean hasRows(String table, String partition) {
+        Long rows = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM (SELECT 1 FROM `" + table + "` PARTITION ("
+                + partition + ") LIMIT 1) h", Long.class);
+        return rows != null && rows > 0;
+    }
+
+    /** Partition names in boundary order; empty if the table isn't partitioned */
+    private List<String> partitions(String table) {
+        return jdbcTemplate.queryForList(
+                "SELECT PARTITION_NAME FROM information_schema.PARTITIONS "
+                        + "WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = ? AND PARTITION_NAME IS NOT NULL "
+                        + "ORDER BY PARTITION_ORDINAL_POSITION",
+                String.class, table);
+    }
+}
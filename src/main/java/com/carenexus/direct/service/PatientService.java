@@ -1,27 +1,68 @@
 package com.carenexus.direct.service;
 
 import com.carenexus.direct.dto.PatientDTO;
+import com.carenexus.direct.event.EntityChangedEvent;
+import com.carenexus.direct.event.EntityChangedEvent.ChangeType;
+import com.carenexus.direct.event.EntityChangedEvent.EntityType;
+import com.carenexus.direct.exception.BadRequestException;
+import com.carenexus.direct.exception.ConflictException;
 import com.carenexus.direct.exception.ForbiddenException;
 import com.carenexus.direct.exception.NotFoundException;
 import com.carenexus.direct.mapper.PatientMapper;
 import com.carenexus.direct.model.Patient;
+import com.carenexus.direct.model.PatientBlindIndexListener;
+import com.carenexus.direct.repository.AppointmentRepository;
 import com.carenexus.direct.repository.PatientRepository;
+import com.fasterxml.jackson.databind.JsonNode;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.util.Comparator;
 import java.util.List;
+import java.util.Objects;
+import java.util.Set;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Service
 @RequiredArgsConstructor
 public class PatientService {
 
+    /** Stored encrypted (V7): SQL cannot order by them */
+    private static final Set<String> ENCRYPTED_PROPERTIES = Set.of("name", "email", "phone");
+    /** Members a merge patch may change (same as PUT) */
+    private static final Set<String> PATCHABLE = Set.of("name", "email", "phone");
+    private static final Comparator<String> TEXT_ORDER = Comparator.nullsLast(String.CASE_INSENSITIVE_ORDER);
+
     private final PatientRepository patientRepository;
+    private final AppointmentRepository appointmentRepository;
+    private final PatientBlindIndexListener blindIndexes;
+    private final ApplicationEventPublisher eventPublisher;
+    private final QueryResultCache queryResultCache;
+    private final MergePatchService mergePatchService;
+    private final TransactionTemplate transactionTemplate;
+    private final SyncService syncService;
+
+    /** Deprecated pre-encryption search and sort contract, by decrypting the owner's patients */
+    @Value("${encryption.legacy-patient-search:true}")
+    private boolean legacySearch = true;
 
     public Patient save(Patient patient) {
-        return patientRepository.save(patient);
+        ChangeType changeType = patient.getId() == null ? ChangeType.CREATED : ChangeType.UPDATED;
+        Patient saved = transactionTemplate.execute(status -> {
+            Patient written = patientRepository.save(patient);
+            syncService.record(EntityType.PATIENT, changeType, written.getId(), written.getUserEmail());
+            return written;
+        });
+        publish(changeType, saved);
+        return saved;
     }
 
     /** Get all patients belonging to the authenticated user */
@@ -41,19 +82,56 @@ public class PatientService {
                 .orElseThrow(() -> new NotFoundException("Patient not found"));
     }
 
-    /** Update patient with ownership validation */
+    /**
+     * Update patient in one statement conditional on ownership and the version
+     * the client sent (none: last write wins), without reading it first. If
+     * it matches nothing, one existence check tells 409 from 404. The request
+     * replaces every column, so with a version the result is built from it;
+     * without one the row is read back in the same transaction.
+     */
     public Patient update(Long id, Patient patientDetails, String userEmail) {
-        Patient patient = getById(id, userEmail);  // Validates ownership
-        patient.setPhone(patientDetails.getPhone());
-        patient.setName(patientDetails.getName());
-        patient.setEmail(patientDetails.getEmail());
-        return patientRepository.save(patient);
+        Long version = patientDetails.getVersion();
+        byte[] namePrefixIndex = blindIndexes.namePrefixToken(userEmail, patientDetails.getName());
+        byte[] emailIndex = blindIndexes.emailToken(userEmail, patientDetails.getEmail());
+        Patient saved = transactionTemplate.execute(status -> {
+            if (patientRepository.updateOwned(id, userEmail, version, patientDetails.getName(),
+                    patientDetails.getEmail(), patientDetails.getPhone(), namePrefixIndex, emailIndex) == 0) {
+                throw patientRepository.existsByIdAndUserEmail(id, userEmail)
+                        ? new ConflictException("Patient was modified by another request")
+                        : new NotFoundException("Patient not found");
+            }
+            syncService.record(EntityType.PATIENT, ChangeType.UPDATED, id, userEmail);
+            if (version == null) {
+                return getById(id, userEmail);
+            }
+            return Patient.builder()
+                    .id(id)
+                    .name(patientDetails.getName())
+                    .email(patientDetails.getEmail())
+                    .phone(patientDetails.getPhone())
+                    .userEmail(userEmail)
+                    .namePrefixIndex(namePrefixIndex)
+                    .emailIndex(emailIndex)
+                    .version(version + 1)
+                    .build();
+        });
+        publish(ChangeType.UPDATED, saved);
+        return saved;
     }
 
-    /** Delete patient with ownership validation */
+    /**
+     * Delete patient with ownership validation in the DELETE itself; refused
+     * (409) while appointments reference the patient, as in DoctorService.delete
+     */
     public void delete(Long id, String userEmail) {
-        Patient patient = getById(id, userEmail);  // Validates ownership
-        patientRepository.delete(patient);
+        transactionTemplate.executeWithoutResult(status -> {
+            if (patientRepository.deleteOwned(id, userEmail) == 0) {
+                throw new NotFoundException("Patient not found");
+            }
+            assertNoAppointments(id);
+            syncService.record(EntityType.PATIENT, ChangeType.DELETED, id, userEmail);
+        });
+        publish(ChangeType.DELETED, Patient.builder().id(id).userEmail(userEmail).build());
     }
 
     /** Get all patients with DTO mapping */
@@ -89,30 +167,185 @@ public class PatientService {
         return PatientMapper.toDto(patient);
     }
 
+    /**
+     * Apply a JSON merge patch. Read and written in one transaction: only
+     * changed columns are written (the blind index listener refreshes the
+     * tokens of a changed name / email), and nothing when nothing changed.
+     */
+    public PatientDTO patchPatient(Long id, JsonNode patch, String userEmail) {
+        MergePatchService.Outcome<Patient> outcome = transactionTemplate.execute(status -> {
+            Patient patient = getById(id, userEmail);  // Validates ownership
+            PatientDTO patched = mergePatchService.apply(PatientMapper.toDto(patient), patch, PATCHABLE);
+            mergePatchService.checkVersion(patched.getVersion(), patient.getVersion(), "Patient");
+            boolean changed = !Objects.equals(patient.getName(), patched.getName())
+                    || !Objects.equals(patient.getEmail(), patched.getEmail())
+                    || !Objects.equals(patient.getPhone(), patched.getPhone());
+            patient.setName(patched.getName());
+            patient.setEmail(patched.getEmail());
+            patient.setPhone(patched.getPhone());
+            if (changed) {
+                syncService.record(EntityType.PATIENT, ChangeType.UPDATED, id, userEmail);
+            }
+            return new MergePatchService.Outcome<>(patient, changed);
+        });
+        if (outcome.changed()) {
+            publish(ChangeType.UPDATED, outcome.entity());
+        }
+        return PatientMapper.toDto(outcome.entity());
+    }
+
     /** Delete patient with optional admin override */
     public void deletePatient(Long id, String userEmail, boolean isAdmin) {
         if (isAdmin) {
-            patientRepository.deleteById(id);
+            patientRepository.findById(id).ifPresent(patient -> {
+                transactionTemplate.executeWithoutResult(status -> {
+                    patientRepository.delete(patient);
+                    patientRepository.flush();  // Row lock before the check
+                    assertNoAppointments(id);
+                    // Tombstone goes to the owner, not the admin
+                    syncService.record(EntityType.PATIENT, ChangeType.DELETED, id, patient.getUserEmail());
+                });
+                publish(ChangeType.DELETED, patient);
+            });
         } else {
             delete(id, userEmail);
         }
     }
 
-    /** Get all patients with pagination */
+    /**
+     * Get all patients with pagination. Sorting by an encrypted field
+     * (deprecated) decrypts all of the owner's patients and pages in memory.
+     */
     public Page<PatientDTO> getAllWithPagination(String userEmail, Pageable pageable) {
-        return patientRepository.findByUserEmail(userEmail, pageable)
-                .map(PatientMapper::toDto);
+        if (sortsByEncryptedProperty(pageable.getSort())) {
+            requireLegacySearch("Sorting patients by name, email or phone");
+            return queryResultCache.get(userEmail, EntityType.PATIENT, "patient.getAllWithPagination.decrypted",
+                    List.of(pageable), () -> page(patientRepository.findByUserEmail(userEmail).stream(), pageable));
+        }
+        return queryResultCache.get(userEmail, EntityType.PATIENT, "patient.getAllWithPagination", List.of(pageable),
+                () -> patientRepository.findByUserEmail(userEmail, pageable)
+                        .map(PatientMapper::toDto));
+    }
+
+    /** Whether the sort needs decrypted values (the deprecated in-memory path) */
+    public static boolean sortsByEncryptedProperty(Sort sort) {
+        return sort.stream().anyMatch(order -> ENCRYPTED_PROPERTIES.contains(order.getProperty()));
     }
 
-    /** Search patients by name with pagination */
+    /**
+     * Patients whose name contains the given text (case-insensitive), the
+     * contract from before names were encrypted. Deprecated: it decrypts all
+     * of the owner's patients; use searchByNamePrefix.
+     */
     public Page<PatientDTO> searchByName(String userEmail, String name, Pageable pageable) {
-        return patientRepository.searchByNameAndUserEmail(userEmail, name, pageable)
-                .map(PatientMapper::toDto);
+        requireLegacySearch("Substring name search");
+        String needle = PatientBlindIndexListener.normalize(name);
+        return queryResultCache.get(userEmail, EntityType.PATIENT, "patient.searchByName",
+                List.of(Objects.toString(needle, ""), pageable),
+                () -> page(patientRepository.findByUserEmail(userEmail).stream()
+                        .filter(p -> contains(p.getName(), needle)), pageable));
+    }
+
+    /**
+     * Patients whose name starts with the given prefix (case-insensitive, at
+     * least NAME_PREFIX_CHARS characters). The blind index narrows to names
+     * sharing the first characters; the rest is matched on decrypted names.
+     */
+    public Page<PatientDTO> searchByNamePrefix(String userEmail, String name, Pageable pageable) {
+        String prefix = PatientBlindIndexListener.normalize(name);
+        if (prefix == null || prefix.codePointCount(0, prefix.length()) < PatientBlindIndexListener.NAME_PREFIX_CHARS) {
+            throw new BadRequestException("Name search needs at least "
+                    + PatientBlindIndexListener.NAME_PREFIX_CHARS + " characters");
+        }
+        return queryResultCache.get(userEmail, EntityType.PATIENT, "patient.searchByNamePrefix", List.of(prefix, pageable),
+                () -> page(patientRepository.findByUserEmailAndNamePrefixIndex(
+                                userEmail, blindIndexes.namePrefixToken(userEmail, prefix)).stream()
+                        .filter(p -> {
+                            String patientName = PatientBlindIndexListener.normalize(p.getName());
+                            return patientName != null && patientName.startsWith(prefix);
+                        }), pageable));
     }
 
-    /** Search patients by email with pagination */
+    /**
+     * Patients whose email contains the given text (case-insensitive), the
+     * contract from before emails were encrypted. Deprecated: it decrypts all
+     * of the owner's patients; use searchByExactEmail.
+     */
     public Page<PatientDTO> searchByEmail(String userEmail, String email, Pageable pageable) {
-        return patientRepository.searchByEmailAndUserEmail(userEmail, email, pageable)
-                .map(PatientMapper::toDto);
+        requireLegacySearch("Substring email search");
+        String needle = PatientBlindIndexListener.normalize(email);
+        return queryResultCache.get(userEmail, EntityType.PATIENT, "patient.searchByEmail",
+                List.of(Objects.toString(needle, ""), pageable),
+                () -> page(patientRepository.findByUserEmail(userEmail).stream()
+                        .filter(p -> contains(p.getEmail(), needle)), pageable));
+    }
+
+    /** Patients with this exact email (case-insensitive) */
+    public Page<PatientDTO> searchByExactEmail(String userEmail, String email, Pageable pageable) {
+        byte[] token = blindIndexes.emailToken(userEmail, email);
+        if (token == null) {
+            throw new BadRequestException("Email is required");
+        }
+        return queryResultCache.get(userEmail, EntityType.PATIENT, "patient.searchByExactEmail",
+                List.of(PatientBlindIndexListener.normalize(email), pageable),
+                () -> page(patientRepository.findByUserEmailAndEmailIndex(userEmail, token).stream(), pageable));
+    }
+
+    private void requireLegacySearch(String what) {
+        if (!legacySearch) {
+            throw new BadRequestException(what + " is no longer supported (patient fields are stored encrypted); "
+                    + "use match=prefix / match=exact and sort by id");
+        }
+    }
+
+    /** LIKE '%needle%' on a decrypted value; a blank needle matches everything, as LIKE '%%' did */
+    private static boolean contains(String value, String needle) {
+        if (needle == null) {
+            return true;
+        }
+        String normalized = PatientBlindIndexListener.normalize(value);
+        return normalized != null && normalized.contains(needle);
+    }
+
+    /** Sort and page decrypted search results in memory */
+    private static Page<PatientDTO> page(Stream<Patient> matches, Pageable pageable) {
+        List<PatientDTO> sorted = matches.map(PatientMapper::toDto)
+                .sorted(comparator(pageable.getSort()))
+                .toList();
+        if (pageable.isUnpaged()) {
+            return new PageImpl<>(sorted, pageable, sorted.size());
+        }
+        int from = (int) Math.min(pageable.getOffset(), sorted.size());
+        int to = Math.min(from + pageable.getPageSize(), sorted.size());
+        return new PageImpl<>(sorted.subList(from, to), pageable, sorted.size());
+    }
+
+    private static Comparator<PatientDTO> comparator(Sort sort) {
+        Comparator<PatientDTO> byId = Comparator.comparing(PatientDTO::getId);
+        Comparator<PatientDTO> comparator = null;
+        for (Sort.Order order : sort) {
+            Comparator<PatientDTO> next = switch (order.getProperty()) {
+                case "id" -> byId;
+                case "name" -> Comparator.comparing(PatientDTO::getName, TEXT_ORDER);
+                case "email" -> Comparator.comparing(PatientDTO::getEmail, TEXT_ORDER);
+                case "phone" -> Comparator.comparing(PatientDTO::getPhone, TEXT_ORDER);
+                default -> throw new BadRequestException("Cannot sort patients by " + order.getProperty());
+            };
+            next = order.isDescending() ? next.reversed() : next;
+            comparator = comparator == null ? next : comparator.thenComparing(next);
+        }
+        return comparator == null ? byId : comparator.thenComparing(byId);
+    }
+
+    /** Called after the patient's DELETE, in its transaction: rolls it back while appointments reference it */
+    private void assertNoAppointments(Long id) {
+        if (appointmentRepository.existsByPatientId(id)) {
+            throw new ConflictException("Patient still has appointments");
+        }
+    }
+
+    private void publish(ChangeType changeType, Patient patient) {
+        eventPublisher.publishEvent(new EntityChangedEvent(
+                EntityType.PATIENT, changeType, patient.getId(), patient.getUserEmail(), patient));
     }
 }
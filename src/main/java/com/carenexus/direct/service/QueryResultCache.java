@@ -0,0 +1,372 @@
+package com.carenexus.direct.service;
+
+import com.carenexus.direct.dto.QueryCacheStatsDTO;
+import com.carenexus.direct.event.EntityChangedEvent;
+import com.carenexus.direct.event.EntityChangedEvent.EntityType;
+import com.carenexus.direct.event.RemoteInvalidationEvent;
+import com.carenexus.direct.util.CompressedText;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.stereotype.Service;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.RecordComponent;
+import java.time.Duration;
+import java.time.temporal.Temporal;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * ====================================================================
+ * Query Result Cache - Per-Owner Cache for Paginated Searches
+ * ====================================================================
+ *
+ * Caches the pages returned by the services' paginated list/search
+ * methods, keyed by (owner, entity type, query kind, params, page).
+ *
+ * Eviction:
+ * - Caffeine (W-TinyLFU admission + eviction): a burst of one-off
+ *   searches cannot push out the pages dashboards refresh constantly
+ * - Bounded by estimated bytes (query-cache.max-weight-mb), with
+ *   query-cache.ttl-minutes as an upper bound on entry age
+ *
+ * Invalidation:
+ * - Every write an owner makes through a service publishes
+ *   EntityChangedEvent; that owner's entries for that entity type are
+ *   dropped at once (via a per-owner key index), nobody else's
+ * - Writes on other instances arrive as RemoteInvalidationEvent
+ * - Keys also carry the owner's EntityVersionService version read
+ *   before the query runs, so a result computed concurrently with a
+ *   write is stored under a version no later lookup will use
+ *
+ * Isolation:
+ * - The cache holds its own deep copy of each result (pages, lists and
+ *   the project's DTOs; immutable values are shared) and every hit gets
+ *   a fresh copy, so a caller that edits a returned DTO cannot change
+ *   what the next caller sees
+ * - Entries are weighed from field sizes (String lengths, the stored
+ *   length of CompressedText), never by rendering them: toString() would
+ *   copy PHI into throwaway strings and inflate compressed bodies
+ *
+ * Metrics:
+ * - carenexus.query.cache.requests{kind,result=hit|miss}
+ * - carenexus.query.cache.hit.ratio{kind}
+ * - Caffeine size/eviction metrics under cache=query-results
+ *
+ * ====================================================================
+ */
+@Service
+public class QueryResultCache {
+
+    private final EntityVersionService entityVersionService;
+    private final MeterRegistry meterRegistry;
+    private final boolean enabled;
+
+    /** Depth below which weigh() stops walking and assumes a fixed size */
+    private static final int MAX_WEIGH_DEPTH = 4;
+
+    /** Instance fields of the classes copy() and weigh() walk */
+    private static final ClassValue<Field[]> FIELDS = new ClassValue<>() {
+        @Override
+        protected Field[] computeValue(Class<?> type) {
+            List<Field> fields = new ArrayList<>();
+            for (Class<?> c = type; c != null && c != Object.class; c = c.getSuperclass()) {
+                for (Field field : c.getDeclaredFields()) {
+                    if (!Modifier.isStatic(field.getModifiers())) {
+                        field.setAccessible(true);
+                        fields.add(field);
+                    }
+                }
+            }
+            return fields.toArray(Field[]::new);
+        }
+    };
+
+    private final Cache<CacheKey, Object> cache;
+    private final Map<String, Set<CacheKey>> keysByOwner = new ConcurrentHashMap<>();
+    private final Map<String, KindStats> statsByKind = new ConcurrentHashMap<>();
+
+    public QueryResultCache(EntityVersionService entityVersionService,
+                            MeterRegistry meterRegistry,
+                            @Value("${query-cache.enabled:true}") boolean enabled,
+                            @Value("${query-cache.max-weight-mb:64}") long maxWeightMb,
+                            @Value("${query-cache.ttl-minutes:10}") long ttlMinutes) {
+        this.entityVersionService = entityVersionService;
+        this.meterRegistry = meterRegistry;
+        this.enabled = enabled;
+        this.cache = Caffeine.newBuilder()
+                .maximumWeight(maxWeightMb * 1024 * 1024)
+                .weigher(QueryResultCache::weigh)
+                .expireAfterWrite(Duration.ofMinutes(ttlMinutes))
+                .removalListener(this::onRemoval)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "query-results");
+    }
+
+    /**
+     * Cached result of a query, computing it on a miss.
+     *
+     * @param kind   stable name of the query, e.g. "patient.searchByName"
+     * @param params every argument that affects the result, including the Pageable
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T get(String owner, EntityType type, String kind, List<?> params, Supplier<T> loader) {
+        if (!enabled || owner == null) {
+            return loader.get();
+        }
+        KindStats stats = statsFor(kind);
+        CacheKey key = new CacheKey(owner, type, entityVersionService.version(owner, type), kind, params);
+
+        boolean[] loaded = new boolean[1];
+        Object[] result = new Object[1];
+        Object cached = cache.get(key, k -> {
+            loaded[0] = true;
+            result[0] = loader.get();
+            return copy(result[0]);  // The loading caller keeps the original, the cache its own copy
+        });
+        if (loaded[0]) {
+            stats.misses.increment();
+            keysByOwner.computeIfAbsent(indexKey(owner, type), ik -> ConcurrentHashMap.newKeySet()).add(key);
+            return (T) result[0];
+        }
+        stats.hits.increment();
+        return (T) copy(cached);
+    }
+
+    /** Drop the writer's cached results for the written entity type */
+    @EventListener
+    public void onEntityChanged(EntityChangedEvent event) {
+        if (event.getOwnerEmail() != null) {
+            invalidate(event.getOwnerEmail(), event.getEntityType());
+        }
+    }
+
+    /** Writes made on other instances (CacheInvalidationBus) */
+    @EventListener
+    public void onRemoteInvalidation(RemoteInvalidationEvent event) {
+        if (event.isAll()) {
+            keysByOwner.clear();
+            cache.invalidateAll();
+        } else if (event.getOwnerEmail() != null) {
+            invalidate(event.getOwnerEmail(), event.getEntityType());
+        }
+    }
+
+    public void invalidate(String owner, EntityType type) {
+        Set<CacheKey> keys = keysByOwner.remove(indexKey(owner, type));
+        if (keys != null) {
+            cache.invalidateAll(keys);
+        }
+    }
+
+    /** Hit/miss counts per query kind */
+    public Map<String, QueryCacheStatsDTO> getStats() {
+        Map<String, QueryCacheStatsDTO> result = new TreeMap<>();
+        statsByKind.forEach((kind, stats) -> result.put(kind, QueryCacheStatsDTO.builder()
+                .hits(stats.hits.sum())
+                .misses(stats.misses.sum())
+                .hitRatio(stats.hitRatio())
+                .build()));
+        return result;
+    }
+
+    private KindStats statsFor(String kind) {
+        KindStats stats = statsByKind.get(kind);
+        if (stats != null) {
+            return stats;
+        }
+        return statsByKind.computeIfAbsent(kind, k -> {
+            KindStats created = new KindStats();
+            FunctionCounter.builder("carenexus.query.cache.requests", created.hits, LongAdder::sum)
+                    .tags("kind", k, "result", "hit")
+                    .register(meterRegistry);
+            FunctionCounter.builder("carenexus.query.cache.requests", created.misses, LongAdder::sum)
+                    .tags("kind", k, "result", "miss")
+                    .register(meterRegistry);
+            Gauge.builder("carenexus.query.cache.hit.ratio", created, KindStats::hitRatio)
+                    .tag("kind", k)
+                    .description("Share of lookups served from the query result cache")
+                    .register(meterRegistry);
+            return created;
+        });
+    }
+
+    private void onRemoval(CacheKey key, Object value, RemovalCause cause) {
+        if (key == null || cause == RemovalCause.EXPLICIT) {
+            return;  // Explicit removals come from invalidate(), which already dropped the index
+        }
+        keysByOwner.computeIfPresent(indexKey(key.owner(), key.type()), (ik, keys) -> {
+            keys.remove(key);
+            return keys.isEmpty() ? null : keys;
+        });
+    }
+
+    /** Rough retained size in bytes: enough to keep the cache inside its budget */
+    private static int weigh(CacheKey key, Object value) {
+        long bytes = 128L + estimate(key.params(), 0) + estimate(value, 0);
+        return (int) Math.min(bytes, Integer.MAX_VALUE);
+    }
+
+    /** Estimated size from lengths and field counts; reads no text (see Isolation) */
+    private static long estimate(Object value, int depth) {
+        if (value == null) {
+            return 0;
+        }
+        if (value instanceof String text) {
+            return 40L + text.length() * 2L;
+        }
+        if (value instanceof CompressedText text) {
+            return 48L + text.utf8Length();
+        }
+        if (value instanceof byte[] bytes) {
+            return 16L + bytes.length;
+        }
+        if (isImmutable(value)) {
+            return 24;
+        }
+        if (depth >= MAX_WEIGH_DEPTH) {
+            return 64;
+        }
+        if (value instanceof Page<?> page) {
+            return 64L + estimate(page.getContent(), depth + 1);
+        }
+        if (value instanceof Collection<?> elements) {
+            long bytes = 32;
+            for (Object element : elements) {
+                bytes += 8 + estimate(element, depth + 1);
+            }
+            return bytes;
+        }
+        if (value instanceof Map<?, ?> map) {
+            long bytes = 48;
+            for (Map.Entry<?, ?> entry : map.entrySet()) {
+                bytes += 32 + estimate(entry.getKey(), depth + 1) + estimate(entry.getValue(), depth + 1);
+            }
+            return bytes;
+        }
+        if (!isOwnType(value)) {
+            return 64;
+        }
+        long bytes = 16;
+        for (Field field : FIELDS.get(value.getClass())) {
+            bytes += 8 + estimate(read(field, value), depth + 1);
+        }
+        return bytes;
+    }
+
+    /** Deep copy of pages, collections and the project's DTOs; immutable values are shared */
+    private static Object copy(Object value) {
+        if (value == null || isImmutable(value) || value instanceof String || value instanceof CompressedText) {
+            return value;
+        }
+        if (value instanceof byte[] bytes) {
+            return bytes.clone();
+        }
+        if (value instanceof Page<?> page) {
+            return new PageImpl<>(page.getContent().stream().map(QueryResultCache::copy).toList(),
+                    page.getPageable(), page.getTotalElements());
+        }
+        if (value instanceof Set<?> elements) {
+            return elements.stream().map(QueryResultCache::copy).collect(Collectors.toCollection(LinkedHashSet::new));
+        }
+        if (value instanceof Collection<?> elements) {
+            List<Object> copied = new ArrayList<>(elements.size());
+            elements.forEach(element -> copied.add(copy(element)));
+            return copied;
+        }
+        if (value instanceof Map<?, ?> map) {
+            Map<Object, Object> copied = new LinkedHashMap<>();
+            map.forEach((k, v) -> copied.put(copy(k), copy(v)));
+            return copied;
+        }
+        if (!isOwnType(value)) {
+            return value;
+        }
+        try {
+            if (value instanceof Record) {
+                RecordComponent[] components = value.getClass().getRecordComponents();
+                Class<?>[] types = new Class<?>[components.length];
+                Object[] values = new Object[components.length];
+                for (int i = 0; i < components.length; i++) {
+                    types[i] = components[i].getType();
+                    Method accessor = components[i].getAccessor();
+                    accessor.setAccessible(true);
+                    values[i] = copy(accessor.invoke(value));
+                }
+                Constructor<?> canonical = value.getClass().getDeclaredConstructor(types);
+                canonical.setAccessible(true);
+                return canonical.newInstance(values);
+            }
+            Constructor<?> constructor = value.getClass().getDeclaredConstructor();
+            constructor.setAccessible(true);
+            Object copied = constructor.newInstance();
+            for (Field field : FIELDS.get(value.getClass())) {
+                field.set(copied, copy(field.get(value)));
+            }
+            return copied;
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Cannot copy cached " + value.getClass().getSimpleName()
+                    + " (needs a no-args constructor)", e);
+        }
+    }
+
+    private static boolean isImmutable(Object value) {
+        return value instanceof Number || value instanceof Boolean || value instanceof Character
+                || value instanceof Enum<?> || value instanceof Temporal || value instanceof UUID;
+    }
+
+    /** DTOs and records of this code base; framework objects are neither walked nor copied */
+    private static boolean isOwnType(Object value) {
+        return value.getClass().getName().startsWith("com.carenexus.");
+    }
+
+    private static Object read(Field field, Object owner) {
+        try {
+            return field.get(owner);
+        } catch (IllegalAccessException e) {
+            return null;
+        }
+    }
+
+    private static String indexKey(String owner, EntityType type) {
+        return type.name() + ":" + owner;
+    }
+
+    private record CacheKey(String owner, EntityType type, long version, String kind, List<?> params) {
+    }
+
+    private static final class KindStats {
+        private final LongAdder hits = new LongAdder();
+        private final LongAdder misses = new LongAdder();
+
+        double hitRatio() {
+            long h = hits.sum();
+            long total = h + misses.sum();
+            return total == 0 ? 0.0 : (double) h / total;
+        }
+    }
+}
@@ -0,0 +1,256 @@
+package com.carenexus.direct.service;
+
+import com.carenexus.direct.dto.SyncChangeDTO;
+import com.carenexus.direct.dto.SyncResponseDTO;
+import com.carenexus.direct.event.EntityChangedEvent.ChangeType;
+import com.carenexus.direct.event.EntityChangedEvent.EntityType;
+import com.carenexus.direct.mapper.AppointmentMapper;
+import com.carenexus.direct.mapper.DoctorMapper;
+import com.carenexus.direct.mapper.MessageMapper;
+import com.carenexus.direct.mapper.PatientMapper;
+import com.carenexus.direct.model.Appointment;
+import com.carenexus.direct.model.ChangeLogEntry;
+import com.carenexus.direct.model.Doctor;
+import com.carenexus.direct.model.Message;
+import com.carenexus.direct.model.Patient;
+import com.carenexus.direct.repository.AppointmentRepository;
+import com.carenexus.direct.repository.ChangeLogRepository;
+import com.carenexus.direct.repository.DoctorRepository;
+import com.carenexus.direct.repository.MessageRepository;
+import com.carenexus.direct.repository.PatientRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+/**
+ * ====================================================================
+ * Sync Service - Delta Sync via a Per-Owner Change Log
+ * ====================================================================
+ *
+ * Lets mobile clients ask "what changed since token X" instead of
+ * re-downloading every list on resume.
+ *
+ * Writing:
+ * - Every write of the four services appends one change_log row (owner,
+ *   entity type, entity id, change type) via record(), inside the
+ *   write's own transaction: the entry commits with the change or not
+ *   at all
+ * - Deletes are recorded like any other change → tombstones
+ *
+ * Reading (GET /api/sync?since=<token>):
+ * 1. Range scan change_log on (owner_email, id > token), limit + 1 rows
+ * 2. Collapse to the latest change per entity within the page
+ * 3. Load current state for upserts with one IN query per entity type
+ * 4. Return the changes and the last id read as the next token
+ * Entries younger than sync.settle-ms are not read yet: ids are taken
+ * at insert but become visible at commit, so a lower id can commit
+ * after a higher one. Stopping short of the unsettled tail keeps the
+ * token from passing an id that is still to commit.
+ * DB work and payload are proportional to the number of changes, not to
+ * the size of the owner's data.
+ *
+ * Tokens:
+ * - A token is a change_log id; ids only increase, so they order every
+ *   owner's changes
+ * - since=0 (first sync) or a token older than the retained history
+ *   returns resetRequired=true with a fresh (settled) token: the client downloads
+ *   the lists once and syncs from there
+ *
+ * Retention:
+ * - Entries older than sync.retention-days are pruned daily; the newest
+ *   pruned-range entry is kept as a marker so expired tokens are detected
+ *
+ * ====================================================================
+ */
+@Slf4j
+@Service
+public class SyncService {
+
+    private final ChangeLogRepository changeLogRepository;
+    private final PatientRepository patientRepository;
+    private final DoctorRepository doctorRepository;
+    private final AppointmentRepository appointmentRepository;
+    private final MessageRepository messageRepository;
+
+    private final int defaultLimit;
+    private final int maxLimit;
+    private final int retentionDays;
+    private final long settleMillis;
+
+    public SyncService(ChangeLogRepository changeLogRepository,
+                       PatientRepository patientRepository,
+                       DoctorRepository doctorRepository,
+                       AppointmentRepository appointmentRepository,
+                       MessageRepository messageRepository,
+                       @Value("${sync.default-limit:500}") int defaultLimit,
+                       @Value("${sync.max-limit:2000}") int maxLimit,
+                       @Value("${sync.retention-days:30}") int retentionDays,
+                       @Value("${sync.settle-ms:5000}") long settleMillis) {
+        this.changeLogRepository = changeLogRepository;
+        this.patientRepository = patientRepository;
+        this.doctorRepository = doctorRepository;
+        this.appointmentRepository = appointmentRepository;
+        this.messageRepository = messageRepository;
+        this.defaultLimit = defaultLimit;
+        this.maxLimit = maxLimit;
+        this.retentionDays = retentionDays;
+        this.settleMillis = settleMillis;
+    }
+
+    /**
+     * Append a write to the change log. Joins the caller's transaction (there
+     * must be one); call it last, so the entry commits right after its insert.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void record(EntityType entityType, ChangeType changeType, Long entityId, String ownerEmail) {
+        if (entityId == null || ownerEmail == null) {
+            return;
+        }
+        changeLogRepository.save(ChangeLogEntry.builder()
+                .ownerEmail(ownerEmail)
+                .entityType(entityType)
+                .entityId(entityId)
+                .changeType(changeType)
+                .changedAt(LocalDateTime.now())
+                .build());
+    }
+
+    /**
+     * Changes for the owner since a token.
+     *
+     * @param since token from the previous response, or null/0 on first sync
+     * @param limit max change log entries to read (null → sync.default-limit)
+     */
+    public SyncResponseDTO changesSince(String email, Long since, Integer limit) {
+        LocalDateTime settled = LocalDateTime.now().minus(Duration.ofMillis(settleMillis));
+        if (since == null || since <= 0 || isExpired(since)) {
+            return SyncResponseDTO.builder()
+                    .token(changeLogRepository.findFirstByChangedAtBeforeOrderByIdDesc(settled)
+                            .map(ChangeLogEntry::getId)
+                            .orElse(0L))
+                    .resetRequired(true)
+                    .changes(List.of())
+                    .build();
+        }
+
+        int pageSize = Math.min(limit != null && limit > 0 ? limit : defaultLimit, maxLimit);
+        List<ChangeLogEntry> entries = changeLogRepository.findByOwnerEmailAndIdGreaterThanOrderByIdAsc(
+                email, since, PageRequest.of(0, pageSize + 1));
+
+        boolean hasMore = entries.size() > pageSize;
+        if (hasMore) {
+            entries = entries.subList(0, pageSize);
+        }
+        for (int i = 0; i < entries.size(); i++) {
+            if (!entries.get(i).getChangedAt().isBefore(settled)) {
+                entries = entries.subList(0, i);  // The rest is returned once it has settled
+                hasMore = true;
+                break;
+            }
+        }
+        if (entries.isEmpty()) {
+            return SyncResponseDTO.builder().token(since).changes(List.of()).build();
+        }
+
+        // Latest change per entity; re-inserting moves it to its latest position
+        Map<String, ChangeLogEntry> latest = new LinkedHashMap<>();
+        for (ChangeLogEntry entry : entries) {
+            String key = entry.getEntityType() + ":" + entry.getEntityId();
+            latest.remove(key);
+            latest.put(key, entry);
+        }
+
+        Map<EntityType, Map<Long, Object>> current = loadCurrent(email, latest.values());
+
+        List<SyncChangeDTO> changes = new ArrayList<>(latest.size());
+        for (ChangeLogEntry entry : latest.values()) {
+            Object data = entry.getChangeType() == ChangeType.DELETED
+                    ? null
+                    : current.get(entry.getEntityType()).get(entry.getEntityId());
+            changes.add(SyncChangeDTO.builder()
+                    .type(entry.getEntityType().name())
+                    .op(data == null ? "delete" : "upsert")  // Gone since it was logged → tombstone
+                    .id(entry.getEntityId())
+                    .data(data)
+                    .build());
+        }
+
+        return SyncResponseDTO.builder()
+                .token(entries.get(entries.size() - 1).getId())
+                .hasMore(hasMore)
+                .changes(changes)
+                .build();
+    }
+
+    /** Prune change log entries past the retention window */
+    @Scheduled(cron = "${sync.prune-cron:0 30 3 * * *}")
+    public void prune() {
+        Long boundary = changeLogRepository.findMaxIdBefore(LocalDateTime.now().minusDays(retentionDays));
+        if (boundary == null) {
+            return;
+        }
+        // Keep the boundary row itself: MIN(id) then marks where history starts
+        int removed = changeLogRepository.deleteByIdLessThan(boundary);
+        log.info("[SyncService] ✓ Pruned {} change log entries older than {} days", removed, retentionDays);
+    }
+
+    /** A token is usable only if nothing after it has been pruned */
+    private boolean isExpired(long since) {
+        Long oldest = changeLogRepository.findMinId();
+        return oldest != null && since < oldest - 1;
+    }
+
+    /** One IN query per entity type, restricted to the owner */
+    private Map<EntityType, Map<Long, Object>> loadCurrent(String email, Iterable<ChangeLogEntry> entries) {
+        Map<EntityType, Set<Long>> ids = new EnumMap<>(EntityType.class);
+        for (EntityType type : EntityType.values()) {
+            ids.put(type, new HashSet<>());
+        }
+        for (ChangeLogEntry entry : entries) {
+            if (entry.getChangeType() != ChangeType.DELETED) {
+                ids.get(entry.getEntityType()).add(entry.getEntityId());
+            }
+        }
+
+        Map<EntityType, Map<Long, Object>> current = new EnumMap<>(EntityType.class);
+        current.put(EntityType.PATIENT, index(ids.get(EntityType.PATIENT), patientRepository::findAllById,
+                p -> email.equals(p.getUserEmail()), Patient::getId, PatientMapper::toDto));
+        current.put(EntityType.DOCTOR, index(ids.get(EntityType.DOCTOR), doctorRepository::findAllById,
+                d -> email.equals(d.getUserEmail()), Doctor::getId, DoctorMapper::toDto));
+        current.put(EntityType.APPOINTMENT, index(ids.get(EntityType.APPOINTMENT), appointmentRepository::findAllById,
+                a -> email.equals(a.getUserEmail()), Appointment::getId, AppointmentMapper::toDto));
+        current.put(EntityType.MESSAGE, index(ids.get(EntityType.MESSAGE), messageRepository::findAllById,
+                m -> email.equals(m.getUserEmail()), Message::getId, MessageMapper::toDto));
+        return current;
+    }
+
+    private static <E> Map<Long, Object> index(Set<Long> ids,
+                                               Function<Iterable<Long>, List<E>> loader,
+                                               Predicate<E> owned,
+                                               Function<E, Long> idOf,
+                                               Function<E, Object> toDto) {
+        if (ids.isEmpty()) {
+            return Map.of();
+        }
+        return loader.apply(ids).stream()
+                .filter(owned)
+                .collect(Collectors.toMap(idOf, toDto));
+    }
+}
@@ -0,0 +1,208 @@
+package com.carenexus.direct.service;
+
+import com.carenexus.direct.dto.TypeaheadDTO;
+import com.carenexus.direct.event.EntityChangedEvent;
+import com.carenexus.direct.event.EntityChangedEvent.ChangeType;
+import com.carenexus.direct.event.EntityChangedEvent.EntityType;
+import com.carenexus.direct.event.RemoteInvalidationEvent;
+import com.carenexus.direct.model.Doctor;
+import com.carenexus.direct.model.Patient;
+import com.carenexus.direct.repository.DoctorRepository;
+import com.carenexus.direct.repository.PatientRepository;
+import com.carenexus.direct.util.PrefixTrie;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.text.Normalizer;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * ====================================================================
+ * Typeahead Service - Per-Owner Prefix Tries over Names
+ * ====================================================================
+ *
+ * Serves name suggestions for the front desk from an in-memory
+ * PrefixTrie per (owner, patients|doctors) instead of a LIKE scan plus
+ * COUNT on every keystroke.
+ *
+ * Matching:
+ * - Names are normalized (accents stripped, lower-cased, whitespace
+ *   collapsed) and indexed at every word start, so "smi" finds
+ *   "Mary Smith"
+ * - Results are the first typeahead.max-limit (or fewer) matches in
+ *   alphabetical order of the matched text
+ *
+ * Lifecycle:
+ * - A trie is built on first use from one (id, name) projection query
+ * - Local writes (EntityChangedEvent) update a loaded trie in place;
+ *   writes from other instances (RemoteInvalidationEvent) drop it so
+ *   it is rebuilt on next use
+ * - At most typeahead.max-owners tries are kept; cold owners are
+ *   evicted (and idle ones expire after typeahead.idle-minutes)
+ *
+ * ====================================================================
+ */
+@Service
+public class TypeaheadService {
+
+    private final PatientRepository patientRepository;
+    private final DoctorRepository doctorRepository;
+    private final int maxLimit;
+    private final Cache<TrieKey, OwnerTrie> tries;
+
+    public TypeaheadService(PatientRepository patientRepository,
+                            DoctorRepository doctorRepository,
+                            MeterRegistry meterRegistry,
+                            @Value("${typeahead.max-owners:2000}") long maxOwners,
+                            @Value("${typeahead.idle-minutes:30}") long idleMinutes,
+                            @Value("${typeahead.max-limit:25}") int maxLimit) {
+        this.patientRepository = patientRepository;
+        this.doctorRepository = doctorRepository;
+        this.maxLimit = maxLimit;
+        this.tries = Caffeine.newBuilder()
+                .maximumSize(maxOwners)
+                .expireAfterAccess(Duration.ofMinutes(idleMinutes))
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, tries, "typeahead");
+    }
+
+    /** Up to limit patients or doctors of the owner whose name has a word starting with the query */
+    public List<TypeaheadDTO> suggest(String userEmail, EntityType type, String query, int limit) {
+        String prefix = normalize(query);
+        if (prefix.isEmpty()) {
+            return List.of();
+        }
+        OwnerTrie trie = tries.get(new TrieKey(type, userEmail), this::load);
+        return trie.suggest(prefix, Math.max(1, Math.min(limit, maxLimit)));
+    }
+
+    /** Apply local writes to an already loaded trie (waits for an in-flight load of the same trie) */
+    @EventListener
+    public void onEntityChanged(EntityChangedEvent event) {
+        if (event.getEntityType() != EntityType.PATIENT && event.getEntityType() != EntityType.DOCTOR) {
+            return;
+        }
+        String name = event.getEntity() instanceof Patient patient ? patient.getName()
+                : event.getEntity() instanceof Doctor doctor ? doctor.getName()
+                : null;
+        tries.asMap().computeIfPresent(new TrieKey(event.getEntityType(), event.getOwnerEmail()), (key, trie) -> {
+            if (event.getChangeType() == ChangeType.DELETED || name == null) {
+                trie.remove(event.getEntityId());
+            } else {
+                trie.put(event.getEntityId(), name);
+            }
+            return trie;
+        });
+    }
+
+    /** Writes made on other instances (CacheInvalidationBus): rebuild on next use */
+    @EventListener
+    public void onRemoteInvalidation(RemoteInvalidationEvent event) {
+        if (event.isAll()) {
+            tries.invalidateAll();
+        } else if (event.getEntityType() == EntityType.PATIENT || event.getEntityType() == EntityType.DOCTOR) {
+            tries.invalidate(new TrieKey(event.getEntityType(), event.getOwnerEmail()));
+        }
+    }
+
+    private OwnerTrie load(TrieKey key) {
+        OwnerTrie trie = new OwnerTrie();
+        if (key.type() == EntityType.PATIENT) {
+            patientRepository.findNamesByUserEmail(key.owner()).forEach(row -> trie.put(row.getId(), row.getName()));
+        } else {
+            doctorRepository.findNamesByUserEmail(key.owner()).forEach(row -> trie.put(row.getId(), row.getName()));
+        }
+        return trie;
+    }
+
+    /** "  Zoë   O'Brien " → "zoe o'brien" */
+    static String normalize(String text) {
+        if (text == null) {
+            return "";
+        }
+        String stripped = Normalizer.normalize(text, Normalizer.Form.NFD).replaceAll("\\p{M}", "");
+        return stripped.trim().replaceAll("\\s+", " ").toLowerCase(Locale.ROOT);
+    }
+
+    private record TrieKey(EntityType type, String owner) {
+    }
+
+    /** One owner's trie plus the display names it resolves ids to */
+    private static final class OwnerTrie {
+        private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+        private final PrefixTrie trie = new PrefixTrie();
+        private final Map<Long, String> names = new HashMap<>();
+
+        void put(Long id, String name) {
+            lock.writeLock().lock();
+            try {
+                removeLocked(id);
+                if (name != null) {
+                    names.put(id, name);
+                    for (String key : keys(name)) {
+                        trie.insert(key, id);
+                    }
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        void remove(Long id) {
+            lock.writeLock().lock();
+            try {
+                removeLocked(id);
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        List<TypeaheadDTO> suggest(String prefix, int limit) {
+            lock.readLock().lock();
+            try {
+                List<TypeaheadDTO> suggestions = new ArrayList<>();
+                for (Long id : trie.firstIds(prefix, limit)) {
+                    suggestions.add(new TypeaheadDTO(id, names.get(id)));
+                }
+                return suggestions;
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        private void removeLocked(Long id) {
+            String previous = names.remove(id);
+            if (previous != null) {
+                for (String key : keys(previous)) {
+                    trie.remove(key, id);
+                }
+            }
+        }
+
+        /** The normalized name from each word start: "mary ann smith", "ann smith", "smith" */
+        private static List<String> keys(String name) {
+            String normalized = normalize(name);
+            List<String> keys = new ArrayList<>();
+            if (normalized.isEmpty()) {
+                return keys;
+            }
+            keys.add(normalized);
+            for (int i = normalized.indexOf(' '); i >= 0; i = normalized.indexOf(' ', i + 1)) {
+                keys.add(normalized.substring(i + 1));
+            }
+            return keys;
+        }
+    }
+}
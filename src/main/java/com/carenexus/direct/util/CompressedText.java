@@ -0,0 +1,170 @@
+package com.carenexus.direct.util;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * ====================================================================
+ * Compressed Text - Text Stored Deflated, Inflated on First Read
+ * ====================================================================
+ *
+ * A CharSequence that carries either its text or its stored bytes and
+ * converts between them only when needed:
+ * - Loaded from the database it holds the stored bytes; the text is
+ *   inflated on the first length() / charAt() / toString() (in
+ *   practice: when the DTO is serialized) and then kept
+ * - Created from text it holds the text; the stored form is encoded
+ *   once, on the first write
+ *
+ * Stored format:
+ *
+ *   plain:      UTF-8 bytes (every row written before compression too)
+ *   compressed: 0xFF | codec (1 = Deflate) | UTF-8 length: int | data
+ *
+ * 0xFF never occurs in UTF-8, so the first byte tells the forms apart.
+ * Text is compressed only at or above the threshold and only if that
+ * actually saves bytes.
+ *
+ * ====================================================================
+ */
+public final class CompressedText implements CharSequence {
+
+    private static final byte MARKER = (byte) 0xFF;
+    private static final byte DEFLATE = 1;
+    private static final int HEADER = 6;
+
+    private volatile String text;
+    private volatile byte[] stored;
+
+    private CompressedText(String text, byte[] stored) {
+        this.text = text;
+        this.stored = stored;
+    }
+
+    public static CompressedText of(CharSequence text) {
+        if (text == null) {
+            return null;
+        }
+        if (text instanceof CompressedText compressed) {
+            return compressed;
+        }
+        return new CompressedText(text.toString(), null);
+    }
+
+    /** Wrap bytes read from storage without decoding them */
+    public static CompressedText fromStored(byte[] stored) {
+        return stored != null ? new CompressedText(null, stored) : null;
+    }
+
+    /** Stored form: compressed if the UTF-8 text is at least thresholdBytes and shrinks */
+    public byte[] encode(int thresholdBytes) {
+        byte[] current = stored;
+        if (current != null) {
+            return current;
+        }
+        byte[] utf8 = text.getBytes(StandardCharsets.UTF_8);
+        byte[] encoded = utf8;
+        if (utf8.length >= thresholdBytes) {
+            byte[] deflated = deflate(utf8);
+            if (deflated.length + HEADER < utf8.length) {
+                encoded = ByteBuffer.allocate(HEADER + deflated.length)
+                        .put(MARKER).put(DEFLATE).putInt(utf8.length).put(deflated)
+                        .array();
+            }
+        }
+        stored = encoded;
+        return encoded;
+    }
+
+    /** Whether the stored form is known (read from storage or already encoded) */
+    public boolean isEncoded() {
+        return stored != null;
+    }
+
+    /** Size of the text in UTF-8, from the header when compressed */
+    public int utf8Length() {
+        byte[] current = stored;
+        if (current == null) {
+            return text.getBytes(StandardCharsets.UTF_8).length;
+        }
+        return isCompressed() ? ByteBuffer.wrap(current, 2, 4).getInt() : current.length;
+    }
+
+    /** Whether the stored form (if known) is compressed */
+    public boolean isCompressed() {
+        byte[] current = stored;
+        return current != null && current.length >= HEADER && current[0] == MARKER;
+    }
+
+    @Override
+    public String toString() {
+        String current = text;
+        if (current == null) {
+            current = decode(stored);
+            text = current;
+        }
+        return current;
+    }
+
+    @Override
+    public int length() {
+        return toString().length();
+    }
+
+    @Override
+    public char charAt(int index) {
+        return toString().charAt(index);
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        return toString().subSequence(start, end);
+    }
+
+    private static String decode(byte[] stored) {
+        if (stored.length < HEADER || stored[0] != MARKER) {
+            return new String(stored, StandardCharsets.UTF_8);
+        }
+        if (stored[1] != DEFLATE) {
+            throw new IllegalStateException("Unknown text codec " + stored[1]);
+        }
+        byte[] utf8 = new byte[ByteBuffer.wrap(stored, 2, 4).getInt()];
+        Inflater inflater = new Inflater(true);
+        try {
+            inflater.setInput(stored, HEADER, stored.length - HEADER);
+            int length = 0;
+            while (length < utf8.length && !inflater.finished()) {
+                int n = inflater.inflate(utf8, length, utf8.length - length);
+                if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new IllegalStateException("Truncated compressed text");
+                }
+                length += n;
+            }
+            return new String(utf8, 0, length, StandardCharsets.UTF_8);
+        } catch (DataFormatException e) {
+            throw new IllegalStateException("Corrupt compressed text: " + e.getMessage(), e);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    private static byte[] deflate(byte[] utf8) {
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED, true);
+        try {
+            deflater.setInput(utf8);
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(utf8.length / 2 + 16);
+            byte[] buffer = new byte[Math.min(utf8.length + 64, 8192)];
+            while (!deflater.finished()) {
+                out.write(buffer, 0, deflater.deflate(buffer));
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+}
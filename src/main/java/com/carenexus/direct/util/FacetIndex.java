@@ -0,0 +1,161 @@
+package com.carenexus.direct.util;
+
+import org.roaringbitmap.FastAggregation;
+import org.roaringbitmap.RoaringBitmap;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * ====================================================================
+ * Facet Index - Compressed Bitmap Posting Lists per Term
+ * ====================================================================
+ *
+ * Maps int document ids to an owner partition and a set of terms, with
+ * one RoaringBitmap per term (posting list) and one per owner.
+ *
+ * Queries, all bitmap operations (microseconds for 10^5 documents):
+ * - filter(owner, all, any): owner AND every term in "all" AND
+ *   (OR of the terms in "any")
+ * - counts(owner, all, any): per-term cardinality within that filter
+ *
+ * Terms are stored as given; callers normalize them. Reads share a
+ * read lock, writes (put/remove) take the write lock.
+ *
+ * ====================================================================
+ */
+public class FacetIndex {
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<String, RoaringBitmap> postings = new HashMap<>();
+    private final Map<String, RoaringBitmap> owners = new HashMap<>();
+    private final Map<Integer, Document> documents = new HashMap<>();
+
+    /** Index or re-index a document */
+    public void put(int id, String owner, Set<String> terms) {
+        lock.writeLock().lock();
+        try {
+            removeLocked(id);
+            documents.put(id, new Document(owner, Set.copyOf(terms)));
+            owners.computeIfAbsent(owner, o -> new RoaringBitmap()).add(id);
+            for (String term : terms) {
+                postings.computeIfAbsent(term, t -> new RoaringBitmap()).add(id);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(int id) {
+        lock.writeLock().lock();
+        try {
+            removeLocked(id);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return documents.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /** Terms currently indexed (to resolve partial matches against) */
+    public List<String> terms() {
+        lock.readLock().lock();
+        try {
+            return new ArrayList<>(postings.keySet());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /** Owner's documents having every term in all and at least one in any (ignored if empty) */
+    public RoaringBitmap filter(String owner, Collection<String> all, Collection<String> any) {
+        lock.readLock().lock();
+        try {
+            return filterLocked(owner, all, any);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /** Document count per term within filter(owner, all, any), largest first, zero counts omitted */
+    public Map<String, Integer> counts(String owner, Collection<String> all, Collection<String> any) {
+        lock.readLock().lock();
+        try {
+            RoaringBitmap matching = filterLocked(owner, all, any);
+            List<Map.Entry<String, Integer>> counts = new ArrayList<>();
+            if (!matching.isEmpty()) {
+                for (Map.Entry<String, RoaringBitmap> posting : postings.entrySet()) {
+                    int count = RoaringBitmap.andCardinality(matching, posting.getValue());
+                    if (count > 0) {
+                        counts.add(Map.entry(posting.getKey(), count));
+                    }
+                }
+            }
+            counts.sort(Map.Entry.<String, Integer>comparingByValue().reversed().thenComparing(Map.Entry.comparingByKey()));
+            Map<String, Integer> ordered = new LinkedHashMap<>();
+            counts.forEach(entry -> ordered.put(entry.getKey(), entry.getValue()));
+            return ordered;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private RoaringBitmap filterLocked(String owner, Collection<String> all, Collection<String> any) {
+        RoaringBitmap ownerDocs = owners.get(owner);
+        if (ownerDocs == null) {
+            return new RoaringBitmap();
+        }
+        RoaringBitmap result = ownerDocs.clone();
+        for (String term : all) {
+            result.and(postings.getOrDefault(term, new RoaringBitmap()));
+        }
+        if (!any.isEmpty()) {
+            List<RoaringBitmap> alternatives = new ArrayList<>();
+            for (String term : any) {
+                RoaringBitmap posting = postings.get(term);
+                if (posting != null) {
+                    alternatives.add(posting);
+                }
+            }
+            result.and(FastAggregation.or(alternatives.iterator()));
+        }
+        return result;
+    }
+
+    private void removeLocked(int id) {
+        Document previous = documents.remove(id);
+        if (previous == null) {
+            return;
+        }
+        removeFrom(owners, previous.owner(), id);
+        for (String term : previous.terms()) {
+            removeFrom(postings, term, id);
+        }
+    }
+
+    private static void removeFrom(Map<String, RoaringBitmap> bitmaps, String key, int id) {
+        RoaringBitmap bitmap = bitmaps.get(key);
+        if (bitmap != null) {
+            bitmap.remove(id);
+            if (bitmap.isEmpty()) {
+                bitmaps.remove(key);
+            }
+        }
+    }
+
+    private record Document(String owner, Set<String> terms) {
+    }
+}
@@ -0,0 +1,119 @@
+package com.carenexus.direct.util;
+
+import javax.crypto.Cipher;
+import javax.crypto.Mac;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.GCMParameterSpec;
+import java.nio.ByteBuffer;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.Arrays;
+
+/**
+ * ====================================================================
+ * Field Cipher - AES-GCM for Single Column Values, HMAC Blind Indexes
+ * ====================================================================
+ *
+ * Stored format of an encrypted value:
+ *
+ *   0xFE | key id: int | IV: 12 bytes | AES-GCM ciphertext + 16-byte tag
+ *
+ * 0xFE never starts UTF-8 text (nor CompressedText's 0xFF form), so
+ * values written before encryption are told apart and read as they are.
+ * The key id names the data key (FieldEncryptionService), so old values
+ * stay readable after a key rotation.
+ *
+ * Cipher, Mac and SecureRandom instances are per thread: getInstance
+ * does a provider lookup per call and a SecureRandom shared by all
+ * request threads is a lock. A GCM Cipher must be re-initialised for
+ * every value anyway (fresh IV), which is cheap; a Mac is initialised
+ * once with its key and reset by doFinal.
+ *
+ * ====================================================================
+ */
+public final class FieldCipher {
+
+    public static final int OVERHEAD = 1 + 4 + 12 + 16;
+
+    private static final byte MARKER = (byte) 0xFE;
+    private static final int IV_BYTES = 12;
+    private static final int TAG_BITS = 128;
+
+    private static final ThreadLocal<Cipher> CIPHERS = ThreadLocal.withInitial(() -> newInstance("AES/GCM/NoPadding"));
+    private static final ThreadLocal<SecureRandom> RANDOMS = ThreadLocal.withInitial(SecureRandom::new);
+
+    private FieldCipher() {
+    }
+
+    /** Whether the stored value is in the encrypted format (anything else predates encryption) */
+    public static boolean isEncrypted(byte[] stored) {
+        return stored != null && stored.length >= OVERHEAD && stored[0] == MARKER;
+    }
+
+    /** Id of the data key a stored value was encrypted with */
+    public static int keyId(byte[] stored) {
+        return ByteBuffer.wrap(stored, 1, 4).getInt();
+    }
+
+    public static byte[] encrypt(int keyId, SecretKey key, byte[] plain) {
+        byte[] iv = new byte[IV_BYTES];
+        RANDOMS.get().nextBytes(iv);
+        ByteBuffer out = ByteBuffer.allocate(OVERHEAD + plain.length)
+                .put(MARKER).putInt(keyId).put(iv);
+        try {
+            Cipher cipher = CIPHERS.get();
+            cipher.init(Cipher.ENCRYPT_MODE, key, new GCMParameterSpec(TAG_BITS, iv));
+            cipher.doFinal(ByteBuffer.wrap(plain), out);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Field encryption failed", e);
+        }
+        return out.array();
+    }
+
+    /** Decrypt a value in the encrypted format; fails if it was tampered with */
+    public static byte[] decrypt(SecretKey key, byte[] stored) {
+        try {
+            Cipher cipher = CIPHERS.get();
+            cipher.init(Cipher.DECRYPT_MODE, key, new GCMParameterSpec(TAG_BITS, stored, 5, IV_BYTES));
+            return cipher.doFinal(stored, 5 + IV_BYTES, stored.length - 5 - IV_BYTES);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Field decryption failed (wrong key or corrupt value)", e);
+        }
+    }
+
+    /**
+     * Keyed HMAC-SHA256 truncated to a fixed width, with one Mac per thread.
+     * Equal inputs give equal tokens, so a column of tokens can be indexed
+     * and searched for equality without storing the value.
+     */
+    public static final class BlindIndex {
+
+        private final ThreadLocal<Mac> macs;
+        private final int bytes;
+
+        public BlindIndex(SecretKey key, int bytes) {
+            this.bytes = bytes;
+            this.macs = ThreadLocal.withInitial(() -> {
+                try {
+                    Mac mac = Mac.getInstance("HmacSHA256");
+                    mac.init(key);
+                    return mac;
+                } catch (GeneralSecurityException e) {
+                    throw new IllegalStateException("HmacSHA256 unavailable", e);
+                }
+            });
+        }
+
+        public byte[] token(byte[] input) {
+            return Arrays.copyOf(macs.get().doFinal(input), bytes);
+        }
+    }
+
+    private static Cipher newInstance(String transformation) {
+        try {
+            return Cipher.getInstance(transformation);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(transformation + " unavailable", e);
+        }
+    }
+}
@@ -0,0 +1,282 @@
+package com.carenexus.direct.util;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
+
+/**
+ * ====================================================================
+ * Hashed Timing Wheel - O(1) Timer Insert / Cancel
+ * ====================================================================
+ *
+ * A ring of buckets, each holding a doubly-linked list of timeouts.
+ * A single worker thread advances one bucket per tick and expires the
+ * timeouts whose remaining rounds have reached zero.
+ *
+ * Complexity:
+ * - schedule(): O(1) (lock-free enqueue, bucketed on the next tick)
+ * - cancel():   O(1) (lock-free enqueue, unlinked on the next tick)
+ * - per tick:   O(timeouts in one bucket)
+ *
+ * Timeouts further away than one full turn (tickMillis * wheelSize)
+ * simply carry a "remaining rounds" count, so there is no upper bound
+ * on the deadline and no re-hashing.
+ *
+ * The expiry callback runs on the worker thread and must be short;
+ * hand real work off to an executor.
+ *
+ * Time comes from an injectable millisecond clock. Tests fix tick 0
+ * with begin() and drive the wheel with advanceTo() instead of starting
+ * the worker, so no test waits on real ticks.
+ *
+ * ====================================================================
+ */
+public class HashedTimingWheel<T> {
+
+    private static final int MAX_TRANSFERS_PER_TICK = 100_000;
+
+    private final long tickMillis;
+    private final int mask;
+    private final Bucket<T>[] wheel;
+    private final Consumer<T> onExpire;
+    private final LongSupplier clock;
+
+    private final Queue<Timeout<T>> pendingAdds = new ConcurrentLinkedQueue<>();
+    private final Queue<Timeout<T>> pendingCancels = new ConcurrentLinkedQueue<>();
+    private final AtomicLong pendingCount = new AtomicLong();
+
+    private final Thread worker;
+    private volatile boolean running;
+    private volatile long startMillis;
+    private long tick;
+
+    public HashedTimingWheel(String name, long tickMillis, int wheelSize, Consumer<T> onExpire) {
+        this(name, tickMillis, wheelSize, System::currentTimeMillis, onExpire);
+    }
+
+    /** @param clock current time in epoch milliseconds, the same scale as the deadlines */
+    @SuppressWarnings("unchecked")
+    public HashedTimingWheel(String name, long tickMillis, int wheelSize, LongSupplier clock, Consumer<T> onExpire) {
+        if (tickMillis <= 0) {
+            throw new IllegalArgumentException("tickMillis must be positive");
+        }
+        int size = 1;
+        while (size < wheelSize) {
+            size <<= 1;  // Round up to a power of two so we can mask instead of mod
+        }
+        this.tickMillis = tickMillis;
+        this.mask = size - 1;
+        this.wheel = new Bucket[size];
+        for (int i = 0; i < size; i++) {
+            wheel[i] = new Bucket<>();
+        }
+        this.onExpire = onExpire;
+        this.clock = clock;
+        this.worker = new Thread(this::run, name);
+        this.worker.setDaemon(true);
+    }
+
+    public synchronized void start() {
+        if (!running) {
+            begin();
+            running = true;
+            worker.start();
+        }
+    }
+
+    /** Fix tick 0 at the clock's current time (start() does this before starting the worker) */
+    void begin() {
+        startMillis = clock.getAsLong();
+    }
+
+    public void stop() {
+        running = false;
+        worker.interrupt();
+    }
+
+    /**
+     * Schedule a task to expire at the given wall-clock time.
+     * Deadlines in the past expire on the next tick.
+     */
+    public Timeout<T> schedule(T task, long deadlineMillis) {
+        Timeout<T> timeout = new Timeout<>(this, task, deadlineMillis);
+        pendingCount.incrementAndGet();
+        pendingAdds.add(timeout);
+        return timeout;
+    }
+
+    /** Number of scheduled timeouts that have neither expired nor been cancelled */
+    public long pendingCount() {
+        return pendingCount.get();
+    }
+
+    private void run() {
+        while (running) {
+            long sleep = startMillis + (tick + 1) * tickMillis - clock.getAsLong();
+            if (sleep > 0) {
+                try {
+                    Thread.sleep(sleep);
+                } catch (InterruptedException e) {
+                    if (!running) {
+                        return;
+                    }
+                }
+                continue;
+            }
+            advanceTo(clock.getAsLong());
+        }
+    }
+
+    /**
+     * Run every tick that has ended by nowMillis, in order. Called by the
+     * worker, or by hand (after begin()) when the worker is not started.
+     */
+    void advanceTo(long nowMillis) {
+        while (startMillis + (tick + 1) * tickMillis <= nowMillis) {
+            processCancellations();
+            transferPending();
+            expireBucket(wheel[(int) (tick & mask)]);
+            tick++;
+        }
+    }
+
+    private void processCancellations() {
+        Timeout<T> timeout;
+        while ((timeout = pendingCancels.poll()) != null) {
+            if (timeout.bucket != null) {
+                timeout.bucket.remove(timeout);
+            }
+        }
+    }
+
+    private void transferPending() {
+        for (int i = 0; i < MAX_TRANSFERS_PER_TICK; i++) {
+            Timeout<T> timeout = pendingAdds.poll();
+            if (timeout == null) {
+                return;
+            }
+            if (timeout.isCancelled()) {
+                continue;  // Cancelled before it reached the wheel
+            }
+            long calculated = Math.max(0, (timeout.deadline - startMillis) / tickMillis);
+            timeout.remainingRounds = (calculated - tick) / wheel.length;
+            long ticks = Math.max(calculated, tick);  // Never schedule into the past
+            wheel[(int) (ticks & mask)].add(timeout);
+        }
+    }
+
+    private void expireBucket(Bucket<T> bucket) {
+        Timeout<T> timeout = bucket.head;
+        while (timeout != null) {
+            Timeout<T> next = timeout.next;
+            if (timeout.remainingRounds <= 0) {
+                bucket.remove(timeout);
+                timeout.expire();
+            } else if (timeout.isCancelled()) {
+                bucket.remove(timeout);
+            } else {
+                timeout.remainingRounds--;
+            }
+            timeout = next;
+        }
+    }
+
+    /**
+     * Handle to a scheduled task.
+     */
+    public static final class Timeout<T> {
+
+        private static final int ST_PENDING = 0;
+        private static final int ST_CANCELLED = 1;
+        private static final int ST_EXPIRED = 2;
+
+        private final HashedTimingWheel<T> timer;
+        private final T task;
+        private final long deadline;
+        private final AtomicInteger state = new AtomicInteger(ST_PENDING);
+
+        // Only touched by the worker thread
+        private long remainingRounds;
+        private Bucket<T> bucket;
+        private Timeout<T> prev;
+        private Timeout<T> next;
+
+        private Timeout(HashedTimingWheel<T> timer, T task, long deadline) {
+            this.timer = timer;
+            this.task = task;
+            this.deadline = deadline;
+        }
+
+        public T getTask() {
+            return task;
+        }
+
+        public long getDeadline() {
+            return deadline;
+        }
+
+        public boolean isCancelled() {
+            return state.get() == ST_CANCELLED;
+        }
+
+        /** @return true if this call cancelled the timeout before it expired */
+        public boolean cancel() {
+            if (!state.compareAndSet(ST_PENDING, ST_CANCELLED)) {
+                return false;
+            }
+            timer.pendingCount.decrementAndGet();
+            timer.pendingCancels.add(this);
+            return true;
+        }
+
+        private void expire() {
+            if (!state.compareAndSet(ST_PENDING, ST_EXPIRED)) {
+                return;
+            }
+            timer.pendingCount.decrementAndGet();
+            try {
+                timer.onExpire.accept(task);
+            } catch (RuntimeException ignored) {
+                // A failing callback must not kill the worker thread
+            }
+        }
+    }
+
+    private static final class Bucket<T> {
+        private Timeout<T> head;
+        private Timeout<T> tail;
+
+        private void add(Timeout<T> timeout) {
+            timeout.bucket = this;
+            if (head == null) {
+                head = tail = timeout;
+            } else {
+                tail.next = timeout;
+                timeout.prev = tail;
+                tail = timeout;
+            }
+        }
+
+        private void remove(Timeout<T> timeout) {
+            if (timeout.bucket != this) {
+                return;
+            }
+            if (timeout.prev != null) {
+                timeout.prev.next = timeout.next;
+            } else {
+                head = timeout.next;
+            }
+            if (timeout.next != null) {
+                timeout.next.prev = timeout.prev;
+            } else {
+                tail = timeout.prev;
+            }
+            timeout.prev = null;
+            timeout.next = null;
+            timeout.bucket = null;
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package com.carenexus.direct.util;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * ====================================================================
+ * HyperLogLog - Lock-Free Cardinality Estimator
+ * ====================================================================
+ *
+ * Estimates the number of distinct values added to it using a fixed
+ * number of registers, no matter how many values are seen.
+ *
+ * Sizing:
+ * - precision p → 2^p registers (p = 12 → 4096 registers, ~16 KB)
+ * - standard error ≈ 1.04 / sqrt(2^p) (p = 12 → ~1.6%)
+ *
+ * Concurrency:
+ * - Registers are updated with a CAS "max" loop, so add() never blocks
+ * - estimate() and merge() read a consistent-enough view for analytics
+ *
+ * ====================================================================
+ */
+public class HyperLogLog {
+
+    private final int precision;
+    private final int registerCount;
+    private final AtomicIntegerArray registers;
+
+    public HyperLogLog(int precision) {
+        if (precision < 4 || precision > 16) {
+            throw new IllegalArgumentException("HyperLogLog precision must be between 4 and 16");
+        }
+        this.precision = precision;
+        this.registerCount = 1 << precision;
+        this.registers = new AtomicIntegerArray(registerCount);
+    }
+
+    /** Add a string value (null values are ignored) */
+    public void add(String value) {
+        if (value != null) {
+            addHash(hash64(value));
+        }
+    }
+
+    /** Add a pre-computed 64-bit hash */
+    public void addHash(long hash) {
+        int index = (int) (hash >>> (64 - precision));
+        // Remaining bits, with a sentinel so the rank is bounded
+        long remaining = (hash << precision) | (1L << (precision - 1));
+        int rank = Long.numberOfLeadingZeros(remaining) + 1;
+
+        int current;
+        do {
+            current = registers.get(index);
+            if (rank <= current) {
+                return;
+            }
+        } while (!registers.compareAndSet(index, current, rank));
+    }
+
+    /** Fold another sketch of the same precision into this one */
+    public void merge(HyperLogLog other) {
+        if (other.precision != precision) {
+            throw new IllegalArgumentException("Cannot merge HyperLogLog sketches of different precision");
+        }
+        for (int i = 0; i < registerCount; i++) {
+            int rank = other.registers.get(i);
+            int current;
+            do {
+                current = registers.get(i);
+                if (rank <= current) {
+                    break;
+                }
+            } while (!registers.compareAndSet(i, current, rank));
+        }
+    }
+
+    /** Estimated number of distinct values */
+    public long estimate() {
+        double sum = 0;
+        int zeros = 0;
+        for (int i = 0; i < registerCount; i++) {
+            int rank = registers.get(i);
+            sum += 1.0 / (1L << rank);
+            if (rank == 0) {
+                zeros++;
+            }
+        }
+
+        double raw = alpha() * registerCount * registerCount / sum;
+
+        // Small range correction: fall back to linear counting
+        if (raw <= 2.5 * registerCount && zeros > 0) {
+            return Math.round(registerCount * Math.log((double) registerCount / zeros));
+        }
+        return Math.round(raw);
+    }
+
+    public int getPrecision() {
+        return precision;
+    }
+
+    private double alpha() {
+        switch (registerCount) {
+            case 16:
+                return 0.673;
+            case 32:
+                return 0.697;
+            case 64:
+                return 0.709;
+            default:
+                return 0.7213 / (1 + 1.079 / registerCount);
+        }
+    }
+
+    /**
+     * 64-bit FNV-1a over the UTF-8 bytes, finished with the MurmurHash3
+     * fmix64 avalanche so that the high bits used for the register index
+     * are well distributed.
+     */
+    public static long hash64(String value) {
+        long h = 0xcbf29ce484222325L;
+        for (byte b : value.getBytes(StandardCharsets.UTF_8)) {
+            h ^= (b & 0xff);
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
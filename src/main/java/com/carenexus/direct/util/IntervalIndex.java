@@ -0,0 +1,133 @@
+package com.carenexus.direct.util;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * ====================================================================
+ * Interval Index - Sorted Index of Booked Time Ranges
+ * ====================================================================
+ *
+ * Holds [start, end) intervals (epoch millis) keyed by an id, ordered by
+ * start in a skip list.
+ *
+ * Queries (lock-free, safe alongside writers):
+ * - overlapping(from, to): every interval intersecting [from, to)
+ * - gaps(from, to, minLength): free windows of at least minLength
+ * Both seek to (from - longest interval) in O(log n) and then walk only
+ * the k intervals in range: O(log n + k).
+ *
+ * Writes (put/remove by id) are O(log n) and serialized per index. The
+ * longest interval is tracked over the current intervals (a count per
+ * length), so removing or shortening a long booking narrows the seek
+ * again.
+ *
+ * ====================================================================
+ */
+public class IntervalIndex {
+
+    private final ConcurrentSkipListMap<Key, Long> byStart = new ConcurrentSkipListMap<>();
+    private final Map<Long, Key> byId = new HashMap<>();
+    /** Number of current intervals of each length */
+    private final TreeMap<Long, Integer> lengths = new TreeMap<>();
+
+    /** Longest current interval: bounds how far back an overlap can start */
+    private volatile long maxLength;
+
+    /** Insert or move an interval */
+    public synchronized void put(long id, long start, long end) {
+        if (end <= start) {
+            throw new IllegalArgumentException("Interval must have positive length");
+        }
+        Key key = new Key(start, id);
+        // Grow the seek window before the interval becomes visible to readers
+        lengths.merge(end - start, 1, Integer::sum);
+        maxLength = lengths.lastKey();
+        Key previous = byId.put(id, key);
+        if (previous != null) {
+            forget(previous, byStart.remove(previous));
+        }
+        byStart.put(key, end);
+    }
+
+    public synchronized boolean remove(long id) {
+        Key key = byId.remove(id);
+        if (key == null) {
+            return false;
+        }
+        forget(key, byStart.remove(key));
+        return true;
+    }
+
+    public synchronized boolean contains(long id) {
+        return byId.containsKey(id);
+    }
+
+    public int size() {
+        return byStart.size();
+    }
+
+    /** Intervals intersecting [from, to), ordered by start */
+    public List<Interval> overlapping(long from, long to) {
+        List<Interval> result = new ArrayList<>();
+        for (Map.Entry<Key, Long> entry : candidates(from, to).entrySet()) {
+            if (entry.getValue() > from) {
+                result.add(new Interval(entry.getKey().id(), entry.getKey().start(), entry.getValue()));
+            }
+        }
+        return result;
+    }
+
+    /** Free windows inside [from, to) that are at least minLength long */
+    public List<Interval> gaps(long from, long to, long minLength) {
+        List<Interval> free = new ArrayList<>();
+        long cursor = from;
+        for (Map.Entry<Key, Long> entry : candidates(from, to).entrySet()) {
+            long start = entry.getKey().start();
+            long end = entry.getValue();
+            if (end <= cursor) {
+                continue;  // Ends before the current free window (overlapping bookings)
+            }
+            if (start - cursor >= minLength) {
+                free.add(new Interval(0, cursor, start));
+            }
+            cursor = Math.max(cursor, end);
+            if (cursor >= to) {
+                return free;
+            }
+        }
+        if (to - cursor >= minLength) {
+            free.add(new Interval(0, cursor, to));
+        }
+        return free;
+    }
+
+    /** Drop a removed interval's length; shrink the seek window only after it is gone from byStart */
+    private void forget(Key key, Long end) {
+        long length = end - key.start();
+        lengths.computeIfPresent(length, (l, count) -> count > 1 ? count - 1 : null);
+        maxLength = lengths.isEmpty() ? 0 : lengths.lastKey();
+    }
+
+    private NavigableMap<Key, Long> candidates(long from, long to) {
+        long seek = from - maxLength;
+        return byStart.subMap(new Key(seek, Long.MIN_VALUE), true, new Key(to, Long.MIN_VALUE), false);
+    }
+
+    /** A booked (or free) range; id is 0 for free windows */
+    public record Interval(long id, long start, long end) {
+    }
+
+    private record Key(long start, long id) implements Comparable<Key> {
+        @Override
+        public int compareTo(Key other) {
+            int byTime = Long.compare(start, other.start);
+            return byTime != 0 ? byTime : Long.compare(id, other.id);
+        }
+    }
+}
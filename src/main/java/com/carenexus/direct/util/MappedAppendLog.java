@@ -0,0 +1,266 @@
+package com.carenexus.direct.util;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.LongConsumer;
+import java.util.zip.CRC32;
+
+/**
+ * ====================================================================
+ * Mapped Append Log - Durable Write-Ahead Buffer
+ * ====================================================================
+ *
+ * A fixed-size, memory-mapped file of sequenced records, used to make
+ * data durable locally before it reaches the database.
+ *
+ * File Layout:
+ * - Header (32 bytes): magic, version, checkpoint sequence, reserved
+ * - Records:           [int length][long seq][payload][int crc32]
+ *
+ * Durability (group commit):
+ * - append() copies the record into the mapping, then waits until a
+ *   force() covering its sequence has completed
+ * - Concurrent appenders share a single force(), so fsync cost is paid
+ *   per batch rather than per record
+ *
+ * Recovery:
+ * - replay() scans from the header and returns every valid record with
+ *   seq > checkpoint; scanning stops at a torn record (bad CRC) or a
+ *   sequence gap
+ *
+ * Space:
+ * - When the file is full the writer waits until everything appended so
+ *   far has been checkpointed, then wraps back to the start
+ *
+ * ====================================================================
+ */
+public class MappedAppendLog implements Closeable {
+
+    private static final int MAGIC = 0x434E4C47;  // "CNLG"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 32;
+    private static final int CHECKPOINT_OFFSET = 8;
+    private static final int RECORD_OVERHEAD = 4 + 8 + 4;
+
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private final int capacity;
+
+    private final Object syncLock = new Object();
+    private final Object spaceLock = new Object();
+
+    private int position = HEADER_SIZE;
+    private volatile long writeSeq;
+    private volatile long durableSeq;
+    private volatile long checkpointSeq;
+
+    public MappedAppendLog(Path path, int capacity) throws IOException {
+        if (capacity <= HEADER_SIZE + RECORD_OVERHEAD) {
+            throw new IllegalArgumentException("Log capacity too small");
+        }
+        Path parent = path.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        boolean fresh = !Files.exists(path) || Files.size(path) == 0;
+
+        this.capacity = capacity;
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+
+        if (fresh || buffer.getInt(0) != MAGIC) {
+            buffer.putInt(0, MAGIC);
+            buffer.putInt(4, VERSION);
+            buffer.putLong(CHECKPOINT_OFFSET, 0L);
+            buffer.force();
+        }
+        this.checkpointSeq = buffer.getLong(CHECKPOINT_OFFSET);
+        this.writeSeq = checkpointSeq;
+        this.durableSeq = checkpointSeq;
+    }
+
+    /**
+     * Scan the log and return records not yet checkpointed, oldest first.
+     * Must be called once, before the first append().
+     */
+    public synchronized List<Entry> replay() {
+        List<Entry> pending = new ArrayList<>();
+        int pos = HEADER_SIZE;
+        long lastSeq = -1;
+        int tail = HEADER_SIZE;
+
+        while (pos + RECORD_OVERHEAD <= capacity) {
+            int length = buffer.getInt(pos);
+            if (length <= 0 || pos + RECORD_OVERHEAD + length > capacity) {
+                break;
+            }
+            long seq = buffer.getLong(pos + 4);
+            if (lastSeq >= 0 && seq != lastSeq + 1) {
+                break;  // Stale data left over from before the last wrap
+            }
+            byte[] payload = new byte[length];
+            buffer.get(pos + 12, payload);
+            if (crc(seq, payload) != buffer.getInt(pos + 12 + length)) {
+                break;  // Torn write: never acknowledged
+            }
+
+            if (seq > checkpointSeq) {
+                pending.add(new Entry(seq, payload));
+            }
+            lastSeq = seq;
+            pos += RECORD_OVERHEAD + length;
+            tail = pos;
+        }
+
+        if (lastSeq > checkpointSeq) {
+            position = tail;
+            writeSeq = lastSeq;
+            durableSeq = lastSeq;
+        } else {
+            // Everything on disk was already checkpointed: start over at the front
+            position = HEADER_SIZE;
+            writeSeq = checkpointSeq;
+            durableSeq = checkpointSeq;
+        }
+        return pending;
+    }
+
+    /**
+     * Append a record and return once it is durable on disk.
+     *
+     * @return the record's sequence number
+     */
+    public long append(byte[] payload) throws InterruptedException {
+        return append(payload, null);
+    }
+
+    /**
+     * Append a record and return once it is durable on disk.
+     *
+     * {@code onSequenced} runs under the append lock right after the
+     * sequence number is assigned, so callers can hand records to a
+     * consumer in exact sequence order. It must not block.
+     *
+     * @return the record's sequence number
+     */
+    public long append(byte[] payload, LongConsumer onSequenced) throws InterruptedException {
+        int recordSize = RECORD_OVERHEAD + payload.length;
+        if (HEADER_SIZE + recordSize > capacity) {
+            throw new IllegalArgumentException("Record larger than log capacity");
+        }
+
+        long seq;
+        synchronized (this) {
+            if (position + recordSize > capacity) {
+                awaitCheckpoint(writeSeq);
+                position = HEADER_SIZE;
+            }
+            seq = writeSeq + 1;
+            int pos = position;
+            buffer.putInt(pos + 4 + 8 + payload.length, crc(seq, payload));
+            buffer.putLong(pos + 4, seq);
+            buffer.put(pos + 12, payload);
+            buffer.putInt(pos, payload.length);  // Length last: a torn record reads as invalid
+            if (pos + recordSize + 4 <= capacity) {
+                buffer.putInt(pos + recordSize, 0);  // Terminate the scan for recovery
+            }
+            position = pos + recordSize;
+            writeSeq = seq;
+            if (onSequenced != null) {
+                onSequenced.accept(seq);
+            }
+        }
+
+        sync(seq);
+        return seq;
+    }
+
+    /** Record that everything up to and including {@code seq} is safely stored elsewhere */
+    public void checkpoint(long seq) {
+        synchronized (syncLock) {
+            if (seq <= checkpointSeq) {
+                return;
+            }
+            buffer.putLong(CHECKPOINT_OFFSET, seq);
+            buffer.force(0, HEADER_SIZE);
+            checkpointSeq = seq;
+        }
+        synchronized (spaceLock) {
+            spaceLock.notifyAll();
+        }
+    }
+
+    public long getCheckpointSeq() {
+        return checkpointSeq;
+    }
+
+    public long getWriteSeq() {
+        return writeSeq;
+    }
+
+    @Override
+    public void close() throws IOException {
+        synchronized (syncLock) {
+            buffer.force();
+        }
+        channel.close();
+    }
+
+    /** Group commit: one force() makes every record written so far durable */
+    private void sync(long seq) {
+        if (durableSeq >= seq) {
+            return;
+        }
+        synchronized (syncLock) {
+            if (durableSeq >= seq) {
+                return;  // Someone else's force() covered us
+            }
+            long target = writeSeq;
+            buffer.force();
+            durableSeq = target;
+        }
+    }
+
+    private void awaitCheckpoint(long seq) throws InterruptedException {
+        synchronized (spaceLock) {
+            while (checkpointSeq < seq) {
+                spaceLock.wait(100);
+            }
+        }
+    }
+
+    private static int crc(long seq, byte[] payload) {
+        CRC32 crc = new CRC32();
+        for (int i = 0; i < 8; i++) {
+            crc.update((int) (seq >>> (i * 8)) & 0xff);
+        }
+        crc.update(payload);
+        return (int) crc.getValue();
+    }
+
+    /** A replayed record */
+    public static final class Entry {
+        private final long seq;
+        private final byte[] payload;
+
+        public Entry(long seq, byte[] payload) {
+            this.seq = seq;
+            this.payload = payload;
+        }
+
+        public long getSeq() {
+            return seq;
+        }
+
+        public byte[] getPayload() {
+            return payload;
+        }
+    }
+}
@@ -0,0 +1,325 @@
+package com.carenexus.direct.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Predicate;
+import java.util.function.UnaryOperator;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * ====================================================================
+ * Message Segment - Immutable, Block-Compressed, Memory-Mapped File
+ * ====================================================================
+ *
+ * Cold storage for archived messages. Written once, never modified:
+ *
+ *   [block 0][block 1]...[block n-1][index][index offset: long][MAGIC: int]
+ *
+ * - Records are sorted by (owner, id) and cut into blocks of about
+ *   blockBytes uncompressed, each Deflate-compressed on its own, then
+ *   sealed (encrypted) by the writer's function. The reader's unseal
+ *   function must pass unsealed blocks through: segments written
+ *   before sealing stay readable
+ * - The index is sparse: per block only its first (owner, id), file
+ *   offset, stored length and record count. It is loaded on open;
+ *   blocks stay in the page cache via a read-only mapping
+ *
+ * Lookups binary-search the index for the first candidate block and
+ * inflate only the blocks an owner spans:
+ * - find(owner, id): one block
+ * - scan(owner, filter): the owner's blocks, in id order
+ * - records(): every block (rewriting a segment without some records)
+ *
+ * Readers are thread-safe (each lookup copies its block with an absolute read).
+ *
+ * ====================================================================
+ */
+public final class MessageSegment {
+
+    private static final int MAGIC = 0x43534547;  // "CSEG"
+    private static final Comparator<Key> KEY_ORDER =
+            Comparator.comparing(Key::owner).thenComparingLong(Key::id);
+
+    private final Path path;
+    private final MappedByteBuffer data;
+    private final Block[] blocks;
+    private final UnaryOperator<byte[]> unseal;
+    private final long messageCount;
+
+    private MessageSegment(Path path, MappedByteBuffer data, Block[] blocks, UnaryOperator<byte[]> unseal) {
+        this.path = path;
+        this.data = data;
+        this.blocks = blocks;
+        this.unseal = unseal;
+        long count = 0;
+        for (Block block : blocks) {
+            count += block.recordCount();
+        }
+        this.messageCount = count;
+    }
+
+    /** One archived message; appointmentId and the strings other than owner/content may be null */
+    public record Record(long id, String owner, String sender, String recipient, String content,
+                         LocalDateTime timestamp, Long appointmentId) {
+    }
+
+    /** Write records as a new segment (via a temp file, so a segment is either complete or absent) */
+    public static void write(Path path, List<Record> records, int blockBytes, UnaryOperator<byte[]> seal) throws IOException {
+        List<Record> sorted = new ArrayList<>(records);
+        sorted.sort(Comparator.comparing(Record::owner).thenComparingLong(Record::id));
+
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            List<Block> index = new ArrayList<>();
+            ByteArrayOutputStream raw = new ByteArrayOutputStream(blockBytes * 2);
+            DataOutputStream out = new DataOutputStream(raw);
+            long offset = 0;
+            int inBlock = 0;
+            Record first = null;
+            for (Record record : sorted) {
+                if (first == null) {
+                    first = record;
+                }
+                writeRecord(out, record);
+                inBlock++;
+                if (raw.size() >= blockBytes) {
+                    offset += flushBlock(channel, raw, seal, first, offset, inBlock, index);
+                    first = null;
+                    inBlock = 0;
+                }
+            }
+            if (inBlock > 0) {
+                offset += flushBlock(channel, raw, seal, first, offset, inBlock, index);
+            }
+
+            ByteArrayOutputStream indexBytes = new ByteArrayOutputStream();
+            DataOutputStream indexOut = new DataOutputStream(indexBytes);
+            indexOut.writeInt(index.size());
+            for (Block block : index) {
+                writeString(indexOut, block.first().owner());
+                indexOut.writeLong(block.first().id());
+                indexOut.writeLong(block.offset());
+                indexOut.writeInt(block.length());
+                indexOut.writeInt(block.recordCount());
+            }
+            indexOut.writeLong(offset);
+            indexOut.writeInt(MAGIC);
+            writeFully(channel, ByteBuffer.wrap(indexBytes.toByteArray()));
+            channel.force(true);
+        }
+        Files.move(temp, path, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    public static MessageSegment open(Path path, UnaryOperator<byte[]> unseal) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Message segment over 2 GB: " + path);
+            }
+            MappedByteBuffer data = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            int size = data.capacity();
+            if (size < 12 || data.getInt(size - 4) != MAGIC) {
+                throw new IOException("Not a complete message segment: " + path);
+            }
+            ByteBuffer index = data.duplicate().position((int) data.getLong(size - 12)).limit(size - 12).slice();
+            Block[] blocks = new Block[index.getInt()];
+            for (int i = 0; i < blocks.length; i++) {
+                Key first = new Key(readString(index), index.getLong());
+                blocks[i] = new Block(first, index.getLong(), index.getInt(), index.getInt());
+            }
+            return new MessageSegment(path, data, blocks, unseal);
+        }
+    }
+
+    public Path path() {
+        return path;
+    }
+
+    public long messageCount() {
+        return messageCount;
+    }
+
+    public Optional<Record> find(String owner, long id) {
+        int block = floor(new Key(owner, id));
+        if (block < 0) {
+            return Optional.empty();
+        }
+        for (Record record : inflate(blocks[block])) {
+            if (record.id() == id && record.owner().equals(owner)) {
+                return Optional.of(record);
+            }
+        }
+        return Optional.empty();
+    }
+
+    /** Every record, in (owner, id) order (for rewriting the segment) */
+    public List<Record> records() {
+        List<Record> records = new ArrayList<>((int) messageCount);
+        for (Block block : blocks) {
+            records.addAll(inflate(block));
+        }
+        return records;
+    }
+
+    /** The owner's records matching the filter, in id order */
+    public List<Record> scan(String owner, Predicate<Record> filter) {
+        List<Record> result = new ArrayList<>();
+        int start = Math.max(floor(new Key(owner, Long.MIN_VALUE)), 0);
+        for (int i = start; i < blocks.length && blocks[i].first().owner().compareTo(owner) <= 0; i++) {
+            for (Record record : inflate(blocks[i])) {
+                if (record.owner().equals(owner) && filter.test(record)) {
+                    result.add(record);
+                }
+            }
+        }
+        return result;
+    }
+
+    /** Last block whose first key is <= key (the only one that can hold it), or -1 */
+    private int floor(Key key) {
+        int low = 0;
+        int high = blocks.length - 1;
+        int found = -1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (KEY_ORDER.compare(blocks[mid].first(), key) <= 0) {
+                found = mid;
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return found;
+    }
+
+    private List<Record> inflate(Block block) {
+        byte[] sealed = new byte[block.length()];
+        data.get((int) block.offset(), sealed);
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(unseal.apply(sealed));
+            ByteArrayOutputStream raw = new ByteArrayOutputStream(block.length() * 4);
+            byte[] buffer = new byte[8192];
+            while (!inflater.finished()) {
+                int n = inflater.inflate(buffer);
+                if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new IllegalStateException("Truncated block in " + path);
+                }
+                raw.write(buffer, 0, n);
+            }
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(raw.toByteArray()));
+            List<Record> records = new ArrayList<>(block.recordCount());
+            for (int i = 0; i < block.recordCount(); i++) {
+                records.add(readRecord(in));
+            }
+            return records;
+        } catch (DataFormatException | IOException e) {
+            throw new IllegalStateException("Corrupt block in " + path + ": " + e.getMessage(), e);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    private static int flushBlock(FileChannel channel, ByteArrayOutputStream raw, UnaryOperator<byte[]> seal, Record first,
+                                  long offset, int recordCount, List<Block> index) throws IOException {
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream(raw.size() / 2);
+        try {
+            deflater.setInput(raw.toByteArray());
+            deflater.finish();
+            byte[] buffer = new byte[8192];
+            while (!deflater.finished()) {
+                compressed.write(buffer, 0, deflater.deflate(buffer));
+            }
+        } finally {
+            deflater.end();
+        }
+        byte[] sealed = seal.apply(compressed.toByteArray());
+        writeFully(channel, ByteBuffer.wrap(sealed));
+        index.add(new Block(new Key(first.owner(), first.id()), offset, sealed.length, recordCount));
+        raw.reset();
+        return sealed.length;
+    }
+
+    private static void writeRecord(DataOutputStream out, Record record) throws IOException {
+        out.writeLong(record.id());
+        writeString(out, record.owner());
+        writeString(out, record.sender());
+        writeString(out, record.recipient());
+        writeString(out, record.content());
+        out.writeLong(record.timestamp().toEpochSecond(ZoneOffset.UTC));
+        out.writeInt(record.timestamp().getNano());
+        out.writeLong(record.appointmentId() != null ? record.appointmentId() : 0L);
+    }
+
+    private static Record readRecord(DataInputStream in) throws IOException {
+        long id = in.readLong();
+        String owner = readString(in);
+        String sender = readString(in);
+        String recipient = readString(in);
+        String content = readString(in);
+        LocalDateTime timestamp = LocalDateTime.ofEpochSecond(in.readLong(), in.readInt(), ZoneOffset.UTC);
+        long appointmentId = in.readLong();
+        return new Record(id, owner, sender, recipient, content, timestamp, appointmentId != 0 ? appointmentId : null);
+    }
+
+    /** Length-prefixed UTF-8; -1 for null */
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        return new String(in.readNBytes(length), StandardCharsets.UTF_8);
+    }
+
+    private static String readString(ByteBuffer in) {
+        int length = in.getInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    private record Key(String owner, long id) {
+    }
+
+    private record Block(Key first, long offset, int length, int recordCount) {
+    }
+}
@@ -0,0 +1,90 @@
+package com.carenexus.direct.util;
+
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+/**
+ * ====================================================================
+ * Monthly Partitions - Naming and DDL for RANGE COLUMNS Partitioning
+ * ====================================================================
+ *
+ * Layout shared by the V3 migration and PartitionMaintenanceService:
+ *
+ *   p_history  VALUES LESS THAN (<first month>)   rows before monthly history
+ *   p202609    VALUES LESS THAN ('2026-10-01')    one per calendar month
+ *   p202610    VALUES LESS THAN ('2026-11-01')
+ *   ...
+ *   p_future   VALUES LESS THAN (MAXVALUE)        catch-all beyond the last month
+ *
+ * New months are split off p_future ahead of time; aged months are
+ * dropped whole. REORGANIZE copies whatever rows p_future holds under a
+ * table lock, so months are kept ready as far ahead as bookings may be
+ * made (booking.max-advance-months) and p_future stays empty unless a
+ * row is dated past that.
+ *
+ * NOT NULL partitioning columns: legacy NULLs were rewritten to UNKNOWN
+ * by V3; knownOrNull() maps them back for the API.
+ *
+ * ====================================================================
+ */
+public final class MonthlyPartitions {
+
+    public static final String HISTORY = "p_history";
+    public static final String FUTURE = "p_future";
+
+    /** Stored in place of a legacy NULL partitioning value (lands in p_history) */
+    public static final LocalDateTime UNKNOWN = LocalDateTime.of(1970, 1, 1, 0, 0);
+
+    private static final DateTimeFormatter NAME = DateTimeFormatter.ofPattern("'p'yyyyMM");
+
+    private MonthlyPartitions() {
+    }
+
+    /** The stored value, or null where it stands for a legacy NULL */
+    public static LocalDateTime knownOrNull(LocalDateTime value) {
+        return UNKNOWN.equals(value) ? null : value;
+    }
+
+    public static String name(YearMonth month) {
+        return month.format(NAME);
+    }
+
+    /** Month of a "pYYYYMM" partition; empty for p_history / p_future */
+    public static Optional<YearMonth> month(String partitionName) {
+        if (partitionName == null || !partitionName.matches("p\\d{6}")) {
+            return Optional.empty();
+        }
+        return Optional.of(YearMonth.parse(partitionName, NAME));
+    }
+
+    /** Exclusive upper bound of a month, as a DATETIME literal */
+    public static String upperBound(YearMonth month) {
+        return "'" + month.plusMonths(1).atDay(1) + " 00:00:00'";
+    }
+
+    public static String definition(YearMonth month) {
+        return "PARTITION " + name(month) + " VALUES LESS THAN (" + upperBound(month) + ")";
+    }
+
+    /** Full PARTITION BY clause: history before first, one partition per month first..last, future */
+    public static String partitionBy(String column, YearMonth first, YearMonth last) {
+        StringBuilder sql = new StringBuilder("PARTITION BY RANGE COLUMNS(`").append(column).append("`) (")
+                .append("PARTITION ").append(HISTORY).append(" VALUES LESS THAN (")
+                .append(upperBound(first.minusMonths(1))).append("), ");
+        for (YearMonth month = first; !month.isAfter(last); month = month.plusMonths(1)) {
+            sql.append(definition(month)).append(", ");
+        }
+        return sql.append("PARTITION ").append(FUTURE).append(" VALUES LESS THAN (MAXVALUE))").toString();
+    }
+
+    /** Split the given months off p_future */
+    public static String addMonths(String table, List<YearMonth> months) {
+        return "ALTER TABLE `" + table + "` REORGANIZE PARTITION " + FUTURE + " INTO ("
+                + months.stream().map(MonthlyPartitions::definition).collect(Collectors.joining(", "))
+                + ", PARTITION " + FUTURE + " VALUES LESS THAN (MAXVALUE))";
+    }
+}
@@ -0,0 +1,171 @@
+package com.carenexus.direct.util;
+
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * ====================================================================
+ * Prefix Trie - Compact Character Trie of Long Ids
+ * ====================================================================
+ *
+ * Maps string keys to one or more long ids and lists the ids under a
+ * prefix in lexicographic key order.
+ *
+ * Compact layout:
+ * - Each node keeps its children as parallel sorted arrays (char[] +
+ *   Node[]), found by binary search; no per-edge map objects
+ * - Nodes emptied by remove() are pruned
+ *
+ * firstIds(prefix, limit) costs O(|prefix| log σ) to reach the prefix
+ * node plus a depth-first walk that stops after limit distinct ids.
+ *
+ * Not thread-safe; callers guard it.
+ *
+ * ====================================================================
+ */
+public class PrefixTrie {
+
+    private static final char[] NO_KEYS = new char[0];
+    private static final Node[] NO_CHILDREN = new Node[0];
+    private static final long[] NO_IDS = new long[0];
+
+    private final Node root = new Node();
+
+    public void insert(String key, long id) {
+        Node node = root;
+        for (int i = 0; i < key.length(); i++) {
+            node = node.childOrCreate(key.charAt(i));
+        }
+        node.addId(id);
+    }
+
+    public void remove(String key, long id) {
+        remove(root, key, 0, id);
+    }
+
+    /** Up to limit distinct ids whose keys start with prefix, in key order */
+    public Set<Long> firstIds(String prefix, int limit) {
+        Set<Long> result = new LinkedHashSet<>();
+        Node node = root;
+        for (int i = 0; i < prefix.length() && node != null; i++) {
+            node = node.child(prefix.charAt(i));
+        }
+        if (node != null && limit > 0) {
+            collect(node, result, limit);
+        }
+        return result;
+    }
+
+    /** Nodes below the root (shows that remove() prunes; used by tests) */
+    int nodeCount() {
+        return count(root) - 1;
+    }
+
+    private static int count(Node node) {
+        int nodes = 1;
+        for (Node child : node.children) {
+            nodes += count(child);
+        }
+        return nodes;
+    }
+
+    private static boolean collect(Node node, Set<Long> result, int limit) {
+        for (long id : node.ids) {
+            result.add(id);
+            if (result.size() >= limit) {
+                return true;
+            }
+        }
+        for (Node child : node.children) {
+            if (collect(child, result, limit)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** Returns true if the node became empty and can be unlinked */
+    private static boolean remove(Node node, String key, int depth, long id) {
+        if (depth == key.length()) {
+            node.removeId(id);
+        } else {
+            int index = Arrays.binarySearch(node.keys, key.charAt(depth));
+            if (index < 0) {
+                return false;
+            }
+            if (remove(node.children[index], key, depth + 1, id)) {
+                node.removeChild(index);
+            }
+        }
+        return node.ids.length == 0 && node.keys.length == 0;
+    }
+
+    private static final class Node {
+        private char[] keys = NO_KEYS;
+        private Node[] children = NO_CHILDREN;
+        private long[] ids = NO_IDS;
+
+        Node child(char c) {
+            int index = Arrays.binarySearch(keys, c);
+            return index >= 0 ? children[index] : null;
+        }
+
+        Node childOrCreate(char c) {
+            int index = Arrays.binarySearch(keys, c);
+            if (index >= 0) {
+                return children[index];
+            }
+            int insertAt = -index - 1;
+            Node child = new Node();
+            keys = insert(keys, insertAt, c);
+            Node[] grown = new Node[children.length + 1];
+            System.arraycopy(children, 0, grown, 0, insertAt);
+            grown[insertAt] = child;
+            System.arraycopy(children, insertAt, grown, insertAt + 1, children.length - insertAt);
+            children = grown;
+            return child;
+        }
+
+        void removeChild(int index) {
+            char[] fewerKeys = new char[keys.length - 1];
+            System.arraycopy(keys, 0, fewerKeys, 0, index);
+            System.arraycopy(keys, index + 1, fewerKeys, index, keys.length - index - 1);
+            Node[] fewer = new Node[children.length - 1];
+            System.arraycopy(children, 0, fewer, 0, index);
+            System.arraycopy(children, index + 1, fewer, index, children.length - index - 1);
+            keys = fewerKeys.length == 0 ? NO_KEYS : fewerKeys;
+            children = fewer.length == 0 ? NO_CHILDREN : fewer;
+        }
+
+        void addId(long id) {
+            for (long existing : ids) {
+                if (existing == id) {
+                    return;
+                }
+            }
+            ids = Arrays.copyOf(ids, ids.length + 1);
+            ids[ids.length - 1] = id;
+        }
+
+        void removeId(long id) {
+            for (int i = 0; i < ids.length; i++) {
+                if (ids[i] == id) {
+                    long[] fewer = new long[ids.length - 1];
+                    System.arraycopy(ids, 0, fewer, 0, i);
+                    System.arraycopy(ids, i + 1, fewer, i, ids.length - i - 1);
+                    ids = fewer.length == 0 ? NO_IDS : fewer;
+                    return;
+                }
+            }
+        }
+
+        private static char[] insert(char[] array, int at, char c) {
+            char[] grown = new char[array.length + 1];
+            System.arraycopy(array, 0, grown, 0, at);
+            grown[at] = c;
+            System.arraycopy(array, at, grown, at + 1, array.length - at);
+            return grown;
+        }
+    }
+}
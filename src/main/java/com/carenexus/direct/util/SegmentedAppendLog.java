@@ -0,0 +1,149 @@
+package com.carenexus.direct.util;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * ====================================================================
+ * Segmented Append Log - Append-Only Record Files with Rotation
+ * ====================================================================
+ *
+ * A directory of segment files, each a plain sequence of records:
+ *
+ *   [int length][int crc32 of payload][payload]
+ *
+ * - Records are only ever appended; a segment is never rewritten.
+ *   Opening the log starts a new segment, so a torn tail left by a
+ *   crash stays at the end of the previous one (read() stops there)
+ * - append() copies into a write buffer (one write call per 64 KB, not
+ *   per record); sync() writes it out and forces everything appended
+ *   since the last sync with one fsync, so callers pay it per batch
+ * - Once a segment reaches segmentBytes it is synced and closed, and
+ *   the next append starts a new one. Closed segments can be shipped
+ *   or removed by external retention
+ *
+ * Segment names sort by creation time: {prefix}-{epoch millis}-{n}.log
+ *
+ * Single writer: not thread-safe.
+ *
+ * ====================================================================
+ */
+public class SegmentedAppendLog implements Closeable {
+
+    private static final int RECORD_OVERHEAD = 4 + 4;
+    private static final int BUFFER_BYTES = 64 * 1024;
+
+    private final Path directory;
+    private final String prefix;
+    private final long segmentBytes;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_BYTES);
+    private final CRC32 crc = new CRC32();
+
+    private FileChannel channel;
+    private Path segment;
+    private long size;
+    private int segmentsOpened;
+    private boolean dirty;
+
+    public SegmentedAppendLog(Path directory, String prefix, long segmentBytes) throws IOException {
+        this.directory = directory;
+        this.prefix = prefix;
+        this.segmentBytes = segmentBytes;
+        Files.createDirectories(directory);
+    }
+
+    /** Add one record to the current segment (durable after the next sync) */
+    public void append(byte[] payload) throws IOException {
+        if (channel == null || size >= segmentBytes) {
+            rotate();
+        }
+        crc.reset();
+        crc.update(payload);
+        if (buffer.remaining() < RECORD_OVERHEAD + payload.length) {
+            flush();
+        }
+        if (buffer.remaining() >= RECORD_OVERHEAD + payload.length) {
+            buffer.putInt(payload.length).putInt((int) crc.getValue()).put(payload);
+        } else {
+            // Larger than the buffer: write it directly
+            ByteBuffer record = ByteBuffer.allocate(RECORD_OVERHEAD + payload.length);
+            record.putInt(payload.length).putInt((int) crc.getValue()).put(payload).flip();
+            writeFully(record);
+        }
+        size += RECORD_OVERHEAD + payload.length;
+        dirty = true;
+    }
+
+    /** Write out buffered records and force them to disk */
+    public void sync() throws IOException {
+        if (channel != null && dirty) {
+            flush();
+            channel.force(false);
+            dirty = false;
+        }
+    }
+
+    /** Segment currently written to (null before the first append) */
+    public Path currentSegment() {
+        return segment;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (channel != null) {
+            sync();
+            channel.close();
+            channel = null;
+        }
+    }
+
+    /** Payloads of a segment in order, up to the first torn or corrupt record */
+    public static List<byte[]> read(Path segment) throws IOException {
+        List<byte[]> records = new ArrayList<>();
+        ByteBuffer data = ByteBuffer.wrap(Files.readAllBytes(segment));
+        CRC32 crc = new CRC32();
+        while (data.remaining() >= RECORD_OVERHEAD) {
+            int length = data.getInt();
+            int checksum = data.getInt();
+            if (length < 0 || length > data.remaining()) {
+                break;
+            }
+            byte[] payload = new byte[length];
+            data.get(payload);
+            crc.reset();
+            crc.update(payload);
+            if ((int) crc.getValue() != checksum) {
+                break;
+            }
+            records.add(payload);
+        }
+        return records;
+    }
+
+    private void flush() throws IOException {
+        buffer.flip();
+        writeFully(buffer);
+        buffer.clear();
+    }
+
+    private void writeFully(ByteBuffer source) throws IOException {
+        while (source.hasRemaining()) {
+            channel.write(source);
+        }
+    }
+
+    private void rotate() throws IOException {
+        close();
+        segment = directory.resolve(String.format("%s-%013d-%d.log", prefix, System.currentTimeMillis(), segmentsOpened++));
+        channel = FileChannel.open(segment, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+        size = 0;
+    }
+}
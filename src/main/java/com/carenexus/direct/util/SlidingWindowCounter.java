@@ -0,0 +1,123 @@
+package com.carenexus.direct.util;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * ====================================================================
+ * Sliding Window Counter - Lock-Free Ring Buffer of Time Buckets
+ * ====================================================================
+ *
+ * Counts events in fixed-size time buckets (e.g. 60 x 1 minute) kept in
+ * a ring. Old buckets are recycled in place, so memory is constant.
+ *
+ * Slot Layout (one long per bucket):
+ * - high 32 bits → bucket epoch (timestamp / bucketMillis, truncated)
+ * - low 32 bits  → event count within that bucket
+ *
+ * Packing the epoch and count together lets a single CAS both recycle a
+ * stale bucket and count the event, so there is no reset race.
+ *
+ * Events up to maxFutureMillis ahead of now (clock skew between the
+ * producer and this host) are counted in the current bucket.
+ *
+ * ====================================================================
+ */
+public class SlidingWindowCounter {
+
+    private static final long COUNT_MASK = 0xFFFFFFFFL;
+
+    private final int bucketCount;
+    private final long bucketMillis;
+    private final long maxFutureMillis;
+    private final AtomicLongArray slots;
+
+    public SlidingWindowCounter(int bucketCount, long bucketMillis) {
+        this(bucketCount, bucketMillis, 0);
+    }
+
+    public SlidingWindowCounter(int bucketCount, long bucketMillis, long maxFutureMillis) {
+        if (bucketCount <= 0 || bucketMillis <= 0 || maxFutureMillis < 0) {
+            throw new IllegalArgumentException("Bucket count and bucket size must be positive, skew not negative");
+        }
+        this.bucketCount = bucketCount;
+        this.bucketMillis = bucketMillis;
+        this.maxFutureMillis = maxFutureMillis;
+        this.slots = new AtomicLongArray(bucketCount);
+    }
+
+    /**
+     * Count one event at the given time.
+     *
+     * @return false if the event is outside the window (too old, or further
+     *         in the future than maxFutureMillis)
+     */
+    public boolean increment(long eventMillis, long nowMillis) {
+        if (eventMillis > nowMillis && eventMillis - nowMillis <= maxFutureMillis) {
+            eventMillis = nowMillis;  // Clock skew: count it now rather than drop it
+        }
+        long epoch = eventMillis / bucketMillis;
+        long nowEpoch = nowMillis / bucketMillis;
+        if (epoch > nowEpoch || epoch <= nowEpoch - bucketCount) {
+            return false;
+        }
+
+        int index = (int) (epoch % bucketCount);
+        long tag = epoch & COUNT_MASK;
+
+        while (true) {
+            long current = slots.get(index);
+            long currentTag = current >>> 32;
+            long next;
+            if (currentTag == tag) {
+                long count = current & COUNT_MASK;
+                if (count == COUNT_MASK) {
+                    return true;  // Saturated, stop counting rather than overflow
+                }
+                next = current + 1;
+            } else if (isNewer(tag, currentTag)) {
+                next = (tag << 32) | 1L;  // Recycle stale bucket
+            } else {
+                return false;  // Slot already holds a newer bucket
+            }
+            if (slots.compareAndSet(index, current, next)) {
+                return true;
+            }
+        }
+    }
+
+    /** Sum of the most recent {@code buckets} buckets, ending with the current one */
+    public long sum(int buckets, long nowMillis) {
+        long total = 0;
+        for (long count : snapshot(Math.min(buckets, bucketCount), nowMillis)) {
+            total += count;
+        }
+        return total;
+    }
+
+    /**
+     * Per-bucket counts, oldest first, ending with the current bucket.
+     * Buckets with no events (or recycled ones) read as zero.
+     */
+    public long[] snapshot(int buckets, long nowMillis) {
+        int n = Math.min(buckets, bucketCount);
+        long nowEpoch = nowMillis / bucketMillis;
+        long[] counts = new long[n];
+        for (int i = 0; i < n; i++) {
+            long epoch = nowEpoch - (n - 1 - i);
+            long slot = slots.get((int) (epoch % bucketCount));
+            if ((slot >>> 32) == (epoch & COUNT_MASK)) {
+                counts[i] = slot & COUNT_MASK;
+            }
+        }
+        return counts;
+    }
+
+    public int getBucketCount() {
+        return bucketCount;
+    }
+
+    /** Compare two 32-bit wrapped epochs */
+    private static boolean isNewer(long tag, long currentTag) {
+        return (int) (tag - currentTag) > 0;
+    }
+}
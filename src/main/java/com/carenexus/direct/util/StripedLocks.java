@@ -0,0 +1,46 @@
+package com.carenexus.direct.util;
+
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * ====================================================================
+ * Striped Locks - Fixed Pool of Locks Indexed by Key
+ * ====================================================================
+ *
+ * Maps any long key (e.g. a doctor id) to one of a fixed number of
+ * ReentrantLocks. Work on the same key is always serialized; work on
+ * different keys only contends when two keys share a stripe, which
+ * becomes rare as the stripe count grows.
+ *
+ * - Memory is bounded by the stripe count, not the number of keys
+ * - Stripe count is rounded up to a power of two; keys are mixed
+ *   before masking so sequential ids spread evenly
+ *
+ * ====================================================================
+ */
+public class StripedLocks {
+
+    private final ReentrantLock[] locks;
+    private final int mask;
+
+    public StripedLocks(int stripes) {
+        if (stripes <= 0) {
+            throw new IllegalArgumentException("Stripe count must be positive");
+        }
+        int size = Integer.highestOneBit(Math.max(1, stripes - 1)) << 1;
+        this.locks = new ReentrantLock[size];
+        for (int i = 0; i < size; i++) {
+            locks[i] = new ReentrantLock();
+        }
+        this.mask = size - 1;
+    }
+
+    public ReentrantLock lockFor(long key) {
+        long mixed = key * 0x9E3779B97F4A7C15L;  // Fibonacci hashing
+        return locks[(int) (mixed >>> 32) & mask];
+    }
+
+    public int stripes() {
+        return locks.length;
+    }
+}
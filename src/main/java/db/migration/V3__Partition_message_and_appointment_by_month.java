@@ -0,0 +1,115 @@
+package db.migration;
+
+import com.carenexus.direct.util.MonthlyPartitions;
+import org.flywaydb.core.api.migration.BaseJavaMigration;
+import org.flywaydb.core.api.migration.Context;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * ====================================================================
+ * V3 - Monthly RANGE Partitioning of message and appointment
+ * ====================================================================
+ *
+ * message.timestamp and appointment.appointment_time become the
+ * partitioning columns, one partition per calendar month, so that
+ * date-range queries touch only the months they cover and aged months
+ * can be dropped as a whole instead of DELETEd row by row.
+ *
+ * MySQL constraints this has to satisfy:
+ * - Partitioned InnoDB tables can't have (or be referenced by) foreign
+ *   keys: message → appointment and appointment → doctor / patient are
+ *   dropped, looked up by table since baselined databases carry
+ *   Hibernate-generated names. The services take their place: inserts
+ *   share-lock the referenced rows (lockForShare), and doctor, patient
+ *   and appointment deletes are refused while rows still reference them.
+ * - Every unique key must include the partitioning column: the primary
+ *   keys become (id, timestamp) and (id, appointment_time); id stays
+ *   first for AUTO_INCREMENT and stays unique on its own.
+ * - The partitioning column must be NOT NULL for predictable placement:
+ *   legacy NULLs are set to 1970-01-01 (MonthlyPartitions.UNKNOWN, lands
+ *   in p_history; mapped back to null in the API).
+ *
+ * Written in Java because the month boundaries depend on the data and
+ * the date the migration runs: monthly partitions cover up to 24
+ * months of existing data (older rows share p_history) through the
+ * booking horizon (booking.max-advance-months, 24 by default), so
+ * p_future starts empty; PartitionMaintenanceService keeps adding
+ * months after that.
+ *
+ * ====================================================================
+ */
+public class V3__Partition_message_and_appointment_by_month extends BaseJavaMigration {
+
+    private static final int HISTORY_MONTHS = 24;
+    private static final int MONTHS_AHEAD = 24;
+    /** MonthlyPartitions.UNKNOWN */
+    private static final String NULL_SENTINEL = "1970-01-01 00:00:00";
+
+    @Override
+    public void migrate(Context context) throws Exception {
+        Connection connection = context.getConnection();
+        dropForeignKeys(connection, "message");
+        dropForeignKeys(connection, "appointment");
+        partition(connection, "message", "timestamp");
+        partition(connection, "appointment", "appointment_time");
+    }
+
+    /** Foreign keys declared on the table or referencing it */
+    private static void dropForeignKeys(Connection connection, String table) throws SQLException {
+        List<String[]> constraints = new ArrayList<>();
+        try (PreparedStatement query = connection.prepareStatement(
+                "SELECT TABLE_NAME, CONSTRAINT_NAME FROM information_schema.REFERENTIAL_CONSTRAINTS "
+                        + "WHERE CONSTRAINT_SCHEMA = DATABASE() AND (TABLE_NAME = ? OR REFERENCED_TABLE_NAME = ?)")) {
+            query.setString(1, table);
+            query.setString(2, table);
+            try (ResultSet rows = query.executeQuery()) {
+                while (rows.next()) {
+                    constraints.add(new String[]{rows.getString(1), rows.getString(2)});
+                }
+            }
+        }
+        try (Statement statement = connection.createStatement()) {
+            for (String[] constraint : constraints) {
+                statement.execute("ALTER TABLE `" + constraint[0] + "` DROP FOREIGN KEY `" + constraint[1] + "`");
+            }
+        }
+    }
+
+    private static void partition(Connection connection, String table, String column) throws SQLException {
+        YearMonth now = YearMonth.now();
+        YearMonth first = oldestMonth(connection, table, column);
+        if (first == null || first.isAfter(now)) {
+            first = now;
+        }
+        if (first.isBefore(now.minusMonths(HISTORY_MONTHS))) {
+            first = now.minusMonths(HISTORY_MONTHS);
+        }
+
+        try (Statement statement = connection.createStatement()) {
+            statement.executeUpdate("UPDATE `" + table + "` SET `" + column + "` = '" + NULL_SENTINEL
+                    + "' WHERE `" + column + "` IS NULL");
+            statement.execute("ALTER TABLE `" + table + "` MODIFY `" + column + "` DATETIME(6) NOT NULL, "
+                    + "DROP PRIMARY KEY, ADD PRIMARY KEY (id, `" + column + "`)");
+            statement.execute("ALTER TABLE `" + table + "` "
+                    + MonthlyPartitions.partitionBy(column, first, now.plusMonths(MONTHS_AHEAD)));
+        }
+    }
+
+    private static YearMonth oldestMonth(Connection connection, String table, String column) throws SQLException {
+        try (Statement statement = connection.createStatement();
+             ResultSet rows = statement.executeQuery("SELECT MIN(`" + column + "`) FROM `" + table
+                     + "` WHERE `" + column + "` > '" + NULL_SENTINEL + "'")) {
+            Timestamp oldest = rows.next() ? rows.getTimestamp(1) : null;
+            return oldest != null ? YearMonth.from(oldest.toLocalDateTime()) : null;
+        }
+    }
+}
@@ -0,0 +1,21 @@
+-- ====================================================================
+-- V10 - message_archive_tombstone: archived copies that must not be read
+-- ====================================================================
+-- A message can be in a segment file and still be hot: it was edited
+-- while the archiver wrote the segment (deleteArchived keeps it), or
+-- the archiver stopped between writing and deleting. Once that hot row
+-- is deleted, reads would fall through to the stale archived copy. An
+-- archived message the owner deletes is tombstoned the same way.
+--
+-- A tombstone hides the message in every segment written before
+-- tombstoned_at (epoch millis, comparable with the time in segment
+-- file names); the next archive run rewrites those segments without
+-- it and, after archive.tombstone-retention-hours, drops the tombstone.
+-- ====================================================================
+
+CREATE TABLE message_archive_tombstone (
+    message_id     BIGINT  NOT NULL,
+    owner_id       INT     NOT NULL,
+    tombstoned_at  BIGINT  NOT NULL,
+    PRIMARY KEY (message_id)
+) ENGINE = InnoDB;
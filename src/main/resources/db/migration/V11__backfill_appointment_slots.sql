@@ -0,0 +1,38 @@
+-- ====================================================================
+-- V11 - Backfill appointment_slot cells of existing future bookings
+-- ====================================================================
+-- Only bookings made through AppointmentBookingService claim their
+-- (doctor_id, slot_start) cells, so appointments booked before it had
+-- none and another instance could double-book over them. This claims
+-- the cells of every future appointment with a doctor that has none.
+--
+-- Uses the shipped defaults: booking.slot-grid-minutes 5,
+-- availability.default-duration-minutes 30 (no or non-positive
+-- duration) and booking.max-duration-minutes 1440 (longer durations
+-- claim their first day). Deployments that changed these should
+-- adjust the constants before migrating.
+--
+-- INSERT IGNORE: where existing bookings already overlap, the cell
+-- goes to the first one and the overlap is left as it was.
+-- ====================================================================
+
+INSERT IGNORE INTO appointment_slot (doctor_id, slot_start, appointment_id)
+WITH RECURSIVE cell (n) AS (
+    SELECT 0
+    UNION ALL
+    SELECT n + 1 FROM cell WHERE n < 1440 / 5
+)
+SELECT a.doctor_id, a.first_cell + INTERVAL (5 * cell.n) MINUTE, a.id
+FROM (
+    SELECT id,
+           doctor_id,
+           TIMESTAMP(DATE(appointment_time))
+               + INTERVAL (FLOOR((HOUR(appointment_time) * 60 + MINUTE(appointment_time)) / 5) * 5) MINUTE AS first_cell,
+           appointment_time
+               + INTERVAL LEAST(IF(duration_minutes > 0, duration_minutes, 30), 1440) MINUTE AS slot_end
+    FROM appointment
+    WHERE doctor_id IS NOT NULL
+      AND appointment_time >= NOW()
+      AND NOT EXISTS (SELECT 1 FROM appointment_slot s WHERE s.appointment_id = appointment.id)
+) a
+JOIN cell ON a.first_cell + INTERVAL (5 * cell.n) MINUTE < a.slot_end;
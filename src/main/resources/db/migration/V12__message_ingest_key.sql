@@ -0,0 +1,15 @@
+-- ====================================================================
+-- V12 - Idempotent write-behind ingestion
+-- ====================================================================
+-- MessageIngestService gives every accepted message a random key that
+-- is stored in its log record. A batch replayed after a crash (or
+-- retried after a commit whose outcome was lost) skips the keys that
+-- are already stored, so it is not inserted or announced twice.
+-- The unique key includes timestamp because message is partitioned
+-- (V3) by it; a replayed record carries its original timestamp.
+-- Messages written through the API directly have no key.
+-- ====================================================================
+
+ALTER TABLE message ADD COLUMN ingest_key CHAR(36) CHARACTER SET ascii NULL;
+
+CREATE UNIQUE INDEX uk_message_ingest_key ON message (ingest_key, timestamp);
@@ -0,0 +1,12 @@
+-- ====================================================================
+-- V13 - Recover reminders whose claim holder died
+-- ====================================================================
+-- An instance that claims a reminder and dies before marking it fired
+-- leaves an unfired lease row behind. Every other instance has already
+-- dropped that reminder, so AppointmentReminderService's loader looks
+-- up unfired rows whose lease has run out and puts them back on its
+-- wheel. fired_at first: unfired rows are the NULL range, then
+-- lease_until bounds the expired ones.
+-- ====================================================================
+
+CREATE INDEX idx_reminder_lease_unfired ON appointment_reminder_lease (fired_at, lease_until);
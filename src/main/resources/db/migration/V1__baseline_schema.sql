@@ -0,0 +1,104 @@
+-- ====================================================================
+-- V1 - Baseline schema
+-- ====================================================================
+-- The schema Hibernate (ddl-auto: update) maintained before migrations
+-- were introduced. Existing databases already have it and are baselined
+-- at version 1 (spring.flyway.baseline-on-migrate); fresh databases run
+-- it as the first migration.
+-- ====================================================================
+
+CREATE TABLE patient (
+    id          BIGINT       NOT NULL AUTO_INCREMENT,
+    name        VARCHAR(255),
+    email       VARCHAR(255),
+    phone       VARCHAR(255),
+    user_email  VARCHAR(255) NOT NULL,
+    PRIMARY KEY (id)
+) ENGINE = InnoDB;
+
+CREATE TABLE doctor (
+    id              BIGINT       NOT NULL AUTO_INCREMENT,
+    name            VARCHAR(255),
+    specialization  VARCHAR(255),
+    email           VARCHAR(255),
+    phone           VARCHAR(255),
+    user_email      VARCHAR(255) NOT NULL,
+    PRIMARY KEY (id)
+) ENGINE = InnoDB;
+
+CREATE TABLE appointment (
+    id                BIGINT       NOT NULL AUTO_INCREMENT,
+    appointment_time  DATETIME(6),
+    duration_minutes  INT,
+    reason            VARCHAR(255),
+    doctor_id         BIGINT,
+    patient_id        BIGINT,
+    user_email        VARCHAR(255) NOT NULL,
+    PRIMARY KEY (id),
+    CONSTRAINT fk_appointment_doctor FOREIGN KEY (doctor_id) REFERENCES doctor (id),
+    CONSTRAINT fk_appointment_patient FOREIGN KEY (patient_id) REFERENCES patient (id)
+) ENGINE = InnoDB;
+
+CREATE TABLE message (
+    id              BIGINT       NOT NULL AUTO_INCREMENT,
+    sender          VARCHAR(255),
+    recipient       VARCHAR(255),
+    content         VARCHAR(255) NOT NULL,
+    timestamp       DATETIME(6),
+    appointment_id  BIGINT,
+    user_email      VARCHAR(255) NOT NULL,
+    PRIMARY KEY (id),
+    CONSTRAINT fk_message_appointment FOREIGN KEY (appointment_id) REFERENCES appointment (id)
+) ENGINE = InnoDB;
+
+CREATE INDEX idx_message_recipient_appointment ON message (recipient, appointment_id, id);
+
+CREATE TABLE change_log (
+    id           BIGINT       NOT NULL AUTO_INCREMENT,
+    owner_email  VARCHAR(255) NOT NULL,
+    entity_type  VARCHAR(16)  NOT NULL,
+    entity_id    BIGINT       NOT NULL,
+    change_type  VARCHAR(16)  NOT NULL,
+    changed_at   DATETIME(6)  NOT NULL,
+    PRIMARY KEY (id)
+) ENGINE = InnoDB;
+
+CREATE INDEX idx_change_log_owner_id ON change_log (owner_email, id);
+
+CREATE TABLE appointment_reminder_lease (
+    id              BIGINT       NOT NULL AUTO_INCREMENT,
+    appointment_id  BIGINT       NOT NULL,
+    remind_at       DATETIME(6)  NOT NULL,
+    owner           VARCHAR(255) NOT NULL,
+    lease_until     DATETIME(6)  NOT NULL,
+    fired_at        DATETIME(6),
+    PRIMARY KEY (id),
+    CONSTRAINT uk_reminder_lease_slot UNIQUE (appointment_id, remind_at)
+) ENGINE = InnoDB;
+
+CREATE TABLE appointment_slot (
+    id              BIGINT       NOT NULL AUTO_INCREMENT,
+    doctor_id       BIGINT       NOT NULL,
+    slot_start      DATETIME(6)  NOT NULL,
+    appointment_id  BIGINT       NOT NULL,
+    PRIMARY KEY (id),
+    CONSTRAINT uk_appointment_slot_doctor_start UNIQUE (doctor_id, slot_start)
+) ENGINE = InnoDB;
+
+CREATE INDEX idx_appointment_slot_appointment ON appointment_slot (appointment_id);
+
+CREATE TABLE inbox_entry (
+    id                    BIGINT       NOT NULL AUTO_INCREMENT,
+    recipient             VARCHAR(255) NOT NULL,
+    appointment_id        BIGINT       NOT NULL,
+    last_message_id       BIGINT       NOT NULL,
+    last_sender           VARCHAR(255),
+    last_preview          VARCHAR(512),
+    last_message_at       DATETIME(6),
+    unread_count          INT          NOT NULL,
+    last_read_message_id  BIGINT       NOT NULL,
+    PRIMARY KEY (id),
+    CONSTRAINT uk_inbox_recipient_appointment UNIQUE (recipient, appointment_id)
+) ENGINE = InnoDB;
+
+CREATE INDEX idx_inbox_recipient_last_message ON inbox_entry (recipient, last_message_at);
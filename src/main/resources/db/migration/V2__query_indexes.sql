@@ -0,0 +1,37 @@
+-- ====================================================================
+-- V2 - Indexes for the repository queries
+-- ====================================================================
+-- One composite index per access path. Owner-scoped queries lead with
+-- user_email so every search, however unselective its other predicate
+-- (LIKE '%x%'), reads only the caller's rows. Trailing columns match
+-- the range / ORDER BY of the query so no filesort is needed.
+-- ====================================================================
+
+-- PatientRepository: findByUserEmail (list + page), searchByNameAndUserEmail,
+-- findNamesByUserEmail (covering: id is implicit in every InnoDB secondary index)
+CREATE INDEX idx_patient_user_email_name ON patient (user_email, name);
+-- PatientRepository: searchByEmailAndUserEmail
+CREATE INDEX idx_patient_user_email_email ON patient (user_email, email);
+
+-- DoctorRepository: findByUserEmail (list + page), searchByNameAndUserEmail, findNamesByUserEmail
+CREATE INDEX idx_doctor_user_email_name ON doctor (user_email, name);
+-- DoctorRepository: searchBySpecializationAndUserEmail, findByUserEmailAndIdIn
+CREATE INDEX idx_doctor_user_email_specialization ON doctor (user_email, specialization);
+
+-- AppointmentRepository: findByUserEmail, searchByReasonAndUserEmail,
+-- searchByDateRangeAndUserEmail (range on appointment_time within the owner)
+CREATE INDEX idx_appointment_user_email_time ON appointment (user_email, appointment_time, id);
+-- AppointmentRepository: findUpcomingAfter (keyset on (appointment_time, id) across owners)
+CREATE INDEX idx_appointment_time_id ON appointment (appointment_time, id);
+-- AppointmentRepository: findSlotsByDoctorId (also serves fk_appointment_doctor)
+CREATE INDEX idx_appointment_doctor_time ON appointment (doctor_id, appointment_time);
+
+-- MessageRepository: findByUserEmail, searchByContentAndUserEmail,
+-- searchByDateRangeAndUserEmail (range on timestamp within the owner)
+CREATE INDEX idx_message_user_email_timestamp ON message (user_email, timestamp, id);
+-- MessageRepository: findByAppointmentIdAndUserEmail (list + page),
+-- findByAppointmentIdAndUserEmailAndIdGreaterThanOrderByIdAsc (SSE resume)
+CREATE INDEX idx_message_appointment_user_email_id ON message (appointment_id, user_email, id);
+
+-- ChangeLogRepository: findMaxIdBefore (retention cutoff)
+CREATE INDEX idx_change_log_changed_at ON change_log (changed_at, id);
@@ -0,0 +1,65 @@
+-- ====================================================================
+-- V4 - Owner dictionary: user_email VARCHAR(255) → owner_id INT
+-- ====================================================================
+-- patient, doctor, appointment and message stored the owner's email
+-- on every row and led every owner-scoped index with it. They now
+-- store a 4-byte id into the owner table (OwnerDirectory /
+-- OwnerIdConverter map it back to the email in the application).
+-- Each (owner, ...) index entry shrinks from up to 1 KB of utf8mb4
+-- key prefix to 4 bytes.
+-- ====================================================================
+
+CREATE TABLE owner (
+    id     INT          NOT NULL AUTO_INCREMENT,
+    email  VARCHAR(255) NOT NULL,
+    PRIMARY KEY (id),
+    CONSTRAINT uk_owner_email UNIQUE (email)
+) ENGINE = InnoDB;
+
+INSERT INTO owner (email)
+SELECT user_email FROM patient
+UNION SELECT user_email FROM doctor
+UNION SELECT user_email FROM appointment
+UNION SELECT user_email FROM message;
+
+-- patient
+ALTER TABLE patient ADD COLUMN owner_id INT NULL;
+UPDATE patient p JOIN owner o ON o.email = p.user_email SET p.owner_id = o.id;
+ALTER TABLE patient
+    MODIFY owner_id INT NOT NULL,
+    DROP INDEX idx_patient_user_email_name,
+    DROP INDEX idx_patient_user_email_email,
+    DROP COLUMN user_email,
+    ADD INDEX idx_patient_owner_name (owner_id, name),
+    ADD INDEX idx_patient_owner_email (owner_id, email);
+
+-- doctor
+ALTER TABLE doctor ADD COLUMN owner_id INT NULL;
+UPDATE doctor d JOIN owner o ON o.email = d.user_email SET d.owner_id = o.id;
+ALTER TABLE doctor
+    MODIFY owner_id INT NOT NULL,
+    DROP INDEX idx_doctor_user_email_name,
+    DROP INDEX idx_doctor_user_email_specialization,
+    DROP COLUMN user_email,
+    ADD INDEX idx_doctor_owner_name (owner_id, name),
+    ADD INDEX idx_doctor_owner_specialization (owner_id, specialization);
+
+-- appointment
+ALTER TABLE appointment ADD COLUMN owner_id INT NULL;
+UPDATE appointment a JOIN owner o ON o.email = a.user_email SET a.owner_id = o.id;
+ALTER TABLE appointment
+    MODIFY owner_id INT NOT NULL,
+    DROP INDEX idx_appointment_user_email_time,
+    DROP COLUMN user_email,
+    ADD INDEX idx_appointment_owner_time (owner_id, appointment_time, id);
+
+-- message
+ALTER TABLE message ADD COLUMN owner_id INT NULL;
+UPDATE message m JOIN owner o ON o.email = m.user_email SET m.owner_id = o.id;
+ALTER TABLE message
+    MODIFY owner_id INT NOT NULL,
+    DROP INDEX idx_message_user_email_timestamp,
+    DROP INDEX idx_message_appointment_user_email_id,
+    DROP COLUMN user_email,
+    ADD INDEX idx_message_owner_timestamp (owner_id, timestamp, id),
+    ADD INDEX idx_message_appointment_owner_id (appointment_id, owner_id, id);
@@ -0,0 +1,12 @@
+-- ====================================================================
+-- V5 - message.content VARCHAR(255) → MEDIUMBLOB (compressed bodies)
+-- ====================================================================
+-- MessageBodyConverter stores bodies at or above
+-- messages.compression.threshold-bytes Deflate-compressed behind a
+-- 0xFF header byte (never valid UTF-8), smaller ones as plain UTF-8.
+-- Existing rows keep their UTF-8 bytes, which already is the plain
+-- form: no rewrite. The column also lifts the 255 character limit
+-- (MessageDTO caps bodies at 65535 characters).
+-- ====================================================================
+
+ALTER TABLE message MODIFY content MEDIUMBLOB NOT NULL;
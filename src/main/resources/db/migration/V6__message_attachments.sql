@@ -0,0 +1,40 @@
+-- ====================================================================
+-- V6 - Message attachments (content-addressed files, resumable uploads)
+-- ====================================================================
+-- File bytes live on disk under attachments.directory, named by their
+-- SHA-256 (AttachmentStore); these tables hold only metadata. Several
+-- attachment rows may share one stored file (duplicate uploads).
+-- message_id is a plain column: message is partitioned (V3) and
+-- cannot be referenced by a foreign key.
+-- ====================================================================
+
+CREATE TABLE attachment (
+    id            BIGINT        NOT NULL AUTO_INCREMENT,
+    owner_id      INT           NOT NULL,
+    message_id    BIGINT,
+    sha256        CHAR(64)      CHARACTER SET ascii NOT NULL,
+    size          BIGINT        NOT NULL,
+    content_type  VARCHAR(255)  NOT NULL,
+    file_name     VARCHAR(255)  NOT NULL,
+    created_at    DATETIME(6)   NOT NULL,
+    PRIMARY KEY (id)
+) ENGINE = InnoDB;
+
+-- A message's attachments; unlinked (message_id NULL) ones by age for cleanup
+CREATE INDEX idx_attachment_message_created ON attachment (message_id, created_at);
+
+-- Dedupe by the owner's earlier uploads and "is this file still referenced"
+CREATE INDEX idx_attachment_sha256_owner ON attachment (sha256, owner_id);
+
+CREATE TABLE attachment_upload (
+    id            CHAR(36)      CHARACTER SET ascii NOT NULL,
+    owner_id      INT           NOT NULL,
+    size          BIGINT        NOT NULL,
+    sha256        CHAR(64)      CHARACTER SET ascii,
+    content_type  VARCHAR(255)  NOT NULL,
+    file_name     VARCHAR(255)  NOT NULL,
+    created_at    DATETIME(6)   NOT NULL,
+    PRIMARY KEY (id)
+) ENGINE = InnoDB;
+
+CREATE INDEX idx_attachment_upload_created ON attachment_upload (created_at);
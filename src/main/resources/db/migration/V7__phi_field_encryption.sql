@@ -0,0 +1,38 @@
+-- ====================================================================
+-- V7 - Field-level encryption of PHI columns, blind indexes
+-- ====================================================================
+-- patient.name / email / phone, message.content and
+-- inbox_entry.last_preview hold AES-GCM ciphertext (FieldCipher:
+-- 33 bytes of header and tag on top of the UTF-8 value). Existing rows
+-- keep their plaintext, which is still read, until
+-- FieldEncryptionBackfillService rewrites them.
+--
+-- Ciphertext cannot be compared or sorted, so the (owner, name) and
+-- (owner, email) indexes are replaced by indexes on blind index tokens:
+-- keyed HMACs of the normalized first three characters of the name and
+-- of the whole email (FieldEncryptionService.blindIndex).
+--
+-- encryption_key holds the data keys and the blind index key, each
+-- wrapped with encryption.master-key; rows are created on first use.
+-- ====================================================================
+
+CREATE TABLE encryption_key (
+    id           INT            NOT NULL AUTO_INCREMENT,
+    purpose      VARCHAR(16)    NOT NULL,
+    wrapped_key  VARBINARY(128) NOT NULL,
+    created_at   DATETIME(6)    NOT NULL,
+    PRIMARY KEY (id)
+) ENGINE = InnoDB;
+
+ALTER TABLE patient
+    DROP INDEX idx_patient_owner_name,
+    DROP INDEX idx_patient_owner_email,
+    MODIFY name  VARBINARY(1100),
+    MODIFY email VARBINARY(1100),
+    MODIFY phone VARBINARY(1100),
+    ADD COLUMN name_prefix_bidx BINARY(16) NULL,
+    ADD COLUMN email_bidx       BINARY(16) NULL,
+    ADD INDEX idx_patient_owner_name_prefix (owner_id, name_prefix_bidx),
+    ADD INDEX idx_patient_owner_email_bidx (owner_id, email_bidx);
+
+ALTER TABLE inbox_entry MODIFY last_preview VARBINARY(2100);
@@ -0,0 +1,22 @@
+-- ====================================================================
+-- V8 - audit_access: database mirror of the PHI access audit log
+-- ====================================================================
+-- Written only with audit.database-mirror=true, by AuditService's
+-- writer thread in batches; one row per patient / message returned by
+-- a GET. The segment files under audit.directory remain the record.
+-- Rows are only inserted: grant the application user INSERT and SELECT
+-- on this table, not UPDATE or DELETE.
+-- Indexes answer "who read this record" and "what did this user read".
+-- ====================================================================
+
+CREATE TABLE audit_access (
+    id             BIGINT        NOT NULL AUTO_INCREMENT,
+    accessed_at    DATETIME(6)   NOT NULL,
+    actor          VARCHAR(255)  NOT NULL,
+    resource_type  VARCHAR(16)   NOT NULL,
+    resource_id    BIGINT        NOT NULL,
+    path           VARCHAR(512)  NOT NULL,
+    PRIMARY KEY (id),
+    INDEX idx_audit_access_resource (resource_type, resource_id, accessed_at),
+    INDEX idx_audit_access_actor (actor, accessed_at)
+) ENGINE = InnoDB;
@@ -0,0 +1,15 @@
+-- ====================================================================
+-- V9 - Optimistic locking of patient, doctor, appointment and message
+-- ====================================================================
+-- Each row carries a version (JPA @Version) that every update bumps.
+-- Updates are conditional on the owner and, when the client sends back
+-- the version it read, on that version too; a stale version changes no
+-- row and the request gets 409 instead of overwriting the other edit.
+-- Existing rows and rows inserted outside JPA (message batch inserts)
+-- start at 0.
+-- ====================================================================
+
+ALTER TABLE patient     ADD COLUMN version BIGINT NOT NULL DEFAULT 0;
+ALTER TABLE doctor      ADD COLUMN version BIGINT NOT NULL DEFAULT 0;
+ALTER TABLE appointment ADD COLUMN version BIGINT NOT NULL DEFAULT 0;
+ALTER TABLE message     ADD COLUMN version BIGINT NOT NULL DEFAULT 0;
@@ -3,7 +3,7 @@ package com.carenexus.direct;
 import org.junit.jupiter.api.Test;
 import org.springframework.boot.test.context.SpringBootTest;
 
-@SpringBootTest
+@SpringBootTest(properties = "encryption.master-key=LAunX6VqlqheJjLoi6IIFQwv7yGMQ1DGtSfGN9YDR1I=")  // Test-only key
 class DirectApplicationTests {
 
 	@Test
@@ -0,0 +1,171 @@
+package com.carenexus.direct.repository;
+
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.testcontainers.containers.MySQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Before/after measurement of V4 (user_email VARCHAR → owner_id INT):
+ * seeds the schema at V3 with realistic owner emails, records secondary
+ * index sizes and owner-scoped query latencies, runs V4 over the same
+ * data and measures again.
+ *
+ * Opt-in (slow): mvn test -Dtest=OwnerIdBenchmarkTest -Dbenchmark=true
+ */
+@Testcontainers(disabledWithoutDocker = true)
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class OwnerIdBenchmarkTest {
+
+    private static final int OWNERS = 2_000;
+    private static final int RUNS = 300;
+    private static final String EMAIL = "CONCAT('clinician.account.', %s, '@regional-health-network.example.org')";
+
+    @Container
+    static final MySQLContainer<?> MYSQL = new MySQLContainer<>("mysql:8.0");
+
+    private static final List<String> TABLES = List.of("patient", "doctor", "appointment", "message");
+
+    /** Owner-scoped queries; ? is the owner (email before V4, id after) */
+    private static final Map<String, String> QUERIES = new LinkedHashMap<>();
+
+    static {
+        QUERIES.put("patients page", "SELECT * FROM patient WHERE %s = ? ORDER BY name LIMIT 20");
+        QUERIES.put("doctor names", "SELECT id, name FROM doctor WHERE %s = ?");
+        QUERIES.put("appointments in a week", "SELECT * FROM appointment WHERE %s = ? " +
+                "AND appointment_time >= '2026-03-01' AND appointment_time < '2026-03-08'");
+        QUERIES.put("messages of an appointment", "SELECT * FROM message WHERE appointment_id = 4242 AND %s = ?");
+        QUERIES.put("message count", "SELECT COUNT(*) FROM message WHERE %s = ?");
+    }
+
+    @Test
+    void ownerIdShrinksIndexesAndOwnerQueries() throws SQLException {
+        Flyway.configure()
+                .dataSource(MYSQL.getJdbcUrl(), MYSQL.getUsername(), MYSQL.getPassword())
+                .target("3")
+                .load()
+                .migrate();
+        seed();
+        Map<String, Long> indexBefore = indexBytes();
+        Map<String, Double> latencyBefore = latencies("user_email", String.format(EMAIL, "42"));
+
+        Flyway.configure()
+                .dataSource(MYSQL.getJdbcUrl(), MYSQL.getUsername(), MYSQL.getPassword())
+                .target("4")  // Later migrations change the measured indexes
+                .load()
+                .migrate();
+        analyze();
+        Map<String, Long> indexAfter = indexBytes();
+        Map<String, Double> latencyAfter = latencies("owner_id", "(SELECT id FROM owner WHERE email = " +
+                String.format(EMAIL, "42") + ")");
+
+        System.out.printf("%n%-28s %14s %14s%n", "secondary indexes", "user_email", "owner_id");
+        TABLES.forEach(table -> System.out.printf("%-28s %11d KB %11d KB%n",
+                table, indexBefore.get(table) / 1024, indexAfter.get(table) / 1024));
+        System.out.printf("%n%-28s %14s %14s%n", "median latency", "user_email", "owner_id");
+        QUERIES.keySet().forEach(query -> System.out.printf("%-28s %11.3f ms %11.3f ms%n",
+                query, latencyBefore.get(query), latencyAfter.get(query)));
+
+        for (String table : TABLES) {
+            assertThat(indexAfter.get(table)).as("%s index bytes", table).isLessThan(indexBefore.get(table));
+        }
+    }
+
+    private static void seed() throws SQLException {
+        try (Connection connection = connect(); Statement statement = connection.createStatement()) {
+            statement.execute("SET SESSION cte_max_recursion_depth = 1000000");
+            String owner = String.format(EMAIL, "n % " + OWNERS);
+            seed(statement, 100_000,
+                    "INSERT INTO patient (name, email, phone, user_email) " +
+                    "SELECT CONCAT('Patient ', n), CONCAT('p', n, '@mail.test'), '555', " + owner + " FROM seq");
+            seed(statement, 20_000,
+                    "INSERT INTO doctor (name, specialization, email, phone, user_email) " +
+                    "SELECT CONCAT('Doctor ', n), 'Cardiology', CONCAT('d', n, '@mail.test'), '555', " + owner + " FROM seq");
+            seed(statement, 200_000,
+                    "INSERT INTO appointment (appointment_time, duration_minutes, reason, doctor_id, patient_id, user_email) " +
+                    "SELECT TIMESTAMP('2026-01-01') + INTERVAL n MINUTE, 30, 'Checkup', 1 + n % 20000, 1 + n % 100000, " +
+                    owner + " FROM seq");
+            seed(statement, 400_000,
+                    "INSERT INTO message (sender, recipient, content, timestamp, appointment_id, user_email) " +
+                    "SELECT 's', 'r', CONCAT('Message ', n), TIMESTAMP('2026-01-01') + INTERVAL n MINUTE, " +
+                    "1 + n % 200000, " + owner + " FROM seq");
+        }
+        analyze();
+    }
+
+    private static void analyze() throws SQLException {
+        try (Connection connection = connect(); Statement statement = connection.createStatement()) {
+            statement.execute("ANALYZE TABLE " + String.join(", ", TABLES));
+        }
+    }
+
+    private static Map<String, Long> indexBytes() throws SQLException {
+        Map<String, Long> bytes = new LinkedHashMap<>();
+        try (Connection connection = connect(); Statement statement = connection.createStatement();
+             ResultSet rows = statement.executeQuery("SELECT TABLE_NAME, INDEX_LENGTH FROM information_schema.TABLES " +
+                     "WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME IN ('patient', 'doctor', 'appointment', 'message')")) {
+            while (rows.next()) {
+                bytes.put(rows.getString(1), rows.getLong(2));
+            }
+        }
+        return bytes;
+    }
+
+    /** Median latency per query, with ? bound to the owner expression's value */
+    private static Map<String, Double> latencies(String column, String ownerExpression) throws SQLException {
+        Map<String, Double> medians = new LinkedHashMap<>();
+        try (Connection connection = connect()) {
+            Object owner;
+            try (Statement statement = connection.createStatement();
+                 ResultSet row = statement.executeQuery("SELECT " + ownerExpression)) {
+                row.next();
+                owner = row.getObject(1);
+            }
+            for (Map.Entry<String, String> query : QUERIES.entrySet()) {
+                try (PreparedStatement statement = connection.prepareStatement(String.format(query.getValue(), column))) {
+                    statement.setObject(1, owner);
+                    long[] nanos = new long[RUNS];
+                    for (int run = 0; run < RUNS; run++) {
+                        long start = System.nanoTime();
+                        try (ResultSet rows = statement.executeQuery()) {
+                            while (rows.next()) {
+                                rows.getObject(1);
+                            }
+                        }
+                        nanos[run] = System.nanoTime() - start;
+                    }
+                    Arrays.sort(nanos);
+                    medians.put(query.getKey(), nanos[RUNS / 2] / 1e6);
+                }
+            }
+        }
+        return medians;
+    }
+
+    /** Runs an INSERT ... SELECT ... FROM seq with seq = 1..rows */
+    private static void seed(Statement statement, int rows, String insertFromSeq) throws SQLException {
+        int select = insertFromSeq.indexOf("SELECT ");
+        statement.execute(insertFromSeq.substring(0, select)
+                + "WITH RECURSIVE seq (n) AS (SELECT 1 UNION ALL SELECT n + 1 FROM seq WHERE n < " + rows + ") "
+                + insertFromSeq.substring(select));
+    }
+
+    private static Connection connect() throws SQLException {
+        return DriverManager.getConnection(MYSQL.getJdbcUrl(), MYSQL.getUsername(), MYSQL.getPassword());
+    }
+}
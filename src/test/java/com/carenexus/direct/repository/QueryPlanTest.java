@@ -0,0 +1,485 @@
+package com.carenexus.direct.repository;
+
+import com.carenexus.direct.model.EncryptedStringConverter;
+import com.carenexus.direct.model.MessageBodyConverter;
+import com.carenexus.direct.model.OwnerAssignmentListener;
+import com.carenexus.direct.model.OwnerIdConverter;
+import com.carenexus.direct.model.PatientBlindIndexListener;
+import com.carenexus.direct.service.FieldEncryptionService;
+import com.carenexus.direct.service.OwnerDirectory;
+import com.carenexus.direct.util.CompressedText;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import net.ttddyy.dsproxy.QueryInfo;
+import net.ttddyy.dsproxy.proxy.ParameterSetOperation;
+import net.ttddyy.dsproxy.support.ProxyDataSource;
+import net.ttddyy.dsproxy.support.ProxyDataSourceBuilder;
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.domain.EntityScan;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.testcontainers.containers.MySQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Runs the Flyway migrations on a real MySQL, seeds a few hundred owners'
+ * worth of rows, calls every repository query and EXPLAINs the SQL it
+ * ran. Fails if any statement reads a table with a full scan (type = ALL),
+ * i.e. if a query has no matching index in db/migration, and if a
+ * date-range query on a monthly-partitioned table (V3) reads every
+ * partition.
+ *
+ * The SQL is Hibernate's own: the DataSource is wrapped by datasource-proxy,
+ * each statement a call issues (page count queries and loads of eager
+ * associations included) is recorded with its bound parameters, and the
+ * EXPLAIN replays those parameters. Writes run in the test transaction and
+ * are rolled back. Skipped without Docker.
+ */
+@Testcontainers(disabledWithoutDocker = true)
+@DataJpaTest(properties = {
+        "spring.flyway.enabled=false",  // Migrated and seeded in @BeforeAll, before the context starts
+        "encryption.master-key=LAunX6VqlqheJjLoi6IIFQwv7yGMQ1DGtSfGN9YDR1I=",  // Test-only key; there is no default
+        "spring.jpa.show-sql=false"
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+class QueryPlanTest {
+
+    private static final String OWNER_EMAIL = "owner7@carenexus.test";
+    private static final LocalDateTime NOW = LocalDateTime.of(2026, 6, 1, 9, 0);
+    private static final Pageable PAGE = PageRequest.of(0, 20);
+    private static final Pageable BATCH = PageRequest.of(0, 500);
+
+    /** "from message m1_0" / "join doctor d1_0": EXPLAIN reports the alias */
+    private static final Pattern TABLE_ALIAS = Pattern.compile(
+            "\\b(?:from|join|update)\\s+(\\w+)\\s+(?:as\\s+)?(\\w+)", Pattern.CASE_INSENSITIVE);
+
+    /** Statements run through the context's DataSource since the last clear */
+    private static final List<Executed> EXECUTED = new CopyOnWriteArrayList<>();
+
+    @Container
+    static final MySQLContainer<?> MYSQL = new MySQLContainer<>("mysql:8.0");
+
+    @Autowired PatientRepository patients;
+    @Autowired DoctorRepository doctors;
+    @Autowired AppointmentRepository appointments;
+    @Autowired MessageRepository messages;
+    @Autowired ChangeLogRepository changeLog;
+    @Autowired ReminderLeaseRepository reminderLeases;
+    @Autowired AppointmentSlotRepository appointmentSlots;
+    @Autowired InboxEntryRepository inbox;
+    @Autowired AttachmentRepository attachments;
+    @Autowired AttachmentUploadRepository attachmentUploads;
+
+    @DynamicPropertySource
+    static void dataSource(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", MYSQL::getJdbcUrl);
+        registry.add("spring.datasource.username", MYSQL::getUsername);
+        registry.add("spring.datasource.password", MYSQL::getPassword);
+    }
+
+    @BeforeAll
+    static void migrateAndSeed() throws SQLException {
+        Flyway.configure()
+                .dataSource(MYSQL.getJdbcUrl(), MYSQL.getUsername(), MYSQL.getPassword())
+                .load()
+                .migrate();
+
+        try (Connection connection = connect(); Statement statement = connection.createStatement()) {
+            statement.execute("SET SESSION cte_max_recursion_depth = 1000000");
+            seed(statement, 400,
+                    "INSERT INTO owner (id, email) SELECT n, CONCAT('owner', n, '@carenexus.test') FROM seq");
+            seed(statement, 20_000,
+                    "INSERT INTO patient (name, email, phone, owner_id, name_prefix_bidx, email_bidx) " +
+                    "SELECT CONCAT('Patient ', n), CONCAT('p', n, '@mail.test'), '555', 1 + n % 400, " +
+                    "UNHEX(MD5(CONCAT('name', n % 50))), UNHEX(MD5(CONCAT('email', n))) FROM seq");
+            seed(statement, 4_000,
+                    "INSERT INTO doctor (name, specialization, email, phone, owner_id) " +
+                    "SELECT CONCAT('Doctor ', n), ELT(1 + n % 5, 'Cardiology', 'Neurology', 'Pediatrics', 'Oncology', 'Dermatology'), " +
+                    "CONCAT('d', n, '@mail.test'), '555', 1 + n % 400 FROM seq");
+            seed(statement, 60_000,
+                    "INSERT INTO appointment (appointment_time, duration_minutes, reason, doctor_id, patient_id, owner_id) " +
+                    "SELECT TIMESTAMP('2026-01-01') + INTERVAL n * 30 MINUTE, 30, CONCAT('Reason ', n), 1 + n % 4000, " +
+                    "1 + n % 20000, 1 + n % 400 FROM seq");
+            seed(statement, 100_000,
+                    "INSERT INTO message (sender, recipient, content, timestamp, appointment_id, owner_id) " +
+                    "SELECT CONCAT('owner', n % 400, '@carenexus.test'), CONCAT('owner', (n + 1) % 400, '@carenexus.test'), " +
+                    "CONCAT('Message ', n), TIMESTAMP('2026-01-01') + INTERVAL n MINUTE, 1 + n % 60000, " +
+                    "1 + n % 400 FROM seq");
+            seed(statement, 50_000,
+                    "INSERT INTO change_log (owner_email, entity_type, entity_id, change_type, changed_at) " +
+                    "SELECT CONCAT('owner', n % 400, '@carenexus.test'), 'MESSAGE', n, 'CREATED', " +
+                    "TIMESTAMP('2026-01-01') + INTERVAL n MINUTE FROM seq");
+            seed(statement, 60_000,
+                    "INSERT INTO appointment_slot (doctor_id, slot_start, appointment_id) " +
+                    "SELECT 1 + n % 4000, TIMESTAMP('2026-01-01') + INTERVAL n * 30 MINUTE, n FROM seq");
+            seed(statement, 20_000,
+                    "INSERT INTO appointment_reminder_lease (appointment_id, remind_at, owner, lease_until) " +
+                    "SELECT n, TIMESTAMP('2026-01-01') + INTERVAL n MINUTE, 'node', NOW() FROM seq");
+            seed(statement, 20_000,
+                    "INSERT INTO inbox_entry (recipient, appointment_id, last_message_id, last_sender, last_preview, " +
+                    "last_message_at, unread_count, last_read_message_id) " +
+                    "SELECT CONCAT('owner', n % 400, '@carenexus.test'), n, n, 's', 'p', " +
+                    "TIMESTAMP('2026-01-01') + INTERVAL n MINUTE, 1, 0 FROM seq");
+            seed(statement, 20_000,
+                    "INSERT INTO attachment (owner_id, message_id, sha256, size, content_type, file_name, created_at) " +
+                    "SELECT 1 + n % 400, IF(n % 10 = 0, NULL, n * 5), SHA2(n % 15000, 256), 1024, 'application/pdf', " +
+                    "CONCAT('file', n, '.pdf'), TIMESTAMP('2026-01-01') + INTERVAL n MINUTE FROM seq");
+            seed(statement, 5_000,
+                    "INSERT INTO attachment_upload (id, owner_id, size, content_type, file_name, created_at) " +
+                    "SELECT UUID(), 1 + n % 400, 1024, 'application/pdf', CONCAT('file', n, '.pdf'), " +
+                    "TIMESTAMP('2026-01-01') + INTERVAL n MINUTE FROM seq");
+            statement.execute("ANALYZE TABLE owner, patient, doctor, appointment, message, change_log, " +
+                    "appointment_slot, appointment_reminder_lease, inbox_entry, attachment, attachment_upload");
+        }
+    }
+
+    static Stream<Arguments> repositoryQueries() {
+        return Stream.of(
+                // PatientRepository
+                query("PatientRepository.findByUserEmail", t -> t.patients.findByUserEmail(OWNER_EMAIL)),
+                query("PatientRepository.findByUserEmail(Pageable)",
+                        t -> t.patients.findByUserEmail(OWNER_EMAIL, PageRequest.of(0, 20, Sort.by(Sort.Direction.DESC, "id")))),
+                query("PatientRepository.findByIdAndUserEmail", t -> t.patients.findByIdAndUserEmail(42L, OWNER_EMAIL)),
+                query("PatientRepository.updateOwned",
+                        t -> t.patients.updateOwned(42L, OWNER_EMAIL, 3L, "n", "e", "p", null, null)),
+                query("PatientRepository.deleteOwned", t -> t.patients.deleteOwned(42L, OWNER_EMAIL)),
+                query("PatientRepository.findByUserEmailAndNamePrefixIndex",
+                        t -> t.patients.findByUserEmailAndNamePrefixIndex(OWNER_EMAIL, md5("name12"))),
+                query("PatientRepository.findByUserEmailAndEmailIndex",
+                        t -> t.patients.findByUserEmailAndEmailIndex(OWNER_EMAIL, md5("email12"))),
+                query("PatientRepository.findNamesByUserEmail", t -> t.patients.findNamesByUserEmail(OWNER_EMAIL)),
+
+                // DoctorRepository
+                query("DoctorRepository.findByUserEmail", t -> t.doctors.findByUserEmail(OWNER_EMAIL)),
+                query("DoctorRepository.findByUserEmail(Pageable)",
+                        t -> t.doctors.findByUserEmail(OWNER_EMAIL, PageRequest.of(0, 20, Sort.by(Sort.Direction.DESC, "id")))),
+                query("DoctorRepository.findByIdAndUserEmail", t -> t.doctors.findByIdAndUserEmail(42L, OWNER_EMAIL)),
+                query("DoctorRepository.updateOwned", t -> t.doctors.updateOwned(42L, OWNER_EMAIL, 3L, "e", "p", "s")),
+                query("DoctorRepository.deleteOwned", t -> t.doctors.deleteOwned(42L, OWNER_EMAIL)),
+                query("DoctorRepository.searchByNameAndUserEmail",
+                        t -> t.doctors.searchByNameAndUserEmail(OWNER_EMAIL, "12", PageRequest.of(0, 20, Sort.by("name")))),
+                query("DoctorRepository.searchBySpecializationAndUserEmail",
+                        t -> t.doctors.searchBySpecializationAndUserEmail(OWNER_EMAIL, "card",
+                                PageRequest.of(0, 20, Sort.by("specialization")))),
+                query("DoctorRepository.findByUserEmailAndIdIn",
+                        t -> t.doctors.findByUserEmailAndIdIn(OWNER_EMAIL, List.of(8L, 408L, 808L), PAGE)),
+                query("DoctorRepository.findNamesByUserEmail", t -> t.doctors.findNamesByUserEmail(OWNER_EMAIL)),
+
+                // AppointmentRepository
+                query("AppointmentRepository.findByUserEmail", t -> t.appointments.findByUserEmail(OWNER_EMAIL)),
+                query("AppointmentRepository.findByIdAndUserEmail", t -> t.appointments.findByIdAndUserEmail(42L, OWNER_EMAIL)),
+                query("AppointmentRepository.existsByIdAndUserEmail",
+                        t -> t.appointments.existsByIdAndUserEmail(42L, OWNER_EMAIL)),
+                query("AppointmentRepository.deleteOwned", t -> t.appointments.deleteOwned(42L, OWNER_EMAIL)),
+                query("AppointmentRepository.searchByReasonAndUserEmail",
+                        t -> t.appointments.searchByReasonAndUserEmail(OWNER_EMAIL, "12", PAGE)),
+                query("AppointmentRepository.searchByDateRangeAndUserEmail",
+                        t -> t.appointments.searchByDateRangeAndUserEmail(OWNER_EMAIL, NOW, NOW.plusDays(7), PAGE)),
+                query("AppointmentRepository.findUpcomingAfter",
+                        t -> t.appointments.findUpcomingAfter(NOW, 0L, NOW.plusDays(1), PageRequest.of(0, 1000))),
+                query("AppointmentRepository.findSlotsByDoctorId", t -> t.appointments.findSlotsByDoctorId(42L)),
+                query("AppointmentRepository.findSlotById", t -> t.appointments.findSlotById(42L)),
+                query("AppointmentRepository.findUpcomingById", t -> t.appointments.findUpcomingById(42L)),
+
+                // MessageRepository
+                query("MessageRepository.findByUserEmail", t -> t.messages.findByUserEmail(OWNER_EMAIL)),
+                query("MessageRepository.findByAppointmentIdAndUserEmail",
+                        t -> t.messages.findByAppointmentIdAndUserEmail(42L, OWNER_EMAIL)),
+                query("MessageRepository.findByAppointmentIdAndUserEmailAndIdGreaterThanOrderByIdAsc",
+                        t -> t.messages.findByAppointmentIdAndUserEmailAndIdGreaterThanOrderByIdAsc(42L, OWNER_EMAIL, 10L, BATCH)),
+                query("MessageRepository.findLatestId", t -> t.messages.findLatestId(42L, OWNER_EMAIL)),
+                query("MessageRepository.findByIdAndUserEmail", t -> t.messages.findByIdAndUserEmail(42L, OWNER_EMAIL)),
+                query("MessageRepository.updateOwned",
+                        t -> t.messages.updateOwned(42L, OWNER_EMAIL, 3L, CompressedText.of("c"), NOW)),
+                query("MessageRepository.deleteOwned", t -> t.messages.deleteOwned(42L, OWNER_EMAIL, NOW)),
+                query("MessageRepository.findOlderByUserEmail",
+                        t -> t.messages.findOlderByUserEmail(OWNER_EMAIL, NOW, 1000L, BATCH)),
+                query("MessageRepository.searchByDateRangeAndUserEmail",
+                        t -> t.messages.searchByDateRangeAndUserEmail(OWNER_EMAIL, NOW, NOW.plusDays(7), PAGE)),
+                query("MessageRepository.findFirstByRecipientAndAppointmentIdOrderByIdDesc",
+                        t -> t.messages.findFirstByRecipientAndAppointmentIdOrderByIdDesc(OWNER_EMAIL, 42L)),
+                query("MessageRepository.findFirstByRecipientAndAppointmentIsNullOrderByIdDesc",
+                        t -> t.messages.findFirstByRecipientAndAppointmentIsNullOrderByIdDesc(OWNER_EMAIL)),
+                query("MessageRepository.findArchivable", t -> t.messages.findArchivable(NOW, 1000L, BATCH)),
+                query("MessageRepository.deleteArchived",
+                        t -> t.messages.deleteArchived(List.of(1001L, 1002L, 1003L), NOW)),
+                query("MessageRepository.findIngestKeys",
+                        t -> t.messages.findIngestKeys(List.of("7f1c2a4e-0000-4000-8000-000000000001",
+                                "7f1c2a4e-0000-4000-8000-000000000002"))),
+                query("MessageRepository.findHotIds", t -> t.messages.findHotIds(List.of(1001L, 1002L, 1003L))),
+
+                // ChangeLogRepository
+                query("ChangeLogRepository.findByOwnerEmailAndIdGreaterThanOrderByIdAsc",
+                        t -> t.changeLog.findByOwnerEmailAndIdGreaterThanOrderByIdAsc(OWNER_EMAIL, 100L, BATCH)),
+                query("ChangeLogRepository.findFirstByChangedAtBeforeOrderByIdDesc",
+                        t -> t.changeLog.findFirstByChangedAtBeforeOrderByIdDesc(NOW)),
+                query("ChangeLogRepository.findMaxIdBefore", t -> t.changeLog.findMaxIdBefore(NOW)),
+                query("ChangeLogRepository.deleteByIdLessThan", t -> t.changeLog.deleteByIdLessThan(100L)),
+
+                // ReminderLeaseRepository
+                query("ReminderLeaseRepository.takeOverExpired",
+                        t -> t.reminderLeases.takeOverExpired(42L, NOW, "n2", NOW.plusMinutes(1), LocalDateTime.now())),
+                query("ReminderLeaseRepository.findExpiredUnfired",
+                        t -> t.reminderLeases.findExpiredUnfired(NOW, NOW.minusHours(1), BATCH)),
+
+                // AppointmentSlotRepository
+                query("AppointmentSlotRepository.deleteByAppointmentId", t -> t.appointmentSlots.deleteByAppointmentId(42L)),
+
+                // InboxEntryRepository
+                query("InboxEntryRepository.findByRecipientOrderByLastMessageAtDesc",
+                        t -> t.inbox.findByRecipientOrderByLastMessageAtDesc(OWNER_EMAIL, PAGE)),
+                query("InboxEntryRepository.sumUnreadByRecipient", t -> t.inbox.sumUnreadByRecipient(OWNER_EMAIL)),
+                query("InboxEntryRepository.markRead", t -> t.inbox.markRead(OWNER_EMAIL, 42L)),
+
+                // AttachmentRepository
+                query("AttachmentRepository.findByMessageIdAndUserEmailOrderByIdAsc",
+                        t -> t.attachments.findByMessageIdAndUserEmailOrderByIdAsc(210L, OWNER_EMAIL)),
+                query("AttachmentRepository.findFirstBySha256AndUserEmail",
+                        t -> t.attachments.findFirstBySha256AndUserEmail(sha256("42"), OWNER_EMAIL)),
+                query("AttachmentRepository.existsBySha256", t -> t.attachments.existsBySha256(sha256("42"))),
+                query("AttachmentRepository.findUnlinkedBefore", t -> t.attachments.findUnlinkedBefore(NOW, BATCH)),
+                query("AttachmentRepository.link",
+                        t -> t.attachments.link(List.of(10L, 20L, 30L), 42L, OWNER_EMAIL)),
+
+                // AttachmentUploadRepository
+                query("AttachmentUploadRepository.findByCreatedAtBefore",
+                        t -> t.attachmentUploads.findByCreatedAtBefore(LocalDateTime.of(2026, 1, 1, 2, 0), BATCH))
+        );
+        // Not listed: DoctorRepository.findAllFacetRows reads every doctor by design (facet index build)
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("repositoryQueries")
+    void repositoryQueryUsesAnIndex(String repositoryMethod, RepositoryCall call) throws SQLException {
+        for (Executed statement : execute(repositoryMethod, call)) {
+            List<String> fullScans = new ArrayList<>();
+            for (PlanRow row : explain(statement)) {
+                if ("ALL".equalsIgnoreCase(row.type())) {
+                    fullScans.add(row.table());
+                }
+            }
+            assertThat(fullScans)
+                    .as("%s does a full table scan: %s", repositoryMethod, statement.sql())
+                    .isEmpty();
+        }
+    }
+
+    /** Date-range queries on the partitioned tables (V3) */
+    static Stream<Arguments> dateRangeQueries() {
+        return Stream.of(
+                Arguments.of("AppointmentRepository.searchByDateRangeAndUserEmail", "appointment",
+                        (RepositoryCall) t -> t.appointments.searchByDateRangeAndUserEmail(OWNER_EMAIL, NOW, NOW.plusDays(7), PAGE)),
+                Arguments.of("AppointmentRepository.findUpcomingAfter", "appointment",
+                        (RepositoryCall) t -> t.appointments.findUpcomingAfter(NOW, 0L, NOW.plusDays(1), PageRequest.of(0, 1000))),
+                Arguments.of("MessageRepository.searchByDateRangeAndUserEmail", "message",
+                        (RepositoryCall) t -> t.messages.searchByDateRangeAndUserEmail(OWNER_EMAIL, NOW, NOW.plusDays(7), PAGE))
+        );
+    }
+
+    /** Statements that select from the table itself (not loads of its associations) must prune */
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("dateRangeQueries")
+    void dateRangeQueryPrunesPartitions(String repositoryMethod, String table, RepositoryCall call) throws SQLException {
+        long total;
+        try (Connection connection = connect(); Statement statement = connection.createStatement();
+             ResultSet count = statement.executeQuery("SELECT COUNT(*) FROM information_schema.PARTITIONS " +
+                     "WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = '" + table + "'")) {
+            count.next();
+            total = count.getLong(1);
+        }
+        assertThat(total).as("%s is partitioned", table).isGreaterThan(1);
+
+        List<Executed> ranged = execute(repositoryMethod, call).stream()
+                .filter(statement -> table.equals(aliases(statement.sql()).values().stream().findFirst().orElse(null)))
+                .toList();
+        assertThat(ranged).as("%s selects from %s", repositoryMethod, table).isNotEmpty();
+        for (Executed statement : ranged) {
+            List<String> read = new ArrayList<>();
+            for (PlanRow row : explain(statement)) {
+                if (table.equals(row.table()) && row.partitions() != null) {
+                    read.addAll(List.of(row.partitions().split(",")));
+                }
+            }
+            assertThat(read)
+                    .as("%s reads partitions %s of %d: %s", repositoryMethod, read, total, statement.sql())
+                    .isNotEmpty()
+                    .hasSizeLessThan((int) total);
+        }
+    }
+
+    /** Calls the repository and returns the distinct statements it ran that EXPLAIN can plan */
+    private List<Executed> execute(String repositoryMethod, RepositoryCall call) {
+        EXECUTED.clear();
+        call.invoke(this);
+        Map<String, Executed> distinct = new LinkedHashMap<>();
+        for (Executed statement : EXECUTED) {
+            String verb = statement.sql().stripLeading().toLowerCase(Locale.ROOT);
+            if (verb.startsWith("select") || verb.startsWith("update") || verb.startsWith("delete")) {
+                distinct.putIfAbsent(statement.sql(), statement);
+            }
+        }
+        assertThat(distinct).as("%s ran no query", repositoryMethod).isNotEmpty();
+        return List.copyOf(distinct.values());
+    }
+
+    /** EXPLAIN with the parameters the statement was executed with; table is the real name, not the alias */
+    private static List<PlanRow> explain(Executed statement) throws SQLException {
+        Map<String, String> aliases = aliases(statement.sql());
+        List<PlanRow> rows = new ArrayList<>();
+        try (Connection connection = connect();
+             PreparedStatement explain = connection.prepareStatement("EXPLAIN " + statement.sql())) {
+            for (ParameterSetOperation parameter : statement.parameters()) {
+                try {
+                    parameter.getMethod().invoke(explain, parameter.getArgs());
+                } catch (IllegalAccessException | InvocationTargetException e) {
+                    throw new SQLException("Cannot bind " + parameter.getMethod().getName() + " for EXPLAIN", e);
+                }
+            }
+            try (ResultSet plan = explain.executeQuery()) {
+                while (plan.next()) {
+                    String table = plan.getString("table");
+                    rows.add(new PlanRow(aliases.getOrDefault(table, table), plan.getString("type"),
+                            plan.getString("partitions")));
+                }
+            }
+        }
+        return rows;
+    }
+
+    /** alias -> table, in order of appearance (the first is the table the statement reads from) */
+    private static Map<String, String> aliases(String sql) {
+        Map<String, String> aliases = new LinkedHashMap<>();
+        Matcher matcher = TABLE_ALIAS.matcher(sql);
+        while (matcher.find()) {
+            aliases.putIfAbsent(matcher.group(2), matcher.group(1));
+        }
+        return aliases;
+    }
+
+    private static Arguments query(String repositoryMethod, RepositoryCall call) {
+        return Arguments.of(repositoryMethod, call);
+    }
+
+    private static byte[] md5(String value) {
+        try {
+            return MessageDigest.getInstance("MD5").digest(value.getBytes(StandardCharsets.UTF_8));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /** Same hex digest as the seed's SHA2(value, 256) */
+    private static String sha256(String value) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(value.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /** Runs an INSERT ... SELECT ... FROM seq with seq = 1..rows */
+    private static void seed(Statement statement, int rows, String insertFromSeq) throws SQLException {
+        int select = insertFromSeq.indexOf("SELECT ");
+        statement.execute(insertFromSeq.substring(0, select)
+                + "WITH RECURSIVE seq (n) AS (SELECT 1 UNION ALL SELECT n + 1 FROM seq WHERE n < " + rows + ") "
+                + insertFromSeq.substring(select));
+    }
+
+    private static Connection connect() throws SQLException {
+        return DriverManager.getConnection(MYSQL.getJdbcUrl(), MYSQL.getUsername(), MYSQL.getPassword());
+    }
+
+    /** A repository call made against the autowired repositories */
+    @FunctionalInterface
+    interface RepositoryCall {
+        Object invoke(QueryPlanTest test);
+    }
+
+    /** A statement as executed: SQL and the setXxx calls that bound its parameters */
+    record Executed(String sql, List<ParameterSetOperation> parameters) {
+    }
+
+    record PlanRow(String table, String type, String partitions) {
+    }
+
+    /**
+     * The repositories and what their converters / listeners need, on a
+     * DataSource that records every statement into EXECUTED.
+     */
+    @Configuration
+    @EnableJpaRepositories("com.carenexus.direct.repository")
+    @EntityScan("com.carenexus.direct.model")
+    @Import({OwnerDirectory.class, FieldEncryptionService.class, OwnerIdConverter.class,
+            EncryptedStringConverter.class, MessageBodyConverter.class, PatientBlindIndexListener.class,
+            OwnerAssignmentListener.class})
+    static class Repositories {
+
+        @Bean
+        MeterRegistry meterRegistry() {
+            return new SimpleMeterRegistry();
+        }
+
+        @Bean
+        static BeanPostProcessor recordingDataSource() {
+            return new BeanPostProcessor() {
+                @Override
+                public Object postProcessAfterInitialization(Object bean, String beanName) {
+                    if (!(bean instanceof DataSource dataSource) || bean instanceof ProxyDataSource) {
+                        return bean;
+                    }
+                    return ProxyDataSourceBuilder.create(dataSource)
+                            .name("query-plan")
+                            .afterQuery((execution, queries) -> {
+                                for (QueryInfo query : queries) {
+                                    EXECUTED.add(new Executed(query.getQuery(), query.getParametersList().isEmpty()
+                                            ? List.of()
+                                            : List.copyOf(query.getParametersList().get(0))));
+                                }
+                            })
+                            .build();
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,179 @@
+package com.carenexus.direct.service;
+
+import com.carenexus.direct.event.EntityChangedEvent.ChangeType;
+import com.carenexus.direct.event.EntityChangedEvent.EntityType;
+import com.carenexus.direct.exception.BadRequestException;
+import com.carenexus.direct.exception.ConflictException;
+import com.carenexus.direct.exception.NotFoundException;
+import com.carenexus.direct.model.Appointment;
+import com.carenexus.direct.model.Doctor;
+import com.carenexus.direct.repository.AppointmentRepository;
+import com.carenexus.direct.repository.AppointmentSlotRepository;
+import com.carenexus.direct.repository.DoctorRepository;
+import com.carenexus.direct.repository.MessageRepository;
+import com.carenexus.direct.repository.PatientRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+/**
+ * Appointment cancel and booking without the foreign keys V3 dropped:
+ * an appointment with messages is not deleted, and a booking against a
+ * doctor deleted meanwhile is not written. Bookings past the horizon
+ * partitions are kept ready for are refused. Reschedules write before
+ * they read and roll the UPDATE back when the doctor is booked.
+ */
+class AppointmentBookingServiceTest {
+
+    private static final String OWNER = "owner@example.com";
+
+    private final AppointmentRepository appointmentRepository = mock(AppointmentRepository.class);
+    private final AppointmentSlotRepository slotRepository = mock(AppointmentSlotRepository.class);
+    private final DoctorRepository doctorRepository = mock(DoctorRepository.class);
+    private final MessageRepository messageRepository = mock(MessageRepository.class);
+    private final DoctorAvailabilityService availabilityService = mock(DoctorAvailabilityService.class);
+    private final PlatformTransactionManager transactionManager = mock(PlatformTransactionManager.class);
+    private final SyncService syncService = mock(SyncService.class);
+
+    private final AppointmentBookingService service = new AppointmentBookingService(appointmentRepository,
+            slotRepository, doctorRepository, mock(PatientRepository.class), messageRepository, availabilityService,
+            new TransactionTemplate(transactionManager), syncService, new SimpleMeterRegistry(), 16, 5, 1_000, 1_440, 24);
+
+    @Test
+    void cancelIsRefusedWhileMessagesBelongToTheAppointment() {
+        when(appointmentRepository.deleteOwned(9L, OWNER)).thenReturn(1);
+        when(messageRepository.existsByAppointmentId(9L)).thenReturn(true);
+
+        assertThatThrownBy(() -> service.cancel(9L, OWNER)).isInstanceOf(ConflictException.class);
+        verify(transactionManager).rollback(any());
+        verify(slotRepository, never()).deleteByAppointmentId(anyLong());
+        verifyNoInteractions(syncService);
+    }
+
+    @Test
+    void cancelWithoutMessagesReleasesTheCells() {
+        when(appointmentRepository.deleteOwned(9L, OWNER)).thenReturn(1);
+
+        assertThat(service.cancel(9L, OWNER)).isTrue();
+        verify(slotRepository).deleteByAppointmentId(9L);
+        verify(syncService).record(EntityType.APPOINTMENT, ChangeType.DELETED, 9L, OWNER);
+    }
+
+    @Test
+    void cancelOfAnotherOwnersAppointmentReportsFalse() {
+        assertThat(service.cancel(9L, OWNER)).isFalse();
+        verify(messageRepository, never()).existsByAppointmentId(anyLong());
+    }
+
+    @Test
+    void bookingAgainstADeletedDoctorIsNotWritten() {
+        LocalDateTime start = LocalDateTime.now().plusDays(7).withHour(9).withMinute(0).withSecond(0).withNano(0);
+        when(availabilityService.endOf(start, null)).thenReturn(start.plusMinutes(30));
+        when(availabilityService.isFree(3L, start, start.plusMinutes(30), null)).thenReturn(true);
+        when(doctorRepository.lockForShare(3L)).thenReturn(Optional.empty());
+        Appointment appointment = Appointment.builder()
+                .appointmentTime(start)
+                .doctor(Doctor.builder().id(3L).build())
+                .userEmail(OWNER)
+                .build();
+
+        assertThatThrownBy(() -> service.book(appointment, ChangeType.CREATED, saved -> { }))
+                .isInstanceOf(NotFoundException.class);
+        verify(appointmentRepository, never()).saveAndFlush(any());
+        verifyNoInteractions(syncService);
+    }
+
+    @Test
+    void bookingPastTheHorizonIsRefused() {
+        Appointment appointment = Appointment.builder()
+                .appointmentTime(LocalDateTime.now().plusMonths(25))
+                .doctor(Doctor.builder().id(3L).build())
+                .userEmail(OWNER)
+                .build();
+
+        assertThatThrownBy(() -> service.book(appointment, ChangeType.CREATED, saved -> { }))
+                .isInstanceOf(BadRequestException.class);
+        verifyNoInteractions(availabilityService, doctorRepository);
+    }
+
+    @Test
+    void rescheduleWritesBeforeReadingTheRowBack() {
+        LocalDateTime start = nextWeekAtNine();
+        Appointment changes = Appointment.builder().appointmentTime(start).reason("Follow-up").version(4L).build();
+        Appointment written = Appointment.builder().id(9L).appointmentTime(start)
+                .doctor(Doctor.builder().id(3L).build()).userEmail(OWNER).version(5L).build();
+        when(appointmentRepository.updateOwned(9L, OWNER, 4L, start, null, "Follow-up")).thenReturn(1);
+        when(appointmentRepository.findByIdAndUserEmail(9L, OWNER)).thenReturn(Optional.of(written));
+        when(availabilityService.endOf(start, null)).thenReturn(start.plusMinutes(30));
+        when(availabilityService.isFree(3L, start, start.plusMinutes(30), 9L)).thenReturn(true);
+        AtomicReference<Appointment> announced = new AtomicReference<>();
+
+        assertThat(service.reschedule(9L, OWNER, changes, announced::set)).isSameAs(written);
+        InOrder order = inOrder(appointmentRepository, slotRepository);
+        order.verify(appointmentRepository).updateOwned(9L, OWNER, 4L, start, null, "Follow-up");
+        order.verify(appointmentRepository).findByIdAndUserEmail(9L, OWNER);
+        order.verify(slotRepository).deleteByAppointmentId(9L);
+        order.verify(slotRepository).saveAllAndFlush(any());
+        verify(appointmentRepository, never()).existsByIdAndUserEmail(anyLong(), any());
+        verify(transactionManager).commit(any());
+        verify(syncService).record(EntityType.APPOINTMENT, ChangeType.UPDATED, 9L, OWNER);
+        assertThat(announced.get()).isSameAs(written);
+    }
+
+    @Test
+    void rescheduleOntoABookedTimeRollsBack() {
+        LocalDateTime start = nextWeekAtNine();
+        Appointment written = Appointment.builder().id(9L).appointmentTime(start)
+                .doctor(Doctor.builder().id(3L).build()).userEmail(OWNER).build();
+        when(appointmentRepository.updateOwned(9L, OWNER, null, start, null, null)).thenReturn(1);
+        when(appointmentRepository.findByIdAndUserEmail(9L, OWNER)).thenReturn(Optional.of(written));
+        when(availabilityService.endOf(start, null)).thenReturn(start.plusMinutes(30));
+
+        assertThatThrownBy(() -> service.reschedule(9L, OWNER, Appointment.builder().appointmentTime(start).build(),
+                saved -> { })).isInstanceOf(ConflictException.class);
+        verify(transactionManager).rollback(any());
+        verify(slotRepository, never()).saveAllAndFlush(any());
+        verifyNoInteractions(syncService);
+    }
+
+    @Test
+    void rescheduleWithAStaleVersionConflicts() {
+        when(appointmentRepository.existsByIdAndUserEmail(9L, OWNER)).thenReturn(true);
+        Appointment changes = Appointment.builder().appointmentTime(nextWeekAtNine()).version(4L).build();
+
+        assertThatThrownBy(() -> service.reschedule(9L, OWNER, changes, saved -> { }))
+                .isInstanceOf(ConflictException.class);
+        verify(appointmentRepository, never()).findByIdAndUserEmail(anyLong(), any());
+        verifyNoInteractions(availabilityService, slotRepository, syncService);
+    }
+
+    @Test
+    void rescheduleOfAnotherOwnersAppointmentIsNotFound() {
+        Appointment changes = Appointment.builder().appointmentTime(nextWeekAtNine()).version(4L).build();
+
+        assertThatThrownBy(() -> service.reschedule(9L, OWNER, changes, saved -> { }))
+                .isInstanceOf(NotFoundException.class);
+        verifyNoInteractions(availabilityService, slotRepository, syncService);
+    }
+
+    private static LocalDateTime nextWeekAtNine() {
+        return LocalDateTime.now().plusDays(7).withHour(9).withMinute(0).withSecond(0).withNano(0);
+    }
+}
@@ -0,0 +1,90 @@
+package com.carenexus.direct.service;
+
+import com.carenexus.direct.model.ReminderLease;
+import com.carenexus.direct.repository.AppointmentRepository;
+import com.carenexus.direct.repository.AppointmentRepository.UpcomingAppointment;
+import com.carenexus.direct.repository.ReminderLeaseRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.ApplicationEventPublisher;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * A reminder whose claim holder died between claim and markFired is on
+ * no wheel any more: the loader puts it back, once, unless the
+ * appointment has moved since. The wheel is not started, so scheduled
+ * reminders stay pending.
+ */
+class AppointmentReminderServiceTest {
+
+    private static final String OWNER = "owner@example.com";
+
+    private final AppointmentRepository appointmentRepository = mock(AppointmentRepository.class);
+    private final ReminderLeaseRepository leaseRepository = mock(ReminderLeaseRepository.class);
+
+    private final AppointmentReminderService service = new AppointmentReminderService(appointmentRepository,
+            leaseRepository, mock(ApplicationEventPublisher.class), new SimpleMeterRegistry(),
+            60, 24, 60, 100, 1_000, 8, 1);
+
+    @AfterEach
+    void tearDown() {
+        service.stop();
+    }
+
+    @Test
+    void expiredUnfiredClaimIsPutBackOnTheWheelOnce() {
+        LocalDateTime appointmentTime = LocalDateTime.now().plusMinutes(30);
+        expiredClaim(5L, appointmentTime.minusMinutes(60));
+        upcoming(5L, appointmentTime);
+
+        service.loadUpcoming();
+        assertThat(service.pendingCount()).isEqualTo(1);
+
+        service.loadUpcoming();  // Still pending here: not scheduled twice
+        assertThat(service.pendingCount()).isEqualTo(1);
+    }
+
+    @Test
+    void expiredClaimOfAMovedAppointmentIsLeftAlone() {
+        LocalDateTime appointmentTime = LocalDateTime.now().plusMinutes(30);
+        expiredClaim(5L, appointmentTime.minusMinutes(60));
+        upcoming(5L, appointmentTime.plusDays(1));
+
+        service.loadUpcoming();
+        assertThat(service.pendingCount()).isZero();
+    }
+
+    @Test
+    void expiredClaimOfADeletedAppointmentIsLeftAlone() {
+        expiredClaim(5L, LocalDateTime.now().minusMinutes(30));
+
+        service.loadUpcoming();
+        assertThat(service.pendingCount()).isZero();
+    }
+
+    private void expiredClaim(Long appointmentId, LocalDateTime remindAt) {
+        when(leaseRepository.findExpiredUnfired(any(), any(), any())).thenReturn(List.of(ReminderLease.builder()
+                .appointmentId(appointmentId)
+                .remindAt(remindAt)
+                .owner("crashed-node")
+                .leaseUntil(LocalDateTime.now().minusSeconds(1))
+                .build()));
+    }
+
+    private void upcoming(Long id, LocalDateTime appointmentTime) {
+        UpcomingAppointment row = mock(UpcomingAppointment.class);
+        when(row.getId()).thenReturn(id);
+        when(row.getAppointmentTime()).thenReturn(appointmentTime);
+        when(row.getUserEmail()).thenReturn(OWNER);
+        when(appointmentRepository.findUpcomingById(id)).thenReturn(Optional.of(row));
+    }
+}
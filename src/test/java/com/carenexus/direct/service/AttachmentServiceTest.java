@@ -0,0 +1,137 @@
+package com.carenexus.direct.service;
+
+import com.carenexus.direct.dto.AttachmentDTO;
+import com.carenexus.direct.dto.AttachmentUploadDTO;
+import com.carenexus.direct.model.EncryptedStringConverter;
+import com.carenexus.direct.model.MessageBodyConverter;
+import com.carenexus.direct.model.OwnerAssignmentListener;
+import com.carenexus.direct.model.OwnerIdConverter;
+import com.carenexus.direct.model.PatientBlindIndexListener;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.domain.EntityScan;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.testcontainers.containers.MySQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * The per-file named lock is taken on the writing transaction's own
+ * connection: storing and deduplicating a file works on a pool of a
+ * single connection, and the lock is free again once the row is
+ * committed. Not in a test transaction, so the service's own commit.
+ * Skipped without Docker.
+ */
+@Testcontainers(disabledWithoutDocker = true)
+@DataJpaTest(properties = {
+        "spring.flyway.enabled=false",  // Migrated in @BeforeAll, before the context starts
+        "spring.jpa.show-sql=false",
+        "encryption.master-key=LAunX6VqlqheJjLoi6IIFQwv7yGMQ1DGtSfGN9YDR1I=",  // Test-only key; there is no default
+        "spring.datasource.hikari.maximum-pool-size=1",  // A second connection per call would time out
+        "spring.datasource.hikari.connection-timeout=2000"
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class AttachmentServiceTest {
+
+    private static final String OWNER = "attachments@carenexus.test";
+    private static final byte[] CONTENT = "scan of the referral letter".getBytes(StandardCharsets.UTF_8);
+
+    @Container
+    static final MySQLContainer<?> MYSQL = new MySQLContainer<>("mysql:8.0");
+
+    @Autowired AttachmentService attachmentService;
+    @Autowired OwnerDirectory ownerDirectory;
+    @Autowired JdbcTemplate jdbcTemplate;
+
+    @DynamicPropertySource
+    static void dataSource(DynamicPropertyRegistry registry) throws IOException {
+        registry.add("spring.datasource.url", MYSQL::getJdbcUrl);
+        registry.add("spring.datasource.username", MYSQL::getUsername);
+        registry.add("spring.datasource.password", MYSQL::getPassword);
+        Path directory = Files.createTempDirectory("attachments");
+        registry.add("attachments.directory", directory::toString);
+    }
+
+    @BeforeAll
+    static void migrate() {
+        Flyway.configure()
+                .dataSource(MYSQL.getJdbcUrl(), MYSQL.getUsername(), MYSQL.getPassword())
+                .load()
+                .migrate();
+    }
+
+    @Test
+    void storesAndDeduplicatesOnASingleConnectionPool() throws IOException {
+        ownerDirectory.idOfOrCreate(OWNER);  // As OwnerResolutionInterceptor does before a mutating request's transactions
+
+        AttachmentUploadDTO upload = attachmentService.startUpload(AttachmentUploadDTO.builder()
+                .fileName("referral.pdf").contentType("application/pdf").size(CONTENT.length).build(), OWNER);
+        attachmentService.writeChunk(upload.getId(), 0, CONTENT.length, new ByteArrayInputStream(CONTENT), OWNER);
+        AttachmentDTO stored = attachmentService.complete(upload.getId(), OWNER);
+
+        assertThat(stored.getSha256()).isEqualTo(sha256(CONTENT));
+        assertThat(lockIsFree(stored.getSha256())).isTrue();
+
+        AttachmentUploadDTO again = attachmentService.startUpload(AttachmentUploadDTO.builder()
+                .fileName("copy.pdf").contentType("application/pdf").size(CONTENT.length)
+                .sha256(stored.getSha256()).build(), OWNER);  // Same content: deduplicated at once
+
+        assertThat(again.getAttachment()).isNotNull();
+        assertThat(again.getAttachment().getId()).isNotEqualTo(stored.getId());
+        assertThat(lockIsFree(stored.getSha256())).isTrue();
+    }
+
+    private boolean lockIsFree(String sha256) {
+        return Integer.valueOf(1).equals(jdbcTemplate.queryForObject("SELECT IS_FREE_LOCK(?)", Integer.class,
+                "carenexus.attachment." + sha256.substring(0, 40)));
+    }
+
+    private static String sha256(byte[] content) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(content));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /** AttachmentService, the repositories and what their converters / listeners need */
+    @Configuration
+    @EnableJpaRepositories("com.carenexus.direct.repository")
+    @EntityScan("com.carenexus.direct.model")
+    @Import({AttachmentService.class, AttachmentStore.class, OwnerDirectory.class, FieldEncryptionService.class,
+            OwnerIdConverter.class, EncryptedStringConverter.class, MessageBodyConverter.class,
+            PatientBlindIndexListener.class, OwnerAssignmentListener.class})
+    static class Attachments {
+
+        @Bean
+        MeterRegistry meterRegistry() {
+            return new SimpleMeterRegistry();
+        }
+    }
+}
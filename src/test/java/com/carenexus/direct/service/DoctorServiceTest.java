@@ -0,0 +1,114 @@
+package com.carenexus.direct.service;
+
+import com.carenexus.direct.event.EntityChangedEvent;
+import com.carenexus.direct.event.EntityChangedEvent.ChangeType;
+import com.carenexus.direct.event.EntityChangedEvent.EntityType;
+import com.carenexus.direct.exception.ConflictException;
+import com.carenexus.direct.exception.NotFoundException;
+import com.carenexus.direct.model.Doctor;
+import com.carenexus.direct.repository.AppointmentRepository;
+import com.carenexus.direct.repository.DoctorRepository;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+/**
+ * Doctor deletes without the appointment → doctor foreign key (V3): a
+ * doctor with appointments is refused inside the DELETE's transaction,
+ * which rolls back and is neither logged for sync nor announced. Updates
+ * write before they read: one existence check tells a stale version (409)
+ * from a missing doctor (404).
+ */
+class DoctorServiceTest {
+
+    private static final String OWNER = "owner@example.com";
+
+    private final DoctorRepository doctorRepository = mock(DoctorRepository.class);
+    private final AppointmentRepository appointmentRepository = mock(AppointmentRepository.class);
+    private final ApplicationEventPublisher eventPublisher = mock(ApplicationEventPublisher.class);
+    private final PlatformTransactionManager transactionManager = mock(PlatformTransactionManager.class);
+    private final SyncService syncService = mock(SyncService.class);
+
+    private final DoctorService service = new DoctorService(doctorRepository, appointmentRepository, eventPublisher,
+            mock(QueryResultCache.class), mock(DoctorFacetService.class), mock(MergePatchService.class),
+            new TransactionTemplate(transactionManager), syncService);
+
+    @Test
+    void deleteIsRefusedWhileAppointmentsReferenceTheDoctor() {
+        when(doctorRepository.deleteOwned(7L, OWNER)).thenReturn(1);
+        when(appointmentRepository.existsByDoctorId(7L)).thenReturn(true);
+
+        assertThatThrownBy(() -> service.delete(7L, OWNER)).isInstanceOf(ConflictException.class);
+        verify(transactionManager).rollback(any());
+        verify(transactionManager, never()).commit(any());
+        verifyNoInteractions(syncService, eventPublisher);
+    }
+
+    @Test
+    void deleteWithoutAppointmentsIsLoggedAndAnnounced() {
+        when(doctorRepository.deleteOwned(7L, OWNER)).thenReturn(1);
+
+        service.delete(7L, OWNER);
+
+        verify(transactionManager).commit(any());
+        verify(syncService).record(EntityType.DOCTOR, ChangeType.DELETED, 7L, OWNER);
+        verify(eventPublisher).publishEvent(any(EntityChangedEvent.class));
+    }
+
+    @Test
+    void deleteOfAnotherOwnersDoctorIsNotFound() {
+        assertThatThrownBy(() -> service.delete(7L, OWNER)).isInstanceOf(NotFoundException.class);
+        verify(appointmentRepository, never()).existsByDoctorId(anyLong());
+        verifyNoInteractions(syncService, eventPublisher);
+    }
+
+    @Test
+    void updateWritesBeforeReadingTheRowBack() {
+        Doctor changes = Doctor.builder().email("new@example.com").phone("555").specialization("Cardiology")
+                .version(2L).build();
+        when(doctorRepository.updateOwned(7L, OWNER, 2L, "new@example.com", "555", "Cardiology")).thenReturn(1);
+        when(doctorRepository.findByIdAndUserEmail(7L, OWNER))
+                .thenReturn(Optional.of(Doctor.builder().id(7L).name("Dr. Grey").version(3L).build()));
+
+        assertThat(service.update(7L, changes, OWNER).getVersion()).isEqualTo(3L);
+        InOrder order = inOrder(doctorRepository);
+        order.verify(doctorRepository).updateOwned(7L, OWNER, 2L, "new@example.com", "555", "Cardiology");
+        order.verify(doctorRepository).findByIdAndUserEmail(7L, OWNER);
+        verify(doctorRepository, never()).existsByIdAndUserEmail(anyLong(), any());
+        verify(transactionManager).commit(any());
+        verify(syncService).record(EntityType.DOCTOR, ChangeType.UPDATED, 7L, OWNER);
+    }
+
+    @Test
+    void updateWithAStaleVersionConflicts() {
+        when(doctorRepository.existsByIdAndUserEmail(7L, OWNER)).thenReturn(true);
+
+        assertThatThrownBy(() -> service.update(7L, Doctor.builder().version(2L).build(), OWNER))
+                .isInstanceOf(ConflictException.class);
+        verify(transactionManager).rollback(any());
+        verifyNoInteractions(syncService, eventPublisher);
+    }
+
+    @Test
+    void updateOfAnotherOwnersDoctorIsNotFound() {
+        assertThatThrownBy(() -> service.update(7L, Doctor.builder().version(2L).build(), OWNER))
+                .isInstanceOf(NotFoundException.class);
+        verify(doctorRepository, never()).findByIdAndUserEmail(anyLong(), any());
+        verifyNoInteractions(syncService, eventPublisher);
+    }
+}
@@ -0,0 +1,147 @@
+package com.carenexus.direct.service;
+
+import com.carenexus.direct.dto.InboxEntryDTO;
+import com.carenexus.direct.event.EntityChangedEvent.ChangeType;
+import com.carenexus.direct.model.EncryptedStringConverter;
+import com.carenexus.direct.model.Message;
+import com.carenexus.direct.model.MessageBodyConverter;
+import com.carenexus.direct.model.OwnerAssignmentListener;
+import com.carenexus.direct.model.OwnerIdConverter;
+import com.carenexus.direct.model.PatientBlindIndexListener;
+import com.carenexus.direct.repository.MessageRepository;
+import com.carenexus.direct.util.CompressedText;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.domain.EntityScan;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.testcontainers.containers.MySQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * The inbox row of a conversation on a real MySQL, through the same
+ * single-statement writes MessageService issues in each message
+ * transaction: the unread counter follows inserts, mark-read and deletes,
+ * and the latest-message fields fall back when the latest is deleted.
+ * Runs in the test transaction, which is rolled back. Skipped without
+ * Docker.
+ */
+@Testcontainers(disabledWithoutDocker = true)
+@DataJpaTest(properties = {
+        "spring.flyway.enabled=false",  // Migrated in @BeforeAll, before the context starts
+        "encryption.master-key=LAunX6VqlqheJjLoi6IIFQwv7yGMQ1DGtSfGN9YDR1I=",  // Test-only key; there is no default
+        "spring.jpa.show-sql=false"
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+class InboxServiceTest {
+
+    private static final String SENDER = "doctor@carenexus.test";
+    private static final String RECIPIENT = "patient@carenexus.test";
+    private static final LocalDateTime NOW = LocalDateTime.of(2026, 6, 1, 9, 0);
+
+    @Container
+    static final MySQLContainer<?> MYSQL = new MySQLContainer<>("mysql:8.0");
+
+    @Autowired InboxService inboxService;
+    @Autowired MessageRepository messages;
+
+    @DynamicPropertySource
+    static void dataSource(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", MYSQL::getJdbcUrl);
+        registry.add("spring.datasource.username", MYSQL::getUsername);
+        registry.add("spring.datasource.password", MYSQL::getPassword);
+    }
+
+    @BeforeAll
+    static void migrate() {
+        Flyway.configure()
+                .dataSource(MYSQL.getJdbcUrl(), MYSQL.getUsername(), MYSQL.getPassword())
+                .load()
+                .migrate();
+    }
+
+    @Test
+    void unreadCountFollowsInsertReadAndDelete() {
+        Message first = create("First", 0);
+        Message second = create("Second", 1);
+        assertThat(inboxService.getUnreadCount(RECIPIENT)).isEqualTo(2);
+
+        inboxService.markRead(RECIPIENT, null);
+        assertThat(inboxService.getUnreadCount(RECIPIENT)).isZero();
+
+        Message third = create("Third", 2);
+        assertThat(inboxService.getUnreadCount(RECIPIENT)).isEqualTo(1);
+
+        delete(third);   // Unread: no longer counts
+        assertThat(inboxService.getUnreadCount(RECIPIENT)).isZero();
+
+        delete(first);   // Already read: counter unchanged
+        assertThat(inboxService.getUnreadCount(RECIPIENT)).isZero();
+
+        List<InboxEntryDTO> inbox = inboxService.getInbox(RECIPIENT, PageRequest.of(0, 20)).getContent();
+        assertThat(inbox).hasSize(1);
+        assertThat(inbox.get(0).getLastMessageId()).isEqualTo(second.getId());
+        assertThat(inbox.get(0).getLastPreview()).isEqualTo("Second");
+        assertThat(inbox.get(0).getUnreadCount()).isZero();
+    }
+
+    @Test
+    void deletingTheLastMessageDropsTheConversation() {
+        Message only = create("Only", 0);
+        assertThat(inboxService.getUnreadCount(RECIPIENT)).isEqualTo(1);
+
+        delete(only);
+        assertThat(inboxService.getUnreadCount(RECIPIENT)).isZero();
+        assertThat(inboxService.getInbox(RECIPIENT, PageRequest.of(0, 20))).isEmpty();
+    }
+
+    private Message create(String content, int minutes) {
+        Message message = messages.saveAndFlush(Message.builder()
+                .sender(SENDER)
+                .recipient(RECIPIENT)
+                .content(CompressedText.of(content))
+                .timestamp(NOW.plusMinutes(minutes))
+                .userEmail(SENDER)
+                .build());
+        inboxService.apply(ChangeType.CREATED, message);
+        return message;
+    }
+
+    private void delete(Message message) {
+        messages.delete(message);
+        messages.flush();
+        inboxService.apply(ChangeType.DELETED, message);
+    }
+
+    /** InboxService, the repositories and what their converters / listeners need */
+    @Configuration
+    @EnableJpaRepositories("com.carenexus.direct.repository")
+    @EntityScan("com.carenexus.direct.model")
+    @Import({InboxService.class, OwnerDirectory.class, FieldEncryptionService.class, OwnerIdConverter.class,
+            EncryptedStringConverter.class, MessageBodyConverter.class, PatientBlindIndexListener.class,
+            OwnerAssignmentListener.class})
+    static class Inbox {
+
+        @Bean
+        MeterRegistry meterRegistry() {
+            return new SimpleMeterRegistry();
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package com.carenexus.direct.service;
+
+import com.carenexus.direct.dto.MessageDTO;
+import com.carenexus.direct.exception.ServiceUnavailableException;
+import com.carenexus.direct.model.Message;
+import com.carenexus.direct.util.MappedAppendLog;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.QueryTimeoutException;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+/**
+ * The single writer never stalls on a bad row: a batch the database keeps
+ * rejecting is retried row by row and the rejected row dead-lettered,
+ * while an outage is retried until it ends. A log that cannot be replayed
+ * leaves the service unavailable instead of failing startup.
+ */
+class MessageIngestServiceTest {
+
+    private static final String OWNER = "owner@example.com";
+    private static final int LOG_SIZE_MB = 1;
+
+    @TempDir
+    Path dir;
+
+    private final MessageService messageService = mock(MessageService.class);
+    private final AppointmentService appointmentService = mock(AppointmentService.class);
+
+    @Test
+    void rejectedRowIsDeadLetteredAndTheRestAreStored() throws Exception {
+        List<String> stored = Collections.synchronizedList(new ArrayList<>());
+        when(messageService.saveBatch(anyList())).thenAnswer(invocation -> {
+            List<Message> messages = invocation.getArgument(0);
+            if (messages.stream().anyMatch(message -> message.getRecipient().equals("poison"))) {
+                throw new DataIntegrityViolationException("Data too long for column 'recipient'");
+            }
+            messages.forEach(message -> stored.add(message.getRecipient()));
+            return messages;
+        });
+
+        MessageIngestService service = newService();
+        service.open();
+        service.start();
+        submitWhenReady(service, "first");
+        service.submit(message("poison"), OWNER);
+        service.submit(message("last"), OWNER);
+        service.stop();  // Drains the buffer
+
+        assertThat(stored).containsExactly("first", "last");
+        List<String> deadLetters = Files.readAllLines(dir.resolve("ingest.dead"));
+        assertThat(deadLetters).hasSize(1);
+        assertThat(deadLetters.get(0)).startsWith("2\t").endsWith("\tData too long for column 'recipient'");
+
+        try (MappedAppendLog log = new MappedAppendLog(dir.resolve("ingest.log"), LOG_SIZE_MB * 1024 * 1024)) {
+            assertThat(log.replay()).isEmpty();  // Checkpointed past the dead-lettered row
+        }
+    }
+
+    @Test
+    void outageIsRetriedPastTheAttemptLimitAndNeverDeadLettered() throws Exception {
+        AtomicInteger calls = new AtomicInteger();
+        when(messageService.saveBatch(anyList())).thenAnswer(invocation -> {
+            if (calls.incrementAndGet() <= 3) {
+                throw new QueryTimeoutException("Lock wait timeout exceeded");
+            }
+            return invocation.getArgument(0);
+        });
+
+        MessageIngestService service = newService();
+        service.open();
+        service.start();
+        submitWhenReady(service, "patient@example.com");
+        service.stop();
+
+        assertThat(calls.get()).isEqualTo(4);
+        assertThat(dir.resolve("ingest.dead")).doesNotExist();
+    }
+
+    @Test
+    void unreadableLogDegradesInsteadOfFailingStartup() throws Exception {
+        try (MappedAppendLog log = new MappedAppendLog(dir.resolve("ingest.log"), LOG_SIZE_MB * 1024 * 1024)) {
+            log.replay();
+            log.append("torn".getBytes(StandardCharsets.UTF_8));  // Too short to decode
+        }
+
+        MessageIngestService service = newService();
+        service.open();
+        service.start();  // Must not throw: replay runs on the writer thread
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (service.isAvailable() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        service.stop();
+
+        assertThat(service.isAvailable()).isFalse();
+        verifyNoInteractions(messageService);
+        try (MappedAppendLog log = new MappedAppendLog(dir.resolve("ingest.log"), LOG_SIZE_MB * 1024 * 1024)) {
+            assertThat(log.replay()).hasSize(1);  // Left for the next start
+        }
+    }
+
+    private MessageIngestService newService() {
+        return new MessageIngestService(messageService, appointmentService, new SimpleMeterRegistry(),
+                dir.resolve("ingest.log").toString(), LOG_SIZE_MB, 16, 10, 100, 2,
+                dir.resolve("ingest.dead").toString());
+    }
+
+    /** The first submit waits for the writer to finish replaying the (empty) log */
+    private static void submitWhenReady(MessageIngestService service, String recipient) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (true) {
+            try {
+                service.submit(message(recipient), OWNER);
+                return;
+            } catch (ServiceUnavailableException e) {
+                if (System.currentTimeMillis() > deadline) {
+                    throw e;
+                }
+                Thread.sleep(10);
+            }
+        }
+    }
+
+    private static MessageDTO message(String recipient) {
+        return MessageDTO.builder().appointmentId(1L).recipient(recipient).content("Hello").build();
+    }
+}
@@ -0,0 +1,151 @@
+package com.carenexus.direct.service;
+
+import com.carenexus.direct.dto.MessageDTO;
+import com.carenexus.direct.event.EntityChangedEvent.EntityType;
+import com.carenexus.direct.event.RemoteInvalidationEvent;
+import com.carenexus.direct.model.Appointment;
+import com.carenexus.direct.model.Message;
+import com.carenexus.direct.repository.MessageRepository;
+import com.carenexus.direct.util.CompressedText;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * A write made on another instance reaches a stream as an edit when the
+ * client already holds the message - it is no newer than where the
+ * stream started, live or resumed - and as a new message otherwise.
+ * The emitter records each event as "name id" instead of writing it.
+ */
+class MessagePushServiceTest {
+
+    private static final String OWNER = "owner@example.com";
+    private static final Long APPOINTMENT_ID = 42L;
+
+    private final MessageRepository messageRepository = mock(MessageRepository.class);
+    private final BlockingQueue<String> sent = new LinkedBlockingQueue<>();
+
+    private final MessagePushService service = new MessagePushService(messageRepository,
+            mock(AppointmentService.class), mock(AuditService.class), new SimpleMeterRegistry(),
+            60_000, 16, 100, 1) {
+        @Override
+        SseEmitter createEmitter() {
+            return new RecordingEmitter(sent);
+        }
+    };
+
+    @AfterEach
+    void tearDown() {
+        service.stop();
+    }
+
+    @Test
+    void remoteEditOfAnOlderMessageReachesALiveStreamAsAnUpdate() throws InterruptedException {
+        when(messageRepository.findLatestId(APPOINTMENT_ID, OWNER)).thenReturn(9L);
+        service.subscribe(APPOINTMENT_ID, OWNER, null);
+
+        remoteWrite(5L);
+
+        assertThat(next()).isEqualTo("message-updated 5");
+        verify(messageRepository, never()).findByAppointmentIdAndUserEmailAndIdGreaterThanOrderByIdAsc(
+                any(), any(), anyLong(), any());
+    }
+
+    @Test
+    void remoteNewMessageReachesALiveStreamAsAMessage() throws InterruptedException {
+        when(messageRepository.findLatestId(APPOINTMENT_ID, OWNER)).thenReturn(9L);
+        service.subscribe(APPOINTMENT_ID, OWNER, null);
+        when(messageRepository.findByAppointmentIdAndUserEmailAndIdGreaterThanOrderByIdAsc(
+                APPOINTMENT_ID, OWNER, 9L, PageRequest.of(0, 100))).thenReturn(List.of(message(10L)));
+
+        remoteWrite(10L);
+
+        assertThat(next()).isEqualTo("message 10");
+    }
+
+    @Test
+    void resumedStreamHoldsWhatItWasReplayedAndWhatCameBefore() throws InterruptedException {
+        when(messageRepository.findByAppointmentIdAndUserEmailAndIdGreaterThanOrderByIdAsc(
+                APPOINTMENT_ID, OWNER, 7L, PageRequest.of(0, 101))).thenReturn(List.of(message(8L)));
+        service.subscribe(APPOINTMENT_ID, OWNER, 7L);
+        assertThat(next()).isEqualTo("message 8");  // Replayed
+
+        remoteWrite(8L);
+        assertThat(next()).isEqualTo("message-updated 8");
+
+        remoteWrite(3L);
+        assertThat(next()).isEqualTo("message-updated 3");
+        verify(messageRepository, never()).findLatestId(any(), any());
+        verify(messageRepository, never()).findByAppointmentIdAndUserEmailAndIdGreaterThanOrderByIdAsc(
+                eq(APPOINTMENT_ID), eq(OWNER), eq(8L), any());
+    }
+
+    private void remoteWrite(Long id) {
+        when(messageRepository.findByIdAndUserEmail(id, OWNER)).thenReturn(Optional.of(message(id)));
+        service.onRemoteInvalidation(new RemoteInvalidationEvent(EntityType.MESSAGE, OWNER, id));
+    }
+
+    private String next() throws InterruptedException {
+        return sent.poll(5, TimeUnit.SECONDS);
+    }
+
+    private static Message message(Long id) {
+        return Message.builder()
+                .id(id)
+                .appointment(Appointment.builder().id(APPOINTMENT_ID).build())
+                .content(CompressedText.of("message " + id))
+                .userEmail(OWNER)
+                .build();
+    }
+
+    /** Records "name id" of every named event; never connected to a response */
+    private static final class RecordingEmitter extends SseEmitter {
+
+        private static final Pattern NAME = Pattern.compile("event:(\\S+)");
+
+        private final BlockingQueue<String> sent;
+
+        private RecordingEmitter(BlockingQueue<String> sent) {
+            this.sent = sent;
+        }
+
+        @Override
+        public void send(SseEventBuilder builder) {
+            String name = null;
+            Object id = null;
+            for (ResponseBodyEmitter.DataWithMediaType part : builder.build()) {
+                if (part.getData() instanceof String text) {
+                    Matcher matcher = NAME.matcher(text);
+                    if (matcher.find()) {
+                        name = matcher.group(1);
+                    }
+                } else if (part.getData() instanceof MessageDTO message) {
+                    id = message.getId();
+                }
+            }
+            if (name != null) {
+                sent.add(name + " " + id);
+            }
+        }
+    }
+}
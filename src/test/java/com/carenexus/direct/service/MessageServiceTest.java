@@ -0,0 +1,111 @@
+package com.carenexus.direct.service;
+
+import com.carenexus.direct.dto.ContentSearchPageDTO;
+import com.carenexus.direct.dto.MessageDTO;
+import com.carenexus.direct.exception.BadRequestException;
+import com.carenexus.direct.model.Message;
+import com.carenexus.direct.repository.AppointmentRepository;
+import com.carenexus.direct.repository.MessageRepository;
+import com.carenexus.direct.util.CompressedText;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Content search decrypts one window of the owner's messages at a time:
+ * a window that stops short of older messages says so in the page and
+ * hands out the cursor the next window starts from.
+ */
+class MessageServiceTest {
+
+    private static final String OWNER = "owner@example.com";
+    private static final LocalDateTime NOW = LocalDateTime.of(2026, 6, 1, 9, 0);
+    private static final LocalDateTime SCAN_START = LocalDateTime.of(9999, 12, 31, 0, 0);
+
+    private final MessageRepository messageRepository = mock(MessageRepository.class);
+    private final QueryResultCache queryResultCache = mock(QueryResultCache.class);
+
+    private final MessageService service = new MessageService(messageRepository, mock(AppointmentRepository.class),
+            mock(ApplicationEventPublisher.class), queryResultCache, mock(MessageArchiveService.class),
+            mock(AttachmentService.class), new TransactionTemplate(mock(PlatformTransactionManager.class)),
+            mock(MergePatchService.class), mock(SyncService.class), mock(InboxService.class));
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        ReflectionTestUtils.setField(service, "contentSearchScan", 3);
+        when(queryResultCache.get(anyString(), any(), anyString(), anyList(), any()))
+                .thenAnswer(invocation -> ((Supplier<Object>) invocation.getArgument(4)).get());
+    }
+
+    @Test
+    void windowThatStopsShortOfOlderMessagesIsTruncated() {
+        when(messageRepository.findOlderByUserEmail(OWNER, SCAN_START, Long.MAX_VALUE, PageRequest.of(0, 3)))
+                .thenReturn(List.of(message(9, "see you at nine", 0), message(8, "thanks", 1),
+                        message(7, "Nine works", 2)));
+        when(messageRepository.findOlderByUserEmail(OWNER, NOW.minusMinutes(2), 7L, PageRequest.of(0, 1)))
+                .thenReturn(List.of(message(6, "nine again", 3)));  // Outside the window: not matched
+
+        ContentSearchPageDTO page = service.searchByContent(OWNER, "nine", null, PageRequest.of(0, 20, Sort.by("id")));
+
+        assertThat(page.getContent()).extracting(MessageDTO::getId).containsExactly(7L, 9L);
+        assertThat(page.isTruncated()).isTrue();
+        assertThat(page.getContinueBefore()).isEqualTo(NOW.minusMinutes(2) + ",7");
+    }
+
+    @Test
+    void nextWindowStartsAtTheCursorAndEndsAtTheOldestMessage() {
+        when(messageRepository.findOlderByUserEmail(OWNER, NOW.minusMinutes(2), 7L, PageRequest.of(0, 3)))
+                .thenReturn(List.of(message(6, "nine again", 3)));
+
+        ContentSearchPageDTO page = service.searchByContent(OWNER, "nine", NOW.minusMinutes(2) + ",7",
+                PageRequest.of(0, 20, Sort.by("id")));
+
+        assertThat(page.getContent()).extracting(MessageDTO::getId).containsExactly(6L);
+        assertThat(page.isTruncated()).isFalse();
+        assertThat(page.getContinueBefore()).isNull();
+    }
+
+    @Test
+    void fullWindowWithNothingOlderIsNotTruncated() {
+        when(messageRepository.findOlderByUserEmail(OWNER, SCAN_START, Long.MAX_VALUE, PageRequest.of(0, 3)))
+                .thenReturn(List.of(message(3, "a", 0), message(2, "b", 1), message(1, "c", 2)));
+
+        ContentSearchPageDTO page = service.searchByContent(OWNER, "z", null, PageRequest.of(0, 20));
+
+        assertThat(page.getContent()).isEmpty();
+        assertThat(page.isTruncated()).isFalse();
+    }
+
+    @Test
+    void malformedCursorIsRejected() {
+        assertThatThrownBy(() -> service.searchByContent(OWNER, "nine", "yesterday", PageRequest.of(0, 20)))
+                .isInstanceOf(BadRequestException.class);
+    }
+
+    private static Message message(long id, String content, int minutesAgo) {
+        return Message.builder()
+                .id(id)
+                .content(CompressedText.of(content))
+                .timestamp(NOW.minusMinutes(minutesAgo))
+                .userEmail(OWNER)
+                .build();
+    }
+}
@@ -0,0 +1,109 @@
+package com.carenexus.direct.service;
+
+import com.carenexus.direct.model.EncryptedStringConverter;
+import com.carenexus.direct.model.MessageBodyConverter;
+import com.carenexus.direct.model.OwnerAssignmentListener;
+import com.carenexus.direct.model.OwnerIdConverter;
+import com.carenexus.direct.model.Patient;
+import com.carenexus.direct.model.PatientBlindIndexListener;
+import com.carenexus.direct.repository.PatientRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.domain.EntityScan;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.testcontainers.containers.MySQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Only writes assign owner ids: a read by an email that never wrote
+ * anything finds nothing and leaves no owner row behind; its first
+ * persisted entity assigns the id. Owner rows are committed on their own
+ * connection, so each test uses an email of its own. Skipped without
+ * Docker.
+ */
+@Testcontainers(disabledWithoutDocker = true)
+@DataJpaTest(properties = {
+        "spring.flyway.enabled=false",  // Migrated in @BeforeAll, before the context starts
+        "encryption.master-key=LAunX6VqlqheJjLoi6IIFQwv7yGMQ1DGtSfGN9YDR1I=",  // Test-only key; there is no default
+        "spring.jpa.show-sql=false"
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+class OwnerDirectoryTest {
+
+    @Container
+    static final MySQLContainer<?> MYSQL = new MySQLContainer<>("mysql:8.0");
+
+    @Autowired OwnerDirectory ownerDirectory;
+    @Autowired PatientRepository patients;
+    @Autowired JdbcTemplate jdbcTemplate;
+
+    @DynamicPropertySource
+    static void dataSource(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", MYSQL::getJdbcUrl);
+        registry.add("spring.datasource.username", MYSQL::getUsername);
+        registry.add("spring.datasource.password", MYSQL::getPassword);
+    }
+
+    @BeforeAll
+    static void migrate() {
+        Flyway.configure()
+                .dataSource(MYSQL.getJdbcUrl(), MYSQL.getUsername(), MYSQL.getPassword())
+                .load()
+                .migrate();
+    }
+
+    @Test
+    void readByAnUnknownOwnerIsEmptyAndAssignsNoId() {
+        String reader = "reader@carenexus.test";
+
+        assertThat(patients.findByUserEmail(reader)).isEmpty();
+        assertThat(ownerDirectory.findId(reader)).isEmpty();
+        assertThat(ownerRows(reader)).isZero();
+    }
+
+    @Test
+    void firstPersistedEntityAssignsTheId() {
+        String writer = "writer@carenexus.test";
+        assertThat(patients.findByUserEmail(writer)).isEmpty();  // Looked up, not cached as unknown
+
+        patients.saveAndFlush(Patient.builder().name("Ada Lovelace").email("ada@mail.test").userEmail(writer).build());
+
+        assertThat(ownerRows(writer)).isEqualTo(1);
+        assertThat(ownerDirectory.findId(writer)).hasValue(ownerDirectory.idOfOrCreate(writer));
+        assertThat(patients.findByUserEmail(writer)).extracting(Patient::getName).containsExactly("Ada Lovelace");
+    }
+
+    private int ownerRows(String email) {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM owner WHERE email = ?", Integer.class, email);
+    }
+
+    /** OwnerDirectory, the repositories and what their converters / listeners need */
+    @Configuration
+    @EnableJpaRepositories("com.carenexus.direct.repository")
+    @EntityScan("com.carenexus.direct.model")
+    @Import({OwnerDirectory.class, FieldEncryptionService.class, OwnerIdConverter.class,
+            EncryptedStringConverter.class, MessageBodyConverter.class, PatientBlindIndexListener.class,
+            OwnerAssignmentListener.class})
+    static class Owners {
+
+        @Bean
+        MeterRegistry meterRegistry() {
+            return new SimpleMeterRegistry();
+        }
+    }
+}
@@ -0,0 +1,197 @@
+package com.carenexus.direct.service;
+
+import com.carenexus.direct.event.EntityChangedEvent;
+import com.carenexus.direct.event.EntityChangedEvent.ChangeType;
+import com.carenexus.direct.event.EntityChangedEvent.EntityType;
+import com.carenexus.direct.dto.PatientDTO;
+import com.carenexus.direct.exception.BadRequestException;
+import com.carenexus.direct.exception.ConflictException;
+import com.carenexus.direct.exception.NotFoundException;
+import com.carenexus.direct.model.Patient;
+import com.carenexus.direct.model.PatientBlindIndexListener;
+import com.carenexus.direct.repository.AppointmentRepository;
+import com.carenexus.direct.repository.PatientRepository;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+/**
+ * Patient deletes, owner and admin paths, without the appointment →
+ * patient foreign key (V3): refused while appointments reference the
+ * patient, after the DELETE has taken the row lock. Updates are one
+ * versioned statement with no read: a missing patient is 404, a stale
+ * version 409. The pre-encryption search contract is still served by
+ * decrypting the owner's patients, until it is switched off.
+ */
+class PatientServiceTest {
+
+    private static final String OWNER = "owner@example.com";
+
+    private final PatientRepository patientRepository = mock(PatientRepository.class);
+    private final AppointmentRepository appointmentRepository = mock(AppointmentRepository.class);
+    private final ApplicationEventPublisher eventPublisher = mock(ApplicationEventPublisher.class);
+    private final PlatformTransactionManager transactionManager = mock(PlatformTransactionManager.class);
+    private final SyncService syncService = mock(SyncService.class);
+    private final QueryResultCache queryResultCache = mock(QueryResultCache.class);
+
+    private final PatientService service = new PatientService(patientRepository, appointmentRepository,
+            mock(PatientBlindIndexListener.class), eventPublisher, queryResultCache,
+            mock(MergePatchService.class), new TransactionTemplate(transactionManager), syncService);
+
+    @Test
+    void ownerDeleteIsRefusedWhileAppointmentsReferenceThePatient() {
+        when(patientRepository.deleteOwned(5L, OWNER)).thenReturn(1);
+        when(appointmentRepository.existsByPatientId(5L)).thenReturn(true);
+
+        assertThatThrownBy(() -> service.deletePatient(5L, OWNER, false)).isInstanceOf(ConflictException.class);
+        verify(transactionManager).rollback(any());
+        verifyNoInteractions(syncService, eventPublisher);
+    }
+
+    @Test
+    void ownerDeleteWithoutAppointmentsIsLoggedAndAnnounced() {
+        when(patientRepository.deleteOwned(5L, OWNER)).thenReturn(1);
+
+        service.deletePatient(5L, OWNER, false);
+
+        verify(syncService).record(EntityType.PATIENT, ChangeType.DELETED, 5L, OWNER);
+        verify(eventPublisher).publishEvent(any(EntityChangedEvent.class));
+    }
+
+    @Test
+    void adminDeleteChecksAfterTheRowIsDeleted() {
+        Patient patient = Patient.builder().id(5L).userEmail(OWNER).build();
+        when(patientRepository.findById(5L)).thenReturn(Optional.of(patient));
+        when(appointmentRepository.existsByPatientId(5L)).thenReturn(true);
+
+        assertThatThrownBy(() -> service.deletePatient(5L, "admin@example.com", true))
+                .isInstanceOf(ConflictException.class);
+        InOrder order = inOrder(patientRepository, appointmentRepository);
+        order.verify(patientRepository).delete(patient);
+        order.verify(patientRepository).flush();
+        order.verify(appointmentRepository).existsByPatientId(5L);
+        verify(transactionManager, never()).commit(any());
+        verifyNoInteractions(syncService, eventPublisher);
+    }
+
+    @Test
+    void adminDeleteWithoutAppointmentsTombstonesForTheOwner() {
+        Patient patient = Patient.builder().id(5L).userEmail(OWNER).build();
+        when(patientRepository.findById(5L)).thenReturn(Optional.of(patient));
+
+        service.deletePatient(5L, "admin@example.com", true);
+
+        verify(syncService).record(EntityType.PATIENT, ChangeType.DELETED, 5L, OWNER);
+        verify(eventPublisher).publishEvent(any(EntityChangedEvent.class));
+    }
+
+    @Test
+    void versionedUpdateIsASingleStatement() {
+        Patient changes = Patient.builder().name("Ada").email("ada@example.com").phone("555").version(2L).build();
+        when(patientRepository.updateOwned(5L, OWNER, 2L, "Ada", "ada@example.com", "555", null, null))
+                .thenReturn(1);
+
+        Patient saved = service.update(5L, changes, OWNER);
+
+        assertThat(saved.getVersion()).isEqualTo(3L);
+        assertThat(saved.getName()).isEqualTo("Ada");
+        verify(patientRepository, never()).findByIdAndUserEmail(anyLong(), any());
+        verify(patientRepository, never()).existsByIdAndUserEmail(anyLong(), any());
+        verify(syncService).record(EntityType.PATIENT, ChangeType.UPDATED, 5L, OWNER);
+        verify(eventPublisher).publishEvent(any(EntityChangedEvent.class));
+    }
+
+    @Test
+    void updateWithAStaleVersionConflicts() {
+        when(patientRepository.existsByIdAndUserEmail(5L, OWNER)).thenReturn(true);
+
+        assertThatThrownBy(() -> service.update(5L, Patient.builder().version(2L).build(), OWNER))
+                .isInstanceOf(ConflictException.class);
+        verify(transactionManager).rollback(any());
+        verifyNoInteractions(syncService, eventPublisher);
+    }
+
+    @Test
+    void updateOfAMissingPatientIsNotFound() {
+        assertThatThrownBy(() -> service.update(5L, Patient.builder().version(2L).build(), OWNER))
+                .isInstanceOf(NotFoundException.class);
+        verifyNoInteractions(syncService, eventPublisher);
+    }
+
+    @Test
+    void legacyNameSearchMatchesSubstringsAsBeforeEncryption() {
+        passThroughCache();
+        when(patientRepository.findByUserEmail(OWNER)).thenReturn(List.of(
+                Patient.builder().id(1L).name("Joanna Smith").build(),
+                Patient.builder().id(2L).name("Bob Stone").build(),
+                Patient.builder().id(3L).name("Anne Lee").build()));
+
+        List<PatientDTO> found = service.searchByName(OWNER, "ANN", PageRequest.of(0, 20, Sort.by("name")))
+                .getContent();
+
+        assertThat(found).extracting(PatientDTO::getName).containsExactly("Anne Lee", "Joanna Smith");
+    }
+
+    @Test
+    void legacySortByAnEncryptedColumnIsPagedInMemory() {
+        passThroughCache();
+        when(patientRepository.findByUserEmail(OWNER)).thenReturn(List.of(
+                Patient.builder().id(1L).email("c@example.com").build(),
+                Patient.builder().id(2L).email("a@example.com").build(),
+                Patient.builder().id(3L).email("b@example.com").build()));
+
+        Page<PatientDTO> page = service.getAllWithPagination(OWNER, PageRequest.of(1, 2, Sort.by(Sort.Direction.DESC, "email")));
+
+        assertThat(page.getTotalElements()).isEqualTo(3);
+        assertThat(page.getContent()).extracting(PatientDTO::getId).containsExactly(2L);
+    }
+
+    @Test
+    void legacySearchCanBeSwitchedOff() {
+        ReflectionTestUtils.setField(service, "legacySearch", false);
+
+        assertThatThrownBy(() -> service.searchByName(OWNER, "ann", PageRequest.of(0, 20)))
+                .isInstanceOf(BadRequestException.class);
+        assertThatThrownBy(() -> service.searchByEmail(OWNER, "example", PageRequest.of(0, 20)))
+                .isInstanceOf(BadRequestException.class);
+        assertThatThrownBy(() -> service.getAllWithPagination(OWNER, PageRequest.of(0, 20, Sort.by("name"))))
+                .isInstanceOf(BadRequestException.class);
+        verifyNoInteractions(patientRepository);
+    }
+
+    @Test
+    void prefixSearchNeedsThreeCharacters() {
+        assertThatThrownBy(() -> service.searchByNamePrefix(OWNER, " an ", PageRequest.of(0, 20)))
+                .isInstanceOf(BadRequestException.class);
+        verifyNoInteractions(patientRepository);
+    }
+
+    @SuppressWarnings("unchecked")
+    private void passThroughCache() {
+        when(queryResultCache.get(anyString(), any(), anyString(), anyList(), any()))
+                .thenAnswer(invocation -> ((Supplier<Object>) invocation.getArgument(4)).get());
+    }
+}
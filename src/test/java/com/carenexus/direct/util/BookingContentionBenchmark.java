@@ -0,0 +1,104 @@
+package com.carenexus.direct.util;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Booking throughput of AppointmentBookingService's in-instance path
+ * under contention: 8 threads take the doctor's stripe lock, check the
+ * doctor's IntervalIndex and book 30 minute slots, holding the lock for
+ * a simulated transaction (holdTokens of Blackhole CPU work).
+ *
+ * doctors = 1 is the worst case (every booking serialized); with many
+ * doctors and 256 stripes bookings should scale with the threads, while
+ * stripes = 1 shows the cost of a single global lock.
+ *
+ * Opt-in (slow): mvn test -Dtest=BookingContentionBenchmark -Dbenchmark=true
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Threads(8)
+@Fork(1)
+public class BookingContentionBenchmark {
+
+    private static final long SLOT = TimeUnit.MINUTES.toMillis(30);
+    /** Bookings land in one year of 30 minute slots */
+    private static final int SLOTS = 365 * 48;
+
+    @Param({"1", "8", "1000"})
+    public int doctors;
+
+    @Param({"1", "256"})
+    public int stripes;
+
+    @Param({"1000"})
+    public int holdTokens;
+
+    private StripedLocks locks;
+    private IntervalIndex[] indexes;
+
+    @Setup
+    public void setUp() {
+        locks = new StripedLocks(stripes);
+        indexes = new IntervalIndex[doctors];
+        for (int i = 0; i < doctors; i++) {
+            indexes[i] = new IntervalIndex();
+        }
+    }
+
+    @Benchmark
+    public boolean book() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int doctor = random.nextInt(doctors);
+        int slot = random.nextInt(SLOTS);
+        long start = slot * SLOT;
+        long end = start + SLOT;
+        IntervalIndex index = indexes[doctor];
+
+        ReentrantLock lock = locks.lockFor(doctor);
+        lock.lock();
+        try {
+            if (!index.overlapping(start, end).isEmpty()) {
+                index.remove(slot);  // Keeps the calendar from filling up: the next booking of this slot succeeds
+                return false;
+            }
+            Blackhole.consumeCPU(holdTokens);
+            index.put(slot, start, end);
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Test
+    @EnabledIfSystemProperty(named = "benchmark", matches = "true")
+    void run() throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(BookingContentionBenchmark.class.getSimpleName())
+                .build())
+                .run();
+    }
+}
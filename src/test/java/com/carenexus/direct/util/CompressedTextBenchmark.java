@@ -0,0 +1,126 @@
+package com.carenexus.direct.util;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Storage and CPU cost of CompressedText on a synthetic message corpus:
+ * 20k messages, 70% short chat lines and 30% clinical notes of 150-1050
+ * words. Setup prints raw against stored bytes for the corpus; the
+ * benchmarks time encoding a message and decoding a compressed body
+ * against a plain (below threshold) one.
+ *
+ * Opt-in (slow): mvn test -Dtest=CompressedTextBenchmark -Dbenchmark=true
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CompressedTextBenchmark {
+
+    private static final int MESSAGES = 20_000;
+
+    private static final String[] CHAT = {
+            "Hello, how are you feeling today?",
+            "Please remember to bring your insurance card.",
+            "Your lab results are ready, no action needed.",
+            "Can we move the appointment to Thursday afternoon?",
+            "Thanks, see you next week."
+    };
+
+    private static final String[] NOTE_WORDS = (
+            "patient reports intermittent chest pain radiating to left arm onset three days ago "
+                    + "denies shortness of breath nausea diaphoresis history of hypertension type two diabetes "
+                    + "medications metformin lisinopril atorvastatin blood pressure heart rate respiratory rate "
+                    + "temperature afebrile lungs clear to auscultation bilaterally regular rate and rhythm "
+                    + "no murmurs abdomen soft non tender plan ecg troponin lipid panel follow up two weeks "
+                    + "counselled on diet exercise smoking cessation return precautions discussed").split(" ");
+
+    /** messages.compression.threshold-bytes */
+    @Param({"512"})
+    public int thresholdBytes;
+
+    private String[] corpus;
+    private int next;
+    private String note;
+    private String chat;
+    private byte[] storedNote;
+    private byte[] storedChat;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        corpus = new String[MESSAGES];
+        long raw = 0;
+        long stored = 0;
+        for (int i = 0; i < MESSAGES; i++) {
+            corpus[i] = random.nextInt(10) < 7
+                    ? CHAT[random.nextInt(CHAT.length)]
+                    : note(random, 150 + random.nextInt(901));
+            raw += corpus[i].getBytes(StandardCharsets.UTF_8).length;
+            stored += CompressedText.of(corpus[i]).encode(thresholdBytes).length;
+        }
+        note = note(random, 600);
+        chat = CHAT[0];
+        storedNote = CompressedText.of(note).encode(thresholdBytes);
+        storedChat = CompressedText.of(chat).encode(thresholdBytes);
+        System.out.printf("[CompressedTextBenchmark] %d messages: %d raw bytes -> %d stored (%.0f%%)%n",
+                MESSAGES, raw, stored, 100.0 * stored / raw);
+    }
+
+    private static String note(Random random, int words) {
+        StringBuilder text = new StringBuilder(words * 8);
+        for (int i = 0; i < words; i++) {
+            text.append(NOTE_WORDS[random.nextInt(NOTE_WORDS.length)]).append(i % 12 == 11 ? ". " : " ");
+        }
+        return text.toString();
+    }
+
+    /** Encode cost averaged over the corpus mix */
+    @Benchmark
+    public byte[] encodeCorpus() {
+        String text = corpus[next];
+        next = (next + 1) % MESSAGES;
+        return CompressedText.of(text).encode(thresholdBytes);
+    }
+
+    @Benchmark
+    public String decodeCompressed() {
+        return CompressedText.fromStored(storedNote).toString();
+    }
+
+    /** Baseline: a body below the threshold is stored as plain UTF-8 */
+    @Benchmark
+    public String decodePlain() {
+        return CompressedText.fromStored(storedChat).toString();
+    }
+
+    @Test
+    @EnabledIfSystemProperty(named = "benchmark", matches = "true")
+    void run() throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(CompressedTextBenchmark.class.getSimpleName())
+                .build())
+                .run();
+    }
+}
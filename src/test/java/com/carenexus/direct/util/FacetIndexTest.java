@@ -0,0 +1,83 @@
+package com.carenexus.direct.util;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.entry;
+
+/**
+ * Posting list maintenance across put / remove / re-put, and the
+ * AND / OR semantics of filter() and counts().
+ */
+class FacetIndexTest {
+
+    private FacetIndex index;
+
+    @BeforeEach
+    void setUp() {
+        index = new FacetIndex();
+        index.put(1, "a", Set.of("cardiology", "pediatrics"));
+        index.put(2, "a", Set.of("cardiology"));
+        index.put(3, "a", Set.of("neurology"));
+        index.put(4, "b", Set.of("cardiology"));
+    }
+
+    @Test
+    void filterIsScopedToTheOwner() {
+        assertThat(index.filter("a", List.of("cardiology"), List.of()).toArray()).containsExactly(1, 2);
+        assertThat(index.filter("b", List.of("cardiology"), List.of()).toArray()).containsExactly(4);
+        assertThat(index.filter("nobody", List.of(), List.of()).isEmpty()).isTrue();
+    }
+
+    @Test
+    void allTermsAreAndedAndAnyTermsAreOred() {
+        assertThat(index.filter("a", List.of("cardiology", "pediatrics"), List.of()).toArray()).containsExactly(1);
+        assertThat(index.filter("a", List.of(), List.of("pediatrics", "neurology")).toArray()).containsExactly(1, 3);
+        assertThat(index.filter("a", List.of("cardiology"), List.of("pediatrics", "neurology")).toArray()).containsExactly(1);
+        assertThat(index.filter("a", List.of("unknown"), List.of()).isEmpty()).isTrue();
+        assertThat(index.filter("a", List.of(), List.of("unknown")).isEmpty()).isTrue();
+    }
+
+    @Test
+    void countsAreLargestFirstWithinTheFilter() {
+        assertThat(index.counts("a", List.of(), List.of()))
+                .containsExactly(
+                        entry("cardiology", 2),
+                        entry("neurology", 1),
+                        entry("pediatrics", 1));
+        assertThat(index.counts("a", List.of("cardiology"), List.of()))
+                .containsExactly(entry("cardiology", 2), entry("pediatrics", 1));
+        assertThat(index.counts("a", List.of(), List.of("neurology")))
+                .containsExactly(entry("neurology", 1));
+        assertThat(index.counts("a", List.of("unknown"), List.of())).isEmpty();
+    }
+
+    @Test
+    void removeDropsTheDocumentAndEmptyPostings() {
+        index.remove(3);
+
+        assertThat(index.size()).isEqualTo(3);
+        assertThat(index.terms()).containsExactlyInAnyOrder("cardiology", "pediatrics");
+        assertThat(index.filter("a", List.of(), List.of("neurology")).isEmpty()).isTrue();
+
+        index.remove(3);  // Unknown ids are ignored
+        assertThat(index.size()).isEqualTo(3);
+    }
+
+    @Test
+    void rePutReplacesTermsAndOwner() {
+        index.put(1, "b", Set.of("neurology"));
+
+        assertThat(index.size()).isEqualTo(4);
+        assertThat(index.filter("a", List.of("pediatrics"), List.of()).isEmpty()).isTrue();
+        assertThat(index.terms()).doesNotContain("pediatrics");
+        assertThat(index.filter("a", List.of("cardiology"), List.of()).toArray()).containsExactly(2);
+        assertThat(index.filter("b", List.of(), List.of()).toArray()).containsExactly(1, 4);
+        assertThat(index.counts("b", List.of(), List.of()))
+                .containsExactly(entry("cardiology", 1), entry("neurology", 1));
+    }
+}
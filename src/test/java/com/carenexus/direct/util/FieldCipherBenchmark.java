@@ -0,0 +1,98 @@
+package com.carenexus.direct.util;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import javax.crypto.Cipher;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-field cost of FieldCipher: AES-GCM encrypt / decrypt of a patient
+ * name (20 B), a short message (1 KB) and a long one (16 KB), a blind
+ * index token, and the pooled Cipher against getInstance per value.
+ *
+ * Opt-in (slow): mvn test -Dtest=FieldCipherBenchmark -Dbenchmark=true
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FieldCipherBenchmark {
+
+    @Param({"20", "1024", "16384"})
+    public int size;
+
+    private SecretKey key;
+    private FieldCipher.BlindIndex blindIndex;
+    private byte[] plain;
+    private byte[] stored;
+    private byte[] iv;
+
+    @Setup
+    public void setUp() {
+        SecureRandom random = new SecureRandom();
+        byte[] raw = new byte[32];
+        random.nextBytes(raw);
+        key = new SecretKeySpec(raw, "AES");
+        blindIndex = new FieldCipher.BlindIndex(new SecretKeySpec(raw, "HmacSHA256"), 16);
+        plain = new byte[size];
+        random.nextBytes(plain);
+        stored = FieldCipher.encrypt(1, key, plain);
+        iv = new byte[12];
+        random.nextBytes(iv);
+    }
+
+    @Benchmark
+    public byte[] encrypt() {
+        return FieldCipher.encrypt(1, key, plain);
+    }
+
+    @Benchmark
+    public byte[] decrypt() {
+        return FieldCipher.decrypt(key, stored);
+    }
+
+    @Benchmark
+    public byte[] blindIndexToken() {
+        return blindIndex.token(plain);
+    }
+
+    /** What FieldCipher avoids: a provider lookup and a new Cipher for every value */
+    @Benchmark
+    public byte[] encryptWithNewCipher() throws GeneralSecurityException {
+        Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+        iv[0]++;  // GCM refuses to reuse a key/IV pair for encryption
+        cipher.init(Cipher.ENCRYPT_MODE, key, new GCMParameterSpec(128, iv));
+        return cipher.doFinal(plain);
+    }
+
+    @Test
+    @EnabledIfSystemProperty(named = "benchmark", matches = "true")
+    void run() throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(FieldCipherBenchmark.class.getSimpleName())
+                .build())
+                .run();
+    }
+}
@@ -0,0 +1,140 @@
+package com.carenexus.direct.util;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Expiry never before the deadline, deadlines several turns of the
+ * wheel away (remaining rounds), and cancellation before and after the
+ * timeout reaches its bucket. The wheel runs on a hand-advanced clock
+ * with 10 ms ticks on a 4-bucket wheel, so one turn is 40 ms; only the
+ * last test starts the worker thread.
+ */
+class HashedTimingWheelTest {
+
+    private static final long TICK_MILLIS = 10;
+    private static final int WHEEL_SIZE = 4;
+    private static final long T0 = 1_000_000;
+
+    private final AtomicLong clock = new AtomicLong(T0);
+    private final Map<String, Long> expiredAt = new HashMap<>();
+    private final List<String> expiredOrder = new ArrayList<>();
+    private HashedTimingWheel<String> wheel;
+
+    private HashedTimingWheel<String> manual(int wheelSize) {
+        wheel = new HashedTimingWheel<>("timing-wheel-test", TICK_MILLIS, wheelSize, clock::get, task -> {
+            expiredAt.put(task, clock.get());
+            expiredOrder.add(task);
+        });
+        wheel.begin();
+        return wheel;
+    }
+
+    /** Move the clock one tick at a time, as the worker would */
+    private void advanceTo(long millis) {
+        while (clock.get() < millis) {
+            wheel.advanceTo(clock.addAndGet(TICK_MILLIS));
+        }
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (wheel != null) {
+            wheel.stop();
+        }
+    }
+
+    @Test
+    void expiresAtTheFirstTickAfterTheDeadlineAcrossSeveralTurns() {
+        manual(WHEEL_SIZE);
+        long near = T0 + 25;          // Within the first turn
+        long far = T0 + 3 * 40 + 15;  // Three turns away: found in its bucket twice before, with rounds left
+        wheel.schedule("far", far);
+        wheel.schedule("near", near);
+        wheel.schedule("past", T0 - 1_000);
+
+        advanceTo(T0 + 200);
+
+        assertThat(expiredOrder).containsExactly("past", "near", "far");
+        assertThat(expiredAt.get("past")).isEqualTo(T0 + 10);
+        assertThat(expiredAt.get("near")).isEqualTo(T0 + 30);
+        assertThat(expiredAt.get("far")).isEqualTo(T0 + 140);
+        assertThat(wheel.pendingCount()).isZero();
+    }
+
+    @Test
+    void catchesUpInOrderAfterAStall() {
+        manual(WHEEL_SIZE);
+        wheel.schedule("later", T0 + 95);
+        wheel.schedule("sooner", T0 + 55);
+
+        clock.set(T0 + 200);
+        wheel.advanceTo(clock.get());  // Twenty overdue ticks at once
+
+        assertThat(expiredOrder).containsExactly("sooner", "later");
+        assertThat(wheel.pendingCount()).isZero();
+    }
+
+    @Test
+    void cancelledTimeoutsNeverExpire() {
+        manual(WHEEL_SIZE);
+        HashedTimingWheel.Timeout<String> early = wheel.schedule("cancelled-before-transfer", T0 + 30);
+        HashedTimingWheel.Timeout<String> later = wheel.schedule("cancelled-in-bucket", T0 + 5 * 40);
+        wheel.schedule("kept", T0 + 6 * 40);
+
+        assertThat(early.cancel()).isTrue();
+        advanceTo(T0 + 3 * TICK_MILLIS);  // "later" is now in its bucket, counting down rounds
+        assertThat(later.cancel()).isTrue();
+        assertThat(later.cancel()).isFalse();
+        assertThat(later.isCancelled()).isTrue();
+        assertThat(wheel.pendingCount()).isEqualTo(1);
+
+        advanceTo(T0 + 300);
+        assertThat(expiredOrder).containsExactly("kept");
+        assertThat(expiredAt.get("kept")).isEqualTo(T0 + 250);
+        assertThat(wheel.pendingCount()).isZero();
+    }
+
+    @Test
+    void cancelAfterExpiryReportsFalse() {
+        manual(WHEEL_SIZE);
+        HashedTimingWheel.Timeout<String> timeout = wheel.schedule("done", T0 + 15);
+
+        advanceTo(T0 + 20);
+        assertThat(expiredOrder).containsExactly("done");
+        assertThat(timeout.cancel()).isFalse();
+        assertThat(timeout.isCancelled()).isFalse();
+        assertThat(wheel.pendingCount()).isZero();
+    }
+
+    @Test
+    void wheelOfNonPowerOfTwoSizeStillRollsOver() {
+        manual(3);  // Rounded up to 4 buckets
+        wheel.schedule("rollover", T0 + 10 * TICK_MILLIS);  // 2.5 turns away
+
+        advanceTo(T0 + 10 * TICK_MILLIS);
+        assertThat(expiredOrder).isEmpty();
+        advanceTo(T0 + 11 * TICK_MILLIS);
+        assertThat(expiredOrder).containsExactly("rollover");
+    }
+
+    @Test
+    void workerThreadDrivesTheWheel() throws InterruptedException {
+        CountDownLatch expired = new CountDownLatch(1);
+        wheel = new HashedTimingWheel<>("timing-wheel-test", TICK_MILLIS, WHEEL_SIZE, task -> expired.countDown());
+        wheel.start();
+        wheel.schedule("due", System.currentTimeMillis() - 1);
+
+        assertThat(expired.await(5, TimeUnit.SECONDS)).isTrue();
+    }
+}
@@ -0,0 +1,119 @@
+package com.carenexus.direct.util;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Free-slot queries of one doctor with 100k booked appointments (15 to
+ * 60 minutes, about 60% of the day booked): IntervalIndex gaps and
+ * overlap checks over a week, against the linear scan over every
+ * appointment that clients did before, plus moving a booking.
+ *
+ * Opt-in (slow): mvn test -Dtest=IntervalIndexBenchmark -Dbenchmark=true
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class IntervalIndexBenchmark {
+
+    private static final long MINUTE = TimeUnit.MINUTES.toMillis(1);
+    private static final long WEEK = TimeUnit.DAYS.toMillis(7);
+
+    @Param({"100000"})
+    public int appointments;
+
+    private IntervalIndex index;
+    private List<IntervalIndex.Interval> all;
+    private long horizon;
+    private Random random;
+
+    @Setup
+    public void setUp() {
+        random = new Random(42);
+        index = new IntervalIndex();
+        all = new ArrayList<>(appointments);
+        long cursor = 0;
+        for (int id = 1; id <= appointments; id++) {
+            cursor += (random.nextInt(4) * 10) * MINUTE;  // Free time before the booking
+            long end = cursor + (15 + random.nextInt(4) * 15) * MINUTE;
+            index.put(id, cursor, end);
+            all.add(new IntervalIndex.Interval(id, cursor, end));
+            cursor = end;
+        }
+        horizon = cursor - WEEK;
+    }
+
+    @Benchmark
+    public List<IntervalIndex.Interval> gapsInWeek() {
+        long from = (long) (random.nextDouble() * horizon);
+        return index.gaps(from, from + WEEK, 30 * MINUTE);
+    }
+
+    @Benchmark
+    public List<IntervalIndex.Interval> overlappingSlot() {
+        long from = (long) (random.nextDouble() * horizon);
+        return index.overlapping(from, from + 30 * MINUTE);
+    }
+
+    /** The baseline: scan every appointment for the week, then compute gaps */
+    @Benchmark
+    public List<IntervalIndex.Interval> gapsInWeekByScan() {
+        long from = (long) (random.nextDouble() * horizon);
+        long to = from + WEEK;
+        List<IntervalIndex.Interval> free = new ArrayList<>();
+        long cursor = from;
+        for (IntervalIndex.Interval booked : all) {
+            if (booked.end() <= cursor || booked.start() >= to) {
+                continue;
+            }
+            if (booked.start() - cursor >= 30 * MINUTE) {
+                free.add(new IntervalIndex.Interval(0, cursor, booked.start()));
+            }
+            cursor = Math.max(cursor, booked.end());
+        }
+        if (to - cursor >= 30 * MINUTE) {
+            free.add(new IntervalIndex.Interval(0, cursor, to));
+        }
+        return free;
+    }
+
+    /** Rebooking: move an appointment to another start and back */
+    @Benchmark
+    public void move() {
+        IntervalIndex.Interval booked = all.get(random.nextInt(appointments));
+        long shift = (long) (random.nextDouble() * horizon);
+        index.put(booked.id(), shift, shift + (booked.end() - booked.start()));
+        index.put(booked.id(), booked.start(), booked.end());
+    }
+
+    @Test
+    @EnabledIfSystemProperty(named = "benchmark", matches = "true")
+    void run() throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(IntervalIndexBenchmark.class.getSimpleName())
+                .build())
+                .run();
+    }
+}
@@ -0,0 +1,89 @@
+package com.carenexus.direct.util;
+
+import com.carenexus.direct.util.IntervalIndex.Interval;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Half-open [start, end) semantics at the boundaries of overlapping()
+ * and gaps(), and the seek window after long intervals move or go.
+ */
+class IntervalIndexTest {
+
+    @Test
+    void touchingIntervalsDoNotOverlap() {
+        IntervalIndex index = new IntervalIndex();
+        index.put(1, 0, 10);
+        index.put(2, 10, 20);
+
+        assertThat(index.overlapping(10, 20)).containsExactly(new Interval(2, 10, 20));
+        assertThat(index.overlapping(9, 10)).containsExactly(new Interval(1, 0, 10));
+        assertThat(index.overlapping(20, 30)).isEmpty();
+        assertThat(index.overlapping(-5, 0)).isEmpty();
+        assertThat(index.overlapping(5, 15)).containsExactly(new Interval(1, 0, 10), new Interval(2, 10, 20));
+    }
+
+    @Test
+    void longIntervalStartingBeforeTheWindowIsFound() {
+        IntervalIndex index = new IntervalIndex();
+        index.put(1, 0, 1_000);
+        index.put(2, 900, 910);
+
+        assertThat(index.overlapping(950, 960)).containsExactly(new Interval(1, 0, 1_000));
+        assertThat(index.overlapping(999, 1_000)).containsExactly(new Interval(1, 0, 1_000));
+        assertThat(index.overlapping(1_000, 1_001)).isEmpty();
+    }
+
+    @Test
+    void seekWindowFollowsMovesAndRemovals() {
+        IntervalIndex index = new IntervalIndex();
+        index.put(1, 0, 1_000);
+        index.put(2, 500, 510);
+
+        index.put(1, 2_000, 2_010);  // Move and shorten
+        assertThat(index.overlapping(900, 1_000)).isEmpty();
+        assertThat(index.overlapping(505, 506)).containsExactly(new Interval(2, 500, 510));
+        assertThat(index.overlapping(2_005, 2_006)).containsExactly(new Interval(1, 2_000, 2_010));
+        assertThat(index.size()).isEqualTo(2);
+
+        assertThat(index.remove(1)).isTrue();
+        assertThat(index.remove(1)).isFalse();
+        assertThat(index.contains(1)).isFalse();
+        assertThat(index.overlapping(0, 10_000)).containsExactly(new Interval(2, 500, 510));
+    }
+
+    @Test
+    void gapsAreHalfOpenAndRespectMinLength() {
+        IntervalIndex index = new IntervalIndex();
+        index.put(1, 10, 20);
+        index.put(2, 30, 40);
+
+        assertThat(index.gaps(0, 50, 10)).containsExactly(
+                new Interval(0, 0, 10), new Interval(0, 20, 30), new Interval(0, 40, 50));
+        assertThat(index.gaps(0, 50, 11)).isEmpty();
+        assertThat(index.gaps(10, 40, 1)).containsExactly(new Interval(0, 20, 30));
+        assertThat(index.gaps(15, 35, 1)).containsExactly(new Interval(0, 20, 30));
+    }
+
+    @Test
+    void gapsSkipOverlappingAndNestedBookings() {
+        IntervalIndex index = new IntervalIndex();
+        index.put(1, 0, 100);
+        index.put(2, 20, 30);   // Inside 1
+        index.put(3, 90, 120);  // Overlaps the end of 1
+
+        assertThat(index.gaps(0, 200, 1)).containsExactly(new Interval(0, 120, 200));
+        assertThat(index.gaps(50, 110, 1)).isEmpty();
+        assertThat(new IntervalIndex().gaps(0, 60, 60)).containsExactly(new Interval(0, 0, 60));
+    }
+
+    @Test
+    void emptyIntervalsAreRejected() {
+        IntervalIndex index = new IntervalIndex();
+
+        assertThatThrownBy(() -> index.put(1, 10, 10)).isInstanceOf(IllegalArgumentException.class);
+        assertThat(index.size()).isZero();
+    }
+}
@@ -0,0 +1,169 @@
+package com.carenexus.direct.util;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Recovery from the file as a crash leaves it: replay stops at a torn
+ * record, follows the log across a wrap, and resumes after the
+ * persisted checkpoint. Concurrent appenders get contiguous sequences,
+ * in the order they were handed on, and every record is durable.
+ */
+class MappedAppendLogTest {
+
+    private static final int HEADER_SIZE = 32;
+    private static final int RECORD_OVERHEAD = 4 + 8 + 4;
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void replayStopsAtATornRecordAndAppendsOverIt() throws Exception {
+        Path path = dir.resolve("torn.log");
+        try (MappedAppendLog log = new MappedAppendLog(path, 4096)) {
+            log.replay();
+            log.append(bytes("one"));
+            log.append(bytes("two"));
+            log.append(bytes("three"));
+        }
+        // Flip a payload byte of the third record: its CRC no longer matches
+        int third = HEADER_SIZE + 2 * (RECORD_OVERHEAD + 3);
+        overwrite(path, third + 12, (byte) 'X');
+
+        try (MappedAppendLog log = new MappedAppendLog(path, 4096)) {
+            assertThat(payloads(log.replay())).containsExactly("one", "two");
+            assertThat(log.append(bytes("again"))).isEqualTo(3);
+        }
+        try (MappedAppendLog log = new MappedAppendLog(path, 4096)) {
+            assertThat(payloads(log.replay())).containsExactly("one", "two", "again");
+        }
+    }
+
+    @Test
+    void replayFollowsTheLogAcrossAWrap() throws Exception {
+        Path path = dir.resolve("wrap.log");
+        int record = RECORD_OVERHEAD + 4;
+        int capacity = HEADER_SIZE + 3 * record;  // Room for exactly three records
+        try (MappedAppendLog log = new MappedAppendLog(path, capacity)) {
+            log.replay();
+            log.append(bytes("r001"));
+            log.append(bytes("r002"));
+            log.append(bytes("r003"));
+            log.checkpoint(3);                      // Full and fully checkpointed: the next append wraps
+            assertThat(log.append(bytes("r004"))).isEqualTo(4);
+            assertThat(log.append(bytes("r005"))).isEqualTo(5);
+        }
+
+        // r004 and r005 overwrote r001 and r002; the terminator after r005 hides the stale r003
+        try (MappedAppendLog log = new MappedAppendLog(path, capacity)) {
+            List<MappedAppendLog.Entry> entries = log.replay();
+            assertThat(payloads(entries)).containsExactly("r004", "r005");
+            assertThat(entries).extracting(MappedAppendLog.Entry::getSeq).containsExactly(4L, 5L);
+            log.checkpoint(5);
+            assertThat(log.append(bytes("r006"))).isEqualTo(6);
+        }
+    }
+
+    @Test
+    void checkpointSurvivesReopening() throws Exception {
+        Path path = dir.resolve("checkpoint.log");
+        try (MappedAppendLog log = new MappedAppendLog(path, 4096)) {
+            log.replay();
+            log.append(bytes("a"));
+            log.append(bytes("b"));
+            log.append(bytes("c"));
+            log.checkpoint(2);
+            log.checkpoint(1);  // Never moves back
+        }
+
+        try (MappedAppendLog log = new MappedAppendLog(path, 4096)) {
+            assertThat(log.getCheckpointSeq()).isEqualTo(2);
+            assertThat(payloads(log.replay())).containsExactly("c");
+            assertThat(log.append(bytes("d"))).isEqualTo(4);
+            log.checkpoint(4);
+        }
+
+        try (MappedAppendLog log = new MappedAppendLog(path, 4096)) {
+            assertThat(log.replay()).isEmpty();
+            assertThat(log.append(bytes("e"))).isEqualTo(5);  // Restarts at the front, sequence continues
+        }
+    }
+
+    @Test
+    void concurrentAppendsAreSequencedAndDurable() throws Exception {
+        Path path = dir.resolve("group.log");
+        int threads = 8;
+        int perThread = 200;
+        List<Long> handedOn = new ArrayList<>();
+
+        try (MappedAppendLog log = new MappedAppendLog(path, 1024 * 1024)) {
+            log.replay();
+            ExecutorService pool = Executors.newFixedThreadPool(threads);
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<List<Long>>> results = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                int thread = t;
+                results.add(pool.submit(() -> {
+                    start.await();
+                    List<Long> seqs = new ArrayList<>();
+                    for (int i = 0; i < perThread; i++) {
+                        // Under the append lock, so no further locking needed
+                        seqs.add(log.append(bytes(thread + ":" + i), handedOn::add));
+                    }
+                    return seqs;
+                }));
+            }
+            start.countDown();
+
+            List<Long> returned = new ArrayList<>();
+            for (Future<List<Long>> result : results) {
+                List<Long> seqs = result.get(30, TimeUnit.SECONDS);
+                assertThat(seqs).isSorted();  // Each thread's own appends in order
+                returned.addAll(seqs);
+            }
+            pool.shutdown();
+
+            assertThat(returned).hasSize(threads * perThread).doesNotHaveDuplicates();
+            assertThat(handedOn).hasSize(threads * perThread).isSorted();
+            assertThat(handedOn.get(0)).isEqualTo(1);
+            assertThat(handedOn.get(handedOn.size() - 1)).isEqualTo(threads * perThread);
+            assertThat(log.getWriteSeq()).isEqualTo(threads * perThread);
+        }
+
+        try (MappedAppendLog log = new MappedAppendLog(path, 1024 * 1024)) {
+            List<MappedAppendLog.Entry> entries = log.replay();
+            assertThat(entries).hasSize(threads * perThread);
+            assertThat(payloads(entries)).contains("0:0", "7:199");
+        }
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static List<String> payloads(List<MappedAppendLog.Entry> entries) {
+        return entries.stream().map(entry -> new String(entry.getPayload(), StandardCharsets.UTF_8)).toList();
+    }
+
+    private static void overwrite(Path path, int position, byte value) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(new byte[]{value}), position);
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package com.carenexus.direct.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * firstIds() ordering and limit (top-K in key order), shared keys, and
+ * pruning of nodes emptied by remove().
+ */
+class PrefixTrieTest {
+
+    @Test
+    void firstIdsAreInKeyOrderAndStopAtTheLimit() {
+        PrefixTrie trie = new PrefixTrie();
+        trie.insert("mason", 3);
+        trie.insert("mart", 2);
+        trie.insert("maria", 1);
+        trie.insert("mar", 4);
+        trie.insert("zed", 5);
+
+        assertThat(trie.firstIds("mar", 10)).containsExactly(4L, 1L, 2L);
+        assertThat(trie.firstIds("ma", 2)).containsExactly(4L, 1L);
+        assertThat(trie.firstIds("", 10)).containsExactly(4L, 1L, 2L, 3L, 5L);
+        assertThat(trie.firstIds("mb", 10)).isEmpty();
+        assertThat(trie.firstIds("maria-longer", 10)).isEmpty();
+        assertThat(trie.firstIds("ma", 0)).isEmpty();
+    }
+
+    @Test
+    void idsAreDistinctAcrossKeys() {
+        PrefixTrie trie = new PrefixTrie();
+        trie.insert("ann", 7);
+        trie.insert("anna", 7);  // Same id under two keys (e.g. first and last name)
+        trie.insert("anna", 8);
+        trie.insert("anna", 8);
+
+        assertThat(trie.firstIds("an", 10)).containsExactly(7L, 8L);
+        assertThat(trie.firstIds("an", 2)).containsExactly(7L, 8L);
+    }
+
+    @Test
+    void removePrunesEmptiedNodesOnly() {
+        PrefixTrie trie = new PrefixTrie();
+        trie.insert("mart", 1);
+        trie.insert("mary", 2);
+        trie.insert("mar", 3);
+        assertThat(trie.nodeCount()).isEqualTo(5);  // m a r t y
+
+        trie.remove("mart", 1);
+        assertThat(trie.nodeCount()).isEqualTo(4);
+        assertThat(trie.firstIds("mar", 10)).containsExactly(3L, 2L);
+
+        trie.remove("mar", 3);  // "mar" still leads to "mary"
+        assertThat(trie.nodeCount()).isEqualTo(4);
+        assertThat(trie.firstIds("mar", 10)).containsExactly(2L);
+
+        trie.remove("mary", 99);  // Unknown id: nothing to prune
+        trie.remove("maze", 2);   // Unknown key
+        assertThat(trie.nodeCount()).isEqualTo(4);
+
+        trie.remove("mary", 2);
+        assertThat(trie.nodeCount()).isZero();
+        assertThat(trie.firstIds("", 10)).isEmpty();
+
+        trie.insert("mary", 2);
+        assertThat(trie.firstIds("m", 10)).containsExactly(2L);
+    }
+}